@@ -0,0 +1,9 @@
+#!/usr/bin/env sh
+# Build the benchmark jar and record a JMH run as baseline/<name>.json (default: baseline)
+set -eu
+cd "$(dirname "$0")"
+name="${1:-baseline}"
+mvn -B -q package
+mkdir -p baseline
+java -jar target/benchmarks.jar -rf json -rff "baseline/${name}.json"
+echo "Results written to baseline/${name}.json"
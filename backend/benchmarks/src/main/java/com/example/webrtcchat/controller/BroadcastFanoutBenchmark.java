@@ -0,0 +1,78 @@
+package com.example.webrtcchat.controller;
+
+import com.example.webrtcchat.dto.MessageDto;
+import com.example.webrtcchat.dto.RoomDto;
+import com.example.webrtcchat.dto.Timestamps;
+import com.example.webrtcchat.repository.BlockedUserRepository;
+import com.example.webrtcchat.repository.CallLogRepository;
+import com.example.webrtcchat.service.*;
+import com.example.webrtcchat.types.MessageType;
+import com.example.webrtcchat.types.RoomType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Broadcast fan-out with many connected sessions: one serialization plus a send per recipient.
+ * GENERAL walks every open session; ROOM walks the member set (all connected here).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class BroadcastFanoutBenchmark {
+
+    @Param({"1000", "10000"})
+    public int sessions;
+
+    @Param({"GENERAL", "ROOM"})
+    public RoomType roomType;
+
+    private ChatWebSocketHandler handler;
+    private RoomDto room;
+    private MessageDto message;
+
+    @Setup
+    public void setUp() throws Exception {
+        JwtService jwtService = mock(JwtService.class);
+        when(jwtService.isTokenValid(anyString())).thenReturn(true);
+        when(jwtService.extractUsername(anyString())).thenAnswer(inv -> inv.<String>getArgument(0).substring(6));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        handler = new ChatWebSocketHandler(mock(ChatService.class), jwtService, mock(RoomService.class),
+                mock(SchedulerService.class), mock(TaskService.class), mock(ConferenceService.class),
+                mock(CallLogRepository.class), mock(WebPushService.class), mock(BlockedUserRepository.class),
+                mock(StoryService.class), mock(ReactionService.class), mock(LinkPreviewService.class),
+                mock(RateLimiterService.class), mock(LoadShedder.class), meterRegistry);
+
+        Set<String> members = new LinkedHashSet<>();
+        for (int i = 0; i < sessions; i++) {
+            String username = "user" + i;
+            members.add(username);
+            handler.afterConnectionEstablished(new StubWebSocketSession("s" + i, "token-" + username));
+        }
+        room = new RoomDto(roomType == RoomType.GENERAL ? "general" : "room-big", "Room", roomType,
+                "user0", Timestamps.parse("2026-01-01 12:00:00"));
+        room.setMembers(members);
+
+        message = new MessageDto();
+        message.setId("msg-1");
+        message.setType(MessageType.CHAT);
+        message.setRoomId(room.getId());
+        message.setSender("user0");
+        message.setContent("The quick brown fox jumps over the lazy dog");
+        message.setTimestamp(Timestamps.parse("2026-01-01 12:00:00"));
+    }
+
+    @Benchmark
+    public void broadcast() {
+        handler.broadcastToRoom(room, message);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.webrtcchat.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Minimal open session that counts and discards outbound frames, so benchmarks measure the
+ * handler rather than a transport or a mocking framework.
+ */
+final class StubWebSocketSession implements WebSocketSession {
+
+    private final String id;
+    private final URI uri;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private long sent;
+    private long sentChars;
+
+    StubWebSocketSession(String id, String token) {
+        this.id = id;
+        this.uri = URI.create("ws://localhost/ws/chat?token=" + token);
+    }
+
+    long sent() {
+        return sent;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        sent++;
+        sentChars += message.getPayloadLength();
+    }
+
+    @Override public String getId() { return id; }
+    @Override public URI getUri() { return uri; }
+    @Override public HttpHeaders getHandshakeHeaders() { return HttpHeaders.EMPTY; }
+    @Override public Map<String, Object> getAttributes() { return attributes; }
+    @Override public Principal getPrincipal() { return null; }
+    @Override public InetSocketAddress getLocalAddress() { return null; }
+    @Override public InetSocketAddress getRemoteAddress() { return null; }
+    @Override public String getAcceptedProtocol() { return null; }
+    @Override public void setTextMessageSizeLimit(int messageSizeLimit) { }
+    @Override public int getTextMessageSizeLimit() { return 64 * 1024; }
+    @Override public void setBinaryMessageSizeLimit(int messageSizeLimit) { }
+    @Override public int getBinaryMessageSizeLimit() { return 64 * 1024; }
+    @Override public List<WebSocketExtension> getExtensions() { return List.of(); }
+    @Override public boolean isOpen() { return true; }
+    @Override public void close() { }
+    @Override public void close(CloseStatus status) { }
+}
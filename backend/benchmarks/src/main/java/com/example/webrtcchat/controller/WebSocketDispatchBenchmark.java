@@ -0,0 +1,118 @@
+package com.example.webrtcchat.controller;
+
+import com.example.webrtcchat.config.DbBulkhead;
+import com.example.webrtcchat.dto.MessageDto;
+import com.example.webrtcchat.dto.RoomDto;
+import com.example.webrtcchat.dto.Timestamps;
+import com.example.webrtcchat.repository.BlockedUserRepository;
+import com.example.webrtcchat.repository.CallLogRepository;
+import com.example.webrtcchat.service.*;
+import com.example.webrtcchat.types.MessageType;
+import com.example.webrtcchat.types.RoomType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.web.socket.TextMessage;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * End-to-end cost of one inbound frame through {@link ChatWebSocketHandler}: rate-limit
+ * classification, parsing, admission, dispatch and the outbound fan-out to a small private
+ * room. Persistence is mocked, so this isolates the handler's own CPU and allocation cost.
+ * Mailbox tasks run inline on the benchmark thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class WebSocketDispatchBenchmark {
+
+    @Param({"CHAT", "TYPING", "ICE_CANDIDATE", "REACTION", "EDIT", "READ_RECEIPT"})
+    public MessageType type;
+
+    private ChatWebSocketHandler handler;
+    private StubWebSocketSession alice;
+    private TextMessage frame;
+
+    @Setup
+    public void setUp() throws Exception {
+        ChatService chatService = mock(ChatService.class);
+        JwtService jwtService = mock(JwtService.class);
+        RoomService roomService = mock(RoomService.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // Real limiter and shedder, disabled, so their bypass cost is part of the measurement
+        RateLimiterService rateLimiter = new RateLimiterService(meterRegistry, false, 16384,
+                new int[]{5, 20}, new int[]{5, 10}, new int[]{50, 200}, new int[]{5, 20}, new int[]{20, 100},
+                new int[]{1, 5});
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        LoadShedder loadShedder = new LoadShedder(meterRegistry, beans.getBeanProvider(DataSource.class),
+                beans.getBeanProvider(DbBulkhead.class), false,
+                new double[]{0.25, 0.5, 0.8}, new int[]{2, 5, 10}, new int[]{50, 200, 500}, 3000);
+
+        handler = new ChatWebSocketHandler(chatService, jwtService, roomService, mock(SchedulerService.class),
+                mock(TaskService.class), mock(ConferenceService.class), mock(CallLogRepository.class),
+                mock(WebPushService.class), mock(BlockedUserRepository.class), mock(StoryService.class),
+                mock(ReactionService.class), mock(LinkPreviewService.class), rateLimiter, loadShedder, meterRegistry) {
+            @Override
+            protected void submitToExecutor(Runnable task) {
+                task.run();
+            }
+        };
+        handler.initMailboxLimits();
+
+        RoomDto room = new RoomDto("room-ab", "Room", RoomType.ROOM, "alice", Timestamps.parse("2026-01-01 12:00:00"));
+        room.setMembers(new LinkedHashSet<>(Set.of("alice", "bob", "carol")));
+        when(roomService.getRoomById("room-ab")).thenReturn(room);
+
+        MessageDto original = new MessageDto();
+        original.setId("msg-1");
+        original.setSender("alice");
+        original.setRoomId("room-ab");
+        when(chatService.findMessage("room-ab", "msg-1")).thenReturn(original);
+        when(chatService.markMessagesAsRead(anyString(), anyString())).thenReturn(Map.of("bob", List.of("msg-1")));
+
+        alice = connect("alice", jwtService);
+        connect("bob", jwtService);
+        connect("carol", jwtService);
+
+        MessageDto incoming = new MessageDto();
+        incoming.setType(type);
+        incoming.setRoomId("room-ab");
+        incoming.setId("msg-1");
+        switch (type) {
+            case CHAT, EDIT -> incoming.setContent("The quick brown fox jumps over the lazy dog");
+            case ICE_CANDIDATE -> incoming.setExtra(Map.of("target", "bob",
+                    "candidate", "candidate:842163049 1 udp 1677729535 203.0.113.7 46154 typ srflx"));
+            case REACTION -> incoming.setExtra(Map.of("emoji", "👍"));
+            default -> { }
+        }
+        frame = new TextMessage(new ObjectMapper().writeValueAsString(incoming));
+    }
+
+    private StubWebSocketSession connect(String username, JwtService jwtService) throws Exception {
+        String token = "token-" + username;
+        when(jwtService.isTokenValid(token)).thenReturn(true);
+        when(jwtService.extractUsername(token)).thenReturn(username);
+        StubWebSocketSession session = new StubWebSocketSession("session-" + username, token);
+        handler.afterConnectionEstablished(session);
+        return session;
+    }
+
+    @Benchmark
+    public long dispatch() throws Exception {
+        handler.handleTextMessage(alice, frame);
+        return alice.sent();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.webrtcchat.dto;
+
+import com.example.webrtcchat.types.MessageType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson round trip of a typical chat frame: every inbound frame is parsed once and every
+ * broadcast is serialized once before fan-out.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class MessageDtoSerializationBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private MessageDto message;
+    private String json;
+
+    @Setup
+    public void setUp() throws Exception {
+        message = new MessageDto();
+        message.setId("3f2b8c4e-6a1d-4e7f-9b0a-1c2d3e4f5a6b");
+        message.setType(MessageType.CHAT);
+        message.setRoomId("room-ab");
+        message.setSender("alice");
+        message.setContent("The quick brown fox jumps over the lazy dog");
+        message.setTimestamp(Timestamps.parse("2026-01-01 12:00:00"));
+        message.setReplyToId("9a8b7c6d-5e4f-4a3b-2c1d-0e9f8a7b6c5d");
+        message.setReplyToSender("bob");
+        message.setReplyToContent("What's up?");
+        message.setExtra(Map.of("clientId", "c-42"));
+        json = objectMapper.writeValueAsString(message);
+    }
+
+    @Benchmark
+    public String serialize() throws Exception {
+        return objectMapper.writeValueAsString(message);
+    }
+
+    @Benchmark
+    public MessageDto deserialize() throws Exception {
+        return objectMapper.readValue(json, MessageDto.class);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.dto.MessageDto;
+import com.example.webrtcchat.dto.Timestamps;
+import com.example.webrtcchat.entity.MessageEntity;
+import com.example.webrtcchat.repository.MessageRepository;
+import com.example.webrtcchat.repository.RoomRepository;
+import com.example.webrtcchat.repository.UserRepository;
+import com.example.webrtcchat.types.MessageType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Entity-to-DTO mapping done for every row of a history page. The link preview variant adds
+ * the JSON column parse introduced with send-time preview enrichment.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ChatServiceMappingBenchmark {
+
+    @Param({"false", "true"})
+    public boolean withLinkPreview;
+
+    private ChatService chatService;
+    private MessageEntity entity;
+
+    @Setup
+    public void setUp() {
+        chatService = new ChatService(mock(MessageRepository.class), mock(RoomRepository.class),
+                mock(UserRepository.class), mock(PollService.class), mock(UploadRefService.class),
+                mock(MessageArchive.class));
+        entity = new MessageEntity();
+        entity.setId("3f2b8c4e-6a1d-4e7f-9b0a-1c2d3e4f5a6b");
+        entity.setSender("alice");
+        entity.setContent("Look at this: https://example.com/article");
+        entity.setTimestamp(Timestamps.parse("2026-01-01 12:00:00"));
+        entity.setType(MessageType.CHAT);
+        entity.setRoomId("room-ab");
+        entity.setStatus("DELIVERED");
+        if (withLinkPreview) {
+            entity.setLinkPreview("{\"url\":\"https://example.com/article\",\"title\":\"Example article\","
+                    + "\"description\":\"A short description of the linked page\","
+                    + "\"image\":\"https://example.com/og.png\",\"siteName\":\"Example\"}");
+        }
+    }
+
+    @Benchmark
+    public MessageDto toDto() {
+        return chatService.toDto(entity);
+    }
+}
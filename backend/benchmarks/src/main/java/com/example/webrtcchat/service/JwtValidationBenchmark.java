@@ -0,0 +1,46 @@
+package com.example.webrtcchat.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT checks on the connect and REST paths: HS256 signature verification and claim parsing.
+ * The tampered token fails signature verification and exercises the exception path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class JwtValidationBenchmark {
+
+    private JwtService jwtService;
+    private String token;
+    private String tampered;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService("benchmark-secret-benchmark-secret-0123456789", 86_400_000L);
+        token = jwtService.generateToken("alice");
+        // Flip a character inside the signature (the last one only carries padding bits)
+        int i = token.length() - 10;
+        tampered = token.substring(0, i) + (token.charAt(i) == 'A' ? 'B' : 'A') + token.substring(i + 1);
+    }
+
+    @Benchmark
+    public boolean validToken() {
+        return jwtService.isTokenValid(token);
+    }
+
+    @Benchmark
+    public String extractUsername() {
+        return jwtService.extractUsername(token);
+    }
+
+    @Benchmark
+    public boolean tamperedToken() {
+        return jwtService.isTokenValid(tampered);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.webrtcchat.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batched inserts into a table keyed like {@code messages}: random v4 ids against time-ordered
+ * v7 ids from {@link MessageIds}. The table is preloaded so the primary-key index is already
+ * several levels deep; random keys then land on random leaf pages while v7 keys append.
+ * <p>
+ * Runs against in-memory H2 by default. For the index size, point it at a scratch PostgreSQL
+ * database ({@code -p jdbcUrl=jdbc:postgresql://host/db?user=..&password=..}): at the end of
+ * each trial the size of the primary-key index is printed from {@code pg_relation_size}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageIdInsertBenchmark {
+
+    private static final int BATCH = 100;
+
+    public enum Scheme { RANDOM_V4, TIME_ORDERED_V7 }
+
+    @Param({"RANDOM_V4", "TIME_ORDERED_V7"})
+    public Scheme scheme;
+
+    @Param({"jdbc:h2:mem:message_ids"})
+    public String jdbcUrl;
+
+    @Param({"200000"})
+    public int preload;
+
+    private Connection connection;
+    private PreparedStatement insert;
+    private boolean postgres;
+    private long rows;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(jdbcUrl);
+        postgres = jdbcUrl.startsWith("jdbc:postgresql:");
+        try (Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS bench_messages");
+            // Same key column as messages.id after V29
+            st.execute("CREATE TABLE bench_messages (id VARCHAR(36)" + (postgres ? " COLLATE \"C\"" : "")
+                    + " PRIMARY KEY, room_id VARCHAR(100), content TEXT)");
+        }
+        connection.setAutoCommit(false);
+        insert = connection.prepareStatement("INSERT INTO bench_messages (id, room_id, content) VALUES (?, ?, ?)");
+        for (int i = 0; i < preload; i += BATCH) insertBatch();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void insertBatch() throws SQLException {
+        for (int i = 0; i < BATCH; i++) {
+            insert.setString(1, scheme == Scheme.RANDOM_V4 ? UUID.randomUUID().toString() : MessageIds.next());
+            insert.setString(2, "room-" + (i & 15));
+            insert.setString(3, "The quick brown fox jumps over the lazy dog");
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        connection.commit();
+        rows += BATCH;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        if (postgres) {
+            try (Statement st = connection.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT pg_relation_size('bench_messages_pkey')")) {
+                rs.next();
+                long bytes = rs.getLong(1);
+                System.out.printf("%n%s: %d rows, primary-key index %.1f MiB (%.1f bytes/row)%n",
+                        scheme, rows, bytes / 1048576.0, (double) bytes / rows);
+            }
+        }
+        try (Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE bench_messages");
+        }
+        connection.commit();
+        connection.close();
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.webrtcchat.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of minting a message id: {@link UUID#randomUUID()} draws from SecureRandom,
+ * {@link MessageIds#next()} is a clock read, a CAS and a ThreadLocalRandom draw.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class MessageIdsBenchmark {
+
+    @Benchmark
+    public String randomV4() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public String timeOrderedV7() {
+        return MessageIds.next();
+    }
+}
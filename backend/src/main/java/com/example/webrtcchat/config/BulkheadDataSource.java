@@ -0,0 +1,62 @@
+package com.example.webrtcchat.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The application's data source behind a {@link DbBulkhead}: each connection holds a permit of
+ * the calling thread's lane from {@code getConnection()} until it is closed.
+ */
+public class BulkheadDataSource extends DelegatingDataSource {
+
+    private final DbBulkhead bulkhead;
+
+    public BulkheadDataSource(DataSource target, DbBulkhead bulkhead) {
+        super(target);
+        this.bulkhead = bulkhead;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        DbBulkhead.Permit permit = bulkhead.acquire();
+        if (permit == null) return super.getConnection();
+        Connection connection;
+        try {
+            connection = super.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            permit.release();
+            throw e;
+        }
+        return releasingOnClose(connection, permit);
+    }
+
+    private static Connection releasingOnClose(Connection target, DbBulkhead.Permit permit) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "close":
+                            try {
+                                target.close();
+                            } finally {
+                                permit.release();
+                            }
+                            return null;
+                        default:
+                            try {
+                                return method.invoke(target, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getTargetException();
+                            }
+                    }
+                });
+    }
+}
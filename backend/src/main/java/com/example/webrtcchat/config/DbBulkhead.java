@@ -0,0 +1,165 @@
+package com.example.webrtcchat.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.sql.SQLTransientConnectionException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission to the database, one semaphore-bounded lane per class of work.
+ * <p>
+ * Virtual threads are free, pool connections are not: without a bound, a burst of WebSocket
+ * frames parks thousands of threads on Hikari and login or history requests queue behind them
+ * for the full connection timeout. Each thread names its lane ({@link #runIn}); a connection is
+ * handed out only under one of that lane's permits, taken within the lane's acquire timeout or
+ * refused with {@link RejectedException}. Permits of all lanes should add up to no more than the
+ * pool size, so Hikari itself never queues. Threads that name no lane (startup, migrations) are
+ * not limited.
+ */
+public class DbBulkhead {
+
+    /** Classes of database work. Bounded, so safe as a metric tag. */
+    public enum Lane { REALTIME, REST, BACKGROUND }
+
+    private static final ThreadLocal<Lane> LANE = new ThreadLocal<>();
+
+    /** Thrown when a lane has no permit free within its acquire timeout; clients should retry later. */
+    public static class RejectedException extends SQLTransientConnectionException {
+        RejectedException(Lane lane, long timeoutMs) {
+            super("Database lane " + lane + " is full (no permit within " + timeoutMs + " ms)");
+        }
+    }
+
+    private final Map<Lane, LaneState> lanes = new EnumMap<>(Lane.class);
+
+    /**
+     * @param limits per lane {@code {permits, acquire timeout in ms}}; lanes without an entry are unlimited
+     */
+    public DbBulkhead(MeterRegistry meterRegistry, Map<Lane, long[]> limits) {
+        for (Map.Entry<Lane, long[]> e : limits.entrySet()) {
+            long[] limit = e.getValue();
+            if (limit.length != 2 || limit[0] < 1 || limit[1] < 0) {
+                throw new IllegalArgumentException("db.bulkhead." + tag(e.getKey())
+                        + " needs \"<permits>,<acquire timeout ms>\" with at least one permit");
+            }
+            lanes.put(e.getKey(), new LaneState(e.getKey(), (int) limit[0], limit[1], meterRegistry));
+        }
+    }
+
+    /** Run {@code task} with its database work counted against {@code lane}. */
+    public static void runIn(Lane lane, Runnable task) {
+        Lane previous = enter(lane);
+        try {
+            task.run();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /** Put the calling thread in {@code lane}; pair with {@link #restore} in a {@code finally}. */
+    static Lane enter(Lane lane) {
+        Lane previous = LANE.get();
+        LANE.set(lane);
+        return previous;
+    }
+
+    static void restore(Lane previous) {
+        if (previous == null) LANE.remove();
+        else LANE.set(previous);
+    }
+
+    /** Threads currently waiting for a permit of {@code lane}; 0 for an unlimited lane. */
+    public int queued(Lane lane) {
+        LaneState state = lanes.get(lane);
+        return state != null ? state.semaphore.getQueueLength() : 0;
+    }
+
+    /** Whether {@code e} or one of its causes is a lane refusal. */
+    public static boolean isRejection(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof RejectedException) return true;
+            if (t.getCause() == t) break;
+        }
+        return false;
+    }
+
+    /**
+     * Take a permit of the calling thread's lane.
+     *
+     * @return the permit to release once the connection is closed; {@code null} when not limited
+     */
+    Permit acquire() throws RejectedException {
+        Lane lane = LANE.get();
+        LaneState state = lane != null ? lanes.get(lane) : null;
+        return state == null ? null : state.acquire();
+    }
+
+    /** One taken permit; releasing it more than once is a no-op. */
+    static final class Permit {
+        private final Semaphore semaphore;
+        private boolean released;
+
+        Permit(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        synchronized void release() {
+            if (released) return;
+            released = true;
+            semaphore.release();
+        }
+    }
+
+    private static String tag(Lane lane) {
+        return lane.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class LaneState {
+        final Lane lane;
+        final Semaphore semaphore;
+        final int permits;
+        final long timeoutMs;
+        final Timer wait;
+        final Counter rejected;
+
+        LaneState(Lane lane, int permits, long timeoutMs, MeterRegistry meterRegistry) {
+            this.lane = lane;
+            this.semaphore = new Semaphore(permits, true);
+            this.permits = permits;
+            this.timeoutMs = timeoutMs;
+            this.wait = Timer.builder("db.bulkhead.wait").tag("lane", tag(lane))
+                    .description("Time spent queueing for a database lane permit").register(meterRegistry);
+            this.rejected = Counter.builder("db.bulkhead.rejected").tag("lane", tag(lane))
+                    .description("Connection requests refused because the lane stayed full").register(meterRegistry);
+            Gauge.builder("db.bulkhead.active", semaphore, s -> permits - s.availablePermits()).tag("lane", tag(lane))
+                    .description("Permits in use").register(meterRegistry);
+            Gauge.builder("db.bulkhead.queued", semaphore, Semaphore::getQueueLength).tag("lane", tag(lane))
+                    .description("Threads waiting for a permit").register(meterRegistry);
+        }
+
+        Permit acquire() throws RejectedException {
+            // The timed tryAcquire honours fairness even when a permit is free; plain tryAcquire would barge
+            long start = System.nanoTime();
+            boolean acquired;
+            try {
+                acquired = semaphore.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            wait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (!acquired) {
+                rejected.increment();
+                throw new RejectedException(lane, timeoutMs);
+            }
+            return new Permit(semaphore);
+        }
+    }
+}
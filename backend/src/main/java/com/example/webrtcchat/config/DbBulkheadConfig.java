@@ -0,0 +1,80 @@
+package com.example.webrtcchat.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Wires the {@link DbBulkhead}: wraps the application data source and puts HTTP requests in the
+ * REST lane and {@code @Scheduled} jobs in the background lane. WebSocket frame processing
+ * enters the realtime lane in {@code ChatWebSocketHandler}.
+ */
+@Configuration
+public class DbBulkheadConfig {
+
+    @Bean
+    public DbBulkhead dbBulkhead(MeterRegistry meterRegistry,
+                                 @Value("${db.bulkhead.realtime:4,250}") long[] realtime,
+                                 @Value("${db.bulkhead.rest:4,1000}") long[] rest,
+                                 @Value("${db.bulkhead.background:2,30000}") long[] background) {
+        Map<DbBulkhead.Lane, long[]> limits = new EnumMap<>(DbBulkhead.Lane.class);
+        limits.put(DbBulkhead.Lane.REALTIME, realtime);
+        limits.put(DbBulkhead.Lane.REST, rest);
+        limits.put(DbBulkhead.Lane.BACKGROUND, background);
+        return new DbBulkhead(meterRegistry, limits);
+    }
+
+    /** Wraps the data source the application uses (Boot's, or the replica router's proxy). */
+    @Bean
+    static BeanPostProcessor bulkheadDataSourcePostProcessor(ObjectProvider<DbBulkhead> bulkhead,
+                                                             @Value("${db.bulkhead.enabled:true}") boolean enabled) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return enabled && "dataSource".equals(beanName) && bean instanceof DataSource ds
+                        ? new BulkheadDataSource(ds, bulkhead.getObject()) : bean;
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<OncePerRequestFilter> restLaneFilter() {
+        FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>(new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                            FilterChain filterChain) throws ServletException, IOException {
+                DbBulkhead.Lane previous = DbBulkhead.enter(DbBulkhead.Lane.REST);
+                try {
+                    filterChain.doFilter(request, response);
+                } finally {
+                    DbBulkhead.restore(previous);
+                }
+            }
+        });
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    /** Every thread of the {@code @Scheduled} pool runs its jobs in the background lane. */
+    @Bean
+    public ThreadPoolTaskSchedulerCustomizer backgroundLaneScheduler() {
+        return scheduler -> scheduler.setThreadFactory(
+                task -> scheduler.newThread(() -> DbBulkhead.runIn(DbBulkhead.Lane.BACKGROUND, task)));
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.webrtcchat.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read replicas, active once {@code db.replicas.urls} lists at least one JDBC URL.
+ * <p>
+ * Replaces Boot's single pool with the primary pool (still bound from
+ * {@code spring.datasource.*}), one read-only pool per replica sized like the primary, and
+ * {@link ReplicaRoutingDataSource} in front of them. The application sees only the lazy proxy,
+ * so every {@code @Transactional(readOnly = true)} method reads from a replica.
+ */
+@Configuration
+@ConditionalOnExpression("!'${db.replicas.urls:}'.trim().isEmpty()")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            HikariDataSource primaryDataSource,
+            DataSourceProperties properties,
+            MeterRegistry meterRegistry,
+            @Value("${db.replicas.urls}") String urls,
+            @Value("${db.replicas.username:${spring.datasource.username:}}") String username,
+            @Value("${db.replicas.password:${spring.datasource.password:}}") String password,
+            @Value("${db.replicas.connection-timeout-ms:1000}") long connectionTimeoutMs,
+            @Value("${db.replicas.max-lag-ms:3000}") long maxLagMs,
+            @Value("${db.replicas.sticky-ms:5000}") long stickyMs,
+            @Value("${db.replicas.health-interval-ms:1000}") long healthIntervalMs,
+            @Value("${db.replicas.lag-query:}") String lagQuery) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        List<String> jdbcUrls = Arrays.stream(urls.split(",")).map(String::trim).filter(u -> !u.isEmpty()).toList();
+        for (int i = 0; i < jdbcUrls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + i);
+            replica.setJdbcUrl(jdbcUrls.get(i));
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setUsername(username);
+            replica.setPassword(password);
+            replica.setReadOnly(true);
+            replica.setMaximumPoolSize(primaryDataSource.getMaximumPoolSize());
+            replica.setMinimumIdle(primaryDataSource.getMinimumIdle());
+            replica.setIdleTimeout(primaryDataSource.getIdleTimeout());
+            replica.setMaxLifetime(primaryDataSource.getMaxLifetime());
+            replica.setConnectionTimeout(connectionTimeoutMs);
+            // Do not fail startup on a replica that is down; the router skips it until it answers
+            replica.setInitializationFailTimeout(-1);
+            replica.setMetricRegistry(meterRegistry);
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, meterRegistry, Duration.ofMillis(maxLagMs),
+                Duration.ofMillis(stickyMs), Duration.ofMillis(healthIntervalMs), lagQuery);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
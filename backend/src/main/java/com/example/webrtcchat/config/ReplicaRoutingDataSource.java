@@ -0,0 +1,282 @@
+package com.example.webrtcchat.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Sends the connections of read-only transactions to a replica and everything else to the primary.
+ * <p>
+ * Meant to sit behind a {@link LazyConnectionDataSourceProxy}: the physical connection is then
+ * fetched at the first statement, after Spring has marked the transaction read-only. Replicas are
+ * probed every {@code checkInterval}; one that cannot be reached, lags more than {@code maxLag}
+ * or has not been probed for three intervals is skipped, and with none left reads fall back to
+ * the primary. A user who wrote through the primary keeps reading from it for
+ * {@code stickyWindow}, so a page reloaded right after sending a message shows that message;
+ * the window should exceed {@code maxLag} plus the check interval.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    /** Replay lag in ms; 0 on a caught-up standby and on a server that is not a standby at all. */
+    static final String POSTGRES_LAG_QUERY = """
+            SELECT CASE WHEN pg_is_in_recovery() AND pg_last_wal_receive_lsn() IS DISTINCT FROM pg_last_wal_replay_lsn()
+                        THEN COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+                        ELSE 0 END""";
+
+    private static final ThreadLocal<String> ACTOR = new ThreadLocal<>();
+
+    /** Where a connection went and why. Bounded, so safe as a metric tag. */
+    enum Route { REPLICA, WRITE, STICKY, FALLBACK }
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxLagMs;
+    private final long stickyNanos;
+    private final long checkIntervalMs;
+    private final String lagQuery;
+    private final LongSupplier nanoClock;
+    private final Map<String, Long> stickyUntil = new ConcurrentHashMap<>();
+    private final Map<Route, Counter> routed = new EnumMap<>(Route.class);
+    private final AtomicInteger next = new AtomicInteger();
+
+    private volatile ScheduledExecutorService checker;
+
+    /**
+     * @param lagQuery SQL returning the replica's lag in milliseconds; {@code null} to use
+     *                 {@link #POSTGRES_LAG_QUERY} on PostgreSQL and assume no lag elsewhere
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicas, MeterRegistry meterRegistry,
+                                    Duration maxLag, Duration stickyWindow, Duration checkInterval, String lagQuery) {
+        this(primary, replicas, meterRegistry, maxLag, stickyWindow, checkInterval, lagQuery, System::nanoTime);
+    }
+
+    ReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicas, MeterRegistry meterRegistry,
+                             Duration maxLag, Duration stickyWindow, Duration checkInterval, String lagQuery,
+                             LongSupplier nanoClock) {
+        this.primary = primary;
+        this.maxLagMs = maxLag.toMillis();
+        this.stickyNanos = stickyWindow.toNanos();
+        this.checkIntervalMs = checkInterval.toMillis();
+        this.lagQuery = lagQuery == null || lagQuery.isBlank() ? null : lagQuery;
+        this.nanoClock = nanoClock;
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = new Replica("replica-" + i, replicas.get(i));
+            this.replicas.add(replica);
+            Gauge.builder("db.replica.lag", replica, r -> r.lagMs).baseUnit("milliseconds")
+                    .description("Replication lag seen by the last health check").tag("replica", replica.name)
+                    .register(meterRegistry);
+            Gauge.builder("db.replica.healthy", this, self -> self.usable(replica, self.nanoClock.getAsLong()) ? 1 : 0)
+                    .description("1 while reads may be routed to the replica").tag("replica", replica.name)
+                    .register(meterRegistry);
+        }
+        for (Route route : Route.values()) {
+            routed.put(route, Counter.builder("db.route")
+                    .description("Connections handed out by the replica router")
+                    .tag("route", route.name().toLowerCase(Locale.ROOT)).register(meterRegistry));
+        }
+    }
+
+    /**
+     * Run {@code task} with {@code user} as the one whose writes make later reads sticky.
+     * For threads without a security context, such as WebSocket frame processing.
+     */
+    public static void runAs(String user, Runnable task) {
+        String previous = ACTOR.get();
+        ACTOR.set(user);
+        try {
+            task.run();
+        } finally {
+            if (previous == null) ACTOR.remove();
+            else ACTOR.set(previous);
+        }
+    }
+
+    /** Probe the replicas once and then every check interval in the background. */
+    public void start() {
+        checkReplicas();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-replica-check");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::checkReplicasSafely, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+        checker = executor;
+    }
+
+    /** Stops the health checks and closes the replica pools; the primary belongs to the caller. */
+    @Override
+    public void close() {
+        ScheduledExecutorService executor = checker;
+        if (executor != null) executor.shutdownNow();
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.debug("Failed to close {}", replica.name, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) markWrite();
+            routed.get(Route.WRITE).increment();
+            return primary.getConnection();
+        }
+        long now = nanoClock.getAsLong();
+        if (isSticky(now)) {
+            routed.get(Route.STICKY).increment();
+            return primary.getConnection();
+        }
+        int n = replicas.size();
+        int start = n == 0 ? 0 : Math.floorMod(next.getAndIncrement(), n);
+        for (int i = 0; i < n; i++) {
+            Replica replica = replicas.get((start + i) % n);
+            if (!usable(replica, now)) continue;
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                routed.get(Route.REPLICA).increment();
+                return connection;
+            } catch (SQLException e) {
+                replica.markDown(e);
+            }
+        }
+        routed.get(Route.FALLBACK).increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLException("Routing data source uses the credentials of its pools");
+    }
+
+    /** Unwraps to the primary, so pool introspection (e.g. load shedding) keeps seeing the write pool. */
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    /** Probe every replica: reachable and no further behind than {@code maxLag} makes it usable. */
+    void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                long lag = lagOf(replica, connection);
+                replica.update(lag, lag <= maxLagMs, nanoClock.getAsLong());
+            } catch (SQLException e) {
+                replica.markDown(e);
+            }
+        }
+        long now = nanoClock.getAsLong();
+        stickyUntil.values().removeIf(until -> until - now <= 0);
+    }
+
+    private void checkReplicasSafely() {
+        try {
+            checkReplicas();
+        } catch (RuntimeException e) {
+            log.warn("Replica health check failed", e);
+        }
+    }
+
+    private long lagOf(Replica replica, Connection connection) throws SQLException {
+        String query = replica.lagQuery;
+        if (query == null) {
+            query = lagQuery != null ? lagQuery
+                    : "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName()) ? POSTGRES_LAG_QUERY : "";
+            replica.lagQuery = query;
+        }
+        if (query.isEmpty()) return 0;
+        try (Statement st = connection.createStatement(); ResultSet rs = st.executeQuery(query)) {
+            return rs.next() ? Math.max(0, Math.round(rs.getDouble(1))) : 0;
+        }
+    }
+
+    private boolean usable(Replica replica, long now) {
+        return replica.healthy && now - replica.checkedAt <= TimeUnit.MILLISECONDS.toNanos(3 * checkIntervalMs);
+    }
+
+    private void markWrite() {
+        String actor = currentActor();
+        if (actor != null) stickyUntil.put(actor, nanoClock.getAsLong() + stickyNanos);
+    }
+
+    private boolean isSticky(long now) {
+        String actor = currentActor();
+        if (actor == null) return false;
+        Long until = stickyUntil.get(actor);
+        return until != null && until - now > 0;
+    }
+
+    private static String currentActor() {
+        String actor = ACTOR.get();
+        if (actor != null) return actor;
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth instanceof UsernamePasswordAuthenticationToken ? auth.getName() : null;
+    }
+
+    private static final class Replica {
+        final String name;
+        final DataSource dataSource;
+        volatile String lagQuery;
+        volatile boolean healthy;
+        volatile long lagMs;
+        volatile long checkedAt;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        void update(long lag, boolean ok, long now) {
+            if (ok != healthy) {
+                if (ok) log.info("Replica {} is in service (lag {} ms)", name, lag);
+                else log.warn("Replica {} lags {} ms, reading from the primary", name, lag);
+            }
+            lagMs = lag;
+            healthy = ok;
+            checkedAt = now;
+        }
+
+        void markDown(SQLException e) {
+            if (healthy) log.warn("Replica {} is unreachable, reading from the primary: {}", name, e.getMessage());
+            healthy = false;
+        }
+    }
+}
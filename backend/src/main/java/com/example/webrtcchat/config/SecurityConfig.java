@@ -1,6 +1,7 @@
 package com.example.webrtcchat.config;
 
 import com.example.webrtcchat.service.JwtService;
+import com.example.webrtcchat.service.RateLimiterService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -11,6 +12,7 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -77,7 +79,7 @@ public class SecurityConfig {
     }
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, RateLimiterService rateLimiter) throws Exception {
         http
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .csrf(csrf -> csrf.disable())
@@ -87,12 +89,15 @@ public class SecurityConfig {
                 .requestMatchers("/api/uploads/**").permitAll()
                 .requestMatchers("/ws/**").permitAll()
                 .requestMatchers("/actuator/health").permitAll()
+                // Scraped from the internal network only; nginx does not route /actuator/prometheus
+                .requestMatchers("/actuator/prometheus").permitAll()
                 .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/conference/*/info").permitAll()
                 .requestMatchers("/api/admin/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
             )
             .addFilterBefore(rateLimitFilter(), UsernamePasswordAuthenticationFilter.class)
-            .addFilterBefore(jwtAuthFilter(), UsernamePasswordAuthenticationFilter.class);
+            .addFilterBefore(jwtAuthFilter(), UsernamePasswordAuthenticationFilter.class)
+            .addFilterAfter(userRateLimitFilter(rateLimiter), UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
     }
@@ -132,6 +137,31 @@ public class SecurityConfig {
         };
     }
 
+    /**
+     * Per-user token bucket for authenticated API calls; runs after JWT auth so the key is the
+     * username, not the (possibly shared) client IP. Not a bean, so it is never registered a
+     * second time as a plain servlet filter outside the security chain.
+     */
+    private OncePerRequestFilter userRateLimitFilter(RateLimiterService rateLimiter) {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request,
+                                            HttpServletResponse response,
+                                            FilterChain filterChain) throws ServletException, IOException {
+                Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+                if (auth instanceof UsernamePasswordAuthenticationToken
+                        && !rateLimiter.tryAcquire(auth.getName(), RateLimiterService.RateClass.REST)) {
+                    response.setStatus(429);
+                    response.setHeader("Retry-After", "1");
+                    response.setContentType("application/json");
+                    response.getWriter().write("{\"error\":\"Слишком много запросов. Попробуйте позже.\"}");
+                    return;
+                }
+                filterChain.doFilter(request, response);
+            }
+        };
+    }
+
     private boolean isAllowed(String ip) {
         long now = System.currentTimeMillis();
 
@@ -2,23 +2,68 @@ package com.example.webrtcchat.controller;
 
 import com.example.webrtcchat.dto.AdminStatsDto;
 import com.example.webrtcchat.service.AdminService;
+import com.example.webrtcchat.service.UploadGarbageCollector;
+import com.example.webrtcchat.service.UploadLayoutMigrator;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/admin")
 public class AdminController {
 
     private final AdminService adminService;
+    private final UploadLayoutMigrator uploadLayoutMigrator;
+    private final UploadGarbageCollector uploadGarbageCollector;
 
-    public AdminController(AdminService adminService) {
+    public AdminController(AdminService adminService, UploadLayoutMigrator uploadLayoutMigrator,
+                           UploadGarbageCollector uploadGarbageCollector) {
         this.adminService = adminService;
+        this.uploadLayoutMigrator = uploadLayoutMigrator;
+        this.uploadGarbageCollector = uploadGarbageCollector;
     }
 
     @GetMapping("/stats")
     public ResponseEntity<AdminStatsDto> getStats() {
         return ResponseEntity.ok(adminService.getStats());
     }
+
+    /** Progress of the flat → sharded upload layout migration. */
+    @GetMapping("/uploads/layout")
+    public ResponseEntity<UploadLayoutMigrator.MigrationStatus> getUploadLayoutStatus() {
+        return ResponseEntity.ok(uploadLayoutMigrator.status());
+    }
+
+    /** Consistency check of the upload store; {@code repair=true} fixes misplaced files. */
+    @PostMapping("/uploads/layout/check")
+    public ResponseEntity<?> checkUploadLayout(@RequestParam(value = "repair", defaultValue = "false") boolean repair) {
+        try {
+            return ResponseEntity.ok(uploadLayoutMigrator.checkConsistency(repair));
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", "Check failed: " + e.getMessage()));
+        }
+    }
+
+    /** Report of the last orphaned-upload collection, 204 if none ran yet. */
+    @GetMapping("/uploads/gc")
+    public ResponseEntity<UploadGarbageCollector.GcReport> getUploadGcReport() {
+        UploadGarbageCollector.GcReport report = uploadGarbageCollector.getLastReport();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.noContent().build();
+    }
+
+    /** Run the orphaned-upload collector now; dry run by default. */
+    @PostMapping("/uploads/gc")
+    public ResponseEntity<?> runUploadGc(@RequestParam(value = "dryRun", defaultValue = "true") boolean dryRun) {
+        UploadGarbageCollector.GcReport report = uploadGarbageCollector.collect(dryRun);
+        if (report == null) {
+            return ResponseEntity.status(409).body(Map.of("error", "Upload GC is already running or failed"));
+        }
+        return ResponseEntity.ok(report);
+    }
 }
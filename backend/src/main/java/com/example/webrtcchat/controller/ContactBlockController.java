@@ -1,5 +1,6 @@
 package com.example.webrtcchat.controller;
 
+import com.example.webrtcchat.dto.Timestamps;
 import com.example.webrtcchat.entity.BlockedUserEntity;
 import com.example.webrtcchat.entity.ContactEntity;
 import com.example.webrtcchat.entity.UserEntity;
@@ -71,7 +72,7 @@ public class ContactBlockController {
                 map.put("tag", u.getTag() != null ? u.getTag() : "");
             }
             map.put("online", chatService.isUserOnline(c.getContact()));
-            map.put("lastSeen", chatService.getLastSeen(c.getContact()));
+            map.put("lastSeen", Timestamps.format(chatService.getLastSeen(c.getContact())));
             return map;
         }).collect(Collectors.toList());
 
@@ -177,7 +178,7 @@ public class ContactBlockController {
         profile.put("lastName", user.getLastName() != null ? user.getLastName() : "");
         profile.put("profileColor", user.getProfileColor() != null ? user.getProfileColor() : "");
         profile.put("createdAt", user.getCreatedAt() != null ? user.getCreatedAt() : "");
-        profile.put("lastSeen", user.getLastSeen() != null ? user.getLastSeen() : "");
+        profile.put("lastSeen", Timestamps.formatOrEmpty(user.getLastSeen()));
         profile.put("tag", user.getTag() != null ? user.getTag() : "");
 
         // Is this person in my contacts?
@@ -1,27 +1,45 @@
 package com.example.webrtcchat.controller;
 
+import com.example.webrtcchat.service.ChunkedUploadService;
+import com.example.webrtcchat.service.ChunkedUploadService.ChunkedUploadException;
+import com.example.webrtcchat.service.ChunkedUploadService.UploadSession;
+import com.example.webrtcchat.service.ImageVariantService;
+import com.example.webrtcchat.service.UploadService;
+import com.example.webrtcchat.service.UploadService.UploadRejectedException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import org.springframework.beans.factory.annotation.Value;
-
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.MalformedURLException;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
 @RestController
 @RequestMapping("/api")
@@ -31,6 +49,30 @@ public class FileController {
     private static final long MAX_IMAGE_SIZE = 20 * 1024 * 1024; // 20MB
     private static final long MAX_FILE_SIZE = 100L * 1024 * 1024; // 100MB
     private final Path uploadDir;
+    private final UploadService uploadService;
+    private final ChunkedUploadService chunkedUploadService;
+    private final ImageVariantService imageVariantService;
+
+    // Serving: bounded LRU of per-file metadata (replaces Files.probeContentType per request)
+    private static final int MAX_META_ENTRIES = 10_000;
+    private static final int MAX_RANGES = 16;
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final Pattern IMMUTABLE_NAME = Pattern.compile(
+            "([a-z]+_)?([0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}|[0-9a-f]{64})\\.[a-zA-Z0-9]+");
+    // X-Accel-Redirect offload: internal nginx location aliased to the upload dir, null when disabled
+    private static final String X_ACCEL_REDIRECT = "X-Accel-Redirect";
+    private final String accelRedirectPrefix;
+    private final Map<String, FileMeta> metaCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, FileMeta> eldest) {
+                    return size() > MAX_META_ENTRIES;
+                }
+            });
 
     // Allowed image extensions (C10)
     private static final Set<String> ALLOWED_IMAGE_EXT = Set.of(
@@ -45,143 +87,535 @@ public class FileController {
             ".aspx", ".jsp", ".py", ".rb", ".pl", ".cgi"
     );
 
-    public FileController(@Value("${upload.dir:uploads}") String uploadDirPath) {
-        this.uploadDir = Paths.get(uploadDirPath).toAbsolutePath().normalize();
-        try {
-            Files.createDirectories(uploadDir);
-        } catch (IOException e) {
-            throw new RuntimeException("Could not create upload directory", e);
+    public FileController(UploadService uploadService,
+                          ChunkedUploadService chunkedUploadService,
+                          ImageVariantService imageVariantService,
+                          @Value("${upload.accel-redirect.enabled:false}") boolean accelRedirectEnabled,
+                          @Value("${upload.accel-redirect.location:/internal-uploads/}") String accelRedirectLocation) {
+        this.uploadService = uploadService;
+        this.chunkedUploadService = chunkedUploadService;
+        this.imageVariantService = imageVariantService;
+        this.uploadDir = uploadService.getUploadDir();
+        this.accelRedirectPrefix = accelRedirectEnabled
+                ? (accelRedirectLocation.endsWith("/") ? accelRedirectLocation : accelRedirectLocation + "/")
+                : null;
+        if (accelRedirectEnabled) {
+            log.info("Upload downloads offloaded to nginx via X-Accel-Redirect ({})", accelRedirectPrefix);
         }
     }
 
     @PostMapping("/upload")
     public ResponseEntity<?> uploadImage(@RequestParam("file") MultipartFile file) {
-        if (file.isEmpty()) {
-            return ResponseEntity.badRequest().body(Map.of("error", "File is empty"));
+        String error = validateUpload(file.getOriginalFilename(), file.getSize(), true);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(Map.of("error", error));
+        }
+
+        // Server-side content-type detection (C10) — magic bytes sniffed while streaming
+        return saveFile(file, MAX_IMAGE_SIZE, true);
+    }
+
+    @PostMapping("/upload/file")
+    public ResponseEntity<?> uploadAnyFile(@RequestParam("file") MultipartFile file) {
+        String error = validateUpload(file.getOriginalFilename(), file.getSize(), false);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(Map.of("error", error));
+        }
+
+        return saveFile(file, MAX_FILE_SIZE, false);
+    }
+
+    /**
+     * Checks shared by single-request and resumable uploads: size limit,
+     * image extension allow-list (C10) or dangerous extension block-list (R6).
+     * Returns the error message, or null when acceptable.
+     */
+    private String validateUpload(String originalName, long size, boolean imageOnly) {
+        if (size <= 0) {
+            return "File is empty";
         }
-        if (file.getSize() > MAX_IMAGE_SIZE) {
-            return ResponseEntity.badRequest().body(Map.of("error", "Image too large (max 20MB)"));
+        String ext = getExtension(originalName).toLowerCase();
+        if (imageOnly) {
+            if (size > MAX_IMAGE_SIZE) return "Image too large (max 20MB)";
+            if (!ALLOWED_IMAGE_EXT.contains(ext)) return "Only image files allowed";
+        } else {
+            if (size > MAX_FILE_SIZE) return "File too large (max 100MB)";
+            if (BLOCKED_EXTENSIONS.contains(ext)) return "File type not allowed: " + ext;
         }
+        return null;
+    }
 
-        // Validate extension is an image type (C10)
-        String ext = getExtension(file.getOriginalFilename()).toLowerCase();
-        if (!ALLOWED_IMAGE_EXT.contains(ext)) {
-            return ResponseEntity.badRequest().body(Map.of("error", "Only image files allowed"));
+    /**
+     * Single pass over the multipart body: sniff type, hash, enforce size, atomic write.
+     */
+    private ResponseEntity<?> saveFile(MultipartFile file, long maxBytes, boolean imageOnly) {
+        try (InputStream in = file.getInputStream()) {
+            UploadService.StoredUpload stored = uploadService.store(
+                    in, file.getOriginalFilename(), file.getContentType(), "", maxBytes, imageOnly);
+            return ResponseEntity.ok(uploadResponse(stored, file.getOriginalFilename()));
+        } catch (UploadRejectedException e) {
+            return rejected(e, imageOnly);
+        } catch (IOException e) {
+            log.error("Upload failed", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Upload failed"));
         }
+    }
 
-        // Server-side content-type detection (C10) — don't trust client header
-        String detectedType = detectContentType(file);
-        if (detectedType == null || !detectedType.startsWith("image/")) {
-            return ResponseEntity.badRequest().body(Map.of("error", "File content is not a valid image"));
+    private static Map<String, Object> uploadResponse(UploadService.StoredUpload stored, String origName) {
+        String filename = stored.getFilename();
+        String safeContentType = stored.getContentType() != null ? stored.getContentType() : "application/octet-stream";
+        String url = "/api/uploads/" + filename;
+        // Strip path components from original name to prevent path info leakage
+        if (origName != null) {
+            origName = origName.replace("\\", "/");
+            if (origName.contains("/")) {
+                origName = origName.substring(origName.lastIndexOf("/") + 1);
+            }
+        } else {
+            origName = filename;
         }
+        return Map.of(
+                "url", url,
+                "filename", filename,
+                "originalName", origName,
+                "size", stored.getSize(),
+                "contentType", safeContentType,
+                "sha256", stored.getSha256()
+        );
+    }
 
-        return saveFile(file, detectedType);
+    private static ResponseEntity<?> rejected(UploadRejectedException e, boolean imageOnly) {
+        return switch (e.getReason()) {
+            case EMPTY -> ResponseEntity.badRequest().body(Map.of("error", "File is empty"));
+            case NOT_IMAGE -> ResponseEntity.badRequest().body(Map.of("error", "File content is not a valid image"));
+            case TOO_LARGE -> ResponseEntity.badRequest().body(Map.of("error",
+                    imageOnly ? "Image too large (max 20MB)" : "File too large (max 100MB)"));
+        };
     }
 
-    @PostMapping("/upload/file")
-    public ResponseEntity<?> uploadAnyFile(@RequestParam("file") MultipartFile file) {
-        if (file.isEmpty()) {
-            return ResponseEntity.badRequest().body(Map.of("error", "File is empty"));
+    /**
+     * Dedup pre-check with proof of possession. Body: {@code {"sha256", "fileName", "size", "image"}}
+     * returns a {@code challenge} ({@code offset}, {@code length}, {@code token}) whether or not
+     * the content is stored. Repeating the body with those fields plus {@code proof}, the hex
+     * SHA-256 of the token followed by that byte range, returns the same response as an upload ({@code exists: true})
+     * when the content is stored, and the client can skip sending the bytes; otherwise
+     * {@code exists: false}. Knowing a hash alone never confirms that someone stored the content.
+     */
+    @PostMapping("/upload/check")
+    public ResponseEntity<?> checkExisting(Principal principal, @RequestBody Map<String, Object> body) {
+        String owner = principal != null ? principal.getName() : "";
+        String sha256 = body.get("sha256") instanceof String s ? s.toLowerCase() : null;
+        String fileName = body.get("fileName") instanceof String s ? s : null;
+        long size = body.get("size") instanceof Number n ? n.longValue() : 0;
+        boolean imageOnly = Boolean.TRUE.equals(body.get("image"));
+
+        String error = validateUpload(fileName, size, imageOnly);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(Map.of("error", error));
+        }
+        if (!(body.get("proof") instanceof String proof)) {
+            UploadService.PossessionChallenge challenge = uploadService.possessionChallenge(owner, sha256, size);
+            return ResponseEntity.ok(Map.of("challenge", Map.of(
+                    "offset", challenge.getOffset(),
+                    "length", challenge.getLength(),
+                    "token", challenge.getToken())));
+        }
+        UploadService.PossessionChallenge answered = new UploadService.PossessionChallenge(
+                body.get("offset") instanceof Number n ? n.longValue() : -1,
+                body.get("length") instanceof Number n ? n.intValue() : -1,
+                body.get("token") instanceof String s ? s : null);
+        try {
+            Optional<UploadService.StoredUpload> existing =
+                    uploadService.findProven(owner, sha256, size, answered, proof, fileName, imageOnly);
+            if (existing.isPresent()) {
+                Map<String, Object> response = new HashMap<>(uploadResponse(existing.get(), fileName));
+                response.put("exists", true);
+                return ResponseEntity.ok(response);
+            }
+            return ResponseEntity.ok(Map.of("exists", false));
+        } catch (IOException e) {
+            log.warn("Upload pre-check failed: {}", e.getMessage());
+            return ResponseEntity.ok(Map.of("exists", false));
+        }
+    }
+
+    // === Resumable uploads ===
+
+    /**
+     * Open a resumable upload. Body: {@code {"fileName", "size", "contentType", "image"}}.
+     * The client then PUTs {@code chunkSize}-byte chunks to {@code /chunks/{index}} and completes.
+     */
+    @PostMapping("/upload/sessions")
+    public ResponseEntity<?> createUploadSession(Principal principal, @RequestBody Map<String, Object> body) {
+        String fileName = body.get("fileName") instanceof String s ? s : null;
+        long size = body.get("size") instanceof Number n ? n.longValue() : 0;
+        String contentType = body.get("contentType") instanceof String s ? s : null;
+        boolean imageOnly = Boolean.TRUE.equals(body.get("image"));
+
+        String error = validateUpload(fileName, size, imageOnly);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(Map.of("error", error));
         }
-        if (file.getSize() > MAX_FILE_SIZE) {
-            return ResponseEntity.badRequest().body(Map.of("error", "File too large (max 100MB)"));
+        try {
+            UploadSession session = chunkedUploadService.create(
+                    principal.getName(), fileName, contentType, size, imageOnly);
+            return ResponseEntity.ok(sessionResponse(session));
+        } catch (ChunkedUploadException e) {
+            return chunkError(e);
+        } catch (IOException e) {
+            log.error("Failed to open upload session", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Upload failed"));
         }
+    }
 
-        // Block dangerous extensions (R6)
-        String ext = getExtension(file.getOriginalFilename()).toLowerCase();
-        if (BLOCKED_EXTENSIONS.contains(ext)) {
-            return ResponseEntity.badRequest().body(Map.of("error", "File type not allowed: " + ext));
+    /** Raw chunk body, streamed straight to its offset in the session file. */
+    @PutMapping("/upload/sessions/{id}/chunks/{index}")
+    public ResponseEntity<?> uploadChunk(Principal principal, @PathVariable String id,
+                                         @PathVariable int index, HttpServletRequest request) {
+        try (InputStream in = request.getInputStream()) {
+            UploadSession session = chunkedUploadService.writeChunk(principal.getName(), id, index, in);
+            return ResponseEntity.ok(sessionResponse(session));
+        } catch (ChunkedUploadException e) {
+            return chunkError(e);
+        } catch (IOException e) {
+            log.warn("Chunk {} of upload {} failed: {}", index, id, e.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of("error", "Upload failed"));
         }
+    }
 
-        String detectedType = detectContentType(file);
-        return saveFile(file, detectedType);
+    /** Which chunks are still missing — used to resume after a dropped connection. */
+    @GetMapping("/upload/sessions/{id}")
+    public ResponseEntity<?> getUploadSession(Principal principal, @PathVariable String id) {
+        try {
+            return ResponseEntity.ok(sessionResponse(chunkedUploadService.status(principal.getName(), id)));
+        } catch (ChunkedUploadException e) {
+            return chunkError(e);
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", "Upload failed"));
+        }
     }
 
-    private ResponseEntity<?> saveFile(MultipartFile file, String contentType) {
+    @PostMapping("/upload/sessions/{id}/complete")
+    public ResponseEntity<?> completeUploadSession(Principal principal, @PathVariable String id) {
+        UploadSession session = null;
         try {
-            String ext = getExtension(file.getOriginalFilename());
-            String filename = UUID.randomUUID().toString() + ext;
-            Path target = uploadDir.resolve(filename);
-            Files.copy(file.getInputStream(), target, StandardCopyOption.REPLACE_EXISTING);
-
-            String safeContentType = contentType != null ? contentType : "application/octet-stream";
-            String url = "/api/uploads/" + filename;
-            // Strip path components from original name to prevent path info leakage
-            String origName = file.getOriginalFilename();
-            if (origName != null) {
-                origName = origName.replace("\\", "/");
-                if (origName.contains("/")) {
-                    origName = origName.substring(origName.lastIndexOf("/") + 1);
-                }
-            } else {
-                origName = filename;
-            }
-            return ResponseEntity.ok(Map.of(
-                    "url", url,
-                    "filename", filename,
-                    "originalName", origName,
-                    "size", file.getSize(),
-                    "contentType", safeContentType
-            ));
+            session = chunkedUploadService.status(principal.getName(), id);
+            UploadService.StoredUpload stored = chunkedUploadService.complete(principal.getName(), id);
+            return ResponseEntity.ok(uploadResponse(stored, session.getOriginalName()));
+        } catch (ChunkedUploadException e) {
+            return chunkError(e);
+        } catch (UploadRejectedException e) {
+            return rejected(e, session != null && session.isImageOnly());
         } catch (IOException e) {
-            log.error("Upload failed", e);
+            log.error("Failed to complete upload {}", id, e);
             return ResponseEntity.internalServerError().body(Map.of("error", "Upload failed"));
         }
     }
 
-    @GetMapping("/uploads/{filename:.+}")
-    public ResponseEntity<Resource> getFile(@PathVariable String filename,
-                                            @RequestParam(value = "download", required = false) Boolean download) {
+    @DeleteMapping("/upload/sessions/{id}")
+    public ResponseEntity<?> abortUploadSession(Principal principal, @PathVariable String id) {
         try {
-            Path file = uploadDir.resolve(filename).normalize();
-            if (!file.startsWith(uploadDir)) {
-                return ResponseEntity.badRequest().build();
+            chunkedUploadService.abort(principal.getName(), id);
+            return ResponseEntity.noContent().build();
+        } catch (ChunkedUploadException e) {
+            return chunkError(e);
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", "Upload failed"));
+        }
+    }
+
+    private static Map<String, Object> sessionResponse(UploadSession session) {
+        return Map.of(
+                "uploadId", session.getId(),
+                "size", session.getSize(),
+                "chunkSize", session.getChunkSize(),
+                "totalChunks", session.getTotalChunks(),
+                "missingChunks", session.getMissingChunks()
+        );
+    }
+
+    private static ResponseEntity<?> chunkError(ChunkedUploadException e) {
+        return switch (e.getReason()) {
+            case NOT_FOUND -> ResponseEntity.status(404).body(Map.of("error", "Upload session not found"));
+            case BAD_CHUNK -> ResponseEntity.badRequest().body(Map.of("error", "Invalid chunk index or length"));
+            case INCOMPLETE -> ResponseEntity.status(409).body(Map.of("error", "Upload is missing chunks"));
+            case TOO_MANY_SESSIONS -> ResponseEntity.status(429).body(Map.of("error", "Too many uploads in progress"));
+        };
+    }
+
+    /**
+     * Serve an uploaded file. With {@code upload.accel-redirect.enabled} the backend only validates
+     * the name and decides headers, then hands the transfer to nginx via X-Accel-Redirect.
+     * Otherwise: cached metadata, strong ETag / If-None-Match,
+     * single and multi-range 206 responses, and zero-copy transfer
+     * (Tomcat sendfile when available, FileChannel.transferTo otherwise).
+     * <p>
+     * {@code w} (snapped to the allowed widths) and {@code format} select a cached,
+     * downscaled variant of an image; non-images and undecodable images get the original.
+     */
+    @GetMapping("/uploads/{filename:.+}")
+    public void getFile(@PathVariable String filename,
+                        @RequestParam(value = "download", required = false) Boolean download,
+                        @RequestParam(value = "w", required = false) Integer width,
+                        @RequestParam(value = "format", required = false) String format,
+                        HttpServletRequest request,
+                        HttpServletResponse response) throws IOException {
+        Path file = uploadService.resolve(filename);
+        if (file == null) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        String metaKey = filename;
+        FileMeta meta = fileMeta(metaKey, file);
+        if (meta == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        if (width != null || format != null) {
+            int snapped = width != null ? imageVariantService.snapWidth(width) : -1;
+            if (snapped < 0 || (format != null && ImageVariantService.formatExtension(format) == null)) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                return;
             }
-            Resource resource = new UrlResource(file.toUri());
-            if (!resource.exists()) {
-                return ResponseEntity.notFound().build();
+            Path variant = ImageVariantService.supports(filename)
+                    ? imageVariantService.variant(filename, file, snapped, format) : null;
+            FileMeta variantMeta = variant != null ? fileMeta(variant.getFileName().toString(), variant) : null;
+            if (variantMeta != null) {
+                file = variant;
+                metaKey = variant.getFileName().toString();
+                meta = variantMeta;
             }
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, isImmutableName(filename)
+                ? "public, max-age=31536000, immutable"
+                : "max-age=86400");
+        response.setHeader("X-Content-Type-Options", "nosniff");
+
+        boolean inline = meta.contentType.startsWith("image/") || meta.contentType.startsWith("video/")
+                || meta.contentType.startsWith("audio/");
+        String safeFilename = filename.replaceAll("[^a-zA-Z0-9._-]", "_");
+        if (Boolean.TRUE.equals(download) || !inline) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + safeFilename + "\"");
+        }
 
-            String contentType = Files.probeContentType(file);
-            if (contentType == null) contentType = "application/octet-stream";
+        // Offload mode: nginx streams the bytes (ranges, ETag, sendfile) from its internal location
+        if (accelRedirectPrefix != null) {
+            response.setContentType(meta.contentType);
+            // Sharded (ab/cd/name) or, until migrated, flat — relative to the aliased upload dir
+            String relative = uploadDir.relativize(file).toString().replace('\\', '/');
+            response.setHeader(X_ACCEL_REDIRECT, accelRedirectPrefix
+                    + URLEncoder.encode(relative, StandardCharsets.UTF_8).replace("+", "%20").replace("%2F", "/"));
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ETAG, meta.etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
 
-            var builder = ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CACHE_CONTROL, "max-age=86400");
+        // Conditional GET — the name is immutable, so a matching ETag means nothing changed
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), meta.etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
 
-            boolean inline = contentType.startsWith("image/") || contentType.startsWith("video/") || contentType.startsWith("audio/");
-            String safeFilename = filename.replaceAll("[^a-zA-Z0-9._-]", "_");
-            if (Boolean.TRUE.equals(download) || !inline) {
-                builder = builder.header(HttpHeaders.CONTENT_DISPOSITION,
-                        "attachment; filename=\"" + safeFilename + "\"");
+        boolean head = "HEAD".equalsIgnoreCase(request.getMethod());
+        List<long[]> ranges = null;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(meta.etag))) {
+            ranges = parseRanges(rangeHeader, meta.size);
+            if (ranges != null && ranges.isEmpty()) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + meta.size);
+                return;
             }
+        }
 
-            builder = builder.header("X-Content-Type-Options", "nosniff");
-            return builder.body(resource);
-        } catch (MalformedURLException e) {
-            return ResponseEntity.badRequest().build();
-        } catch (IOException e) {
-            return ResponseEntity.internalServerError().build();
+        try {
+            if (ranges == null) {
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.setContentType(meta.contentType);
+                response.setContentLengthLong(meta.size);
+                if (!head) sendRegion(request, response, file, 0, meta.size);
+            } else if (ranges.size() == 1) {
+                long[] r = ranges.get(0);
+                long length = r[1] - r[0] + 1;
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setContentType(meta.contentType);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + r[0] + "-" + r[1] + "/" + meta.size);
+                response.setContentLengthLong(length);
+                if (!head) sendRegion(request, response, file, r[0], length);
+            } else {
+                sendMultipartRanges(response, file, meta, ranges, head);
+            }
+        } catch (NoSuchFileException e) {
+            metaCache.remove(metaKey);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            }
         }
     }
 
+    /** Cached content type / size / ETag for an upload; null if the file does not exist. */
+    private FileMeta fileMeta(String filename, Path file) throws IOException {
+        FileMeta meta = metaCache.get(filename);
+        if (meta != null) return meta;
+        if (!Files.isRegularFile(file)) return null;
+
+        String contentType = Files.probeContentType(file);
+        if (contentType == null) contentType = "application/octet-stream";
+        long size = Files.size(file);
+        meta = new FileMeta(contentType, size, "\"" + filename + "-" + Long.toHexString(size) + "\"");
+        metaCache.put(filename, meta);
+        return meta;
+    }
+
+    /** UUID (optionally prefixed, e.g. avatar_) or SHA-256 based names never change content. */
+    static boolean isImmutableName(String filename) {
+        return IMMUTABLE_NAME.matcher(filename).matches();
+    }
+
+    static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        String strong = etag.substring(1, etag.length() - 1);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String c = candidate.trim();
+            if (c.equals("*")) return true;
+            if (c.startsWith("W/")) c = c.substring(2);
+            if (c.length() >= 2 && c.startsWith("\"") && c.endsWith("\"")
+                    && c.substring(1, c.length() - 1).equals(strong)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
-     * Detect content type from file bytes (server-side, not trusting client header).
+     * Parse a {@code bytes=} Range header into inclusive [start, end] pairs, sorted, with
+     * overlapping and adjacent ranges coalesced.
+     * Returns null when the header should be ignored (malformed, other unit, too many ranges,
+     * or ranges adding up to more than the file, RFC 9110 §14.2) and an empty list when no
+     * range is satisfiable (416).
      */
-    private String detectContentType(MultipartFile file) {
-        try {
-            // Use file magic bytes detection
-            Path tempFile = Files.createTempFile("upload-check-", getExtension(file.getOriginalFilename()));
+    static List<long[]> parseRanges(String header, long size) {
+        if (!header.startsWith("bytes=")) return null;
+        String[] specs = header.substring(6).split(",");
+        if (specs.length > MAX_RANGES) return null;
+
+        List<long[]> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            String part = spec.trim();
+            int dash = part.indexOf('-');
+            if (dash < 0) return null;
             try {
-                Files.copy(file.getInputStream(), tempFile, StandardCopyOption.REPLACE_EXISTING);
-                String probed = Files.probeContentType(tempFile);
-                return probed != null ? probed : file.getContentType();
-            } finally {
-                Files.deleteIfExists(tempFile);
+                long start;
+                long end;
+                if (dash == 0) { // suffix: last N bytes
+                    long suffix = Long.parseLong(part.substring(1));
+                    if (suffix <= 0) continue;
+                    start = Math.max(0, size - suffix);
+                    end = size - 1;
+                } else {
+                    start = Long.parseLong(part.substring(0, dash));
+                    end = dash == part.length() - 1 ? size - 1 : Long.parseLong(part.substring(dash + 1));
+                    if (end < start) return null;
+                    end = Math.min(end, size - 1);
+                }
+                if (start < size && start <= end) ranges.add(new long[]{start, end});
+            } catch (NumberFormatException e) {
+                return null;
             }
-        } catch (IOException e) {
-            log.warn("Content type detection failed, falling back to client header", e);
-            return file.getContentType();
+        }
+
+        long requested = 0;
+        for (long[] r : ranges) requested += r[1] - r[0] + 1;
+        if (requested > size) return null;
+
+        ranges.sort(Comparator.comparingLong(r -> r[0]));
+        List<long[]> coalesced = new ArrayList<>(ranges.size());
+        for (long[] r : ranges) {
+            long[] last = coalesced.isEmpty() ? null : coalesced.get(coalesced.size() - 1);
+            if (last != null && r[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], r[1]);
+            } else {
+                coalesced.add(r);
+            }
+        }
+        return coalesced;
+    }
+
+    /**
+     * Write [position, position + count) of the file. Uses Tomcat's sendfile (kernel zero-copy)
+     * when the connector supports it, otherwise FileChannel.transferTo into the response channel.
+     */
+    private void sendRegion(HttpServletRequest request, HttpServletResponse response,
+                            Path file, long position, long count) throws IOException {
+        if (count >= SENDFILE_MIN_BYTES && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, position);
+            request.setAttribute(SENDFILE_END, position + count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            transfer(channel, position, count, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    private void sendMultipartRanges(HttpServletResponse response, Path file, FileMeta meta,
+                                     List<long[]> ranges, boolean head) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long length = 0;
+        for (long[] r : ranges) {
+            byte[] h = ("\r\n--" + boundary + "\r\n"
+                    + "Content-Type: " + meta.contentType + "\r\n"
+                    + "Content-Range: bytes " + r[0] + "-" + r[1] + "/" + meta.size + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(h);
+            length += h.length + (r[1] - r[0] + 1);
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        length += closing.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(length);
+        if (head) return;
+
+        OutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] r = ranges.get(i);
+                out.write(partHeaders.get(i));
+                transfer(channel, r[0], r[1] - r[0] + 1, target);
+            }
+        }
+        out.write(closing);
+    }
+
+    private static void transfer(FileChannel channel, long position, long count,
+                                 WritableByteChannel target) throws IOException {
+        while (count > 0) {
+            long sent = channel.transferTo(position, count, target);
+            if (sent <= 0) break;
+            position += sent;
+            count -= sent;
+        }
+    }
+
+    /** Immutable per-file metadata; safe to cache because upload names are never reused. */
+    private static final class FileMeta {
+        final String contentType;
+        final long size;
+        final String etag;
+
+        FileMeta(String contentType, long size, String etag) {
+            this.contentType = contentType;
+            this.size = size;
+            this.etag = etag;
         }
     }
 
@@ -1,16 +1,18 @@
 package com.example.webrtcchat.controller;
 
 import com.example.webrtcchat.dto.MessageDto;
+import com.example.webrtcchat.dto.Timestamps;
 import com.example.webrtcchat.entity.PollEntity;
+import com.example.webrtcchat.service.MessageIds;
 import com.example.webrtcchat.service.PollService;
 import com.example.webrtcchat.types.MessageType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.security.Principal;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/polls")
@@ -37,7 +39,7 @@ public class PollController {
             return ResponseEntity.badRequest().body(Map.of("error", "roomId, question, and at least 2 options required"));
         }
 
-        String messageId = UUID.randomUUID().toString();
+        String messageId = MessageIds.next();
         PollEntity poll = pollService.createPoll(roomId, messageId, principal.getName(), question, options, multiChoice, anonymous);
         Map<String, Object> pollData = pollService.getPollData(poll.getId());
 
@@ -48,7 +50,7 @@ public class PollController {
         msg.setRoomId(roomId);
         msg.setSender(principal.getName());
         msg.setContent("📊 " + question);
-        msg.setTimestamp(poll.getCreatedAt());
+        msg.setTimestamp(Timestamps.parse(poll.getCreatedAt()));
         msg.setStatus("SENT");
         Map<String, String> extra = new java.util.LinkedHashMap<>();
         extra.put("pollId", poll.getId());
@@ -85,7 +87,7 @@ public class PollController {
             msg.setId((String) pollData.get("messageId"));
             msg.setRoomId((String) pollData.get("roomId"));
             msg.setSender(principal.getName());
-            msg.setTimestamp(java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+            msg.setTimestamp(Instant.now());
             Map<String, String> extra = new java.util.LinkedHashMap<>();
             extra.put("pollId", pollId);
             extra.put("optionId", String.valueOf(optionId));
@@ -109,7 +111,7 @@ public class PollController {
             msg.setId((String) pollData.get("messageId"));
             msg.setRoomId((String) pollData.get("roomId"));
             msg.setSender(principal.getName());
-            msg.setTimestamp(java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+            msg.setTimestamp(Instant.now());
             Map<String, String> extra = new java.util.LinkedHashMap<>();
             extra.put("pollId", pollId);
             msg.setExtra(extra);
@@ -3,23 +3,21 @@ package com.example.webrtcchat.controller;
 import com.example.webrtcchat.entity.UserEntity;
 import com.example.webrtcchat.repository.UserRepository;
 import com.example.webrtcchat.service.ChatService;
+import com.example.webrtcchat.service.UploadRefService;
+import com.example.webrtcchat.service.UploadService;
+import com.example.webrtcchat.service.UploadService.UploadRejectedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.io.InputStream;
 import java.security.Principal;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/profile")
@@ -33,14 +31,17 @@ public class ProfileController {
 
     private final ChatService chatService;
     private final UserRepository userRepository;
-    private final Path uploadDir;
+    private final UploadService uploadService;
+    private final UploadRefService uploadRefService;
 
     public ProfileController(ChatService chatService,
                              UserRepository userRepository,
-                             @Value("${upload.dir:uploads}") String uploadDirPath) {
+                             UploadService uploadService,
+                             UploadRefService uploadRefService) {
         this.chatService = chatService;
         this.userRepository = userRepository;
-        this.uploadDir = Paths.get(uploadDirPath).toAbsolutePath().normalize();
+        this.uploadService = uploadService;
+        this.uploadRefService = uploadRefService;
     }
 
     @GetMapping
@@ -159,75 +160,45 @@ public class ProfileController {
             return ResponseEntity.badRequest().body(Map.of("error", "Только изображения: jpg, png, gif, webp"));
         }
 
-        // Detect content type from bytes
-        String detectedType = detectContentType(file);
-        if (detectedType == null || !detectedType.startsWith("image/")) {
-            return ResponseEntity.badRequest().body(Map.of("error", "Файл не является изображением"));
-        }
-
-        try {
-            // Delete old avatar file if exists
-            String oldAvatarUrl = chatService.getAvatarUrl(username);
-            if (oldAvatarUrl != null && !oldAvatarUrl.isBlank()) {
-                deleteAvatarFile(oldAvatarUrl);
-            }
-
-            String filename = "avatar_" + UUID.randomUUID() + ext;
-            Path target = uploadDir.resolve(filename);
-            Files.copy(file.getInputStream(), target, StandardCopyOption.REPLACE_EXISTING);
-
-            String avatarUrl = "/api/uploads/" + filename;
-            chatService.updateAvatarUrl(username, avatarUrl);
-
-            log.info("Avatar updated for user '{}'", username);
-            return ResponseEntity.ok(Map.of("avatarUrl", avatarUrl));
+        // Single pass: magic-byte type check, size limit and atomic write while streaming
+        UploadService.StoredUpload stored;
+        try (InputStream in = file.getInputStream()) {
+            stored = uploadService.store(in, file.getOriginalFilename(), file.getContentType(),
+                    "avatar_", MAX_AVATAR_SIZE, true);
+        } catch (UploadRejectedException e) {
+            return switch (e.getReason()) {
+                case EMPTY -> ResponseEntity.badRequest().body(Map.of("error", "Файл пустой"));
+                case NOT_IMAGE -> ResponseEntity.badRequest().body(Map.of("error", "Файл не является изображением"));
+                case TOO_LARGE -> ResponseEntity.badRequest().body(Map.of("error", "Макс. размер аватара 5 МБ"));
+            };
         } catch (IOException e) {
             log.error("Avatar upload failed for user '{}'", username, e);
             return ResponseEntity.internalServerError().body(Map.of("error", "Ошибка загрузки"));
         }
+
+        // Blobs are shared across users: reference the new one first, then release the old one
+        String avatarUrl = "/api/uploads/" + stored.getFilename();
+        String oldAvatarUrl = chatService.getAvatarUrl(username);
+        uploadRefService.addRefs(UploadRefService.OWNER_AVATAR, username, avatarUrl);
+        chatService.updateAvatarUrl(username, avatarUrl);
+        if (oldAvatarUrl != null && !oldAvatarUrl.equals(avatarUrl)) {
+            uploadRefService.releaseRef(UploadRefService.OWNER_AVATAR, username, oldAvatarUrl);
+        }
+
+        log.info("Avatar updated for user '{}'", username);
+        return ResponseEntity.ok(Map.of("avatarUrl", avatarUrl));
     }
 
     @DeleteMapping("/avatar")
     public ResponseEntity<?> deleteAvatar(Principal principal) {
         String username = principal.getName();
 
-        String oldAvatarUrl = chatService.getAvatarUrl(username);
-        if (oldAvatarUrl != null && !oldAvatarUrl.isBlank()) {
-            deleteAvatarFile(oldAvatarUrl);
-        }
-
         chatService.updateAvatarUrl(username, null);
+        uploadRefService.releaseRefs(UploadRefService.OWNER_AVATAR, username);
         log.info("Avatar deleted for user '{}'", username);
         return ResponseEntity.ok(Map.of("avatarUrl", ""));
     }
 
-    private void deleteAvatarFile(String avatarUrl) {
-        try {
-            String filename = avatarUrl.substring(avatarUrl.lastIndexOf('/') + 1);
-            Path file = uploadDir.resolve(filename).normalize();
-            if (file.startsWith(uploadDir)) {
-                Files.deleteIfExists(file);
-            }
-        } catch (IOException e) {
-            log.warn("Failed to delete old avatar file: {}", avatarUrl, e);
-        }
-    }
-
-    private String detectContentType(MultipartFile file) {
-        try {
-            Path tempFile = Files.createTempFile("avatar-check-", getExtension(file.getOriginalFilename()));
-            try {
-                Files.copy(file.getInputStream(), tempFile, StandardCopyOption.REPLACE_EXISTING);
-                String probed = Files.probeContentType(tempFile);
-                return probed != null ? probed : file.getContentType();
-            } finally {
-                Files.deleteIfExists(tempFile);
-            }
-        } catch (IOException e) {
-            return file.getContentType();
-        }
-    }
-
     private String getExtension(String filename) {
         if (filename != null && filename.contains(".")) {
             String ext = filename.substring(filename.lastIndexOf("."));
@@ -2,12 +2,14 @@ package com.example.webrtcchat.controller;
 
 import com.example.webrtcchat.dto.MessageDto;
 import com.example.webrtcchat.dto.RoomDto;
+import com.example.webrtcchat.dto.Timestamps;
 import com.example.webrtcchat.entity.MessageEntity;
 import com.example.webrtcchat.entity.RoomEntity;
 import com.example.webrtcchat.repository.MessageRepository;
 import com.example.webrtcchat.repository.RoomRepository;
 import com.example.webrtcchat.service.ChatService;
 import com.example.webrtcchat.service.LinkPreviewService;
+import com.example.webrtcchat.service.MessageIds;
 import com.example.webrtcchat.service.ReadReceiptService;
 import com.example.webrtcchat.service.RoomMuteService;
 import com.example.webrtcchat.service.RoomService;
@@ -18,18 +20,17 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.security.Principal;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/rooms")
 public class RoomController {
 
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     private final RoomService roomService;
     private final ChatService chatService;
@@ -70,7 +71,7 @@ public class RoomController {
                 // Keep only first per room (in case of timestamp ties)
                 lastMessages.putIfAbsent(m.getRoomId(), Map.of(
                         "content", m.getContent() != null ? m.getContent() : "",
-                        "created_at", m.getTimestamp() != null ? m.getTimestamp() : "",
+                        "created_at", Timestamps.formatOrEmpty(m.getTimestamp()),
                         "sender_id", m.getSender() != null ? m.getSender() : ""
                 ));
             });
@@ -220,13 +221,13 @@ public class RoomController {
         }
 
         body.setSender(username);
-        body.setTimestamp(LocalDateTime.now().format(FORMATTER));
+        body.setTimestamp(Instant.now());
         if (body.getType() == null ||
             (body.getType() != MessageType.VOICE && body.getType() != MessageType.VIDEO_CIRCLE)) {
             body.setType(MessageType.CHAT);
         }
         if (body.getId() == null || body.getId().isEmpty()) {
-            body.setId(UUID.randomUUID().toString());
+            body.setId(MessageIds.next());
         }
         body.setRoomId(roomId);
         body.setStatus("SENT");
@@ -246,7 +247,11 @@ public class RoomController {
                                             @RequestParam String q,
                                             @RequestParam(defaultValue = "0") int page,
                                             @RequestParam(defaultValue = "50") int size,
+                                            @RequestParam(required = false) String from,
+                                            @RequestParam(required = false) String to,
                                             Principal principal) {
+        Instant[] window = searchWindow(from, to);
+        if (window == null) return ResponseEntity.badRequest().body(Map.of("error", "Invalid from/to"));
         RoomDto room = roomService.getRoomById(roomId);
         if (room == null) return ResponseEntity.notFound().build();
         if (room.getType() != RoomType.GENERAL && !room.getMembers().contains(principal.getName())) {
@@ -254,13 +259,14 @@ public class RoomController {
         }
         if (q == null || q.isBlank()) return ResponseEntity.ok(List.of());
 
-        List<MessageEntity> results = messageRepository.searchMessages(roomId, q.trim(), PageRequest.of(page, Math.min(size, 100)));
+        List<MessageEntity> results = messageRepository.searchMessages(roomId, q.trim(), window[0], window[1],
+                PageRequest.of(page, Math.min(size, 100)));
         List<Map<String, Object>> mapped = results.stream().map(m -> {
             Map<String, Object> map = new java.util.LinkedHashMap<>();
             map.put("id", m.getId());
             map.put("sender", m.getSender());
             map.put("content", m.getContent());
-            map.put("timestamp", m.getTimestamp());
+            map.put("timestamp", Timestamps.format(m.getTimestamp()));
             map.put("roomId", m.getRoomId());
             return map;
         }).collect(Collectors.toList());
@@ -271,25 +277,47 @@ public class RoomController {
     public ResponseEntity<?> searchMessagesGlobal(@RequestParam String q,
                                                   @RequestParam(defaultValue = "0") int page,
                                                   @RequestParam(defaultValue = "50") int size,
+                                                  @RequestParam(required = false) String from,
+                                                  @RequestParam(required = false) String to,
                                                   Principal principal) {
+        Instant[] window = searchWindow(from, to);
+        if (window == null) return ResponseEntity.badRequest().body(Map.of("error", "Invalid from/to"));
         if (q == null || q.isBlank()) return ResponseEntity.ok(List.of());
         List<RoomDto> rooms = roomService.getUserRooms(principal.getName());
         List<String> roomIds = rooms.stream().map(RoomDto::getId).collect(Collectors.toList());
         if (roomIds.isEmpty()) return ResponseEntity.ok(List.of());
 
-        List<MessageEntity> results = messageRepository.searchMessagesGlobal(roomIds, q.trim(), PageRequest.of(page, Math.min(size, 100)));
+        List<MessageEntity> results = messageRepository.searchMessagesGlobal(roomIds, q.trim(), window[0], window[1],
+                PageRequest.of(page, Math.min(size, 100)));
         List<Map<String, Object>> mapped = results.stream().map(m -> {
             Map<String, Object> map = new java.util.LinkedHashMap<>();
             map.put("id", m.getId());
             map.put("sender", m.getSender());
             map.put("content", m.getContent());
-            map.put("timestamp", m.getTimestamp());
+            map.put("timestamp", Timestamps.format(m.getTimestamp()));
             map.put("roomId", m.getRoomId());
             return map;
         }).collect(Collectors.toList());
         return ResponseEntity.ok(mapped);
     }
 
+    /**
+     * Optional [from, to) bounds of a search, defaulting to the whole history. Bounded searches
+     * only scan the monthly partitions they cover. Null if either bound is unreadable.
+     */
+    private static Instant[] searchWindow(String from, String to) {
+        try {
+            Instant lo = from != null ? Timestamps.parse(from) : null;
+            Instant hi = to != null ? Timestamps.parse(to) : null;
+            return new Instant[] {
+                    lo != null ? lo : Instant.EPOCH,
+                    hi != null ? hi : Instant.now().plus(Duration.ofDays(1))
+            };
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     // ── Mute / Unmute ──
 
     @PostMapping("/{roomId}/mute")
@@ -352,11 +380,11 @@ public class RoomController {
         // Broadcast to room members
         MessageDto msg = new MessageDto();
         msg.setType(MessageType.DISAPPEARING_SET);
-        msg.setId(UUID.randomUUID().toString());
+        msg.setId(MessageIds.next());
         msg.setRoomId(roomId);
         msg.setSender(principal.getName());
         msg.setContent(secs > 0 ? "⏰ Исчезающие сообщения: " + formatDuration(secs) : "⏰ Исчезающие сообщения отключены");
-        msg.setTimestamp(LocalDateTime.now().format(FORMATTER));
+        msg.setTimestamp(Instant.now());
         Map<String, String> extra = new java.util.LinkedHashMap<>();
         extra.put("seconds", String.valueOf(secs));
         msg.setExtra(extra);
@@ -391,11 +419,11 @@ public class RoomController {
 
     // ── Link preview ──
 
+    /** Completes asynchronously — the request thread is released while the page is fetched. */
     @GetMapping("/link-preview")
-    public ResponseEntity<?> getLinkPreview(@RequestParam String url) {
-        Map<String, String> preview = linkPreviewService.fetchPreview(url);
-        if (preview == null) return ResponseEntity.ok(Map.of());
-        return ResponseEntity.ok(preview);
+    public CompletableFuture<ResponseEntity<?>> getLinkPreview(@RequestParam String url) {
+        return linkPreviewService.fetchPreviewAsync(url)
+                .thenApply(preview -> preview == null ? ResponseEntity.ok(Map.of()) : ResponseEntity.ok(preview));
     }
 
     private String formatDuration(int seconds) {
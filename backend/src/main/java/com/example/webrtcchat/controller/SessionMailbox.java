@@ -0,0 +1,118 @@
+package com.example.webrtcchat.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Serial inbox for one WebSocket session (actor style).
+ * <p>
+ * Frames are queued in arrival order and drained by at most one task at a time, so two
+ * messages sent back to back by the same user are persisted and broadcast in that order.
+ * The drain task runs on the handler's virtual-thread executor and is only scheduled while
+ * the inbox is non-empty — idle sessions cost a queue and two atomics, not a thread.
+ * <p>
+ * Memory is bounded twice: per session by {@code capacity} and across all sessions by the
+ * shared {@code globalQueued} counter. Execution is bounded by the shared {@code inFlight}
+ * semaphore, so a burst from many users queues here instead of piling up on the DB pool.
+ */
+final class SessionMailbox {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionMailbox.class);
+
+    /** What to do with a frame that arrives when the inbox (or the global budget) is full. */
+    enum OverflowPolicy {
+        /** Drop the new frame and tell the sender. */
+        REJECT,
+        /** Drop the oldest queued frame of this session to make room. */
+        DROP_OLDEST,
+        /** Close the session; the client reconnects and resyncs. */
+        CLOSE
+    }
+
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final int capacity;
+    private final AtomicInteger globalQueued;
+    private final int globalCapacity;
+    private final Semaphore inFlight;
+    private final Consumer<Runnable> executor;
+
+    SessionMailbox(int capacity, AtomicInteger globalQueued, int globalCapacity,
+                   Semaphore inFlight, Consumer<Runnable> executor) {
+        this.capacity = capacity;
+        this.globalQueued = globalQueued;
+        this.globalCapacity = globalCapacity;
+        this.inFlight = inFlight;
+        this.executor = executor;
+    }
+
+    /**
+     * Enqueue a frame. Returns false if it was not accepted; with {@code dropOldest} the
+     * oldest queued frame of this session is discarded instead whenever there is one.
+     */
+    boolean offer(Runnable task, boolean dropOldest) {
+        if (!reserve()) {
+            if (!dropOldest || queue.poll() == null) return false;
+            // Reuse the slot of the dropped frame: counters stay unchanged
+        }
+        queue.offer(task);
+        schedule();
+        return true;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    private boolean reserve() {
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            return false;
+        }
+        if (globalQueued.incrementAndGet() > globalCapacity) {
+            globalQueued.decrementAndGet();
+            size.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) executor.accept(this::drain);
+    }
+
+    private void drain() {
+        try {
+            Runnable task;
+            while ((task = queue.poll()) != null) {
+                size.decrementAndGet();
+                globalQueued.decrementAndGet();
+                try {
+                    inFlight.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.error("Mailbox task failed", e);
+                } finally {
+                    inFlight.release();
+                }
+            }
+        } finally {
+            scheduled.set(false);
+            // A frame offered between the last poll and the flag reset must not be stranded
+            if (!queue.isEmpty() && !Thread.currentThread().isInterrupted()) schedule();
+        }
+    }
+}
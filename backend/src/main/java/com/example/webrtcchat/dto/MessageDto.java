@@ -1,14 +1,20 @@
 package com.example.webrtcchat.dto;
 
 import com.example.webrtcchat.types.MessageType;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 
 public class MessageDto {
 
     private String sender;
     private String content;
-    private String timestamp;
+    @JsonSerialize(using = Timestamps.Serializer.class)
+    @JsonDeserialize(using = Timestamps.Deserializer.class)
+    private Instant timestamp;
     private MessageType type;
     private String roomId;
     private String fileUrl;
@@ -43,9 +49,15 @@ public class MessageDto {
     private boolean pinned;
     private String pinnedBy;
 
+    // Link preview (url, title, description, image) stored with the message
+    private Map<String, String> linkPreview;
+
+    // Reaction aggregates ({emoji, count, recentUsers}), filled on history loads
+    private List<Map<String, Object>> reactions;
+
     public MessageDto() {}
 
-    public MessageDto(String sender, String content, String timestamp, MessageType type) {
+    public MessageDto(String sender, String content, Instant timestamp, MessageType type) {
         this.sender = sender;
         this.content = content;
         this.timestamp = timestamp;
@@ -58,8 +70,8 @@ public class MessageDto {
     public String getContent() { return content; }
     public void setContent(String content) { this.content = content; }
 
-    public String getTimestamp() { return timestamp; }
-    public void setTimestamp(String timestamp) { this.timestamp = timestamp; }
+    public Instant getTimestamp() { return timestamp; }
+    public void setTimestamp(Instant timestamp) { this.timestamp = timestamp; }
 
     public MessageType getType() { return type; }
     public void setType(MessageType type) { this.type = type; }
@@ -123,4 +135,10 @@ public class MessageDto {
 
     public Map<String, Object> getPollData() { return pollData; }
     public void setPollData(Map<String, Object> pollData) { this.pollData = pollData; }
+
+    public Map<String, String> getLinkPreview() { return linkPreview; }
+    public void setLinkPreview(Map<String, String> linkPreview) { this.linkPreview = linkPreview; }
+
+    public List<Map<String, Object>> getReactions() { return reactions; }
+    public void setReactions(List<Map<String, Object>> reactions) { this.reactions = reactions; }
 }
\ No newline at end of file
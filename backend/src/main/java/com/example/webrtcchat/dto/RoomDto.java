@@ -1,7 +1,10 @@
 package com.example.webrtcchat.dto;
 
 import com.example.webrtcchat.types.RoomType;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
+import java.time.Instant;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -15,7 +18,9 @@ public class RoomDto {
     // Perf F1: last message embedded in room listing to avoid N+1 API calls
     private Map<String, String> lastMessage;
     private String createdBy;
-    private String createdAt;
+    @JsonSerialize(using = Timestamps.Serializer.class)
+    @JsonDeserialize(using = Timestamps.Deserializer.class)
+    private Instant createdAt;
     private String description;
     private String avatarUrl;
     private int disappearingSeconds;
@@ -23,7 +28,7 @@ public class RoomDto {
 
     public RoomDto() {}
 
-    public RoomDto(String id, String name, RoomType type, String createdBy, String createdAt) {
+    public RoomDto(String id, String name, RoomType type, String createdBy, Instant createdAt) {
         this.id = id;
         this.name = name;
         this.type = type;
@@ -46,8 +51,8 @@ public class RoomDto {
     public String getCreatedBy() { return createdBy; }
     public void setCreatedBy(String createdBy) { this.createdBy = createdBy; }
 
-    public String getCreatedAt() { return createdAt; }
-    public void setCreatedAt(String createdAt) { this.createdAt = createdAt; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
 
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
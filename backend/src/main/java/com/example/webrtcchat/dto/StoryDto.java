@@ -1,5 +1,9 @@
 package com.example.webrtcchat.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.time.Instant;
 import java.util.List;
 
 public class StoryDto {
@@ -9,8 +13,12 @@ public class StoryDto {
     private String videoUrl;
     private String thumbnailUrl;
     private int duration;
-    private String createdAt;
-    private String expiresAt;
+    @JsonSerialize(using = Timestamps.Serializer.class)
+    @JsonDeserialize(using = Timestamps.Deserializer.class)
+    private Instant createdAt;
+    @JsonSerialize(using = Timestamps.Serializer.class)
+    @JsonDeserialize(using = Timestamps.Deserializer.class)
+    private Instant expiresAt;
     private long viewCount;
     private boolean viewedByMe;
     private List<StoryViewDto> viewers;
@@ -18,7 +26,7 @@ public class StoryDto {
     public StoryDto() {}
 
     public StoryDto(String id, String author, String videoUrl, String thumbnailUrl,
-                    int duration, String createdAt, String expiresAt) {
+                    int duration, Instant createdAt, Instant expiresAt) {
         this.id = id;
         this.author = author;
         this.videoUrl = videoUrl;
@@ -43,11 +51,11 @@ public class StoryDto {
     public int getDuration() { return duration; }
     public void setDuration(int duration) { this.duration = duration; }
 
-    public String getCreatedAt() { return createdAt; }
-    public void setCreatedAt(String createdAt) { this.createdAt = createdAt; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
 
-    public String getExpiresAt() { return expiresAt; }
-    public void setExpiresAt(String expiresAt) { this.expiresAt = expiresAt; }
+    public Instant getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
 
     public long getViewCount() { return viewCount; }
     public void setViewCount(long viewCount) { this.viewCount = viewCount; }
@@ -0,0 +1,103 @@
+package com.example.webrtcchat.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Wire format for instants.
+ * <p>
+ * Timestamps are stored as {@code timestamptz} and carried as {@link Instant}, but clients
+ * still exchange the original {@code "yyyy-MM-dd HH:mm:ss"} string in the server's zone.
+ * {@link Serializer} writes that string and {@link Deserializer} accepts it as well as ISO-8601
+ * and epoch milliseconds, dropping anything else. Formatting is cached per second: a broadcast
+ * burst stamped within the same second formats once.
+ */
+public final class Timestamps {
+
+    private static final DateTimeFormatter LEGACY = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter LOCAL_MINUTES = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+
+    private record Formatted(long epochSecond, String text) {}
+
+    private static volatile Formatted last = new Formatted(Long.MIN_VALUE, null);
+
+    private Timestamps() {}
+
+    /** Legacy string for {@code instant}, or null. */
+    public static String format(Instant instant) {
+        if (instant == null) return null;
+        long second = instant.getEpochSecond();
+        Formatted cached = last;
+        if (cached.epochSecond() == second) return cached.text();
+        String text = LEGACY.format(LocalDateTime.ofInstant(instant, ZoneId.systemDefault()));
+        last = new Formatted(second, text);
+        return text;
+    }
+
+    /** Legacy string, or {@code ""} for null — for map-shaped responses that never sent null. */
+    public static String formatOrEmpty(Instant instant) {
+        String text = format(instant);
+        return text != null ? text : "";
+    }
+
+    /**
+     * Parse the legacy format, {@code yyyy-MM-dd'T'HH:mm}, ISO-8601 with offset or a number of
+     * epoch milliseconds. Local forms are read in the server's zone. Null or blank gives null.
+     */
+    public static Instant parse(String text) {
+        if (text == null || text.isBlank()) return null;
+        String s = text.trim();
+        try {
+            if (s.chars().allMatch(Character::isDigit)) return Instant.ofEpochMilli(Long.parseLong(s));
+            if (s.endsWith("Z") || s.matches(".*[+-]\\d{2}:\\d{2}$")) return Instant.parse(s);
+            DateTimeFormatter local = s.length() == 16 && s.charAt(10) == 'T' ? LOCAL_MINUTES
+                    : s.indexOf('T') > 0 ? DateTimeFormatter.ISO_LOCAL_DATE_TIME : LEGACY;
+            return LocalDateTime.parse(s, local).atZone(ZoneId.systemDefault()).toInstant();
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Unrecognised timestamp: " + text, e);
+        }
+    }
+
+    public static final class Serializer extends StdSerializer<Instant> {
+
+        public Serializer() {
+            super(Instant.class);
+        }
+
+        @Override
+        public void serialize(Instant value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeString(format(value));
+        }
+    }
+
+    public static final class Deserializer extends StdDeserializer<Instant> {
+
+        public Deserializer() {
+            super(Instant.class);
+        }
+
+        @Override
+        public Instant deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.currentToken() == JsonToken.VALUE_NUMBER_INT) return Instant.ofEpochMilli(p.getLongValue());
+            // Lenient: client-supplied times are advisory (the server stamps messages itself),
+            // so an unreadable value is dropped rather than failing the whole frame
+            try {
+                return parse(p.getValueAsString());
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+}
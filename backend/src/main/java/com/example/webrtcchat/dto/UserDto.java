@@ -1,12 +1,19 @@
 package com.example.webrtcchat.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.time.Instant;
+
 public class UserDto {
     private String username;
     private String password;
     private String tag;
     private String fullname;
     private boolean online;
-    private String lastSeen;
+    @JsonSerialize(using = Timestamps.Serializer.class)
+    @JsonDeserialize(using = Timestamps.Deserializer.class)
+    private Instant lastSeen;
     private String avatarUrl;
 
     public UserDto() {}
@@ -20,20 +27,20 @@ public class UserDto {
         this.online = online;
     }
 
-    public UserDto(String username, boolean online, String lastSeen) {
+    public UserDto(String username, boolean online, Instant lastSeen) {
         this.username = username;
         this.online = online;
         this.lastSeen = lastSeen;
     }
 
-    public UserDto(String username, boolean online, String lastSeen, String avatarUrl) {
+    public UserDto(String username, boolean online, Instant lastSeen, String avatarUrl) {
         this.username = username;
         this.online = online;
         this.lastSeen = lastSeen;
         this.avatarUrl = avatarUrl;
     }
 
-    public UserDto(String username, boolean online, String lastSeen, String avatarUrl, String tag) {
+    public UserDto(String username, boolean online, Instant lastSeen, String avatarUrl, String tag) {
         this.username = username;
         this.online = online;
         this.lastSeen = lastSeen;
@@ -50,8 +57,8 @@ public class UserDto {
     public boolean isOnline() { return online; }
     public void setOnline(boolean online) { this.online = online; }
 
-    public String getLastSeen() { return lastSeen; }
-    public void setLastSeen(String lastSeen) { this.lastSeen = lastSeen; }
+    public Instant getLastSeen() { return lastSeen; }
+    public void setLastSeen(Instant lastSeen) { this.lastSeen = lastSeen; }
 
     public String getAvatarUrl() { return avatarUrl; }
     public void setAvatarUrl(String avatarUrl) { this.avatarUrl = avatarUrl; }
@@ -1,7 +1,11 @@
 package com.example.webrtcchat.entity;
 
+import com.example.webrtcchat.dto.Timestamps;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import jakarta.persistence.*;
 
+import java.time.Instant;
+
 @Entity
 @Table(name = "call_logs", indexes = {
     @Index(name = "idx_call_logs_caller", columnList = "caller"),
@@ -33,13 +37,14 @@ public class CallLogEntity {
     /** Duration in seconds (0 if not answered) */
     private int duration;
 
-    /** ISO-like timestamp "yyyy-MM-dd HH:mm:ss" */
+    /** Start of the call; serialized in the legacy "yyyy-MM-dd HH:mm:ss" form */
     @Column(nullable = false)
-    private String timestamp;
+    @JsonSerialize(using = Timestamps.Serializer.class)
+    private Instant timestamp;
 
     public CallLogEntity() {}
 
-    public CallLogEntity(String id, String caller, String callee, String callType, String status, int duration, String timestamp) {
+    public CallLogEntity(String id, String caller, String callee, String callType, String status, int duration, Instant timestamp) {
         this.id = id;
         this.caller = caller;
         this.callee = callee;
@@ -67,6 +72,6 @@ public class CallLogEntity {
     public int getDuration() { return duration; }
     public void setDuration(int duration) { this.duration = duration; }
 
-    public String getTimestamp() { return timestamp; }
-    public void setTimestamp(String timestamp) { this.timestamp = timestamp; }
+    public Instant getTimestamp() { return timestamp; }
+    public void setTimestamp(Instant timestamp) { this.timestamp = timestamp; }
 }
@@ -0,0 +1,65 @@
+package com.example.webrtcchat.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An immutable run of consecutive archived messages of one room: gzip-compressed JSON in
+ * {@code payload}, oldest first. The header columns are the per-room index history paging
+ * walks without touching payloads; {@code uploadUrls} keeps the files the archived messages
+ * point to visible to the upload GC.
+ */
+@Entity
+@Table(name = "message_archive_segments", indexes = {
+    @Index(name = "idx_archive_segments_room_last", columnList = "room_id, last_timestamp")
+})
+public class MessageArchiveSegmentEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "room_id", nullable = false, length = 100)
+    private String roomId;
+
+    @Column(name = "first_timestamp", nullable = false)
+    private Instant firstTimestamp;
+
+    @Column(name = "last_timestamp", nullable = false)
+    private Instant lastTimestamp;
+
+    @Column(name = "message_count", nullable = false)
+    private int messageCount;
+
+    @Column(nullable = false, length = 64 * 1024 * 1024)
+    private byte[] payload;
+
+    @ElementCollection
+    @CollectionTable(name = "message_archive_files", joinColumns = @JoinColumn(name = "segment_id"),
+            indexes = @Index(name = "idx_archive_files_url", columnList = "url"))
+    @Column(name = "url", nullable = false, length = 500)
+    private Set<String> uploadUrls = new HashSet<>();
+
+    public MessageArchiveSegmentEntity() {}
+
+    public MessageArchiveSegmentEntity(String roomId, Instant firstTimestamp, Instant lastTimestamp,
+                                       int messageCount, byte[] payload, Set<String> uploadUrls) {
+        this.roomId = roomId;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+        this.messageCount = messageCount;
+        this.payload = payload;
+        this.uploadUrls = uploadUrls;
+    }
+
+    public Long getId() { return id; }
+    public String getRoomId() { return roomId; }
+    public Instant getFirstTimestamp() { return firstTimestamp; }
+    public Instant getLastTimestamp() { return lastTimestamp; }
+    public int getMessageCount() { return messageCount; }
+    public byte[] getPayload() { return payload; }
+    public Set<String> getUploadUrls() { return uploadUrls; }
+}
@@ -3,9 +3,13 @@ package com.example.webrtcchat.entity;
 import com.example.webrtcchat.types.MessageType;
 import jakarta.persistence.*;
 
+import java.time.Instant;
+
 @Entity
 @Table(name = "messages", indexes = {
-    @Index(name = "idx_messages_room_id", columnList = "roomId")
+    @Index(name = "idx_messages_room_timestamp", columnList = "roomId, timestamp"),
+    @Index(name = "idx_messages_sender", columnList = "sender"),
+    @Index(name = "idx_messages_timestamp_room", columnList = "timestamp, roomId")
 })
 public class MessageEntity {
 
@@ -19,7 +23,7 @@ public class MessageEntity {
     @Column(columnDefinition = "TEXT")
     private String content;
 
-    private String timestamp;
+    private Instant timestamp;
 
     @Enumerated(EnumType.STRING)
     @Column(length = 20)
@@ -45,8 +49,8 @@ public class MessageEntity {
 
     private String scheduledAt;
 
-    @Column(name = "disappears_at", length = 30)
-    private String disappearsAt;
+    @Column(name = "disappears_at")
+    private Instant disappearsAt;
 
     @Column(name = "reply_to_id", length = 36)
     private String replyToId;
@@ -78,6 +82,10 @@ public class MessageEntity {
     @Column(name = "pinned_by", length = 50)
     private String pinnedBy;
 
+    // Open Graph preview of the first link, JSON — filled in asynchronously after send
+    @Column(name = "link_preview", columnDefinition = "TEXT")
+    private String linkPreview;
+
     public MessageEntity() {}
 
     // Getters and Setters
@@ -90,8 +98,8 @@ public class MessageEntity {
     public String getContent() { return content; }
     public void setContent(String content) { this.content = content; }
 
-    public String getTimestamp() { return timestamp; }
-    public void setTimestamp(String timestamp) { this.timestamp = timestamp; }
+    public Instant getTimestamp() { return timestamp; }
+    public void setTimestamp(Instant timestamp) { this.timestamp = timestamp; }
 
     public MessageType getType() { return type; }
     public void setType(MessageType type) { this.type = type; }
@@ -120,8 +128,8 @@ public class MessageEntity {
     public String getScheduledAt() { return scheduledAt; }
     public void setScheduledAt(String scheduledAt) { this.scheduledAt = scheduledAt; }
 
-    public String getDisappearsAt() { return disappearsAt; }
-    public void setDisappearsAt(String disappearsAt) { this.disappearsAt = disappearsAt; }
+    public Instant getDisappearsAt() { return disappearsAt; }
+    public void setDisappearsAt(Instant disappearsAt) { this.disappearsAt = disappearsAt; }
 
     public Long getSeqId() { return seqId; }
 
@@ -151,4 +159,7 @@ public class MessageEntity {
 
     public String getPinnedBy() { return pinnedBy; }
     public void setPinnedBy(String pinnedBy) { this.pinnedBy = pinnedBy; }
+
+    public String getLinkPreview() { return linkPreview; }
+    public void setLinkPreview(String linkPreview) { this.linkPreview = linkPreview; }
 }
@@ -0,0 +1,58 @@
+package com.example.webrtcchat.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Materialized aggregate of {@link ReactionEntity}: how many users reacted to a message with an
+ * emoji and the last three of them, newest first. Maintained by the upserts in
+ * {@code ReactionCountRepository} in the same statement as the reaction row itself.
+ */
+@Entity
+@Table(name = "reaction_counts", uniqueConstraints = {
+    @UniqueConstraint(name = "uq_reaction_counts_message_emoji", columnNames = {"message_id", "emoji"})
+})
+public class ReactionCountEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "message_id", length = 36, nullable = false)
+    private String messageId;
+
+    @Column(name = "room_id", length = 100, nullable = false)
+    private String roomId;
+
+    @Column(length = 10, nullable = false)
+    private String emoji;
+
+    @Column(nullable = false)
+    private int total;
+
+    @Column(name = "recent_user_1", length = 50)
+    private String recentUser1;
+
+    @Column(name = "recent_user_2", length = 50)
+    private String recentUser2;
+
+    @Column(name = "recent_user_3", length = 50)
+    private String recentUser3;
+
+    public ReactionCountEntity() {}
+
+    public Long getId() { return id; }
+    public String getMessageId() { return messageId; }
+    public void setMessageId(String messageId) { this.messageId = messageId; }
+    public String getRoomId() { return roomId; }
+    public void setRoomId(String roomId) { this.roomId = roomId; }
+    public String getEmoji() { return emoji; }
+    public void setEmoji(String emoji) { this.emoji = emoji; }
+    public int getTotal() { return total; }
+    public void setTotal(int total) { this.total = total; }
+    public String getRecentUser1() { return recentUser1; }
+    public void setRecentUser1(String recentUser1) { this.recentUser1 = recentUser1; }
+    public String getRecentUser2() { return recentUser2; }
+    public void setRecentUser2(String recentUser2) { this.recentUser2 = recentUser2; }
+    public String getRecentUser3() { return recentUser3; }
+    public void setRecentUser3(String recentUser3) { this.recentUser3 = recentUser3; }
+}
@@ -2,7 +2,9 @@ package com.example.webrtcchat.entity;
 
 import com.example.webrtcchat.types.RoomType;
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
 
+import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -24,7 +26,7 @@ public class RoomEntity {
     @Column(length = 50)
     private String createdBy;
 
-    private String createdAt;
+    private Instant createdAt;
 
     @Column(length = 500)
     private String description;
@@ -36,13 +38,15 @@ public class RoomEntity {
     private int disappearingSeconds;
 
     @ElementCollection(fetch = FetchType.LAZY)
-    @CollectionTable(name = "room_members", joinColumns = @JoinColumn(name = "room_id"))
+    @BatchSize(size = 100)
+    @CollectionTable(name = "room_members", joinColumns = @JoinColumn(name = "room_id"),
+            indexes = @Index(name = "idx_room_members_username", columnList = "username"))
     @Column(name = "username", length = 50)
     private Set<String> members = new HashSet<>();
 
     public RoomEntity() {}
 
-    public RoomEntity(String id, String name, RoomType type, String createdBy, String createdAt) {
+    public RoomEntity(String id, String name, RoomType type, String createdBy, Instant createdAt) {
         this.id = id;
         this.name = name;
         this.type = type;
@@ -62,8 +66,8 @@ public class RoomEntity {
     public String getCreatedBy() { return createdBy; }
     public void setCreatedBy(String createdBy) { this.createdBy = createdBy; }
 
-    public String getCreatedAt() { return createdAt; }
-    public void setCreatedAt(String createdAt) { this.createdAt = createdAt; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
 
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
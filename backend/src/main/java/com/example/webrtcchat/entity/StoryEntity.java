@@ -2,6 +2,8 @@ package com.example.webrtcchat.entity;
 
 import jakarta.persistence.*;
 
+import java.time.Instant;
+
 @Entity
 @Table(name = "stories", indexes = {
     @Index(name = "idx_stories_author", columnList = "author"),
@@ -27,15 +29,19 @@ public class StoryEntity {
     @Column
     private int duration;
 
-    @Column(length = 30, nullable = false)
-    private String createdAt;
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
 
-    @Column(length = 30, nullable = false)
-    private String expiresAt;
+    /** Denormalized view count, flushed in batches from the in-memory feed */
+    @Column(nullable = false)
+    private long viewCount;
 
     public StoryEntity() {}
 
-    public StoryEntity(String id, String author, String videoUrl, String thumbnailUrl, int duration, String createdAt, String expiresAt) {
+    public StoryEntity(String id, String author, String videoUrl, String thumbnailUrl, int duration, Instant createdAt, Instant expiresAt) {
         this.id = id;
         this.author = author;
         this.videoUrl = videoUrl;
@@ -60,9 +66,12 @@ public class StoryEntity {
     public int getDuration() { return duration; }
     public void setDuration(int duration) { this.duration = duration; }
 
-    public String getCreatedAt() { return createdAt; }
-    public void setCreatedAt(String createdAt) { this.createdAt = createdAt; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
 
-    public String getExpiresAt() { return expiresAt; }
-    public void setExpiresAt(String expiresAt) { this.expiresAt = expiresAt; }
+    public long getViewCount() { return viewCount; }
+    public void setViewCount(long viewCount) { this.viewCount = viewCount; }
 }
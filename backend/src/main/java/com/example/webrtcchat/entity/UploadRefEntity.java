@@ -0,0 +1,58 @@
+package com.example.webrtcchat.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * One reference from an owner (message, story, avatar) to a stored upload file.
+ * The reference count of a file is the number of rows with its filename.
+ */
+@Entity
+@Table(name = "upload_refs", indexes = {
+    @Index(name = "idx_upload_refs_filename", columnList = "filename")
+}, uniqueConstraints = {
+    @UniqueConstraint(name = "uq_upload_refs_owner_file", columnNames = {"owner_type", "owner_id", "filename"})
+})
+public class UploadRefEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 150)
+    private String filename;
+
+    @Column(name = "owner_type", nullable = false, length = 16)
+    private String ownerType;
+
+    @Column(name = "owner_id", nullable = false, length = 64)
+    private String ownerId;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public UploadRefEntity() {}
+
+    public UploadRefEntity(String filename, String ownerType, String ownerId, Instant createdAt) {
+        this.filename = filename;
+        this.ownerType = ownerType;
+        this.ownerId = ownerId;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getFilename() { return filename; }
+    public void setFilename(String filename) { this.filename = filename; }
+
+    public String getOwnerType() { return ownerType; }
+    public void setOwnerType(String ownerType) { this.ownerType = ownerType; }
+
+    public String getOwnerId() { return ownerId; }
+    public void setOwnerId(String ownerId) { this.ownerId = ownerId; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+}
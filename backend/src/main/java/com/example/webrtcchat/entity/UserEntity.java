@@ -2,6 +2,8 @@ package com.example.webrtcchat.entity;
 
 import jakarta.persistence.*;
 
+import java.time.Instant;
+
 @Entity
 @Table(name = "app_users")
 public class UserEntity {
@@ -19,8 +21,8 @@ public class UserEntity {
     @Column(nullable = false, length = 20)
     private String role = "USER";
 
-    @Column(name = "last_seen", length = 30)
-    private String lastSeen;
+    @Column(name = "last_seen")
+    private Instant lastSeen;
 
     @Column(name = "avatar_url", length = 500)
     private String avatarUrl;
@@ -71,8 +73,8 @@ public class UserEntity {
     public String getRole() { return role; }
     public void setRole(String role) { this.role = role; }
 
-    public String getLastSeen() { return lastSeen; }
-    public void setLastSeen(String lastSeen) { this.lastSeen = lastSeen; }
+    public Instant getLastSeen() { return lastSeen; }
+    public void setLastSeen(Instant lastSeen) { this.lastSeen = lastSeen; }
 
     public String getAvatarUrl() { return avatarUrl; }
     public void setAvatarUrl(String avatarUrl) { this.avatarUrl = avatarUrl; }
@@ -0,0 +1,43 @@
+package com.example.webrtcchat.repository;
+
+import com.example.webrtcchat.entity.MessageArchiveSegmentEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface MessageArchiveSegmentRepository extends JpaRepository<MessageArchiveSegmentEntity, Long> {
+
+    /** (id, messageCount) of a room's segments, newest first, without the payloads */
+    @Query("SELECT s.id, s.messageCount FROM MessageArchiveSegmentEntity s " +
+           "WHERE s.roomId = :roomId ORDER BY s.lastTimestamp DESC, s.id DESC")
+    List<Object[]> findHeadersByRoomId(@Param("roomId") String roomId);
+
+    @Query("SELECT s.payload FROM MessageArchiveSegmentEntity s WHERE s.id = :id")
+    byte[] findPayloadById(@Param("id") Long id);
+
+    @Query("SELECT COALESCE(SUM(s.messageCount), 0) FROM MessageArchiveSegmentEntity s WHERE s.roomId = :roomId")
+    long countMessagesByRoomId(@Param("roomId") String roomId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM message_archive_files WHERE segment_id IN " +
+                   "(SELECT id FROM message_archive_segments WHERE room_id = :roomId)", nativeQuery = true)
+    void deleteFilesByRoomId(@Param("roomId") String roomId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM MessageArchiveSegmentEntity s WHERE s.roomId = :roomId")
+    void deleteSegmentsByRoomId(@Param("roomId") String roomId);
+
+    // ── Upload GC: files referenced by archived messages ──
+
+    @Query("SELECT u FROM MessageArchiveSegmentEntity s JOIN s.uploadUrls u")
+    List<String> findAllUploadUrls();
+
+    @Query("SELECT u FROM MessageArchiveSegmentEntity s JOIN s.uploadUrls u WHERE u IN :urls")
+    List<String> findUploadUrlsIn(@Param("urls") java.util.Collection<String> urls);
+}
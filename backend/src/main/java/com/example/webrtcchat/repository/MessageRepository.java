@@ -8,17 +8,52 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 public interface MessageRepository extends JpaRepository<MessageEntity, String> {
 
+    /** Separators of {@link #REACTION_SUMMARY}: between emojis, and between the fields of one. */
+    String SUMMARY_RECORD_SEPARATOR = "\u001E";
+    String SUMMARY_FIELD_SEPARATOR = "\u001F";
+
+    /**
+     * A message's reaction aggregates (reaction_counts) as one string, most used emoji first:
+     * per emoji {@code total, emoji, recent user 1..3} (users possibly empty). A correlated
+     * lookup on the (message_id, emoji) index, so history carries reactions without a second query.
+     */
+    String REACTION_SUMMARY = "(SELECT listagg(concat(str(r.total), '" + SUMMARY_FIELD_SEPARATOR + "', r.emoji, '"
+            + SUMMARY_FIELD_SEPARATOR + "', coalesce(r.recentUser1, ''), '" + SUMMARY_FIELD_SEPARATOR
+            + "', coalesce(r.recentUser2, ''), '" + SUMMARY_FIELD_SEPARATOR + "', coalesce(r.recentUser3, '')), '"
+            + SUMMARY_RECORD_SEPARATOR + "') WITHIN GROUP (ORDER BY r.total DESC, r.emoji) "
+            + "FROM ReactionCountEntity r WHERE r.messageId = m.id)";
+
     List<MessageEntity> findByRoomIdOrderByTimestampAsc(String roomId);
 
-    @Query("SELECT m FROM MessageEntity m WHERE m.roomId = :roomId ORDER BY m.timestamp DESC")
-    List<MessageEntity> findRecentByRoomId(@Param("roomId") String roomId, Pageable pageable);
+    /**
+     * Lookup by id restricted to messages stamped at or after {@code since}: on the partitioned
+     * table (V30) this only probes the partitions from that month on instead of all of them.
+     */
+    @Query("SELECT m FROM MessageEntity m WHERE m.id = :id AND m.timestamp >= :since")
+    Optional<MessageEntity> findByIdSince(@Param("id") String id, @Param("since") Instant since);
+
+    // Newest first with a limit: over the monthly partitions this is an ordered append that
+    // stops in the newest partitions once the page is full. Rows are (MessageEntity, reaction summary).
+    @Query("SELECT m, " + REACTION_SUMMARY + " FROM MessageEntity m WHERE m.roomId = :roomId ORDER BY m.timestamp DESC")
+    List<Object[]> findRecentByRoomId(@Param("roomId") String roomId, Pageable pageable);
 
     long countByRoomId(String roomId);
 
+    // ── Archive tier ──
+
+    @Query("SELECT DISTINCT m.roomId FROM MessageEntity m WHERE m.timestamp < :cutoff")
+    List<String> findRoomIdsWithMessagesBefore(@Param("cutoff") Instant cutoff);
+
+    /** Rows are (MessageEntity, reaction summary), as in {@link #findRecentByRoomId}. */
+    @Query("SELECT m, " + REACTION_SUMMARY + " FROM MessageEntity m WHERE m.roomId = :roomId AND m.timestamp < :cutoff ORDER BY m.timestamp ASC, m.id ASC")
+    List<Object[]> findOldestBefore(@Param("roomId") String roomId, @Param("cutoff") Instant cutoff, Pageable pageable);
+
     List<MessageEntity> findByRoomIdAndTypeAndSenderNotAndStatusNot(
             String roomId, MessageType type, String sender, String status);
 
@@ -32,8 +67,10 @@ public interface MessageRepository extends JpaRepository<MessageEntity, String>
 
     List<MessageEntity> findByRoomIdAndPinnedTrue(String roomId);
 
-    @Query("SELECT m FROM MessageEntity m WHERE m.disappearsAt IS NOT NULL AND m.disappearsAt <= :now")
-    List<MessageEntity> findExpiredDisappearingMessages(@Param("now") String now);
+    // disappearsAt is set on read, so it gives no lower bound on timestamp; the upper bound
+    // prunes the partitions created ahead and each partition scan uses its small partial index
+    @Query("SELECT m FROM MessageEntity m WHERE m.disappearsAt IS NOT NULL AND m.disappearsAt <= :now AND m.timestamp <= :now")
+    List<MessageEntity> findExpiredDisappearingMessages(@Param("now") Instant now);
 
     // ── Media stats queries ──
 
@@ -50,16 +87,46 @@ public interface MessageRepository extends JpaRepository<MessageEntity, String>
     long countLinksByRoomId(@Param("roomId") String roomId);
 
     // ── Message search ──
+    // [from, to) on timestamp limits the search to the partitions of those months
 
-    @Query("SELECT m FROM MessageEntity m WHERE m.roomId = :roomId AND LOWER(m.content) LIKE LOWER(CONCAT('%', :query, '%')) ORDER BY m.timestamp DESC")
-    List<MessageEntity> searchMessages(@Param("roomId") String roomId, @Param("query") String query, Pageable pageable);
+    @Query("SELECT m FROM MessageEntity m WHERE m.roomId = :roomId AND m.content ILIKE CONCAT('%', :query, '%') " +
+           "AND m.timestamp >= :from AND m.timestamp < :to ORDER BY m.timestamp DESC")
+    List<MessageEntity> searchMessages(@Param("roomId") String roomId, @Param("query") String query,
+                                       @Param("from") Instant from, @Param("to") Instant to, Pageable pageable);
 
-    @Query("SELECT m FROM MessageEntity m WHERE m.roomId IN :roomIds AND LOWER(m.content) LIKE LOWER(CONCAT('%', :query, '%')) ORDER BY m.timestamp DESC")
-    List<MessageEntity> searchMessagesGlobal(@Param("roomIds") java.util.Collection<String> roomIds, @Param("query") String query, Pageable pageable);
+    @Query("SELECT m FROM MessageEntity m WHERE m.roomId IN :roomIds AND m.content ILIKE CONCAT('%', :query, '%') " +
+           "AND m.timestamp >= :from AND m.timestamp < :to ORDER BY m.timestamp DESC")
+    List<MessageEntity> searchMessagesGlobal(@Param("roomIds") java.util.Collection<String> roomIds, @Param("query") String query,
+                                             @Param("from") Instant from, @Param("to") Instant to, Pageable pageable);
 
     // Perf F1: batch load last message per room in one query (avoids N+1 API calls from frontend)
     @Query("SELECT m FROM MessageEntity m WHERE m.timestamp = " +
            "(SELECT MAX(m2.timestamp) FROM MessageEntity m2 WHERE m2.roomId = m.roomId) " +
            "AND m.roomId IN :roomIds")
     List<MessageEntity> findLastMessagesByRoomIds(@Param("roomIds") java.util.Collection<String> roomIds);
+
+    // ── Upload GC: referenced files ──
+
+    /** Keyset page of (id, fileUrl, thumbnailUrl) for messages with attachments */
+    @Query("SELECT m.id, m.fileUrl, m.thumbnailUrl FROM MessageEntity m " +
+           "WHERE m.id > :after AND (m.fileUrl IS NOT NULL OR m.thumbnailUrl IS NOT NULL) ORDER BY m.id")
+    List<Object[]> findUploadUrlsAfter(@Param("after") String after, Pageable pageable);
+
+    @Query("SELECT m.fileUrl FROM MessageEntity m WHERE m.fileUrl IN :urls")
+    List<String> findFileUrlsIn(@Param("urls") java.util.Collection<String> urls);
+
+    @Query("SELECT m.thumbnailUrl FROM MessageEntity m WHERE m.thumbnailUrl IN :urls")
+    List<String> findThumbnailUrlsIn(@Param("urls") java.util.Collection<String> urls);
+
+    // ── Partition maintenance (PostgreSQL functions from V30) ──
+
+    /** Create missing monthly partitions up to {@code monthsAhead} months ahead; returns how many. */
+    @Transactional
+    @Query(value = "SELECT messages_ensure_partitions(:monthsAhead)", nativeQuery = true)
+    int ensurePartitions(@Param("monthsAhead") int monthsAhead);
+
+    /** Detach monthly partitions that end at or before {@code cutoff}; returns their table names. */
+    @Transactional
+    @Query(value = "SELECT messages_detach_partitions_before(:cutoff)", nativeQuery = true)
+    List<String> detachPartitionsBefore(@Param("cutoff") Instant cutoff);
 }
@@ -2,10 +2,18 @@ package com.example.webrtcchat.repository;
 
 import com.example.webrtcchat.entity.NewsEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
 public interface NewsRepository extends JpaRepository<NewsEntity, String> {
 
     List<NewsEntity> findAllByOrderByCreatedAtDesc();
+
+    @Query("SELECT n.imageUrl FROM NewsEntity n WHERE n.imageUrl IS NOT NULL")
+    List<String> findAllImageUrls();
+
+    @Query("SELECT n.imageUrl FROM NewsEntity n WHERE n.imageUrl IN :urls")
+    List<String> findImageUrlsIn(@Param("urls") java.util.Collection<String> urls);
 }
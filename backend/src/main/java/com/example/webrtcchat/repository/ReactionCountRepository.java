@@ -0,0 +1,61 @@
+package com.example.webrtcchat.repository;
+
+import com.example.webrtcchat.entity.ReactionCountEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Writes of reactions together with their {@code reaction_counts} aggregate. Each method is one
+ * statement: a data-modifying CTE changes the {@code reactions} row and, only if it did, the
+ * aggregate follows in the same snapshot, so retries and duplicate frames are harmless.
+ */
+public interface ReactionCountRepository extends JpaRepository<ReactionCountEntity, Long> {
+
+    /**
+     * Idempotent add: inserts the reaction and bumps its aggregate, the new user first in the
+     * recent list. The user cannot already be listed, since only current reactors are.
+     * @return 1 if the reaction was added, 0 if it already existed
+     */
+    @Modifying
+    @Query(value = "WITH added AS (" +
+                   "  INSERT INTO reactions (message_id, room_id, username, emoji, created_at) " +
+                   "  VALUES (:messageId, :roomId, :username, :emoji, :createdAt) " +
+                   "  ON CONFLICT (message_id, username, emoji) DO NOTHING RETURNING 1) " +
+                   "INSERT INTO reaction_counts AS c (message_id, room_id, emoji, total, recent_user_1) " +
+                   "SELECT :messageId, :roomId, :emoji, 1, :username FROM added " +
+                   "ON CONFLICT (message_id, emoji) DO UPDATE SET total = c.total + 1, " +
+                   "  recent_user_1 = EXCLUDED.recent_user_1, recent_user_2 = c.recent_user_1, recent_user_3 = c.recent_user_2",
+           nativeQuery = true)
+    int addReaction(@Param("messageId") String messageId,
+                    @Param("roomId") String roomId,
+                    @Param("username") String username,
+                    @Param("emoji") String emoji,
+                    @Param("createdAt") String createdAt);
+
+    /**
+     * Removes the reaction and decrements its aggregate, refilling the recent list from the
+     * remaining reactions. An aggregate left at zero is dropped by {@link #deleteEmpty}.
+     * @return 1 if a reaction was removed, 0 if there was none
+     */
+    @Modifying
+    @Query(value = "WITH removed AS (" +
+                   "  DELETE FROM reactions WHERE message_id = :messageId AND username = :username AND emoji = :emoji RETURNING 1) " +
+                   "UPDATE reaction_counts SET total = total - 1, " +
+                   "  recent_user_1 = (SELECT r.username FROM reactions r WHERE r.message_id = :messageId AND r.emoji = :emoji " +
+                   "                   AND r.username <> :username ORDER BY r.id DESC LIMIT 1), " +
+                   "  recent_user_2 = (SELECT r.username FROM reactions r WHERE r.message_id = :messageId AND r.emoji = :emoji " +
+                   "                   AND r.username <> :username ORDER BY r.id DESC LIMIT 1 OFFSET 1), " +
+                   "  recent_user_3 = (SELECT r.username FROM reactions r WHERE r.message_id = :messageId AND r.emoji = :emoji " +
+                   "                   AND r.username <> :username ORDER BY r.id DESC LIMIT 1 OFFSET 2) " +
+                   "WHERE message_id = :messageId AND emoji = :emoji AND EXISTS (SELECT 1 FROM removed)",
+           nativeQuery = true)
+    int removeReaction(@Param("messageId") String messageId,
+                       @Param("username") String username,
+                       @Param("emoji") String emoji);
+
+    @Modifying
+    @Query("DELETE FROM ReactionCountEntity c WHERE c.messageId = :messageId AND c.emoji = :emoji AND c.total <= 0")
+    int deleteEmpty(@Param("messageId") String messageId, @Param("emoji") String emoji);
+}
@@ -7,14 +7,15 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
 public interface RoomRepository extends JpaRepository<RoomEntity, String> {
 
-    // Perf B2: JOIN FETCH members in a single query instead of N+1
-    @EntityGraph(attributePaths = "members")
-    @Query("SELECT DISTINCT r FROM RoomEntity r JOIN r.members m " +
+    // Perf B2: no fetch graph here: the outer fetch join would pin the join order to rooms first, so members
+    // are batch-loaded instead (see RoomEntity.members) and this stays driven by the member index
+    @Query("SELECT r FROM RoomEntity r JOIN r.members m " +
            "WHERE r.type <> com.example.webrtcchat.types.RoomType.GENERAL AND m = :username")
     List<RoomEntity> findUserRooms(@Param("username") String username);
 
@@ -27,5 +28,11 @@ public interface RoomRepository extends JpaRepository<RoomEntity, String> {
 
     @Query("SELECT COUNT(DISTINCT m.roomId) FROM MessageEntity m " +
            "WHERE m.roomId <> 'general' AND m.timestamp >= :since")
-    long countActiveRoomsSince(@Param("since") String since);
+    long countActiveRoomsSince(@Param("since") Instant since);
+
+    @Query("SELECT r.avatarUrl FROM RoomEntity r WHERE r.avatarUrl IS NOT NULL")
+    List<String> findAllAvatarUrls();
+
+    @Query("SELECT r.avatarUrl FROM RoomEntity r WHERE r.avatarUrl IN :urls")
+    List<String> findAvatarUrlsIn(@Param("urls") java.util.Collection<String> urls);
 }
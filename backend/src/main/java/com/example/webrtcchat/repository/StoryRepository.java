@@ -6,28 +6,41 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
 
 public interface StoryRepository extends JpaRepository<StoryEntity, String> {
 
     /** All active (non-expired) stories ordered by creation time */
     @Query("SELECT s FROM StoryEntity s WHERE s.expiresAt > :now ORDER BY s.createdAt DESC")
-    List<StoryEntity> findAllActive(@Param("now") String now);
+    List<StoryEntity> findAllActive(@Param("now") Instant now);
 
     /** Active stories by specific author */
     @Query("SELECT s FROM StoryEntity s WHERE s.author = :author AND s.expiresAt > :now ORDER BY s.createdAt ASC")
-    List<StoryEntity> findByAuthorActive(@Param("author") String author, @Param("now") String now);
+    List<StoryEntity> findByAuthorActive(@Param("author") String author, @Param("now") Instant now);
 
     /** Count active stories by author (for max-5 limit) */
     @Query("SELECT COUNT(s) FROM StoryEntity s WHERE s.author = :author AND s.expiresAt > :now")
-    long countByAuthorActive(@Param("author") String author, @Param("now") String now);
+    long countByAuthorActive(@Param("author") String author, @Param("now") Instant now);
 
     /** Delete all expired stories */
     @Modifying
     @Query("DELETE FROM StoryEntity s WHERE s.expiresAt <= :now")
-    int deleteExpired(@Param("now") String now);
+    int deleteExpired(@Param("now") Instant now);
+
+    /** Apply a batched view-count delta accumulated by the feed cache */
+    @Modifying
+    @Query("UPDATE StoryEntity s SET s.viewCount = s.viewCount + :delta WHERE s.id = :id")
+    int incrementViewCount(@Param("id") String id, @Param("delta") long delta);
 
     /** Find expired stories (to clean up files before deleting) */
     @Query("SELECT s FROM StoryEntity s WHERE s.expiresAt <= :now")
-    List<StoryEntity> findExpired(@Param("now") String now);
+    List<StoryEntity> findExpired(@Param("now") Instant now);
+
+    /** (videoUrl, thumbnailUrl) of every story — upload GC mark phase */
+    @Query("SELECT s.videoUrl, s.thumbnailUrl FROM StoryEntity s")
+    List<Object[]> findAllMediaUrls();
+
+    @Query("SELECT s.videoUrl, s.thumbnailUrl FROM StoryEntity s WHERE s.videoUrl IN :urls OR s.thumbnailUrl IN :urls")
+    List<Object[]> findMediaUrlsIn(@Param("urls") java.util.Collection<String> urls);
 }
@@ -2,6 +2,7 @@ package com.example.webrtcchat.repository;
 
 import com.example.webrtcchat.entity.StoryViewEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -32,4 +33,20 @@ public interface StoryViewRepository extends JpaRepository<StoryViewEntity, Long
     /** Get all story IDs that a specific user has viewed */
     @Query("SELECT v.storyId FROM StoryViewEntity v WHERE v.viewer = :viewer")
     List<String> findViewedStoryIdsByViewer(@Param("viewer") String viewer);
+
+    /** Story IDs the viewer has seen, restricted to the given (active) stories */
+    @Query("SELECT v.storyId FROM StoryViewEntity v WHERE v.viewer = :viewer AND v.storyId IN :storyIds")
+    List<String> findViewedStoryIdsByViewerIn(@Param("viewer") String viewer,
+                                              @Param("storyIds") java.util.Collection<String> storyIds);
+
+    /**
+     * Idempotent view insert — a single statement instead of exists-then-insert.
+     * @return 1 if the view was recorded, 0 if it already existed
+     */
+    @Modifying
+    @Query(value = "INSERT INTO story_views (story_id, viewer, viewed_at) VALUES (:storyId, :viewer, :viewedAt) " +
+                   "ON CONFLICT (story_id, viewer) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("storyId") String storyId,
+                       @Param("viewer") String viewer,
+                       @Param("viewedAt") String viewedAt);
 }
@@ -2,6 +2,8 @@ package com.example.webrtcchat.repository;
 
 import com.example.webrtcchat.entity.TaskEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
@@ -10,4 +12,10 @@ public interface TaskRepository extends JpaRepository<TaskEntity, String> {
     List<TaskEntity> findByAssignedToOrCreatedBy(String assignedTo, String createdBy);
 
     List<TaskEntity> findByStatusNotAndDeadlineNotNullAndDeadlineLessThan(String status, String deadline);
+
+    @Query("SELECT t.fileUrl FROM TaskEntity t WHERE t.fileUrl IS NOT NULL")
+    List<String> findAllFileUrls();
+
+    @Query("SELECT t.fileUrl FROM TaskEntity t WHERE t.fileUrl IN :urls")
+    List<String> findFileUrlsIn(@Param("urls") java.util.Collection<String> urls);
 }
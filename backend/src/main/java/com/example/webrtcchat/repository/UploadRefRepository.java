@@ -0,0 +1,42 @@
+package com.example.webrtcchat.repository;
+
+import com.example.webrtcchat.entity.UploadRefEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface UploadRefRepository extends JpaRepository<UploadRefEntity, Long> {
+
+    /** Reference count of a stored file */
+    long countByFilename(String filename);
+
+    boolean existsByOwnerTypeAndOwnerIdAndFilename(String ownerType, String ownerId, String filename);
+
+    /** Every referenced file name, paged (consistency checks) */
+    @Query("SELECT DISTINCT r.filename FROM UploadRefEntity r ORDER BY r.filename")
+    List<String> findDistinctFilenames(Pageable pageable);
+
+    @Query("SELECT r.filename FROM UploadRefEntity r WHERE r.ownerType = :ownerType AND r.ownerId = :ownerId")
+    List<String> findFilenamesByOwner(@Param("ownerType") String ownerType, @Param("ownerId") String ownerId);
+
+    @Modifying
+    @Query("DELETE FROM UploadRefEntity r WHERE r.ownerType = :ownerType AND r.ownerId = :ownerId")
+    int deleteByOwner(@Param("ownerType") String ownerType, @Param("ownerId") String ownerId);
+
+    @Modifying
+    @Query("DELETE FROM UploadRefEntity r WHERE r.ownerType = :ownerType AND r.ownerId = :ownerId " +
+           "AND r.filename = :filename")
+    int deleteByOwnerAndFilename(@Param("ownerType") String ownerType, @Param("ownerId") String ownerId,
+                                 @Param("filename") String filename);
+
+    /** Drop stale references to a file the upload GC removed */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UploadRefEntity r WHERE r.filename = :filename")
+    int deleteByFilename(@Param("filename") String filename);
+}
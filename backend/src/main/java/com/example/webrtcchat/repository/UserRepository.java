@@ -2,6 +2,8 @@ package com.example.webrtcchat.repository;
 
 import com.example.webrtcchat.entity.UserEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -14,4 +16,10 @@ public interface UserRepository extends JpaRepository<UserEntity, Long> {
     boolean existsByTag(String tag);
     List<UserEntity> findByUsernameContainingIgnoreCaseOrTagContainingIgnoreCase(String username, String tag);
     List<UserEntity> findByUsernameIn(List<String> usernames);
+
+    @Query("SELECT u.avatarUrl FROM UserEntity u WHERE u.avatarUrl IS NOT NULL")
+    List<String> findAllAvatarUrls();
+
+    @Query("SELECT u.avatarUrl FROM UserEntity u WHERE u.avatarUrl IN :urls")
+    List<String> findAvatarUrlsIn(@Param("urls") java.util.Collection<String> urls);
 }
@@ -8,14 +8,13 @@ import com.example.webrtcchat.types.RoomType;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 
 @Service
 public class AdminService {
 
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     private final UserRepository userRepository;
     private final RoomRepository roomRepository;
@@ -42,7 +41,7 @@ public class AdminService {
         long totalChats = directChats + groupChats;
 
         // Active chats: rooms that have messages in the last 24 hours
-        String since = LocalDateTime.now().minusHours(24).format(FORMATTER);
+        Instant since = Instant.now().minus(Duration.ofHours(24));
         long activeChats = roomRepository.countActiveRoomsSince(since);
 
         return new AdminStatsDto(totalUsers, onlineUsers, totalChats, activeChats, groupChats, directChats);
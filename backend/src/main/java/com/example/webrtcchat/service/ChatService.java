@@ -7,48 +7,79 @@ import com.example.webrtcchat.repository.MessageRepository;
 import com.example.webrtcchat.repository.RoomRepository;
 import com.example.webrtcchat.repository.UserRepository;
 import com.example.webrtcchat.types.MessageType;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class ChatService {
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, String>> LINK_PREVIEW_TYPE = new TypeReference<>() {};
+    /** Slack between minting an id and stamping the message, see {@link #findEntity} */
+    private static final Duration ID_CLOCK_SKEW = Duration.ofMinutes(1);
+
     private final MessageRepository messageRepository;
     private final RoomRepository roomRepository;
     private final UserRepository userRepository;
     private final PollService pollService;
+    private final UploadRefService uploadRefService;
+    private final MessageArchive messageArchive;
 
     // Online users — runtime state, backed by ConcurrentHashMap.newKeySet() (R3)
     private final Set<String> onlineUsers = ConcurrentHashMap.newKeySet();
 
     public ChatService(MessageRepository messageRepository, RoomRepository roomRepository,
-                       UserRepository userRepository, PollService pollService) {
+                       UserRepository userRepository, PollService pollService,
+                       UploadRefService uploadRefService, MessageArchive messageArchive) {
         this.messageRepository = messageRepository;
         this.roomRepository = roomRepository;
         this.userRepository = userRepository;
         this.pollService = pollService;
+        this.uploadRefService = uploadRefService;
+        this.messageArchive = messageArchive;
     }
 
     @Transactional
     public void send(String roomId, MessageDto message) {
+        // timestamp is the partition key of messages (V30) and cannot be null
+        if (message.getTimestamp() == null) message.setTimestamp(Instant.now());
         MessageEntity entity = toEntity(message);
         entity.setRoomId(roomId);
         messageRepository.save(entity);
+        if (entity.getFileUrl() != null || entity.getThumbnailUrl() != null) {
+            uploadRefService.addRefs(UploadRefService.OWNER_MESSAGE, entity.getId(),
+                    entity.getFileUrl(), entity.getThumbnailUrl());
+        }
     }
 
     /**
      * Get paginated history for a room (I12). Returns messages in ascending order.
+     * Pages reaching past the oldest hot message continue into the {@link MessageArchive}.
      */
     @Transactional(readOnly = true)
     public List<MessageDto> getHistory(String roomId, int page, int size) {
-        List<MessageEntity> entities = messageRepository.findRecentByRoomId(
-                roomId, PageRequest.of(page, size));
+        List<Object[]> rows = messageRepository.findRecentByRoomId(roomId, PageRequest.of(page, size));
+        List<MessageDto> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) result.add(toDto((MessageEntity) row[0], (String) row[1]));
+        if (rows.size() < size) {
+            // A short page ends the hot rows: offset + returned is their count. Only a page
+            // entirely past them needs the count to know where in the archive it starts.
+            long offset = (long) page * size;
+            long hot = rows.isEmpty() ? messageRepository.countByRoomId(roomId) : offset + rows.size();
+            for (MessageDto dto : messageArchive.read(roomId, Math.max(0, offset - hot), size - rows.size())) {
+                result.add(enrichPoll(dto));
+            }
+        }
         // Reverse to get ascending order (query returns DESC)
-        List<MessageDto> result = new ArrayList<>(entities.stream().map(this::toDto).toList());
         Collections.reverse(result);
         return result;
     }
@@ -61,7 +92,7 @@ public class ChatService {
     @Transactional(readOnly = true)
     public MessageDto findMessage(String roomId, String msgId) {
         if (msgId == null) return null;
-        return messageRepository.findById(msgId)
+        return findEntity(msgId)
                 .filter(e -> roomId.equals(e.getRoomId()))
                 .map(this::toDto)
                 .orElse(null);
@@ -69,7 +100,7 @@ public class ChatService {
 
     @Transactional
     public boolean editMessage(String roomId, String msgId, String newContent) {
-        Optional<MessageEntity> opt = messageRepository.findById(msgId);
+        Optional<MessageEntity> opt = findEntity(msgId);
         if (opt.isEmpty() || !roomId.equals(opt.get().getRoomId())) return false;
         MessageEntity entity = opt.get();
         entity.setContent(newContent);
@@ -78,14 +109,47 @@ public class ChatService {
         return true;
     }
 
+    /** Store the link preview fetched after send; false if the message is gone. */
+    @Transactional
+    public boolean setLinkPreview(String roomId, String msgId, Map<String, String> preview) {
+        Optional<MessageEntity> opt = findEntity(msgId);
+        if (opt.isEmpty() || !roomId.equals(opt.get().getRoomId())) return false;
+        MessageEntity entity = opt.get();
+        try {
+            entity.setLinkPreview(MAPPER.writeValueAsString(preview));
+        } catch (JsonProcessingException e) {
+            return false;
+        }
+        messageRepository.save(entity);
+        return true;
+    }
+
     @Transactional
     public boolean deleteMessage(String roomId, String msgId) {
-        Optional<MessageEntity> opt = messageRepository.findById(msgId);
+        Optional<MessageEntity> opt = findEntity(msgId);
         if (opt.isEmpty() || !roomId.equals(opt.get().getRoomId())) return false;
-        messageRepository.delete(opt.get());
+        MessageEntity entity = opt.get();
+        messageRepository.delete(entity);
+        if (entity.getFileUrl() != null || entity.getThumbnailUrl() != null) {
+            uploadRefService.releaseRefs(UploadRefService.OWNER_MESSAGE, msgId);
+        }
         return true;
     }
 
+    /**
+     * Message by id. Ids minted by {@link MessageIds} carry their creation time and a message is
+     * never stamped much earlier than its id, so the lookup only probes the partitions from that
+     * month on. Legacy random ids, and misses (a client-supplied id), use the plain lookup.
+     */
+    private Optional<MessageEntity> findEntity(String msgId) {
+        Instant minted = MessageIds.timestampOf(msgId);
+        if (minted != null) {
+            Optional<MessageEntity> found = messageRepository.findByIdSince(msgId, minted.minus(ID_CLOCK_SKEW));
+            if (found.isPresent()) return found;
+        }
+        return messageRepository.findById(msgId);
+    }
+
     public List<MessageDto> getHistory() {
         return getHistory("general");
     }
@@ -93,13 +157,47 @@ public class ChatService {
     @Transactional
     public void clearHistory(String roomId) {
         messageRepository.deleteByRoomId(roomId);
+        messageArchive.deleteRoom(roomId);
+    }
+
+    /** {@link #archiveOldest} result when the room's oldest message is pinned or disappearing. */
+    public static final int ARCHIVE_BLOCKED = -1;
+
+    /**
+     * Move the oldest messages of a room stamped before {@code cutoff} into one archive segment
+     * of up to {@code segmentSize} messages. A pinned or disappearing message ends the segment
+     * early and stays hot together with everything newer, so the archive is always the room's
+     * oldest prefix. Returns the number archived; 0 when fewer than {@code segmentSize}
+     * messages qualify, or {@link #ARCHIVE_BLOCKED} when the oldest of them cannot move.
+     */
+    @Transactional
+    public int archiveOldest(String roomId, Instant cutoff, int segmentSize) {
+        List<Object[]> rows = messageRepository.findOldestBefore(roomId, cutoff, PageRequest.of(0, segmentSize));
+        if (rows.size() < segmentSize) return 0;
+        List<MessageEntity> oldest = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            MessageEntity e = (MessageEntity) row[0];
+            if (e.isPinned() || e.getDisappearsAt() != null) break;
+            oldest.add(e);
+        }
+        if (oldest.isEmpty()) return ARCHIVE_BLOCKED;
+        List<MessageDto> archived = new ArrayList<>(oldest.size());
+        for (Object[] row : rows.subList(0, oldest.size())) {
+            // Reactions are kept as they stand now; archived messages are read-only
+            MessageDto dto = toDto((MessageEntity) row[0], (String) row[1]);
+            dto.setPollData(null); // live poll state is looked up again on read
+            archived.add(dto);
+        }
+        messageArchive.append(roomId, archived);
+        messageRepository.deleteAllInBatch(oldest);
+        return oldest.size();
     }
 
     // ── Pin / Unpin ──
 
     @Transactional
     public boolean pinMessage(String roomId, String msgId, String pinnedBy) {
-        Optional<MessageEntity> opt = messageRepository.findById(msgId);
+        Optional<MessageEntity> opt = findEntity(msgId);
         if (opt.isEmpty() || !roomId.equals(opt.get().getRoomId())) return false;
         MessageEntity entity = opt.get();
         entity.setPinned(true);
@@ -110,7 +208,7 @@ public class ChatService {
 
     @Transactional
     public boolean unpinMessage(String roomId, String msgId) {
-        Optional<MessageEntity> opt = messageRepository.findById(msgId);
+        Optional<MessageEntity> opt = findEntity(msgId);
         if (opt.isEmpty() || !roomId.equals(opt.get().getRoomId())) return false;
         MessageEntity entity = opt.get();
         entity.setPinned(false);
@@ -146,9 +244,7 @@ public class ChatService {
             msg.setStatus("READ");
             // Schedule deletion if disappearing messages are enabled
             if (disappearingSecs > 0 && msg.getDisappearsAt() == null) {
-                msg.setDisappearsAt(
-                    java.time.LocalDateTime.now().plusSeconds(disappearingSecs)
-                        .format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+                msg.setDisappearsAt(Instant.now().plusSeconds(disappearingSecs));
             }
             senderToMsgIds.computeIfAbsent(msg.getSender(), k -> new ArrayList<>()).add(msg.getId());
         }
@@ -171,14 +267,13 @@ public class ChatService {
     @Transactional
     public void updateLastSeen(String username) {
         userRepository.findByUsername(username).ifPresent(user -> {
-            user.setLastSeen(java.time.LocalDateTime.now()
-                    .format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+            user.setLastSeen(Instant.now());
             userRepository.save(user);
         });
     }
 
     @Transactional(readOnly = true)
-    public String getLastSeen(String username) {
+    public Instant getLastSeen(String username) {
         return userRepository.findByUsername(username)
                 .map(UserEntity::getLastSeen)
                 .orElse(null);
@@ -281,7 +376,8 @@ public class ChatService {
         return e;
     }
 
-    private MessageDto toDto(MessageEntity e) {
+    /** Package-private for the JMH benchmarks (backend/benchmarks). */
+    MessageDto toDto(MessageEntity e) {
         MessageDto dto = new MessageDto();
         dto.setId(e.getId());
         dto.setSender(e.getSender());
@@ -309,10 +405,46 @@ public class ChatService {
         // Pin fields
         dto.setPinned(e.isPinned());
         dto.setPinnedBy(e.getPinnedBy());
-        // Enrich poll messages
-        if (e.getType() == MessageType.POLL) {
+        if (e.getLinkPreview() != null) {
+            try {
+                dto.setLinkPreview(MAPPER.readValue(e.getLinkPreview(), LINK_PREVIEW_TYPE));
+            } catch (JsonProcessingException ignored) {}
+        }
+        return enrichPoll(dto);
+    }
+
+    /** {@link #toDto(MessageEntity)} plus the reactions of a {@link MessageRepository#REACTION_SUMMARY}. */
+    MessageDto toDto(MessageEntity e, String reactionSummary) {
+        MessageDto dto = toDto(e);
+        dto.setReactions(parseReactionSummary(reactionSummary));
+        return dto;
+    }
+
+    /** Decode a reaction summary into {@code {emoji, count, recentUsers}} maps; null without reactions. */
+    static List<Map<String, Object>> parseReactionSummary(String summary) {
+        if (summary == null || summary.isEmpty()) return null;
+        List<Map<String, Object>> reactions = new ArrayList<>();
+        for (String record : summary.split(MessageRepository.SUMMARY_RECORD_SEPARATOR)) {
+            String[] fields = record.split(MessageRepository.SUMMARY_FIELD_SEPARATOR, -1);
+            if (fields.length != 5) continue;
+            List<String> recentUsers = new ArrayList<>(3);
+            for (int i = 2; i < 5; i++) {
+                if (!fields[i].isEmpty()) recentUsers.add(fields[i]);
+            }
+            Map<String, Object> r = new LinkedHashMap<>();
+            r.put("emoji", fields[1]);
+            r.put("count", Integer.parseInt(fields[0].trim()));
+            r.put("recentUsers", recentUsers);
+            reactions.add(r);
+        }
+        return reactions;
+    }
+
+    /** Attach the current poll state to poll messages. */
+    private MessageDto enrichPoll(MessageDto dto) {
+        if (dto.getType() == MessageType.POLL) {
             try {
-                Map<String, Object> pd = pollService.getPollByMessageId(e.getId());
+                Map<String, Object> pd = pollService.getPollByMessageId(dto.getId());
                 if (pd != null) dto.setPollData(pd);
             } catch (Exception ignored) {}
         }
@@ -0,0 +1,281 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.service.UploadService.StoredUpload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Resumable uploads: the client opens a session, PUTs fixed-size chunks by index
+ * (any order, possibly in parallel) and completes it.
+ * <p>
+ * Each session owns a file preallocated to the final size in the upload staging dir;
+ * chunks are written straight into it with positional FileChannel writes, so nothing
+ * is buffered in memory and a dropped connection only loses the chunk in flight.
+ * On completion the file goes through {@link UploadService#storeAssembled} — the same
+ * magic-byte checks, SHA-256 and atomic placement as single-request uploads.
+ * Sessions idle longer than the TTL are discarded together with their file.
+ */
+@Service
+public class ChunkedUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    private static final String SESSION_SUFFIX = ".chunked";
+    private static final int MAX_SESSIONS_PER_USER = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final UploadService uploadService;
+    private final int chunkSize;
+    private final long sessionTtlMs;
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    public ChunkedUploadService(UploadService uploadService,
+                                @Value("${upload.chunked.chunk-size:4194304}") int chunkSize,
+                                @Value("${upload.chunked.session-ttl-minutes:30}") long sessionTtlMinutes) {
+        this.uploadService = uploadService;
+        this.chunkSize = chunkSize;
+        this.sessionTtlMs = sessionTtlMinutes * 60_000L;
+        deleteLeftoverFiles();
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /** Open a session and preallocate its file. */
+    public UploadSession create(String owner, String originalName, String clientType,
+                                long size, boolean imageOnly) throws IOException {
+        long open = sessions.values().stream().filter(s -> s.owner.equals(owner)).count();
+        if (open >= MAX_SESSIONS_PER_USER) {
+            throw new ChunkedUploadException(ChunkedUploadException.Reason.TOO_MANY_SESSIONS);
+        }
+
+        String id = UUID.randomUUID().toString();
+        Path path = uploadService.getIncomingDir().resolve(id + SESSION_SUFFIX);
+        try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw")) {
+            raf.setLength(size);
+        }
+        UploadSession session = new UploadSession(id, owner, originalName, clientType, size,
+                chunkSize, imageOnly, path);
+        sessions.put(id, session);
+        log.debug("Chunked upload {} opened by '{}' ({} bytes, {} chunks)", id, owner, size, session.totalChunks);
+        return session;
+    }
+
+    /**
+     * Write one chunk at {@code index * chunkSize}. The body must be exactly the chunk's length
+     * (the last chunk may be shorter); otherwise it is not marked received and may be retried.
+     */
+    public UploadSession writeChunk(String owner, String id, int index, InputStream in) throws IOException {
+        UploadSession session = get(owner, id);
+        if (index < 0 || index >= session.totalChunks) {
+            throw new ChunkedUploadException(ChunkedUploadException.Reason.BAD_CHUNK);
+        }
+        long position = (long) index * session.chunkSize;
+        long expected = Math.min(session.chunkSize, session.size - position);
+
+        // Shared lock: chunks may be written concurrently, complete/abort wait for them
+        session.lock.readLock().lock();
+        try {
+            if (session.closed) {
+                throw new ChunkedUploadException(ChunkedUploadException.Reason.NOT_FOUND);
+            }
+            session.touch();
+            long written = 0;
+            try (FileChannel channel = FileChannel.open(session.path, StandardOpenOption.WRITE)) {
+                byte[] buf = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    if (written + n > expected) {
+                        throw new ChunkedUploadException(ChunkedUploadException.Reason.BAD_CHUNK);
+                    }
+                    ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+                    while (bb.hasRemaining()) {
+                        channel.write(bb, position + written + (n - bb.remaining()));
+                    }
+                    written += n;
+                }
+            }
+            if (written != expected) {
+                throw new ChunkedUploadException(ChunkedUploadException.Reason.BAD_CHUNK);
+            }
+            session.markReceived(index);
+            return session;
+        } finally {
+            session.lock.readLock().unlock();
+        }
+    }
+
+    public UploadSession status(String owner, String id) throws IOException {
+        UploadSession session = get(owner, id);
+        session.touch();
+        return session;
+    }
+
+    /** Validate and publish the assembled file; the session is gone afterwards either way. */
+    public StoredUpload complete(String owner, String id) throws IOException {
+        UploadSession session = get(owner, id);
+        session.lock.writeLock().lock();
+        try {
+            if (session.closed) {
+                throw new ChunkedUploadException(ChunkedUploadException.Reason.NOT_FOUND);
+            }
+            if (session.receivedCount() < session.totalChunks) {
+                throw new ChunkedUploadException(ChunkedUploadException.Reason.INCOMPLETE);
+            }
+            session.closed = true;
+            sessions.remove(id);
+        } finally {
+            session.lock.writeLock().unlock();
+        }
+        return uploadService.storeAssembled(session.path, session.originalName, session.clientType,
+                "", session.imageOnly);
+    }
+
+    public void abort(String owner, String id) throws IOException {
+        discard(get(owner, id));
+    }
+
+    /** Drop sessions that saw no activity within the TTL. */
+    @Scheduled(fixedDelay = 60_000)
+    public void expireIdleSessions() {
+        long cutoff = System.currentTimeMillis() - sessionTtlMs;
+        for (UploadSession session : sessions.values()) {
+            if (session.lastActivity < cutoff) {
+                log.info("Chunked upload {} of '{}' expired ({}/{} chunks)",
+                        session.id, session.owner, session.receivedCount(), session.totalChunks);
+                discard(session);
+            }
+        }
+    }
+
+    int sessionCount() {
+        return sessions.size();
+    }
+
+    private UploadSession get(String owner, String id) throws ChunkedUploadException {
+        UploadSession session = id != null ? sessions.get(id) : null;
+        if (session == null || !session.owner.equals(owner)) {
+            throw new ChunkedUploadException(ChunkedUploadException.Reason.NOT_FOUND);
+        }
+        return session;
+    }
+
+    private void discard(UploadSession session) {
+        session.lock.writeLock().lock();
+        try {
+            session.closed = true;
+            sessions.remove(session.id);
+            Files.deleteIfExists(session.path);
+        } catch (IOException e) {
+            log.warn("Failed to delete chunked upload file {}", session.path, e);
+        } finally {
+            session.lock.writeLock().unlock();
+        }
+    }
+
+    /** Sessions are in-memory only, so any session file found at startup is orphaned. */
+    private void deleteLeftoverFiles() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(
+                uploadService.getIncomingDir(), "*" + SESSION_SUFFIX)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean leftover chunked uploads", e);
+        }
+    }
+
+    /** Server-side state of one resumable upload. */
+    public static class UploadSession {
+        private final String id;
+        private final String owner;
+        private final String originalName;
+        private final String clientType;
+        private final long size;
+        private final int chunkSize;
+        private final int totalChunks;
+        private final boolean imageOnly;
+        private final Path path;
+        private final BitSet received;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private volatile boolean closed;
+        private volatile long lastActivity = System.currentTimeMillis();
+
+        UploadSession(String id, String owner, String originalName, String clientType, long size,
+                      int chunkSize, boolean imageOnly, Path path) {
+            this.id = id;
+            this.owner = owner;
+            this.originalName = originalName;
+            this.clientType = clientType;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.totalChunks = (int) ((size + chunkSize - 1) / chunkSize);
+            this.imageOnly = imageOnly;
+            this.path = path;
+            this.received = new BitSet(totalChunks);
+        }
+
+        public String getId() { return id; }
+        public String getOriginalName() { return originalName; }
+        public long getSize() { return size; }
+        public boolean isImageOnly() { return imageOnly; }
+        public int getChunkSize() { return chunkSize; }
+        public int getTotalChunks() { return totalChunks; }
+
+        public synchronized int receivedCount() {
+            return received.cardinality();
+        }
+
+        /** Chunk indexes still to be sent — what a resuming client needs. */
+        public synchronized List<Integer> getMissingChunks() {
+            List<Integer> missing = new ArrayList<>(totalChunks - received.cardinality());
+            for (int i = received.nextClearBit(0); i < totalChunks; i = received.nextClearBit(i + 1)) {
+                missing.add(i);
+            }
+            return missing;
+        }
+
+        private synchronized void markReceived(int index) {
+            received.set(index);
+        }
+
+        private void touch() {
+            lastActivity = System.currentTimeMillis();
+        }
+    }
+
+    /** Resumable upload request refused; the session (if any) stays usable unless noted. */
+    public static class ChunkedUploadException extends IOException {
+        public enum Reason { NOT_FOUND, BAD_CHUNK, INCOMPLETE, TOO_MANY_SESSIONS }
+
+        private final Reason reason;
+
+        public ChunkedUploadException(Reason reason) {
+            super("Chunked upload rejected: " + reason);
+            this.reason = reason;
+        }
+
+        public Reason getReason() { return reason; }
+    }
+}
@@ -11,8 +11,7 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Instant;
 import java.util.List;
 
 /**
@@ -23,7 +22,6 @@ import java.util.List;
 public class DisappearingMessageScheduler {
 
     private static final Logger log = LoggerFactory.getLogger(DisappearingMessageScheduler.class);
-    static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     private final MessageRepository messageRepository;
     private final ChatWebSocketHandler wsHandler;
@@ -37,7 +35,7 @@ public class DisappearingMessageScheduler {
     @Scheduled(fixedRate = 30_000)
     @Transactional
     public void deleteExpiredMessages() {
-        String now = LocalDateTime.now().format(FORMATTER);
+        Instant now = Instant.now();
         List<MessageEntity> expired = messageRepository.findExpiredDisappearingMessages(now);
         if (expired.isEmpty()) return;
 
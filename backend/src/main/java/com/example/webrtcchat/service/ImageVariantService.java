@@ -0,0 +1,372 @@
+package com.example.webrtcchat.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resized / re-encoded derivatives of stored images ({@code /api/uploads/x.jpg?w=128}).
+ * <p>
+ * Widths come from a small allow-list (requests snap up to the next allowed width), so
+ * each original has at most a handful of variants. A variant is generated once with
+ * ImageIO on a bounded worker pool — decoding with source subsampling so a 20 MB photo
+ * never has to be fully materialised for a 128px avatar — and cached on disk next to the
+ * original. Concurrent requests for the same variant wait on a single generation.
+ * When the pool is saturated, the source cannot be decoded or generation is slow, the
+ * caller serves the original instead. Variants are written without metadata, so a JPEG's
+ * EXIF orientation is applied to the pixels before scaling.
+ */
+@Service
+public class ImageVariantService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageVariantService.class);
+
+    /** Output formats: request value → file extension. */
+    private static final Map<String, String> FORMATS = Map.of("jpeg", "jpg", "jpg", "jpg", "png", "png");
+    /** Sources ImageIO decodes without plugins; GIFs are excluded so animations survive. */
+    private static final Set<String> SOURCE_EXT = Set.of(".jpg", ".jpeg", ".png", ".bmp");
+    private static final float JPEG_QUALITY = 0.82f;
+
+    private final UploadService uploadService;
+    private final int[] widths;
+    private final long maxSourcePixels;
+    private final long timeoutMs;
+    private final ThreadPoolExecutor executor;
+    private final Map<Path, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter generated;
+    private final Counter fallbacks;
+    private final Timer generationTimer;
+
+    public ImageVariantService(UploadService uploadService,
+                               MeterRegistry meterRegistry,
+                               @Value("${upload.variants.widths:64,128,256,512,1024}") int[] widths,
+                               @Value("${upload.variants.workers:2}") int workers,
+                               @Value("${upload.variants.queue-capacity:64}") int queueCapacity,
+                               @Value("${upload.variants.max-source-pixels:50000000}") long maxSourcePixels,
+                               @Value("${upload.variants.timeout-ms:10000}") long timeoutMs) {
+        this.uploadService = uploadService;
+        this.widths = Arrays.stream(widths).filter(w -> w > 0).sorted().distinct().toArray();
+        this.maxSourcePixels = maxSourcePixels;
+        this.timeoutMs = timeoutMs;
+        AtomicInteger threadId = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "image-variant-" + threadId.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        this.generated = Counter.builder("uploads.variants.generated")
+                .description("Image variants generated and cached").register(meterRegistry);
+        this.fallbacks = Counter.builder("uploads.variants.fallbacks")
+                .description("Variant requests answered with the original (busy, undecodable, slow)")
+                .register(meterRegistry);
+        this.generationTimer = Timer.builder("uploads.variants.generation")
+                .description("Image variant generation time").register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** Smallest allowed width ≥ the requested one (the largest if none), or -1 if invalid. */
+    public int snapWidth(int requested) {
+        if (requested <= 0 || widths.length == 0) return -1;
+        for (int w : widths) {
+            if (w >= requested) return w;
+        }
+        return widths[widths.length - 1];
+    }
+
+    /** Extension for a requested output format, or null when not on the allow-list. */
+    public static String formatExtension(String format) {
+        return format != null ? FORMATS.get(format.toLowerCase(Locale.ROOT)) : null;
+    }
+
+    /** Whether variants can be produced for this stored name at all. */
+    public static boolean supports(String filename) {
+        return SOURCE_EXT.contains(UploadService.extensionOf(filename).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Path of the cached variant, generating it if needed. Returns null when the original
+     * should be served instead.
+     *
+     * @param width  an allowed width (see {@link #snapWidth})
+     * @param format output format, or null to keep the source format (BMP becomes PNG)
+     */
+    public Path variant(String filename, Path original, int width, String format) {
+        String ext = format != null ? formatExtension(format) : defaultExtension(filename);
+        if (ext == null || !supports(filename)) return null;
+        Path target = uploadService.variantPath(filename, width, ext);
+        if (Files.exists(target)) return target;
+
+        CompletableFuture<Path> created = new CompletableFuture<>();
+        CompletableFuture<Path> future = inFlight.putIfAbsent(target, created);
+        if (future == null) {
+            future = created;
+            try {
+                executor.execute(() -> {
+                    try {
+                        created.complete(generate(original, target, width, ext));
+                    } catch (Throwable t) {
+                        created.completeExceptionally(t);
+                    } finally {
+                        inFlight.remove(target, created);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(target, created);
+                created.complete(null);
+            }
+        }
+
+        try {
+            Path result = future.get(timeoutMs, TimeUnit.MILLISECONDS);
+            if (result == null) fallbacks.increment();
+            return result;
+        } catch (TimeoutException e) {
+            fallbacks.increment();
+            return null; // keeps running; a later request finds it cached
+        } catch (ExecutionException e) {
+            fallbacks.increment();
+            log.debug("Variant {} of {} failed: {}", width, filename, e.getCause().toString());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private Path generate(Path original, Path target, int width, String ext) throws IOException {
+        if (Files.exists(target)) return target;
+        long start = System.nanoTime();
+
+        BufferedImage source;
+        String sourceFormat;
+        try (ImageInputStream in = ImageIO.createImageInputStream(original.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) throw new IOException("No decoder for " + original.getFileName());
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int srcWidth = reader.getWidth(0);
+                int srcHeight = reader.getHeight(0);
+                if ((long) srcWidth * srcHeight > maxSourcePixels) {
+                    throw new IOException("Source too large: " + srcWidth + "x" + srcHeight);
+                }
+                sourceFormat = reader.getFormatName().toLowerCase(Locale.ROOT);
+                int orientation = "jpeg".equals(sourceFormat) ? exifOrientation(original) : 1;
+                int displayWidth = orientation >= 5 ? srcHeight : srcWidth; // 5-8 swap the axes
+
+                // Already small enough and no transcoding: the variant is the original itself (EXIF included)
+                if (displayWidth <= width && formatExtension(sourceFormat) != null
+                        && formatExtension(sourceFormat).equals(ext)) {
+                    return linkOriginal(original, target);
+                }
+
+                // Decode only every n-th pixel when the source is far larger than needed
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, displayWidth / (width * 2));
+                if (subsampling > 1) param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                source = orient(reader.read(0, param), orientation);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        BufferedImage scaled = scale(source, Math.min(width, source.getWidth()), "jpg".equals(ext));
+        Path tmp = uploadService.getIncomingDir().resolve(UUID.randomUUID() + ".variant");
+        try {
+            write(scaled, ext, tmp);
+            Files.createDirectories(target.getParent());
+            UploadService.moveAtomically(tmp, target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        generated.increment();
+        generationTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Generated {} ({} bytes)", target.getFileName(), Files.size(target));
+        return target;
+    }
+
+    /** Hard link (no extra space) to the original, falling back to a copy. */
+    private Path linkOriginal(Path original, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try {
+            Files.createLink(target, original);
+        } catch (FileAlreadyExistsException e) {
+            // generated concurrently by an earlier run
+        } catch (UnsupportedOperationException | IOException e) {
+            Path tmp = uploadService.getIncomingDir().resolve(UUID.randomUUID() + ".variant");
+            Files.copy(original, tmp, StandardCopyOption.REPLACE_EXISTING);
+            UploadService.moveAtomically(tmp, target);
+        }
+        return target;
+    }
+
+    /** EXIF Orientation (1-8) of a JPEG from its APP1 segment; 1 when absent or unreadable. */
+    static int exifOrientation(Path jpeg) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(jpeg)))) {
+            if (in.readUnsignedShort() != 0xFFD8) return 1;
+            while (true) {
+                int marker = in.readUnsignedShort();
+                // EXIF comes before the scan; stop at SOS/EOI or anything that is not a marker
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || marker == 0xFFD9) return 1;
+                int length = in.readUnsignedShort() - 2;
+                if (length < 0) return 1;
+                if (marker != 0xFFE1) {
+                    in.skipNBytes(length);
+                    continue;
+                }
+                int orientation = orientationTag(in.readNBytes(length));
+                if (orientation > 0) return orientation; // otherwise XMP or another APP1, keep looking
+            }
+        } catch (IOException e) {
+            return 1;
+        }
+    }
+
+    /** Orientation from an APP1 payload: 0 if it is not EXIF, 1 if EXIF carries no valid tag. */
+    private static int orientationTag(byte[] app1) {
+        if (app1.length < 14 || !"Exif\0\0".equals(new String(app1, 0, 6, StandardCharsets.ISO_8859_1))) {
+            return 0;
+        }
+        ByteBuffer tiff = ByteBuffer.wrap(app1, 6, app1.length - 6).slice();
+        tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        int ifd = tiff.getInt(4);
+        if (ifd < 8 || ifd > tiff.limit() - 2) return 1;
+        int entries = tiff.getShort(ifd) & 0xFFFF;
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > tiff.limit()) break;
+            if ((tiff.getShort(entry) & 0xFFFF) == 0x0112) {
+                int value = tiff.getShort(entry + 8) & 0xFFFF;
+                return value >= 1 && value <= 8 ? value : 1;
+            }
+        }
+        return 1;
+    }
+
+    /** Rotate/flip decoded pixels so they display upright for an EXIF orientation. */
+    static BufferedImage orient(BufferedImage source, int orientation) {
+        if (orientation < 2 || orientation > 8) return source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        AffineTransform t = new AffineTransform();
+        switch (orientation) {
+            case 2 -> { t.translate(w, 0); t.scale(-1, 1); }                        // mirror
+            case 3 -> { t.translate(w, h); t.rotate(Math.PI); }                     // 180°
+            case 4 -> { t.translate(0, h); t.scale(1, -1); }                        // flip
+            case 5 -> { t.rotate(Math.PI / 2); t.scale(1, -1); }                    // transpose
+            case 6 -> { t.translate(h, 0); t.rotate(Math.PI / 2); }                 // 90° clockwise
+            case 7 -> { t.translate(h, w); t.rotate(Math.PI / 2); t.scale(-1, 1); } // transverse
+            default -> { t.translate(0, w); t.rotate(-Math.PI / 2); }               // 90° counter-clockwise
+        }
+        boolean swap = orientation >= 5;
+        int type = source.getType() != BufferedImage.TYPE_CUSTOM ? source.getType() : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage oriented = new BufferedImage(swap ? h : w, swap ? w : h, type);
+        Graphics2D g = oriented.createGraphics();
+        try {
+            g.drawImage(source, t, null);
+        } finally {
+            g.dispose();
+        }
+        return oriented;
+    }
+
+    /** Downscale by repeated halving (bilinear) to keep quality without an expensive filter. */
+    static BufferedImage scale(BufferedImage source, int targetWidth, boolean opaque) {
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        do {
+            w = Math.max(targetWidth, w / 2);
+            h = Math.max(targetHeight, h / 2);
+            BufferedImage next = new BufferedImage(w, h, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                if (opaque) {
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, w, h);
+                }
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (w != targetWidth || h != targetHeight);
+        return current;
+    }
+
+    private static void write(BufferedImage image, String ext, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersBySuffix(ext).next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if ("jpg".equals(ext)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static String defaultExtension(String filename) {
+        String ext = UploadService.extensionOf(filename).toLowerCase(Locale.ROOT);
+        return ".jpg".equals(ext) || ".jpeg".equals(ext) ? "jpg" : "png";
+    }
+}
@@ -1,13 +1,34 @@
 package com.example.webrtcchat.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.net.*;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -16,6 +37,11 @@ import java.util.regex.Pattern;
  * <p>
  * Security: blocks SSRF by validating URL scheme (http/https only),
  * resolving DNS and rejecting private/loopback/link-local IPs before connecting.
+ * <p>
+ * Fetches run on the async JDK HttpClient. Only the document head is read: the body is
+ * streamed until {@code </head>} or {@link #MAX_READ_BYTES}, then the download is cancelled.
+ * Results — including failures and blocked URLs — go into a bounded LRU with a TTL, and
+ * concurrent requests for the same URL share one fetch.
  */
 @Service
 public class LinkPreviewService {
@@ -26,23 +52,77 @@ public class LinkPreviewService {
     private static final Pattern OG_DESC = Pattern.compile("<meta[^>]+property=[\"']og:description[\"'][^>]+content=[\"']([^\"']+)[\"']", Pattern.CASE_INSENSITIVE);
     private static final Pattern OG_IMAGE = Pattern.compile("<meta[^>]+property=[\"']og:image[\"'][^>]+content=[\"']([^\"']+)[\"']", Pattern.CASE_INSENSITIVE);
     private static final Pattern TITLE_TAG = Pattern.compile("<title[^>]*>([^<]+)</title>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CHARSET = Pattern.compile("charset=\"?([\\w-]+)", Pattern.CASE_INSENSITIVE);
+    private static final byte[] HEAD_END = "</head>".getBytes(StandardCharsets.US_ASCII);
 
     /** Max cache entries to prevent unbounded memory growth. */
     static final int MAX_CACHE_SIZE = 1_000;
+    /** Never read more than this much of a page. */
+    static final int MAX_READ_BYTES = 64 * 1024;
+    private static final long PREVIEW_TTL_MS = TimeUnit.HOURS.toMillis(6);
+    private static final long NEGATIVE_TTL_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(3);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+    /** Deadline for reading the head once response headers are in; the request timeout stops at headers. */
+    private static final long READ_TIMEOUT_MS = 3_000;
+    /** Whole fetch, redirect included; kept under the blocking wait so the cache is always filled. */
+    private static final long FETCH_DEADLINE_MS = 5_500;
+    private static final long BLOCKING_WAIT_MS = 6_000;
 
-    // Bounded LRU cache — evicts oldest entries when full
-    private final Map<String, Map<String, String>> cache =
-            new ConcurrentHashMap<>() {
-                @Override
-                public Map<String, String> put(String key, Map<String, String> value) {
-                    if (size() >= MAX_CACHE_SIZE) {
-                        // Evict first (oldest) entry
-                        var first = keySet().iterator().next();
-                        remove(first);
-                    }
-                    return super.put(key, value);
-                }
-            };
+    private final int maxEntries;
+    private final long previewTtlMs;
+    private final long negativeTtlMs;
+    private final long readTimeoutMs;
+
+    // Bounded LRU (access order) of previews; a null preview is a cached failure
+    private final Map<String, CacheEntry> cache;
+    private final Map<String, CompletableFuture<Map<String, String>>> inFlight = new ConcurrentHashMap<>();
+    // DNS checks block, so they run on virtual threads together with the client's callbacks
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient httpClient;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Counter cacheCoalesced;
+
+    @Autowired
+    public LinkPreviewService(MeterRegistry meterRegistry) {
+        this(meterRegistry, MAX_CACHE_SIZE, PREVIEW_TTL_MS, NEGATIVE_TTL_MS, READ_TIMEOUT_MS);
+    }
+
+    LinkPreviewService(MeterRegistry meterRegistry, int maxEntries, long previewTtlMs, long negativeTtlMs,
+                       long readTimeoutMs) {
+        this.cacheHits = cacheCounter(meterRegistry, "hit");
+        this.cacheMisses = cacheCounter(meterRegistry, "miss");
+        this.cacheCoalesced = cacheCounter(meterRegistry, "coalesced");
+        this.maxEntries = maxEntries;
+        this.previewTtlMs = previewTtlMs;
+        this.negativeTtlMs = negativeTtlMs;
+        this.readTimeoutMs = readTimeoutMs;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > LinkPreviewService.this.maxEntries;
+            }
+        });
+        // Redirects are followed manually so every hop goes through the SSRF check
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(executor)
+                .build();
+    }
+
+    private static Counter cacheCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("linkpreview.cache")
+                .tag("result", result)
+                .description("Link preview lookups: served from cache, fetched, or joined to an in-flight fetch")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
 
     /**
      * Extract first URL from text.
@@ -106,84 +186,123 @@ public class LinkPreviewService {
     }
 
     /**
-     * Fetch OG metadata for a URL. Returns map with title, description, image, url.
-     * Blocks SSRF attempts targeting private/internal IPs.
+     * Fetch OG metadata for a URL, waiting for the result. Returns map with title,
+     * description, image, url — or null when the page has none, fails or is blocked.
      */
     public Map<String, String> fetchPreview(String url) {
-        if (url == null) return null;
-        if (cache.containsKey(url)) return cache.get(url);
-
-        // ── SSRF protection ──
-        if (!isSafeUrl(url)) return null;
-
-        HttpURLConnection conn = null;
         try {
-            conn = (HttpURLConnection) new URI(url).toURL().openConnection();
-            conn.setRequestMethod("GET");
-            conn.setRequestProperty("User-Agent", "BarsikChatBot/1.0");
-            conn.setConnectTimeout(3000);
-            conn.setReadTimeout(3000);
-            // Disable automatic redirects — a redirect could point to an internal IP
-            conn.setInstanceFollowRedirects(false);
-
-            int status = conn.getResponseCode();
-
-            // Handle redirects manually with SSRF check
-            if (status == HttpURLConnection.HTTP_MOVED_PERM
-                    || status == HttpURLConnection.HTTP_MOVED_TEMP
-                    || status == 307 || status == 308) {
-                String location = conn.getHeaderField("Location");
-                conn.disconnect();
-                if (location == null || !isSafeUrl(location)) {
-                    log.warn("SSRF blocked: redirect to unsafe location: {}", location);
-                    return null;
-                }
-                // Fetch the redirect target (single hop only)
-                return fetchPreviewDirect(location);
-            }
-
-            if (status != 200) return null;
-
-            return parseHtml(url, conn);
-
+            return fetchPreviewAsync(url).get(BLOCKING_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         } catch (Exception e) {
-            log.debug("Failed to fetch link preview for {}: {}", url, e.getMessage());
             return null;
-        } finally {
-            if (conn != null) conn.disconnect();
         }
     }
 
-    /** Fetch a URL directly (used for single-hop redirect, no further redirects allowed). */
-    private Map<String, String> fetchPreviewDirect(String url) {
-        HttpURLConnection conn = null;
-        try {
-            conn = (HttpURLConnection) new URI(url).toURL().openConnection();
-            conn.setRequestMethod("GET");
-            conn.setRequestProperty("User-Agent", "BarsikChatBot/1.0");
-            conn.setConnectTimeout(3000);
-            conn.setReadTimeout(3000);
-            conn.setInstanceFollowRedirects(false);
-
-            if (conn.getResponseCode() != 200) return null;
-            return parseHtml(url, conn);
+    /**
+     * Asynchronous variant of {@link #fetchPreview}; never completes exceptionally.
+     * Cached results (positive or negative) complete immediately, and callers asking for
+     * a URL that is already being fetched get the same future.
+     */
+    public CompletableFuture<Map<String, String>> fetchPreviewAsync(String url) {
+        if (url == null) return CompletableFuture.completedFuture(null);
+        CacheEntry cached = cache.get(url);
+        if (cached != null) {
+            if (cached.expiresAt > System.currentTimeMillis()) {
+                cacheHits.increment();
+                return CompletableFuture.completedFuture(cached.preview);
+            }
+            cache.remove(url, cached);
+        }
 
-        } catch (Exception e) {
-            log.debug("Failed to fetch redirect target {}: {}", url, e.getMessage());
-            return null;
-        } finally {
-            if (conn != null) conn.disconnect();
+        CompletableFuture<Map<String, String>> created = new CompletableFuture<>();
+        CompletableFuture<Map<String, String>> existing = inFlight.putIfAbsent(url, created);
+        if (existing != null) {
+            cacheCoalesced.increment();
+            return existing;
+        }
+        cached = cache.get(url); // a fetch may have finished since the first look
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+            cacheHits.increment();
+            inFlight.remove(url, created);
+            created.complete(cached.preview);
+            return created;
         }
+        cacheMisses.increment();
+
+        CompletableFuture.supplyAsync(() -> isSafeUrl(url), executor)
+                .thenCompose(safe -> safe ? fetch(url, true) : CompletableFuture.completedFuture(null))
+                .orTimeout(FETCH_DEADLINE_MS, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    log.debug("Failed to fetch link preview for {}: {}", url, e.toString());
+                    return null;
+                })
+                .whenComplete((preview, e) -> {
+                    try {
+                        long ttl = preview != null ? previewTtlMs : negativeTtlMs;
+                        cache.put(url, new CacheEntry(preview, System.currentTimeMillis() + ttl));
+                    } finally {
+                        // Never leave a dead future behind for later callers to join
+                        inFlight.remove(url, created);
+                        created.complete(preview);
+                    }
+                });
+        return created;
     }
 
-    /** Parse HTML from connection, extract OG tags. */
-    private Map<String, String> parseHtml(String url, HttpURLConnection conn) throws Exception {
-        String contentType = conn.getContentType();
-        if (contentType != null && !contentType.contains("text/html")) return null;
+    int cacheSize() {
+        return cache.size();
+    }
+
+    /** GET the page; a redirect is followed once, after re-checking the target. */
+    private CompletableFuture<Map<String, String>> fetch(String url, boolean allowRedirect) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("User-Agent", "BarsikChatBot/1.0")
+                .header("Accept", "text/html")
+                .GET()
+                .build();
+
+        return httpClient.sendAsync(request, this::headOnly).thenCompose(response -> {
+            int status = response.statusCode();
+            if (status == 301 || status == 302 || status == 303 || status == 307 || status == 308) {
+                String location = response.headers().firstValue("Location").orElse(null);
+                if (!allowRedirect || location == null) return CompletableFuture.completedFuture(null);
+                String target = URI.create(url).resolve(location).toString();
+                // Single hop only; the target must pass the SSRF check like the original URL
+                return CompletableFuture.supplyAsync(() -> isSafeUrl(target), executor)
+                        .thenCompose(safe -> {
+                            if (safe) return fetch(target, false);
+                            log.warn("SSRF blocked: redirect to unsafe location: {}", location);
+                            return CompletableFuture.completedFuture(null);
+                        });
+            }
+            String html = response.body();
+            return CompletableFuture.completedFuture(html != null ? parseHtml(url, html) : null);
+        });
+    }
 
-        byte[] bytes = conn.getInputStream().readNBytes(64_000); // Read first 64KB
-        String html = new String(bytes, "UTF-8");
+    /** Body handler: stream the head of 200 text/html responses, discard everything else. */
+    private HttpResponse.BodySubscriber<String> headOnly(HttpResponse.ResponseInfo info) {
+        String contentType = info.headers().firstValue("Content-Type").orElse("text/html");
+        if (info.statusCode() != 200 || !contentType.toLowerCase(Locale.ROOT).contains("text/html")) {
+            return new HeadSubscriber(null, readTimeoutMs); // redirects, errors, media: don't download the body
+        }
+        Charset charset = StandardCharsets.UTF_8;
+        Matcher m = CHARSET.matcher(contentType);
+        if (m.find()) {
+            try {
+                charset = Charset.forName(m.group(1));
+            } catch (IllegalArgumentException ignored) {
+                // unknown charset — fall back to UTF-8
+            }
+        }
+        return new HeadSubscriber(charset, readTimeoutMs);
+    }
 
+    /** Extract OG tags (falling back to {@code <title>}); null if nothing useful. */
+    static Map<String, String> parseHtml(String url, String html) {
         Map<String, String> result = new LinkedHashMap<>();
         result.put("url", url);
 
@@ -192,18 +311,119 @@ public class LinkPreviewService {
         if (m.find()) result.put("title", m.group(1));
         else {
             m = TITLE_TAG.matcher(html);
-            if (m.find()) result.put("title", m.group(1));
+            if (m.find()) result.put("title", m.group(1).trim());
         }
 
         m = OG_DESC.matcher(html);
         if (m.find()) result.put("description", m.group(1));
 
         m = OG_IMAGE.matcher(html);
-        if (m.find()) result.put("image", m.group(1));
+        if (m.find()) {
+            try {
+                result.put("image", URI.create(url).resolve(m.group(1).trim()).toString());
+            } catch (IllegalArgumentException e) {
+                result.put("image", m.group(1));
+            }
+        }
+
+        return result.size() > 1 ? result : null; // Only URL, no metadata
+    }
+
+    /**
+     * Collects response bytes until {@code </head>} or {@link #MAX_READ_BYTES}, then cancels
+     * the subscription so the rest of the page is never downloaded. With a null charset the
+     * body is skipped entirely and the result is null. A server that stalls mid-body fails the
+     * read after {@code readTimeoutMs} and the download is cancelled.
+     */
+    static final class HeadSubscriber implements HttpResponse.BodySubscriber<String> {
+        private final Charset charset;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private byte[] buffer = new byte[8 * 1024];
+        private int length;
+        private volatile Flow.Subscription subscription;
+
+        HeadSubscriber(Charset charset, long readTimeoutMs) {
+            this.charset = charset;
+            result.orTimeout(readTimeoutMs, TimeUnit.MILLISECONDS).whenComplete((body, e) -> {
+                Flow.Subscription s = subscription;
+                if (e != null && s != null) s.cancel();
+            });
+        }
+
+        @Override
+        public CompletionStage<String> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (result.isDone()) { // timed out before the body started
+                subscription.cancel();
+                return;
+            }
+            if (charset == null) {
+                subscription.cancel();
+                result.complete(null);
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (result.isDone()) return;
+            int searchFrom = Math.max(0, length - HEAD_END.length + 1);
+            for (ByteBuffer item : items) {
+                int n = Math.min(item.remaining(), MAX_READ_BYTES - length);
+                if (length + n > buffer.length) {
+                    buffer = Arrays.copyOf(buffer, Math.min(MAX_READ_BYTES, Math.max(length + n, buffer.length * 2)));
+                }
+                item.get(buffer, length, n);
+                length += n;
+            }
+            if (length >= MAX_READ_BYTES || containsHeadEnd(buffer, searchFrom, length)) {
+                subscription.cancel();
+                finish();
+            } else {
+                subscription.request(1);
+            }
+        }
 
-        if (result.size() <= 1) return null; // Only URL, no metadata
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
 
-        cache.put(url, result);
-        return result;
+        @Override
+        public void onComplete() {
+            finish();
+        }
+
+        private void finish() {
+            result.complete(new String(buffer, 0, length, charset));
+        }
+
+        /** Case-insensitive search for {@code </head>} in {@code bytes[from, to)}. */
+        static boolean containsHeadEnd(byte[] bytes, int from, int to) {
+            outer:
+            for (int i = from; i <= to - HEAD_END.length; i++) {
+                for (int j = 0; j < HEAD_END.length; j++) {
+                    if (Character.toLowerCase(bytes[i + j]) != HEAD_END[j]) continue outer;
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class CacheEntry {
+        final Map<String, String> preview;
+        final long expiresAt;
+
+        CacheEntry(Map<String, String> preview, long expiresAt) {
+            this.preview = preview;
+            this.expiresAt = expiresAt;
+        }
     }
 }
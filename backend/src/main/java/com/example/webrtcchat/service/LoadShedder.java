@@ -0,0 +1,197 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.config.DbBulkhead;
+import com.example.webrtcchat.types.MessageType;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+
+/**
+ * Admission control for inbound WebSocket frames under overload.
+ * <p>
+ * Frames fall into four priority classes. The overload level is derived from three signals —
+ * the inbound mailbox backlog, threads waiting for a database connection and sends in progress
+ * on outbound sockets — and is re-evaluated at most every {@code EVAL_INTERVAL_MS}. Database
+ * waiters are counted where they actually park: in the realtime lane of the {@link DbBulkhead},
+ * whose permits keep Hikari itself from queueing, or in Hikari when the bulkhead is off. Each level
+ * sheds one more class, lowest first: typing/presence is sampled, then dropped together with
+ * reactions/edits, and finally chat is refused. Signaling is always admitted, so calls still
+ * connect while the server is busy. The level steps down one notch per interval to avoid flapping.
+ */
+@Service
+public class LoadShedder {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadShedder.class);
+    private static final long EVAL_INTERVAL_MS = 100;
+
+    /** Priority classes, highest first. Bounded, so safe as a metric tag. */
+    public enum Priority { SIGNALING, CHAT, REACTIONS_EDITS, TYPING_PRESENCE }
+
+    public enum Level { NORMAL, ELEVATED, HIGH, CRITICAL }
+
+    private final boolean enabled;
+    private final double[] backlogThresholds;
+    private final int[] dbThresholds;
+    private final int[] outboundThresholds;
+    private final long typingSampleMs;
+    private final ObjectProvider<DataSource> dataSource;
+    private final ObjectProvider<DbBulkhead> bulkhead;
+    private final Map<Priority, Counter> shed = new EnumMap<>(Priority.class);
+    private final Map<String, Long> lastTypingAdmitted = new ConcurrentHashMap<>();
+
+    private volatile IntSupplier backlog = () -> 0;
+    private volatile int backlogCapacity = 1;
+    private volatile IntSupplier outbound = () -> 0;
+    private volatile Level level = Level.NORMAL;
+    private volatile long lastEval;
+
+    public LoadShedder(MeterRegistry meterRegistry,
+                       ObjectProvider<DataSource> dataSource,
+                       ObjectProvider<DbBulkhead> bulkhead,
+                       @Value("${ws.shedding.enabled:true}") boolean enabled,
+                       @Value("${ws.shedding.backlog-ratio:0.25,0.5,0.8}") double[] backlogThresholds,
+                       @Value("${ws.shedding.db-pending:2,5,10}") int[] dbThresholds,
+                       @Value("${ws.shedding.outbound-pending:50,200,500}") int[] outboundThresholds,
+                       @Value("${ws.shedding.typing-sample-ms:3000}") long typingSampleMs) {
+        if (backlogThresholds.length != 3 || dbThresholds.length != 3 || outboundThresholds.length != 3) {
+            throw new IllegalArgumentException("ws.shedding thresholds need three values (elevated, high, critical)");
+        }
+        this.enabled = enabled;
+        this.backlogThresholds = backlogThresholds;
+        this.dbThresholds = dbThresholds;
+        this.outboundThresholds = outboundThresholds;
+        this.typingSampleMs = typingSampleMs;
+        this.dataSource = dataSource;
+        this.bulkhead = bulkhead;
+        for (Priority p : Priority.values()) {
+            shed.put(p, Counter.builder("ws.frames.shed")
+                    .tag("priority", p.name().toLowerCase(Locale.ROOT))
+                    .description("Inbound WebSocket frames dropped by load shedding")
+                    .register(meterRegistry));
+        }
+        Gauge.builder("ws.overload.level", this, s -> s.level.ordinal())
+                .description("Current overload level (0 normal .. 3 critical)")
+                .register(meterRegistry);
+    }
+
+    /** Inbound backlog signal: frames queued and the budget they are measured against. */
+    public void watchBacklog(IntSupplier queued, int capacity) {
+        this.backlog = queued;
+        this.backlogCapacity = Math.max(1, capacity);
+    }
+
+    /** Outbound signal: sends currently blocked on or writing to a socket. */
+    public void watchOutbound(IntSupplier pending) {
+        this.outbound = pending;
+    }
+
+    public static Priority priorityOf(MessageType type) {
+        if (type == null) return Priority.CHAT;
+        return switch (type) {
+            case CALL_OFFER, CALL_ANSWER, CALL_REJECT, CALL_END, CALL_BUSY, CALL_REOFFER, CALL_REANSWER,
+                 ICE_CANDIDATE, CONF_JOIN, CONF_LEAVE, CONF_PEERS, CONF_OFFER, CONF_ANSWER, CONF_ICE,
+                 CONF_INVITE, GROUP_KEY, E2E_INVITE, E2E_ACCEPT, E2E_DECLINE -> Priority.SIGNALING;
+            case REACTION, REACTION_REMOVE, EDIT, POLL_VOTE, READ_RECEIPT, PIN, UNPIN -> Priority.REACTIONS_EDITS;
+            case TYPING, STATUS_UPDATE, AVATAR_UPDATE, STORY_POSTED -> Priority.TYPING_PRESENCE;
+            default -> Priority.CHAT;
+        };
+    }
+
+    /** Whether a frame of {@code priority} from {@code user} should be processed now. */
+    public boolean admit(Priority priority, String user) {
+        if (!enabled || priority == Priority.SIGNALING) return true;
+        Level current = level();
+        boolean admitted = switch (priority) {
+            case CHAT -> current != Level.CRITICAL;
+            case REACTIONS_EDITS -> current.compareTo(Level.HIGH) < 0;
+            case TYPING_PRESENCE -> current == Level.NORMAL
+                    || (current == Level.ELEVATED && sampleTyping(user));
+            default -> true;
+        };
+        if (!admitted) shed.get(priority).increment();
+        return admitted;
+    }
+
+    public Level level() {
+        long now = System.currentTimeMillis();
+        if (now - lastEval >= EVAL_INTERVAL_MS) {
+            lastEval = now;
+            Level measured = measure();
+            Level previous = level;
+            // Rise immediately, recover one step at a time
+            Level next = measured.compareTo(previous) >= 0 ? measured : Level.values()[previous.ordinal() - 1];
+            if (next != previous) {
+                log.info("WebSocket overload level {} -> {}", previous, next);
+                if (next == Level.NORMAL) lastTypingAdmitted.clear();
+            }
+            level = next;
+        }
+        return level;
+    }
+
+    Level measure() {
+        double backlogRatio = (double) backlog.getAsInt() / backlogCapacity;
+        int levelIndex = Math.max(step(backlogRatio, backlogThresholds),
+                Math.max(step(dbPending(), dbThresholds), step(outbound.getAsInt(), outboundThresholds)));
+        return Level.values()[levelIndex];
+    }
+
+    private boolean sampleTyping(String user) {
+        long now = System.currentTimeMillis();
+        Long last = lastTypingAdmitted.get(user);
+        if (last != null && now - last < typingSampleMs) return false;
+        lastTypingAdmitted.put(user, now);
+        return true;
+    }
+
+    /** Frame handlers waiting for a connection: queued on the realtime lane, or on Hikari past it. */
+    private int dbPending() {
+        DbBulkhead lanes = bulkhead.getIfAvailable();
+        int queued = lanes != null ? lanes.queued(DbBulkhead.Lane.REALTIME) : 0;
+        return Math.max(queued, hikariPending());
+    }
+
+    private int hikariPending() {
+        DataSource ds = dataSource.getIfAvailable();
+        HikariDataSource hikari = null;
+        if (ds instanceof HikariDataSource h) {
+            hikari = h;
+        } else if (ds != null) {
+            // Behind the replica router the primary pool is reachable through unwrap()
+            try {
+                if (ds.isWrapperFor(HikariDataSource.class)) hikari = ds.unwrap(HikariDataSource.class);
+            } catch (SQLException e) {
+                return 0;
+            }
+        }
+        HikariPoolMXBean pool = hikari != null ? hikari.getHikariPoolMXBean() : null;
+        return pool != null ? pool.getThreadsAwaitingConnection() : 0;
+    }
+
+    private static int step(double value, double[] thresholds) {
+        int step = 0;
+        while (step < thresholds.length && value >= thresholds[step]) step++;
+        return step;
+    }
+
+    private static int step(int value, int[] thresholds) {
+        int step = 0;
+        while (step < thresholds.length && value >= thresholds[step]) step++;
+        return step;
+    }
+}
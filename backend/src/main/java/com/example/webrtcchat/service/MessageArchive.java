@@ -0,0 +1,112 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.dto.MessageDto;
+import com.example.webrtcchat.entity.MessageArchiveSegmentEntity;
+import com.example.webrtcchat.repository.MessageArchiveSegmentRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cold tier of the message history: immutable per-room segments of gzip-compressed JSON.
+ * <p>
+ * A room's archive always holds its oldest messages and the hot {@code messages} table the
+ * rest, so history is one sequence: newest first from the table, then on into the segments
+ * (see {@link ChatService#getHistory(String, int, int)}). Reads walk the room's segment
+ * headers to skip whole segments and decompress only the ones a page touches. Archived
+ * messages are read-only: edits, deletes and search see the hot table only.
+ */
+@Service
+public class MessageArchive {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<List<MessageDto>> SEGMENT_TYPE = new TypeReference<>() {};
+
+    private final MessageArchiveSegmentRepository segmentRepository;
+
+    public MessageArchive(MessageArchiveSegmentRepository segmentRepository) {
+        this.segmentRepository = segmentRepository;
+    }
+
+    /** Store {@code messages} (oldest first, all of {@code roomId}) as one new segment. */
+    @Transactional
+    public void append(String roomId, List<MessageDto> messages) {
+        if (messages.isEmpty()) return;
+        Set<String> uploadUrls = new LinkedHashSet<>();
+        for (MessageDto m : messages) {
+            if (m.getFileUrl() != null) uploadUrls.add(m.getFileUrl());
+            if (m.getThumbnailUrl() != null) uploadUrls.add(m.getThumbnailUrl());
+        }
+        segmentRepository.save(new MessageArchiveSegmentEntity(roomId,
+                messages.get(0).getTimestamp(), messages.get(messages.size() - 1).getTimestamp(),
+                messages.size(), encode(messages), uploadUrls));
+    }
+
+    /**
+     * Up to {@code limit} archived messages of a room, newest first, skipping the newest
+     * {@code offset} of them.
+     */
+    @Transactional(readOnly = true)
+    public List<MessageDto> read(String roomId, long offset, int limit) {
+        List<MessageDto> result = new ArrayList<>(Math.max(limit, 0));
+        if (limit <= 0) return result;
+        for (Object[] header : segmentRepository.findHeadersByRoomId(roomId)) {
+            int count = (Integer) header[1];
+            if (offset >= count) {
+                offset -= count;
+                continue;
+            }
+            List<MessageDto> segment = decode(segmentRepository.findPayloadById((Long) header[0]));
+            for (int i = segment.size() - 1 - (int) offset; i >= 0 && result.size() < limit; i--) {
+                result.add(segment.get(i));
+            }
+            offset = 0;
+            if (result.size() >= limit) break;
+        }
+        return result;
+    }
+
+    @Transactional(readOnly = true)
+    public long count(String roomId) {
+        return segmentRepository.countMessagesByRoomId(roomId);
+    }
+
+    @Transactional
+    public void deleteRoom(String roomId) {
+        segmentRepository.deleteFilesByRoomId(roomId);
+        segmentRepository.deleteSegmentsByRoomId(roomId);
+    }
+
+    static byte[] encode(List<MessageDto> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            MAPPER.writeValue(out, messages);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<MessageDto> decode(byte[] payload) {
+        if (payload == null) return List.of();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return MAPPER.readValue(in, SEGMENT_TYPE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.repository.MessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background move of old message history into the {@link MessageArchive}.
+ * <p>
+ * Messages older than {@code messages.archive.after-days} leave the hot table in segments of
+ * {@code segment-size}, oldest first, one transaction per segment
+ * ({@link ChatService#archiveOldest}). A run is capped at {@code max-segments-per-run} so it
+ * never holds the database for long; the rest follows on the next run. A room whose oldest
+ * qualifying message is pinned or disappearing cannot move further; such rooms are logged
+ * and counted in {@code messages.archive.blocked.rooms}.
+ */
+@Service
+public class MessageArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageArchiver.class);
+
+    private final MessageRepository messageRepository;
+    private final ChatService chatService;
+    private final boolean enabled;
+    private final Duration archiveAfter;
+    private final int segmentSize;
+    private final int maxSegmentsPerRun;
+    private final Counter archivedMessages;
+    private final AtomicInteger blockedRooms = new AtomicInteger();
+
+    public MessageArchiver(MessageRepository messageRepository,
+                           ChatService chatService,
+                           MeterRegistry meterRegistry,
+                           @Value("${messages.archive.enabled:true}") boolean enabled,
+                           @Value("${messages.archive.after-days:180}") int afterDays,
+                           @Value("${messages.archive.segment-size:500}") int segmentSize,
+                           @Value("${messages.archive.max-segments-per-run:200}") int maxSegmentsPerRun) {
+        this.messageRepository = messageRepository;
+        this.chatService = chatService;
+        this.enabled = enabled;
+        this.archiveAfter = Duration.ofDays(afterDays);
+        this.segmentSize = segmentSize;
+        this.maxSegmentsPerRun = maxSegmentsPerRun;
+        this.archivedMessages = Counter.builder("messages.archived")
+                .description("Messages moved from the hot table into archive segments").register(meterRegistry);
+        Gauge.builder("messages.archive.blocked.rooms", blockedRooms, AtomicInteger::get)
+                .description("Rooms held back by a pinned or disappearing message in the last run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${messages.archive.initial-delay-ms:600000}",
+               fixedDelayString = "${messages.archive.interval-ms:3600000}")
+    public void archiveIfEnabled() {
+        if (!enabled) return;
+        try {
+            archive(Instant.now());
+        } catch (RuntimeException e) {
+            log.warn("Message archiving failed", e);
+        }
+    }
+
+    /** @return number of segments written */
+    public int archive(Instant now) {
+        Instant cutoff = now.minus(archiveAfter);
+        int segments = 0;
+        int blocked = 0;
+        for (String roomId : messageRepository.findRoomIdsWithMessagesBefore(cutoff)) {
+            while (segments < maxSegmentsPerRun) {
+                int moved = chatService.archiveOldest(roomId, cutoff, segmentSize);
+                if (moved == ChatService.ARCHIVE_BLOCKED) {
+                    blocked++;
+                    log.debug("Archiving of room {} is held at a pinned or disappearing message", roomId);
+                    break;
+                }
+                if (moved == 0) break;
+                archivedMessages.increment(moved);
+                segments++;
+            }
+            if (segments >= maxSegmentsPerRun) break;
+        }
+        blockedRooms.set(blocked);
+        if (segments > 0) log.info("Archived {} segment(s) of messages older than {}", segments, cutoff);
+        if (blocked > 0) log.info("{} room(s) held back from archiving by a pinned or disappearing message", blocked);
+        return segments;
+    }
+}
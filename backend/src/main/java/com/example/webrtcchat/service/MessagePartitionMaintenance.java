@@ -0,0 +1,97 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.repository.MessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Keeps the monthly partitions of {@code messages} (V30) ahead of time and, with a retention
+ * period configured, detaches months that fell out of it.
+ * <p>
+ * Creating a partition takes a short lock on the parent, so it is done months in advance
+ * rather than at the first insert of a month. Detached partitions stay in the database as
+ * plain tables, to be archived or dropped by the operator. Only runs on PostgreSQL.
+ */
+@Service
+public class MessagePartitionMaintenance {
+
+    private static final Logger log = LoggerFactory.getLogger(MessagePartitionMaintenance.class);
+
+    private final MessageRepository messageRepository;
+    private final ObjectProvider<DataSource> dataSource;
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final int retentionMonths;
+
+    private volatile Boolean postgres;
+
+    public MessagePartitionMaintenance(MessageRepository messageRepository,
+                                       ObjectProvider<DataSource> dataSource,
+                                       @Value("${messages.partitions.enabled:true}") boolean enabled,
+                                       @Value("${messages.partitions.months-ahead:3}") int monthsAhead,
+                                       @Value("${messages.partitions.retention-months:0}") int retentionMonths) {
+        this.messageRepository = messageRepository;
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+
+    @Scheduled(initialDelayString = "${messages.partitions.initial-delay-ms:60000}",
+               fixedDelayString = "${messages.partitions.interval-ms:21600000}")
+    public void maintainIfEnabled() {
+        if (!enabled || !isPostgres()) return;
+        try {
+            maintain(Instant.now());
+        } catch (RuntimeException e) {
+            log.warn("Message partition maintenance failed", e);
+        }
+    }
+
+    /** Create the partitions up to {@code monthsAhead} and apply retention relative to {@code now}. */
+    void maintain(Instant now) {
+        int created = messageRepository.ensurePartitions(monthsAhead);
+        if (created > 0) log.info("Created {} message partition(s)", created);
+
+        if (retentionMonths > 0) {
+            Instant cutoff = retentionCutoff(now, retentionMonths);
+            List<String> detached = messageRepository.detachPartitionsBefore(cutoff);
+            if (!detached.isEmpty()) {
+                log.info("Detached message partitions older than {}: {}", cutoff, detached);
+            }
+        }
+    }
+
+    /** Start of the oldest month to keep: the current month plus {@code months} full months before it. */
+    static Instant retentionCutoff(Instant now, int months) {
+        return LocalDate.ofInstant(now, ZoneOffset.UTC).withDayOfMonth(1).minusMonths(months)
+                .atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private boolean isPostgres() {
+        Boolean known = postgres;
+        if (known != null) return known;
+        DataSource ds = dataSource.getIfAvailable();
+        if (ds == null) return false;
+        try (Connection c = ds.getConnection()) {
+            known = "PostgreSQL".equals(c.getMetaData().getDatabaseProductName());
+        } catch (SQLException e) {
+            log.warn("Cannot determine the database for partition maintenance", e);
+            return false;
+        }
+        postgres = known;
+        return known;
+    }
+}
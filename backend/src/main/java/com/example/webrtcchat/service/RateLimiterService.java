@@ -0,0 +1,208 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.types.MessageType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Per-user token buckets for WebSocket frames and authenticated REST calls.
+ * <p>
+ * Each {@link RateClass} has its own bucket per user, so a burst of typing events never eats
+ * into the chat budget or drops heartbeats (a client missing PONGs reconnects), and ICE candidate storms during call setup are not throttled by chat
+ * limits. Buckets live in a fixed-size open-addressing table (one per class): a username slot
+ * and a single {@code long} of state, updated with CAS — no locks, no per-call allocation, and
+ * refill is computed lazily from the elapsed time on the next acquire. A slot whose bucket has
+ * fully refilled is indistinguishable from an empty one, so inserts may take it over; the table
+ * therefore never needs a sweep. If a probe window is saturated the request is let through and
+ * counted — the limiter must never lock users out because of its own capacity.
+ */
+@Service
+public class RateLimiterService {
+
+    /** Limit classes. Bounded, so safe as a metric tag. */
+    public enum RateClass { CHAT, TYPING, HEARTBEAT, SIGNALING, REACTIONS, REST }
+
+    /** Bucket state: ms since start in the high 40 bits, token deficit in milli-tokens in the low 24. */
+    private static final int DEFICIT_BITS = 24;
+    private static final long DEFICIT_MASK = (1L << DEFICIT_BITS) - 1;
+    private static final long MAX_BURST = DEFICIT_MASK / 1000;
+    private static final long TOKEN = 1000;
+    private static final int MAX_PROBES = 16;
+
+    private final boolean enabled;
+    private final long startNanos = System.nanoTime();
+    private final Map<RateClass, BucketTable> tables = new EnumMap<>(RateClass.class);
+    private final Map<RateClass, Counter> rejected = new EnumMap<>(RateClass.class);
+    private final Counter saturated;
+
+    public RateLimiterService(MeterRegistry meterRegistry,
+                              @Value("${rate-limit.user.enabled:true}") boolean enabled,
+                              @Value("${rate-limit.user.table-size:16384}") int tableSize,
+                              @Value("${rate-limit.user.chat:5,20}") int[] chat,
+                              @Value("${rate-limit.user.typing:5,10}") int[] typing,
+                              @Value("${rate-limit.user.signaling:50,200}") int[] signaling,
+                              @Value("${rate-limit.user.reactions:5,20}") int[] reactions,
+                              @Value("${rate-limit.user.rest:20,100}") int[] rest,
+                              @Value("${rate-limit.user.heartbeat:1,5}") int[] heartbeat) {
+        this.enabled = enabled;
+        Map<RateClass, int[]> limits = Map.of(RateClass.CHAT, chat, RateClass.TYPING, typing,
+                RateClass.HEARTBEAT, heartbeat, RateClass.SIGNALING, signaling,
+                RateClass.REACTIONS, reactions, RateClass.REST, rest);
+        for (RateClass rc : RateClass.values()) {
+            int[] limit = limits.get(rc);
+            if (limit.length != 2 || limit[0] <= 0 || limit[1] <= 0 || limit[1] > MAX_BURST) {
+                throw new IllegalArgumentException("rate-limit.user." + rc.name().toLowerCase(Locale.ROOT)
+                        + " must be '<tokens per second>,<burst>' with burst <= " + MAX_BURST);
+            }
+            tables.put(rc, new BucketTable(tableSize, limit[0], limit[1]));
+            rejected.put(rc, Counter.builder("ratelimit.rejected")
+                    .tag("class", rc.name().toLowerCase(Locale.ROOT))
+                    .description("Requests and frames rejected by the per-user rate limiter")
+                    .register(meterRegistry));
+        }
+        this.saturated = Counter.builder("ratelimit.table.saturated")
+                .description("Requests let through because the bucket table had no free slot")
+                .register(meterRegistry);
+    }
+
+    /** Take one token from {@code user}'s bucket for {@code rateClass}; false means over the limit. */
+    public boolean tryAcquire(String user, RateClass rateClass) {
+        if (!enabled || user == null) return true;
+        long now = (System.nanoTime() - startNanos) / 1_000_000;
+        int result = tables.get(rateClass).tryAcquire(user, now);
+        if (result == BucketTable.SATURATED) {
+            saturated.increment();
+            return true;
+        }
+        if (result == BucketTable.REJECTED) {
+            rejected.get(rateClass).increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Classify a raw WebSocket frame by its {@code "type"} value without parsing the JSON,
+     * so over-limit frames cost a substring scan and nothing else. The first {@code "type"}
+     * found may not be the one Jackson keeps (duplicate or nested keys), so the handler checks
+     * {@link #classOf} of the parsed type and charges that bucket too when they differ.
+     */
+    public static RateClass classify(String payload) {
+        int key = payload.indexOf("\"type\"");
+        if (key < 0) return RateClass.CHAT;
+        int i = key + 6;
+        int len = payload.length();
+        while (i < len && (payload.charAt(i) == ' ' || payload.charAt(i) == ':')) i++;
+        if (i >= len || payload.charAt(i) != '"') return RateClass.CHAT;
+        int start = i + 1;
+        if (payload.startsWith("CALL_", start) || payload.startsWith("CONF_", start)
+                || payload.startsWith("ICE_CANDIDATE\"", start) || payload.startsWith("GROUP_KEY\"", start)
+                || payload.startsWith("E2E_", start)) {
+            return RateClass.SIGNALING;
+        }
+        if (payload.startsWith("TYPING\"", start)) {
+            return RateClass.TYPING;
+        }
+        if (payload.startsWith("PING\"", start)) {
+            return RateClass.HEARTBEAT;
+        }
+        if (payload.startsWith("REACTION", start) || payload.startsWith("POLL_VOTE\"", start)) {
+            return RateClass.REACTIONS;
+        }
+        return RateClass.CHAT;
+    }
+
+    /** Class of a parsed frame type; the same rules as {@link #classify}. */
+    public static RateClass classOf(MessageType type) {
+        if (type == null) return RateClass.CHAT;
+        String name = type.name();
+        if (name.startsWith("CALL_") || name.startsWith("CONF_") || type == MessageType.ICE_CANDIDATE
+                || type == MessageType.GROUP_KEY || name.startsWith("E2E_")) {
+            return RateClass.SIGNALING;
+        }
+        if (type == MessageType.TYPING) return RateClass.TYPING;
+        if (type == MessageType.PING) return RateClass.HEARTBEAT;
+        if (name.startsWith("REACTION") || type == MessageType.POLL_VOTE) return RateClass.REACTIONS;
+        return RateClass.CHAT;
+    }
+
+    /** Fixed-size, lock-free open-addressing table of token buckets for one class. */
+    static final class BucketTable {
+        static final int ALLOWED = 0;
+        static final int REJECTED = 1;
+        static final int SATURATED = 2;
+
+        private final AtomicReferenceArray<String> keys;
+        private final AtomicLongArray states;
+        private final int mask;
+        private final long refillPerMs;   // milli-tokens per ms == tokens per second
+        private final long capacity;      // milli-tokens
+
+        BucketTable(int size, int tokensPerSecond, int burst) {
+            int slots = Integer.highestOneBit(Math.max(size, MAX_PROBES) - 1) << 1;
+            this.keys = new AtomicReferenceArray<>(slots);
+            this.states = new AtomicLongArray(slots);
+            this.mask = slots - 1;
+            this.refillPerMs = tokensPerSecond;
+            this.capacity = burst * TOKEN;
+        }
+
+        int tryAcquire(String user, long now) {
+            int h = user.hashCode();
+            h ^= (h >>> 16);
+            while (true) {
+                int slot = findSlot(user, h, now);
+                if (slot < 0) return SATURATED;
+                boolean ok = take(slot, now);
+                // A concurrent insert may have taken the slot over between lookup and CAS; the
+                // token it consumed belonged to a full bucket, so just retry under our own key.
+                if (user.equals(keys.get(slot))) return ok ? ALLOWED : REJECTED;
+            }
+        }
+
+        /** Slot holding {@code user}, claiming an empty or fully refilled one if absent; -1 if none. */
+        private int findSlot(String user, int h, long now) {
+            int reusable = -1;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int i = (h + probe) & mask;
+                String k = keys.get(i);
+                if (k == null) {
+                    if (keys.compareAndSet(i, null, user)) return i;
+                    k = keys.get(i);
+                }
+                if (user.equals(k)) return i;
+                if (reusable < 0 && deficit(states.get(i), now) == 0) reusable = i;
+            }
+            // Chain is full: take over an idle bucket (a brief duplicate only loosens the limit)
+            if (reusable >= 0) {
+                String k = keys.get(reusable);
+                if (user.equals(k) || keys.compareAndSet(reusable, k, user)) return reusable;
+            }
+            return -1;
+        }
+
+        private boolean take(int slot, long now) {
+            while (true) {
+                long state = states.get(slot);
+                long deficit = deficit(state, now);
+                if (deficit + TOKEN > capacity) return false;
+                if (states.compareAndSet(slot, state, (now << DEFICIT_BITS) | (deficit + TOKEN))) return true;
+            }
+        }
+
+        private long deficit(long state, long now) {
+            long elapsed = now - (state >>> DEFICIT_BITS);
+            long deficit = state & DEFICIT_MASK;
+            if (elapsed <= 0) return deficit;
+            return elapsed >= deficit / refillPerMs + 1 ? 0 : Math.max(0, deficit - elapsed * refillPerMs);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.webrtcchat.service;
 
 import com.example.webrtcchat.entity.ReactionEntity;
+import com.example.webrtcchat.repository.ReactionCountRepository;
 import com.example.webrtcchat.repository.ReactionRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -14,35 +15,37 @@ import java.util.stream.Collectors;
 public class ReactionService {
 
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int MAX_EMOJI_LENGTH = 10;
     private final ReactionRepository reactionRepository;
+    private final ReactionCountRepository reactionCountRepository;
 
-    public ReactionService(ReactionRepository reactionRepository) {
+    public ReactionService(ReactionRepository reactionRepository, ReactionCountRepository reactionCountRepository) {
         this.reactionRepository = reactionRepository;
+        this.reactionCountRepository = reactionCountRepository;
     }
 
+    /**
+     * Add a reaction and bump the message's aggregate in one idempotent statement.
+     * @return true if added, false if it already existed or the emoji is not acceptable
+     */
     @Transactional
-    public ReactionEntity addReaction(String messageId, String roomId, String username, String emoji) {
-        // Check if already exists
-        Optional<ReactionEntity> existing = reactionRepository.findByMessageIdAndUsernameAndEmoji(messageId, username, emoji);
-        if (existing.isPresent()) return existing.get();
-
-        ReactionEntity entity = new ReactionEntity();
-        entity.setMessageId(messageId);
-        entity.setRoomId(roomId);
-        entity.setUsername(username);
-        entity.setEmoji(emoji);
-        entity.setCreatedAt(LocalDateTime.now().format(FORMATTER));
-        return reactionRepository.save(entity);
+    public boolean addReaction(String messageId, String roomId, String username, String emoji) {
+        if (!isValidEmoji(emoji)) return false;
+        return reactionCountRepository.addReaction(messageId, roomId, username, emoji,
+                LocalDateTime.now().format(FORMATTER)) > 0;
     }
 
     @Transactional
     public boolean removeReaction(String messageId, String username, String emoji) {
-        Optional<ReactionEntity> existing = reactionRepository.findByMessageIdAndUsernameAndEmoji(messageId, username, emoji);
-        if (existing.isPresent()) {
-            reactionRepository.delete(existing.get());
-            return true;
-        }
-        return false;
+        if (reactionCountRepository.removeReaction(messageId, username, emoji) == 0) return false;
+        reactionCountRepository.deleteEmpty(messageId, emoji);
+        return true;
+    }
+
+    /** Fits the column and carries no control characters (they separate the history reaction summary). */
+    static boolean isValidEmoji(String emoji) {
+        return emoji != null && !emoji.isEmpty() && emoji.length() <= MAX_EMOJI_LENGTH
+                && emoji.chars().noneMatch(Character::isISOControl);
     }
 
     @Transactional(readOnly = true)
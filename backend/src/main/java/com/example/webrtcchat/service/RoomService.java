@@ -8,15 +8,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.annotation.PostConstruct;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
 @Service
 public class RoomService {
 
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private final RoomRepository roomRepository;
 
     public RoomService(RoomRepository roomRepository) {
@@ -132,8 +130,8 @@ public class RoomService {
         return u1.compareTo(u2) < 0 ? "pm_" + u1 + "_" + u2 : "pm_" + u2 + "_" + u1;
     }
 
-    private String now() {
-        return LocalDateTime.now().format(FORMATTER);
+    private Instant now() {
+        return Instant.now();
     }
 
     private RoomDto toDto(RoomEntity entity) {
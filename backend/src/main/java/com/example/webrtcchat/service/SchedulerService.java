@@ -1,5 +1,6 @@
 package com.example.webrtcchat.service;
 
+import com.example.webrtcchat.config.DbBulkhead;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -26,10 +27,10 @@ public class SchedulerService {
             long delayMs = Duration.between(LocalDateTime.now(), target).toMillis();
             if (delayMs < 0) delayMs = 0;
 
-            ScheduledFuture<?> future = executor.schedule(() -> {
+            ScheduledFuture<?> future = executor.schedule(() -> DbBulkhead.runIn(DbBulkhead.Lane.BACKGROUND, () -> {
                 task.run();
                 scheduled.remove(messageId);
-            }, delayMs, TimeUnit.MILLISECONDS);
+            }), delayMs, TimeUnit.MILLISECONDS);
 
             scheduled.put(messageId, future);
             log.info("Scheduled message {} for {} (delay={}ms)", messageId, scheduledAt, delayMs);
@@ -1,48 +1,54 @@
 package com.example.webrtcchat.service;
 
 import com.example.webrtcchat.dto.StoryDto;
+import com.example.webrtcchat.dto.Timestamps;
 import com.example.webrtcchat.entity.StoryEntity;
-import com.example.webrtcchat.entity.StoryViewEntity;
 import com.example.webrtcchat.repository.StoryRepository;
 import com.example.webrtcchat.repository.StoryViewRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
 public class StoryService {
 
     private static final Logger log = LoggerFactory.getLogger(StoryService.class);
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final int MAX_STORIES_PER_USER = 5;
     private static final int STORY_LIFETIME_HOURS = 24;
 
     private final StoryRepository storyRepository;
     private final StoryViewRepository storyViewRepository;
-    private final Path uploadDir;
+    private final UploadRefService uploadRefService;
+
+    // Stories feed cache: active stories snapshot + per-viewer seen bitmaps.
+    // null = invalidated, rebuilt lazily on the next read.
+    private volatile FeedSnapshot feed;
+
+    // Live view counts (authoritative in memory) and deltas not yet flushed to stories.view_count
+    private final Map<String, AtomicLong> viewCounts = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> pendingViewDeltas = new ConcurrentHashMap<>();
 
     public StoryService(StoryRepository storyRepository,
                         StoryViewRepository storyViewRepository,
-                        @Value("${upload.dir:uploads}") String uploadDirPath) {
+                        UploadRefService uploadRefService) {
         this.storyRepository = storyRepository;
         this.storyViewRepository = storyViewRepository;
-        this.uploadDir = Paths.get(uploadDirPath).toAbsolutePath().normalize();
+        this.uploadRefService = uploadRefService;
     }
 
-    private String now() {
-        return LocalDateTime.now().format(FORMATTER);
+    private Instant now() {
+        return Instant.now();
     }
 
     /**
@@ -51,7 +57,7 @@ public class StoryService {
      */
     @Transactional
     public StoryDto createStory(String author, String videoUrl, String thumbnailUrl, int duration) {
-        String currentTime = now();
+        Instant currentTime = now();
 
         // Check max stories limit
         long count = storyRepository.countByAuthorActive(author, currentTime);
@@ -59,13 +65,14 @@ public class StoryService {
             return null; // caller should return 400
         }
 
-        String id = UUID.randomUUID().toString();
-        LocalDateTime createdTime = LocalDateTime.now();
-        String createdAt = createdTime.format(FORMATTER);
-        String expiresAt = createdTime.plusHours(STORY_LIFETIME_HOURS).format(FORMATTER);
+        String id = MessageIds.next();
+        Instant expiresAt = currentTime.plus(Duration.ofHours(STORY_LIFETIME_HOURS));
 
-        StoryEntity entity = new StoryEntity(id, author, videoUrl, thumbnailUrl, duration, createdAt, expiresAt);
+        StoryEntity entity = new StoryEntity(id, author, videoUrl, thumbnailUrl, duration, currentTime, expiresAt);
         storyRepository.save(entity);
+        uploadRefService.addRefs(UploadRefService.OWNER_STORY, id, videoUrl, thumbnailUrl);
+        viewCounts.put(id, new AtomicLong());
+        afterCommit(this::invalidateFeed);
 
         StoryDto dto = toDto(entity, author);
         dto.setViewCount(0);
@@ -75,39 +82,56 @@ public class StoryService {
 
     /**
      * Get all active stories grouped by author, for a requesting user.
-     * Returns list of StoryDto (flat, frontend groups by author).
+     * Returns list of StoryDto (flat, ordered by author, frontend groups by author).
+     * Served from the in-memory feed — no database reads once the feed and the
+     * viewer's seen bitmap are warm.
      */
-    @Transactional(readOnly = true)
     public List<StoryDto> getAllActiveStories(String requestingUser) {
-        String currentTime = now();
-        List<StoryEntity> stories = storyRepository.findAllActive(currentTime);
-        if (stories.isEmpty()) return List.of();
-
-        // Preload viewed story IDs for the requesting user
-        Set<String> viewedIds = new HashSet<>(storyViewRepository.findViewedStoryIdsByViewer(requestingUser));
+        FeedSnapshot snapshot = currentFeed();
+        if (snapshot.stories.isEmpty()) return List.of();
 
-        // Batch load view counts in one query (eliminates N+1)
-        List<String> storyIds = stories.stream().map(StoryEntity::getId).toList();
-        Map<String, Long> viewCounts = storyViewRepository.countByStoryIds(storyIds);
-
-        return stories.stream().map(s -> {
-            StoryDto dto = toDto(s, requestingUser);
-            dto.setViewCount(viewCounts.getOrDefault(s.getId(), 0L).intValue());
-            dto.setViewedByMe(s.getAuthor().equals(requestingUser) || viewedIds.contains(s.getId()));
-            return dto;
-        }).collect(Collectors.toList());
+        BitSet seen = seenBitmap(snapshot, requestingUser);
+        List<StoryDto> result = new ArrayList<>(snapshot.stories.size());
+        synchronized (seen) {
+            for (int i = 0; i < snapshot.stories.size(); i++) {
+                StoryEntity s = snapshot.stories.get(i);
+                StoryDto dto = toDto(s, requestingUser);
+                dto.setViewCount(liveViewCount(s));
+                dto.setViewedByMe(s.getAuthor().equals(requestingUser) || seen.get(i));
+                result.add(dto);
+            }
+        }
+        return result;
     }
 
     /**
      * Mark a story as viewed by a user.
+     * The seen bitmap short-circuits repeat views; the first view is a single
+     * idempotent upsert. The seen bit and the in-memory counters change only once
+     * it commits, so a failed view is recorded by the next attempt.
      */
     @Transactional
     public void viewStory(String storyId, String viewer) {
-        if (storyViewRepository.existsByStoryIdAndViewer(storyId, viewer)) {
-            return; // already viewed
+        FeedSnapshot snapshot = currentFeed();
+        Integer idx = snapshot.index.get(storyId);
+        if (idx == null) return; // not an active story
+
+        BitSet seen = seenBitmap(snapshot, viewer);
+        synchronized (seen) {
+            if (seen.get(idx)) return; // already viewed
         }
-        StoryViewEntity view = new StoryViewEntity(storyId, viewer, now());
-        storyViewRepository.save(view);
+
+        boolean inserted = storyViewRepository.insertIfAbsent(storyId, viewer, Timestamps.format(now())) > 0;
+        afterCommit(() -> {
+            synchronized (seen) {
+                seen.set(idx);
+            }
+            if (inserted) {
+                viewCounts.computeIfAbsent(storyId, k -> new AtomicLong(snapshot.stories.get(idx).getViewCount()))
+                        .incrementAndGet();
+                addPendingDelta(storyId, 1);
+            }
+        });
     }
 
     /**
@@ -141,11 +165,10 @@ public class StoryService {
             return false;
         }
         StoryEntity story = opt.get();
-        deleteStoryFile(story.getVideoUrl());
-        if (story.getThumbnailUrl() != null) {
-            deleteStoryFile(story.getThumbnailUrl());
-        }
         storyRepository.delete(story);
+        uploadRefService.releaseRefs(UploadRefService.OWNER_STORY, storyId);
+        forgetCounts(storyId);
+        afterCommit(this::invalidateFeed);
         return true;
     }
 
@@ -155,30 +178,182 @@ public class StoryService {
     @Scheduled(fixedRate = 3600000) // 1 hour
     @Transactional
     public void cleanupExpiredStories() {
-        String currentTime = now();
+        Instant currentTime = now();
         List<StoryEntity> expired = storyRepository.findExpired(currentTime);
         if (expired.isEmpty()) return;
 
         log.info("Cleaning up {} expired stories", expired.size());
         for (StoryEntity story : expired) {
-            deleteStoryFile(story.getVideoUrl());
-            if (story.getThumbnailUrl() != null) {
-                deleteStoryFile(story.getThumbnailUrl());
-            }
+            uploadRefService.releaseRefs(UploadRefService.OWNER_STORY, story.getId());
+            forgetCounts(story.getId());
         }
         int deleted = storyRepository.deleteExpired(currentTime);
+        afterCommit(this::invalidateFeed);
         log.info("Deleted {} expired stories", deleted);
     }
 
-    private void deleteStoryFile(String url) {
-        if (url == null) return;
+    /**
+     * Flush accumulated view-count deltas to stories.view_count in one transaction.
+     * Deltas taken by a flush that does not commit are added back for the next one.
+     */
+    @Scheduled(fixedDelay = 5000)
+    @Transactional
+    public void flushViewCounts() {
+        if (pendingViewDeltas.isEmpty()) return;
+        Map<String, Long> taken = new HashMap<>();
+        for (Map.Entry<String, AtomicLong> e : pendingViewDeltas.entrySet()) {
+            long delta = e.getValue().getAndSet(0);
+            if (delta == 0) {
+                // Atomic with addPendingDelta: a view landing now keeps its entry
+                pendingViewDeltas.computeIfPresent(e.getKey(), (k, v) -> v.get() == 0 ? null : v);
+            } else {
+                taken.put(e.getKey(), delta);
+            }
+        }
+        if (taken.isEmpty()) return;
+
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        if (inTransaction) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) taken.forEach(StoryService.this::addPendingDelta);
+                }
+            });
+        }
         try {
-            // URL is like /api/uploads/uuid.ext — extract filename
-            String filename = url.substring(url.lastIndexOf('/') + 1);
-            Path filePath = uploadDir.resolve(filename);
-            Files.deleteIfExists(filePath);
-        } catch (IOException e) {
-            log.warn("Failed to delete story file: {}", url, e);
+            taken.forEach(storyRepository::incrementViewCount);
+        } catch (RuntimeException e) {
+            if (!inTransaction) taken.forEach(this::addPendingDelta);
+            throw e;
+        }
+        log.debug("Flushed view counts for {} stories", taken.size());
+    }
+
+    private void addPendingDelta(String storyId, long delta) {
+        pendingViewDeltas.compute(storyId, (k, v) -> {
+            if (v == null) v = new AtomicLong();
+            v.addAndGet(delta);
+            return v;
+        });
+    }
+
+    /** Run after the surrounding transaction commits, or now without one. */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // ======================== Stories feed cache ========================
+
+    /**
+     * Drop the cached feed. Called on create/delete/expiry and on STORY_POSTED.
+     * Seen bitmaps are carried over to the next snapshot, so viewers are not reloaded.
+     */
+    public void invalidateFeed() {
+        FeedSnapshot current = feed;
+        if (current != null) current.stale = true;
+    }
+
+    private FeedSnapshot currentFeed() {
+        FeedSnapshot snapshot = feed;
+        if (snapshot != null && !snapshot.stale && now().isBefore(snapshot.nextExpiry)) {
+            return snapshot;
+        }
+        return rebuildFeed();
+    }
+
+    private synchronized FeedSnapshot rebuildFeed() {
+        FeedSnapshot previous = feed;
+        Instant currentTime = now();
+        if (previous != null && !previous.stale && currentTime.isBefore(previous.nextExpiry)) {
+            return previous; // another thread already rebuilt it
+        }
+
+        List<StoryEntity> stories;
+        if (previous != null && !previous.stale) {
+            // Only expiry passed — prune in memory, no DB read
+            stories = previous.stories.stream()
+                    .filter(s -> s.getExpiresAt().isAfter(currentTime))
+                    .toList();
+        } else {
+            stories = storyRepository.findAllActive(currentTime).stream()
+                    .sorted(Comparator.comparing(StoryEntity::getAuthor)
+                            .thenComparing(StoryEntity::getCreatedAt))
+                    .toList();
+        }
+
+        FeedSnapshot next = new FeedSnapshot(stories);
+        if (previous != null) next.carryOverSeen(previous);
+        feed = next;
+        return next;
+    }
+
+    /** Viewer's seen bitmap for the snapshot; loaded once, scoped to active stories only. */
+    private BitSet seenBitmap(FeedSnapshot snapshot, String viewer) {
+        return snapshot.seen.computeIfAbsent(viewer, v -> {
+            BitSet bits = new BitSet(snapshot.stories.size());
+            if (!snapshot.stories.isEmpty()) {
+                for (String id : storyViewRepository.findViewedStoryIdsByViewerIn(v, snapshot.index.keySet())) {
+                    Integer i = snapshot.index.get(id);
+                    if (i != null) bits.set(i);
+                }
+            }
+            return bits;
+        });
+    }
+
+    private long liveViewCount(StoryEntity story) {
+        AtomicLong live = viewCounts.get(story.getId());
+        return live != null ? live.get() : story.getViewCount();
+    }
+
+    private void forgetCounts(String storyId) {
+        viewCounts.remove(storyId);
+        pendingViewDeltas.remove(storyId);
+    }
+
+    /** Immutable list of active stories plus mutable per-viewer seen bitmaps indexed by position. */
+    private static final class FeedSnapshot {
+        final List<StoryEntity> stories;
+        final Map<String, Integer> index;
+        final Instant nextExpiry;
+        final Map<String, BitSet> seen = new ConcurrentHashMap<>();
+        volatile boolean stale;
+
+        FeedSnapshot(List<StoryEntity> stories) {
+            this.stories = stories;
+            Map<String, Integer> idx = new HashMap<>(stories.size() * 2);
+            Instant earliest = Instant.MAX;
+            for (int i = 0; i < stories.size(); i++) {
+                StoryEntity s = stories.get(i);
+                idx.put(s.getId(), i);
+                if (s.getExpiresAt().isBefore(earliest)) earliest = s.getExpiresAt();
+            }
+            this.index = idx;
+            this.nextExpiry = earliest;
+        }
+
+        /** Remap bitmaps from the previous snapshot by story id (new stories start unseen). */
+        void carryOverSeen(FeedSnapshot previous) {
+            previous.seen.forEach((viewer, oldBits) -> {
+                BitSet bits = new BitSet(stories.size());
+                synchronized (oldBits) {
+                    for (int i = oldBits.nextSetBit(0); i >= 0; i = oldBits.nextSetBit(i + 1)) {
+                        Integer j = index.get(previous.stories.get(i).getId());
+                        if (j != null) bits.set(j);
+                    }
+                }
+                seen.put(viewer, bits);
+            });
         }
     }
 
@@ -0,0 +1,407 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.repository.MessageArchiveSegmentRepository;
+import com.example.webrtcchat.repository.MessageRepository;
+import com.example.webrtcchat.repository.NewsRepository;
+import com.example.webrtcchat.repository.RoomRepository;
+import com.example.webrtcchat.repository.StoryRepository;
+import com.example.webrtcchat.repository.TaskRepository;
+import com.example.webrtcchat.repository.UploadRefRepository;
+import com.example.webrtcchat.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Mark-and-sweep collector for upload files nothing points to any more
+ * (cleared rooms, deleted / disappeared messages, deleted news, ...).
+ * <p>
+ * Mark: every upload URL held by messages (hot and archived), stories, users, rooms, news
+ * and tasks is streamed (keyset-paged for messages) into a Bloom filter — a few bits per
+ * reference instead of a set of strings. Sweep: files older than the grace period that the filter
+ * reports as absent are definitely unreferenced by the marked snapshot; they are then
+ * verified exactly against the database in batches (catching references added while the
+ * collector ran) and only then deleted, at a bounded rate. Dry-run reports without deleting.
+ */
+@Service
+public class UploadGarbageCollector {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadGarbageCollector.class);
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String URL_PREFIX = "/api/uploads/";
+    private static final int PAGE_SIZE = 2000;
+    private static final int VERIFY_BATCH = 500;
+    private static final int REPORT_SAMPLE = 100;
+
+    private final UploadService uploadService;
+    private final MessageRepository messageRepository;
+    private final MessageArchiveSegmentRepository archiveRepository;
+    private final StoryRepository storyRepository;
+    private final UserRepository userRepository;
+    private final RoomRepository roomRepository;
+    private final NewsRepository newsRepository;
+    private final TaskRepository taskRepository;
+    private final UploadRefRepository uploadRefRepository;
+
+    private final boolean enabled;
+    private final boolean dryRunDefault;
+    private final long gracePeriodMs;
+    private final int maxDeletesPerSecond;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile GcReport lastReport;
+
+    private final Counter deletedFiles;
+    private final Counter freedBytes;
+    private final Counter rescuedFiles;
+    private final Timer runTimer;
+
+    public UploadGarbageCollector(UploadService uploadService,
+                                  MessageRepository messageRepository,
+                                  MessageArchiveSegmentRepository archiveRepository,
+                                  StoryRepository storyRepository,
+                                  UserRepository userRepository,
+                                  RoomRepository roomRepository,
+                                  NewsRepository newsRepository,
+                                  TaskRepository taskRepository,
+                                  UploadRefRepository uploadRefRepository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${upload.gc.enabled:true}") boolean enabled,
+                                  @Value("${upload.gc.dry-run:false}") boolean dryRunDefault,
+                                  @Value("${upload.gc.grace-period-hours:24}") long gracePeriodHours,
+                                  @Value("${upload.gc.max-deletes-per-second:50}") int maxDeletesPerSecond) {
+        this.uploadService = uploadService;
+        this.messageRepository = messageRepository;
+        this.archiveRepository = archiveRepository;
+        this.storyRepository = storyRepository;
+        this.userRepository = userRepository;
+        this.roomRepository = roomRepository;
+        this.newsRepository = newsRepository;
+        this.taskRepository = taskRepository;
+        this.uploadRefRepository = uploadRefRepository;
+        this.enabled = enabled;
+        this.dryRunDefault = dryRunDefault;
+        this.gracePeriodMs = TimeUnit.HOURS.toMillis(gracePeriodHours);
+        this.maxDeletesPerSecond = Math.max(1, maxDeletesPerSecond);
+
+        this.deletedFiles = Counter.builder("uploads.gc.deleted.files")
+                .description("Orphaned upload files deleted").register(meterRegistry);
+        this.freedBytes = Counter.builder("uploads.gc.freed.bytes")
+                .description("Bytes reclaimed from orphaned uploads").baseUnit("bytes").register(meterRegistry);
+        this.rescuedFiles = Counter.builder("uploads.gc.rescued.files")
+                .description("Sweep candidates kept because the exact check found a reference").register(meterRegistry);
+        this.runTimer = Timer.builder("uploads.gc.duration")
+                .description("Upload GC run time").register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${upload.gc.cron:0 30 4 * * *}")
+    public void collectScheduled() {
+        if (enabled) collect(dryRunDefault);
+    }
+
+    public GcReport getLastReport() {
+        return lastReport;
+    }
+
+    /** Run one mark-and-sweep pass; returns null if a pass is already running. */
+    public GcReport collect(boolean dryRun) {
+        if (!running.compareAndSet(false, true)) return null;
+        long start = System.nanoTime();
+        try {
+            GcReport report = new GcReport(dryRun, LocalDateTime.now().format(FORMATTER));
+            BloomFilter marked = mark(report);
+            sweep(marked, report, dryRun);
+            report.durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            lastReport = report;
+            log.info("Upload GC{}: {} refs marked, {} files scanned, {} candidates, {} rescued, {} deleted ({} bytes) in {} ms",
+                    dryRun ? " (dry run)" : "", report.markedReferences, report.scannedFiles, report.candidates,
+                    report.rescued, report.deleted, report.freedBytes, report.durationMs);
+            return report;
+        } catch (IOException | RuntimeException e) {
+            log.error("Upload GC failed", e);
+            return null;
+        } finally {
+            runTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            running.set(false);
+        }
+    }
+
+    // ── Mark ──
+
+    BloomFilter mark(GcReport report) {
+        long expected = messageRepository.count() * 2 + storyRepository.count() * 2
+                + userRepository.count() + roomRepository.count() + newsRepository.count() + taskRepository.count();
+        BloomFilter filter = new BloomFilter(Math.max(expected, 1024), 0.01);
+
+        String after = "";
+        List<Object[]> page;
+        do {
+            page = messageRepository.findUploadUrlsAfter(after, PageRequest.of(0, PAGE_SIZE));
+            for (Object[] row : page) {
+                after = (String) row[0];
+                report.markedReferences += markUrl(filter, (String) row[1]) + markUrl(filter, (String) row[2]);
+            }
+        } while (page.size() == PAGE_SIZE);
+
+        for (Object[] row : storyRepository.findAllMediaUrls()) {
+            report.markedReferences += markUrl(filter, (String) row[0]) + markUrl(filter, (String) row[1]);
+        }
+        for (List<String> urls : List.of(archiveRepository.findAllUploadUrls(),
+                userRepository.findAllAvatarUrls(), roomRepository.findAllAvatarUrls(),
+                newsRepository.findAllImageUrls(), taskRepository.findAllFileUrls())) {
+            for (String url : urls) report.markedReferences += markUrl(filter, url);
+        }
+        return filter;
+    }
+
+    private static int markUrl(BloomFilter filter, String url) {
+        String filename = filenameOf(url);
+        if (filename == null) return 0;
+        filter.put(filename);
+        return 1;
+    }
+
+    /** File name of an upload URL, relative or absolute; null for anything else. */
+    static String filenameOf(String url) {
+        if (url == null) return null;
+        int i = url.indexOf(URL_PREFIX);
+        if (i < 0) return null;
+        String filename = url.substring(i + URL_PREFIX.length());
+        int q = filename.indexOf('?');
+        if (q >= 0) filename = filename.substring(0, q);
+        return filename.isEmpty() || filename.contains("/") ? null : filename;
+    }
+
+    // ── Sweep ──
+
+    private void sweep(BloomFilter marked, GcReport report, boolean dryRun) throws IOException {
+        long cutoff = System.currentTimeMillis() - gracePeriodMs;
+        Map<String, Path> batch = new LinkedHashMap<>();
+        Path root = uploadService.getUploadDir();
+
+        Files.walkFileTree(root, Set.of(), 3, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return !dir.equals(root) && dir.getFileName().toString().startsWith(".")
+                        ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String name = file.getFileName().toString();
+                if (attrs.isDirectory() && UploadService.VARIANTS_DIR.equals(name)) {
+                    sweepVariants(file, report, dryRun);
+                    return FileVisitResult.CONTINUE;
+                }
+                if (!attrs.isRegularFile()) return FileVisitResult.CONTINUE;
+                if (name.startsWith(".")) return FileVisitResult.CONTINUE;
+                report.scannedFiles++;
+                if (attrs.lastModifiedTime().toMillis() > cutoff || marked.mightContain(name)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                report.candidates++;
+                batch.put(name, file);
+                if (batch.size() >= VERIFY_BATCH) {
+                    verifyAndDelete(batch, report, dryRun);
+                    batch.clear();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log.debug("Upload GC skipped {}: {}", file, e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        if (!batch.isEmpty()) verifyAndDelete(batch, report, dryRun);
+    }
+
+    /** Exact pass over Bloom-negative candidates, then rate-limited deletion. */
+    private void verifyAndDelete(Map<String, Path> candidates, GcReport report, boolean dryRun) throws IOException {
+        Set<String> referenced = referencedAmong(candidates.keySet());
+        long pauseMs = 1000L / maxDeletesPerSecond;
+
+        for (Map.Entry<String, Path> e : candidates.entrySet()) {
+            if (referenced.contains(e.getKey())) {
+                report.rescued++;
+                rescuedFiles.increment();
+                continue;
+            }
+            Path file = e.getValue();
+            long size = Files.size(file);
+            if (report.deletedSample.size() < REPORT_SAMPLE) report.deletedSample.add(e.getKey());
+            if (dryRun) {
+                report.deleted++;
+                report.freedBytes += size;
+                continue;
+            }
+            if (Files.deleteIfExists(file)) {
+                uploadRefRepository.deleteByFilename(e.getKey());
+                uploadService.deleteVariants(e.getKey());
+                report.deleted++;
+                report.freedBytes += size;
+                deletedFiles.increment();
+                freedBytes.increment(size);
+                pause(pauseMs);
+            }
+        }
+    }
+
+    /** Cached image variants are kept exactly as long as their original exists. */
+    private void sweepVariants(Path dir, GcReport report, boolean dryRun) throws IOException {
+        try (DirectoryStream<Path> variants = Files.newDirectoryStream(dir)) {
+            for (Path variant : variants) {
+                String original = UploadService.originalOfVariant(variant.getFileName().toString());
+                Path originalPath = original != null ? uploadService.resolve(original) : null;
+                if (originalPath == null || Files.exists(originalPath)) continue;
+                report.orphanedVariants++;
+                if (!dryRun) Files.deleteIfExists(variant);
+            }
+        }
+    }
+
+    private Set<String> referencedAmong(Collection<String> filenames) {
+        List<String> urls = new ArrayList<>(filenames.size());
+        for (String name : filenames) urls.add(URL_PREFIX + name);
+
+        List<String> found = new ArrayList<>();
+        found.addAll(messageRepository.findFileUrlsIn(urls));
+        found.addAll(messageRepository.findThumbnailUrlsIn(urls));
+        found.addAll(archiveRepository.findUploadUrlsIn(urls));
+        for (Object[] row : storyRepository.findMediaUrlsIn(urls)) {
+            found.add((String) row[0]);
+            found.add((String) row[1]);
+        }
+        found.addAll(userRepository.findAvatarUrlsIn(urls));
+        found.addAll(roomRepository.findAvatarUrlsIn(urls));
+        found.addAll(newsRepository.findImageUrlsIn(urls));
+        found.addAll(taskRepository.findFileUrlsIn(urls));
+
+        Set<String> referenced = new HashSet<>();
+        for (String url : found) {
+            String name = filenameOf(url);
+            if (name != null) referenced.add(name);
+        }
+        return referenced;
+    }
+
+    private static void pause(long ms) {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Outcome of one collector pass; {@code deletedSample} is capped. */
+    public static class GcReport {
+        private final boolean dryRun;
+        private final String startedAt;
+        private long durationMs;
+        private long markedReferences;
+        private long scannedFiles;
+        private long candidates;
+        private long rescued;
+        private long deleted;
+        private long freedBytes;
+        private long orphanedVariants;
+        private final List<String> deletedSample = new ArrayList<>();
+
+        GcReport(boolean dryRun, String startedAt) {
+            this.dryRun = dryRun;
+            this.startedAt = startedAt;
+        }
+
+        public boolean isDryRun() { return dryRun; }
+        public String getStartedAt() { return startedAt; }
+        public long getDurationMs() { return durationMs; }
+        public long getMarkedReferences() { return markedReferences; }
+        public long getScannedFiles() { return scannedFiles; }
+        public long getCandidates() { return candidates; }
+        public long getRescued() { return rescued; }
+        public long getDeleted() { return deleted; }
+        public long getFreedBytes() { return freedBytes; }
+        public long getOrphanedVariants() { return orphanedVariants; }
+        public List<String> getDeletedSample() { return deletedSample; }
+    }
+
+    /**
+     * Minimal Bloom filter over strings (double hashing of two 64-bit hashes).
+     * No false negatives: a name that was put is always reported as present.
+     */
+    static final class BloomFilter {
+        private final long[] bits;
+        private final long size;
+        private final int hashes;
+
+        BloomFilter(long expected, double fpp) {
+            long m = (long) Math.ceil(-expected * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            m = Math.max(64, Math.min(m, Integer.MAX_VALUE * 64L));
+            this.bits = new long[(int) ((m + 63) / 64)];
+            this.size = bits.length * 64L;
+            this.hashes = Math.max(1, (int) Math.round((double) m / expected * Math.log(2)));
+        }
+
+        void put(String value) {
+            long h1 = fnv1a(value);
+            long h2 = mix(h1 ^ value.hashCode());
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, size);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        boolean mightContain(String value) {
+            long h1 = fnv1a(value);
+            long h2 = mix(h1 ^ value.hashCode());
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, size);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        private static long fnv1a(String value) {
+            long h = 0xcbf29ce484222325L;
+            for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                h ^= b & 0xFF;
+                h *= 0x100000001b3L;
+            }
+            return h;
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+            z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+            return (z ^ (z >>> 33)) | 1L;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.repository.UploadRefRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Moves legacy flat files in {@code upload.dir} into the two-level shard layout
+ * ({@code ab/cd/<name>}) online, in small batches.
+ * <p>
+ * The filesystem is the checkpoint: every batch picks up whatever flat files remain,
+ * so the migration resumes after a restart and needs no bookkeeping. Each move is an
+ * atomic rename and {@link UploadService#resolve} finds a file on either side of it,
+ * so /api/uploads keeps serving throughout. Files that cannot move (size conflicts,
+ * unservable names, I/O failures) are left in place and skipped for the rest of the
+ * process, so they never hold back the files listed after them.
+ */
+@Service
+public class UploadLayoutMigrator {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadLayoutMigrator.class);
+    private static final Pattern SHARD_DIR = Pattern.compile("[0-9a-f]{2}");
+    private static final int REPORT_SAMPLE = 50;
+
+    private final UploadService uploadService;
+    private final UploadRefRepository uploadRefRepository;
+    private final boolean enabled;
+    private final int batchSize;
+
+    private final AtomicLong migrated = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    // Flat files left in place; excluded from later batches so they don't refill the listing
+    private final Set<String> skipped = ConcurrentHashMap.newKeySet();
+    private volatile boolean complete;
+
+    public UploadLayoutMigrator(UploadService uploadService,
+                                UploadRefRepository uploadRefRepository,
+                                @Value("${upload.layout-migration.enabled:true}") boolean enabled,
+                                @Value("${upload.layout-migration.batch-size:500}") int batchSize) {
+        this.uploadService = uploadService;
+        this.uploadRefRepository = uploadRefRepository;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    /** Move up to one batch of flat files into their shards. */
+    @Scheduled(initialDelayString = "${upload.layout-migration.initial-delay-ms:60000}",
+               fixedDelayString = "${upload.layout-migration.interval-ms:10000}")
+    public void migrateBatchIfEnabled() {
+        if (enabled && !complete) migrateBatch();
+    }
+
+    /** @return number of files moved in this batch */
+    public synchronized int migrateBatch() {
+        int moved = 0;
+        for (Path flat : listFlatFiles(batchSize, skipped)) {
+            String filename = flat.getFileName().toString();
+            if (uploadService.resolve(filename) == null) { // not a servable name
+                skipped.add(filename);
+                continue;
+            }
+            try {
+                if (moveToShard(flat)) moved++;
+                else if (Files.exists(flat)) skipped.add(filename);
+            } catch (IOException e) {
+                skipped.add(filename);
+                log.warn("Failed to migrate upload {}", filename, e);
+            }
+        }
+        migrated.addAndGet(moved);
+        if (moved == 0 && listFlatFiles(1, skipped).isEmpty()) {
+            if (!complete) {
+                log.info("Upload layout migration complete ({} files moved, {} left in place)",
+                        migrated.get(), skipped.size());
+            }
+            complete = true;
+        } else if (moved > 0) {
+            log.info("Upload layout migration: moved {} files ({} total)", moved, migrated.get());
+        }
+        return moved;
+    }
+
+    public MigrationStatus status() {
+        return new MigrationStatus(enabled, complete, migrated.get(), conflicts.get(), skipped.size());
+    }
+
+    /**
+     * Walk the store and report anything out of place: flat files not yet migrated,
+     * files in the wrong shard, names present both flat and sharded, stray entries in
+     * the shard tree, and references whose file is missing. With {@code repair},
+     * misplaced files are moved to their shard and redundant flat copies removed.
+     */
+    public synchronized ConsistencyReport checkConsistency(boolean repair) throws IOException {
+        ConsistencyReport report = new ConsistencyReport();
+        Path root = uploadService.getUploadDir();
+        List<Path> toRepair = new ArrayList<>();
+
+        for (Path flat : listFlatFiles(Integer.MAX_VALUE, Set.of())) {
+            report.pending++;
+            if (Files.exists(uploadService.shardedPath(flat.getFileName().toString()))) {
+                sample(report.duplicates, flat.getFileName().toString());
+                toRepair.add(flat);
+            }
+        }
+
+        try (DirectoryStream<Path> level1 = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path d1 : level1) {
+                String n1 = d1.getFileName().toString();
+                if (n1.startsWith(".")) continue;
+                if (!SHARD_DIR.matcher(n1).matches()) {
+                    sample(report.stray, root.relativize(d1).toString());
+                    continue;
+                }
+                try (DirectoryStream<Path> level2 = Files.newDirectoryStream(d1)) {
+                    for (Path d2 : level2) {
+                        if (!Files.isDirectory(d2) || !SHARD_DIR.matcher(d2.getFileName().toString()).matches()) {
+                            sample(report.stray, root.relativize(d2).toString());
+                            continue;
+                        }
+                        try (DirectoryStream<Path> files = Files.newDirectoryStream(d2)) {
+                            for (Path file : files) {
+                                String name = file.getFileName().toString();
+                                if (name.startsWith(".")) continue; // cached image variants
+                                report.sharded++;
+                                if (!file.equals(uploadService.shardedPath(name))) {
+                                    sample(report.misplaced, root.relativize(file).toString());
+                                    toRepair.add(file);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        if (repair) {
+            for (Path file : toRepair) moveToShard(file);
+        }
+
+        int page = 0;
+        List<String> filenames;
+        do {
+            filenames = uploadRefRepository.findDistinctFilenames(PageRequest.of(page++, 1000));
+            for (String filename : filenames) {
+                Path file = uploadService.resolve(filename);
+                if (file == null || !Files.exists(file)) sample(report.missing, filename);
+            }
+        } while (filenames.size() == 1000);
+
+        log.info("Upload store check: {} sharded, {} pending, {} misplaced, {} duplicates, {} missing{}",
+                report.sharded, report.pending, report.misplaced.size(), report.duplicates.size(),
+                report.missing.size(), repair ? " (repaired)" : "");
+        return report;
+    }
+
+    /**
+     * Atomic rename into the canonical shard. When the target already exists the names are
+     * content-addressed/unique, so an equal-sized copy is redundant and dropped; a size
+     * mismatch is left alone and counted as a conflict.
+     */
+    private boolean moveToShard(Path source) throws IOException {
+        Path target = uploadService.shardedPath(source.getFileName().toString());
+        if (source.equals(target)) return false;
+        if (Files.exists(target)) {
+            if (Files.size(target) == Files.size(source)) {
+                Files.deleteIfExists(source);
+            } else {
+                conflicts.incrementAndGet();
+                log.warn("Upload migration conflict for {} (sizes differ), left in place", source);
+            }
+            return false;
+        }
+        Files.createDirectories(target.getParent());
+        UploadService.moveAtomically(source, target);
+        return true;
+    }
+
+    private List<Path> listFlatFiles(int limit, Set<String> exclude) {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(uploadService.getUploadDir(), p -> {
+            String name = p.getFileName().toString();
+            return !name.startsWith(".") && !exclude.contains(name) && Files.isRegularFile(p);
+        })) {
+            for (Path p : stream) {
+                result.add(p);
+                if (result.size() >= limit) break;
+            }
+        } catch (IOException e) {
+            log.warn("Failed to list upload dir", e);
+        }
+        return result;
+    }
+
+    private static void sample(List<String> list, String entry) {
+        if (list.size() < REPORT_SAMPLE) list.add(entry);
+    }
+
+    /** Progress of the background migration. */
+    public static class MigrationStatus {
+        private final boolean enabled;
+        private final boolean complete;
+        private final long migrated;
+        private final long conflicts;
+        private final long skipped;
+
+        public MigrationStatus(boolean enabled, boolean complete, long migrated, long conflicts, long skipped) {
+            this.enabled = enabled;
+            this.complete = complete;
+            this.migrated = migrated;
+            this.conflicts = conflicts;
+            this.skipped = skipped;
+        }
+
+        public boolean isEnabled() { return enabled; }
+        public boolean isComplete() { return complete; }
+        public long getMigrated() { return migrated; }
+        public long getConflicts() { return conflicts; }
+        public long getSkipped() { return skipped; }
+    }
+
+    /** Result of {@link #checkConsistency}; lists are capped samples, counters are exact. */
+    public static class ConsistencyReport {
+        private long sharded;
+        private long pending;
+        private final List<String> misplaced = new ArrayList<>();
+        private final List<String> duplicates = new ArrayList<>();
+        private final List<String> stray = new ArrayList<>();
+        private final List<String> missing = new ArrayList<>();
+
+        public long getSharded() { return sharded; }
+        public long getPending() { return pending; }
+        public List<String> getMisplaced() { return misplaced; }
+        public List<String> getDuplicates() { return duplicates; }
+        public List<String> getStray() { return stray; }
+        public List<String> getMissing() { return missing; }
+
+        public boolean isConsistent() {
+            return misplaced.isEmpty() && duplicates.isEmpty() && stray.isEmpty() && missing.isEmpty();
+        }
+    }
+}
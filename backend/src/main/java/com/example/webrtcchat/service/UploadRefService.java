@@ -0,0 +1,151 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.entity.UploadRefEntity;
+import com.example.webrtcchat.repository.UploadRefRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reference counting for the content-addressed upload store.
+ * <p>
+ * Messages, stories and avatars register the /api/uploads files they point to;
+ * since identical content is stored once, a file may be shared by many owners.
+ * Releasing an owner's references deletes a file only when its count drops to zero,
+ * and only after the surrounding transaction commits. A file modified within the upload
+ * grace period is left to {@link UploadGarbageCollector}: a dedup hit in
+ * {@link UploadService} hands its name out (and touches it) before the new owner's
+ * reference exists.
+ */
+@Service
+public class UploadRefService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadRefService.class);
+    private static final String URL_PREFIX = "/api/uploads/";
+
+    public static final String OWNER_MESSAGE = "message";
+    public static final String OWNER_STORY = "story";
+    public static final String OWNER_AVATAR = "avatar";
+
+    private final UploadRefRepository uploadRefRepository;
+    private final UploadService uploadService;
+    private final long gracePeriodMs;
+
+    public UploadRefService(UploadRefRepository uploadRefRepository, UploadService uploadService,
+                            @Value("${upload.gc.grace-period-hours:24}") long gracePeriodHours) {
+        this.uploadRefRepository = uploadRefRepository;
+        this.uploadService = uploadService;
+        this.gracePeriodMs = TimeUnit.HOURS.toMillis(gracePeriodHours);
+    }
+
+    /** Register the owner's references to the given upload URLs (non-upload URLs are ignored). */
+    @Transactional
+    public void addRefs(String ownerType, String ownerId, String... urls) {
+        if (ownerId == null) return;
+        Instant now = Instant.now();
+        for (String filename : filenamesOf(urls)) {
+            if (!uploadRefRepository.existsByOwnerTypeAndOwnerIdAndFilename(ownerType, ownerId, filename)) {
+                uploadRefRepository.save(new UploadRefEntity(filename, ownerType, ownerId, now));
+            }
+        }
+    }
+
+    /** Drop every reference held by the owner; files left unreferenced are deleted after commit. */
+    @Transactional
+    public void releaseRefs(String ownerType, String ownerId) {
+        if (ownerId == null) return;
+        List<String> filenames = uploadRefRepository.findFilenamesByOwner(ownerType, ownerId);
+        if (filenames.isEmpty()) return;
+        uploadRefRepository.deleteByOwner(ownerType, ownerId);
+        deleteUnreferenced(filenames);
+    }
+
+    /** Drop a single reference (e.g. the previous avatar). */
+    @Transactional
+    public void releaseRef(String ownerType, String ownerId, String url) {
+        String filename = filenameOf(url);
+        if (ownerId == null || filename == null) return;
+        if (uploadRefRepository.deleteByOwnerAndFilename(ownerType, ownerId, filename) > 0) {
+            deleteUnreferenced(List.of(filename));
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long refCount(String url) {
+        String filename = filenameOf(url);
+        return filename != null ? uploadRefRepository.countByFilename(filename) : 0;
+    }
+
+    /** File name of an /api/uploads URL, or null for anything else. */
+    public static String filenameOf(String url) {
+        if (url == null || !url.startsWith(URL_PREFIX)) return null;
+        String filename = url.substring(URL_PREFIX.length());
+        return filename.isEmpty() || filename.contains("/") ? null : filename;
+    }
+
+    private static Set<String> filenamesOf(String... urls) {
+        Set<String> filenames = new LinkedHashSet<>();
+        for (String url : urls) {
+            String filename = filenameOf(url);
+            if (filename != null) filenames.add(filename);
+        }
+        return filenames;
+    }
+
+    private void deleteUnreferenced(List<String> filenames) {
+        List<Path> orphaned = new ArrayList<>();
+        for (String filename : filenames) {
+            if (uploadRefRepository.countByFilename(filename) == 0) {
+                Path file = uploadService.resolve(filename);
+                if (file != null) orphaned.add(file);
+            }
+        }
+        if (orphaned.isEmpty()) return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deleteFiles(orphaned);
+                }
+            });
+        } else {
+            deleteFiles(orphaned);
+        }
+    }
+
+    private void deleteFiles(List<Path> files) {
+        long cutoff = System.currentTimeMillis() - gracePeriodMs;
+        for (Path file : files) {
+            try {
+                if (Files.getLastModifiedTime(file).toMillis() > cutoff) {
+                    log.debug("Upload {} was reused recently, leaving it to the collector", file.getFileName());
+                    continue;
+                }
+                if (Files.deleteIfExists(file)) {
+                    log.debug("Deleted unreferenced upload {}", file.getFileName());
+                }
+                uploadService.deleteVariants(file.getFileName().toString());
+            } catch (NoSuchFileException e) {
+                log.debug("Upload {} already gone", file.getFileName());
+            } catch (IOException e) {
+                log.warn("Failed to delete upload {}", file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package com.example.webrtcchat.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Single-pass upload pipeline: the request body is read exactly once.
+ * <p>
+ * The first few KB are sniffed for magic bytes (server-side content type, C10),
+ * the SHA-256 is computed while writing, the size limit is enforced mid-stream,
+ * and the file is written to a temp name in the upload dir and atomically moved
+ * into place — a partially written upload is never visible under /api/uploads.
+ * <p>
+ * Files are content-addressed ({@code <sha256>.<ext>}): identical uploads resolve to
+ * the same file, and {@link UploadRefService} tracks who references it.
+ */
+@Service
+public class UploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadService.class);
+
+    /** Bytes inspected for magic-number detection. */
+    static final int SNIFF_BYTES = 8 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String INCOMING_DIR = ".incoming";
+    static final String VARIANTS_DIR = ".variants";
+    private static final Pattern VARIANT_NAME = Pattern.compile("(.+)\\.w[0-9]+\\.[a-z]+");
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern HEX4 = Pattern.compile("[0-9a-fA-F]{4}");
+    private static final Pattern STORED_NAME = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]*");
+    /** Longest byte range a possession challenge asks the client to hash. */
+    static final int PROOF_MAX_LENGTH = 64 * 1024;
+    private static final long PROOF_TTL_SECONDS = 300;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Path uploadDir;
+    private final Path incomingDir;
+    /** Signs possession challenges; per process, so a challenge answered on another node just misses. */
+    private final byte[] proofKey = new byte[32];
+
+    public UploadService(@Value("${upload.dir:uploads}") String uploadDirPath) {
+        RANDOM.nextBytes(proofKey);
+        this.uploadDir = Paths.get(uploadDirPath).toAbsolutePath().normalize();
+        this.incomingDir = uploadDir.resolve(INCOMING_DIR);
+        try {
+            Files.createDirectories(incomingDir);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create upload directory", e);
+        }
+    }
+
+    public Path getUploadDir() {
+        return uploadDir;
+    }
+
+    /** Staging area for in-progress writes; never served under /api/uploads. */
+    public Path getIncomingDir() {
+        return incomingDir;
+    }
+
+    /**
+     * Stream an upload into the store.
+     *
+     * @param in             request body (read once, not closed)
+     * @param originalName   client file name, used for the extension and as a type fallback
+     * @param clientType     client Content-Type header, last-resort fallback only
+     * @param filenamePrefix prefix for the stored name (e.g. "avatar_"), may be empty
+     * @param maxBytes       hard size limit enforced while streaming
+     * @param imageOnly      reject unless the magic bytes identify an image
+     */
+    public StoredUpload store(InputStream in, String originalName, String clientType,
+                              String filenamePrefix, long maxBytes, boolean imageOnly) throws IOException {
+        byte[] head = new byte[SNIFF_BYTES];
+        int headLen = in.readNBytes(head, 0, SNIFF_BYTES);
+        if (headLen == 0) {
+            throw new UploadRejectedException(UploadRejectedException.Reason.EMPTY);
+        }
+
+        String sniffed = sniffContentType(head, headLen);
+        if (imageOnly && (sniffed == null || !sniffed.startsWith("image/"))) {
+            throw new UploadRejectedException(UploadRejectedException.Reason.NOT_IMAGE);
+        }
+        String contentType = sniffed != null ? sniffed : guessFromName(originalName, clientType);
+
+        Path tmp = incomingDir.resolve(UUID.randomUUID() + ".part");
+        MessageDigest sha256 = newSha256();
+        long total = 0;
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                sha256.update(head, 0, headLen);
+                out.write(head, 0, headLen);
+                total = headLen;
+                if (total > maxBytes) {
+                    throw new UploadRejectedException(UploadRejectedException.Reason.TOO_LARGE);
+                }
+
+                byte[] buf = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    total += n;
+                    if (total > maxBytes) {
+                        throw new UploadRejectedException(UploadRejectedException.Reason.TOO_LARGE);
+                    }
+                    sha256.update(buf, 0, n);
+                    out.write(buf, 0, n);
+                }
+            }
+
+            return publish(tmp, filenamePrefix, originalName, total, contentType,
+                    HexFormat.of().formatHex(sha256.digest()));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    /**
+     * Publish a file that was assembled in {@link #getIncomingDir()} (e.g. from resumable chunks).
+     * Applies the same magic-byte checks as {@link #store}, hashes it in one sequential read and
+     * atomically moves it into place. The source is removed when rejected.
+     */
+    public StoredUpload storeAssembled(Path assembled, String originalName, String clientType,
+                                       String filenamePrefix, boolean imageOnly) throws IOException {
+        try {
+            long size = Files.size(assembled);
+            if (size == 0) {
+                throw new UploadRejectedException(UploadRejectedException.Reason.EMPTY);
+            }
+
+            MessageDigest sha256 = newSha256();
+            String sniffed;
+            try (InputStream in = Files.newInputStream(assembled)) {
+                byte[] buf = new byte[BUFFER_SIZE];
+                int headLen = in.readNBytes(buf, 0, SNIFF_BYTES);
+                sniffed = sniffContentType(buf, headLen);
+                if (imageOnly && (sniffed == null || !sniffed.startsWith("image/"))) {
+                    throw new UploadRejectedException(UploadRejectedException.Reason.NOT_IMAGE);
+                }
+                sha256.update(buf, 0, headLen);
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    sha256.update(buf, 0, n);
+                }
+            }
+            String contentType = sniffed != null ? sniffed : guessFromName(originalName, clientType);
+
+            return publish(assembled, filenamePrefix, originalName, size, contentType,
+                    HexFormat.of().formatHex(sha256.digest()));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(assembled);
+            throw e;
+        }
+    }
+
+    /**
+     * Look up an already stored blob by the client-computed SHA-256, so a repeated upload
+     * resolves without sending or writing any bytes. Empty when unknown (or not an image
+     * while {@code imageOnly}).
+     */
+    public Optional<StoredUpload> findExisting(String sha256, String originalName,
+                                               String filenamePrefix, boolean imageOnly) throws IOException {
+        if (sha256 == null || !SHA256_HEX.matcher(sha256).matches()) {
+            return Optional.empty();
+        }
+        String filename = filenamePrefix + sha256 + extensionOf(originalName);
+        Path target = resolve(filename);
+        String sniffed;
+        long size;
+        try (InputStream in = Files.newInputStream(target)) {
+            byte[] head = in.readNBytes(SNIFF_BYTES);
+            sniffed = sniffContentType(head, head.length);
+            size = Files.size(target);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+        if (imageOnly && (sniffed == null || !sniffed.startsWith("image/"))) {
+            return Optional.empty();
+        }
+        String contentType = sniffed != null ? sniffed : guessFromName(originalName, null);
+        touch(target);
+        return Optional.of(new StoredUpload(filename, target, size, contentType, sha256));
+    }
+
+    /**
+     * A server-chosen byte range of the content behind {@code sha256} that the client must hash
+     * to get a dedup hit from {@link #findProven}. Issued the same way whether or not the blob
+     * exists, so asking reveals nothing. The answer hashes the unpredictable token ahead of the
+     * range, so knowing the content's SHA-256 is not enough even when the range is the whole file.
+     */
+    public PossessionChallenge possessionChallenge(String owner, String sha256, long size) {
+        int length = (int) Math.min(Math.max(size, 0), PROOF_MAX_LENGTH);
+        long offset = size > length ? RANDOM.nextLong(size - length + 1) : 0;
+        long expiresAt = Instant.now().getEpochSecond() + PROOF_TTL_SECONDS;
+        String token = expiresAt + "." + signChallenge(owner, sha256, size, offset, length, expiresAt);
+        return new PossessionChallenge(offset, length, token);
+    }
+
+    /**
+     * {@link #findExisting}, but only for a client that answered a {@link #possessionChallenge}
+     * issued to {@code owner}: {@code proof} must be the hex SHA-256 of the token (UTF-8) followed
+     * by the challenged range of the stored blob, whose size must be the declared {@code size}.
+     */
+    public Optional<StoredUpload> findProven(String owner, String sha256, long size, PossessionChallenge challenge,
+                                             String proof, String originalName, boolean imageOnly) throws IOException {
+        if (sha256 == null || !SHA256_HEX.matcher(sha256).matches() || proof == null
+                || !validChallenge(owner, sha256, size, challenge)) {
+            return Optional.empty();
+        }
+        Path target = resolve(sha256 + extensionOf(originalName));
+        MessageDigest digest = newSha256();
+        digest.update(challenge.getToken().getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.READ)) {
+            if (channel.size() != size) return Optional.empty();
+            ByteBuffer range = ByteBuffer.allocate(challenge.getLength());
+            while (range.hasRemaining()) {
+                if (channel.read(range, challenge.getOffset() + range.position()) < 0) return Optional.empty();
+            }
+            digest.update(range.flip());
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+        byte[] expected = HexFormat.of().formatHex(digest.digest()).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, proof.toLowerCase().getBytes(StandardCharsets.US_ASCII))) {
+            return Optional.empty();
+        }
+        return findExisting(sha256, originalName, "", imageOnly);
+    }
+
+    private boolean validChallenge(String owner, String sha256, long size, PossessionChallenge challenge) {
+        String token = challenge.getToken();
+        int dot = token != null ? token.indexOf('.') : -1;
+        if (dot <= 0 || challenge.getOffset() < 0 || challenge.getLength() < 0
+                || challenge.getLength() > PROOF_MAX_LENGTH || challenge.getOffset() + challenge.getLength() > size) {
+            return false;
+        }
+        long expiresAt;
+        try {
+            expiresAt = Long.parseLong(token.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (expiresAt < Instant.now().getEpochSecond()) return false;
+        String expected = signChallenge(owner, sha256, size, challenge.getOffset(), challenge.getLength(), expiresAt);
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII),
+                token.substring(dot + 1).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String signChallenge(String owner, String sha256, long size, long offset, int length, long expiresAt) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(proofKey, "HmacSHA256"));
+            String data = owner + '\n' + sha256 + '\n' + size + '\n' + offset + '\n' + length + '\n' + expiresAt;
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    /**
+     * Resolve a stored file name to its path, or null when the name is not a plain
+     * file name inside the store (path traversal, staging dir).
+     * <p>
+     * Files live in a two-level shard ({@code ab/cd/<name>}); legacy flat files are still
+     * found while the background migrator moves them. Anything not found flat resolves to
+     * the sharded path, so a concurrent (atomic) move between the two checks is not missed
+     * and new files are written there.
+     */
+    public Path resolve(String filename) {
+        if (filename == null || !STORED_NAME.matcher(filename).matches()) return null;
+        Path sharded = shardedPath(filename);
+        if (Files.exists(sharded)) return sharded;
+        Path flat = uploadDir.resolve(filename);
+        if (Files.isRegularFile(flat)) return flat;
+        return sharded;
+    }
+
+    /** Canonical location of a stored name: {@code <uploadDir>/ab/cd/<name>}. */
+    public Path shardedPath(String filename) {
+        String shard = shardOf(filename);
+        return uploadDir.resolve(shard.substring(0, 2)).resolve(shard.substring(2, 4)).resolve(filename);
+    }
+
+    /**
+     * Cached derivative of a stored image ({@code ab/cd/.variants/<name>.w256.jpg}), kept in
+     * a hidden directory beside the original so it shares its shard and is never served
+     * or collected as an upload of its own.
+     */
+    public Path variantPath(String filename, int width, String extension) {
+        return shardedPath(filename).resolveSibling(VARIANTS_DIR)
+                .resolve(filename + ".w" + width + "." + extension);
+    }
+
+    /** Remove every cached derivative of a stored name (after the original is deleted). */
+    public void deleteVariants(String filename) {
+        Path dir = shardedPath(filename).resolveSibling(VARIANTS_DIR);
+        if (!Files.isDirectory(dir)) return;
+        try (DirectoryStream<Path> variants = Files.newDirectoryStream(dir, filename + ".w*")) {
+            for (Path variant : variants) Files.deleteIfExists(variant);
+        } catch (IOException e) {
+            log.warn("Failed to delete variants of {}", filename, e);
+        }
+    }
+
+    /** Original stored name of a variant file name, or null if it is not one. */
+    public static String originalOfVariant(String variantName) {
+        Matcher m = VARIANT_NAME.matcher(variantName);
+        return m.matches() ? m.group(1) : null;
+    }
+
+    /**
+     * Four hex chars naming the shard: the leading hex of the name (after an
+     * {@code avatar_}-style prefix) for SHA-256/UUID names, else a hash of the name.
+     */
+    public static String shardOf(String filename) {
+        String key = filename;
+        int underscore = key.indexOf('_');
+        if (underscore > 0 && underscore < 16) key = key.substring(underscore + 1);
+        if (key.length() >= 4 && HEX4.matcher(key.substring(0, 4)).matches()) {
+            return key.substring(0, 4).toLowerCase();
+        }
+        return String.format("%08x", filename.hashCode()).substring(0, 4);
+    }
+
+    /**
+     * Content addressing: the final name is derived from the SHA-256, so identical content
+     * maps to one file. When it already exists the freshly written copy is dropped.
+     */
+    private StoredUpload publish(Path source, String filenamePrefix, String originalName, long size,
+                                 String contentType, String sha256) throws IOException {
+        String filename = filenamePrefix + sha256 + extensionOf(originalName);
+        Path existing = resolve(filename);
+        if (Files.exists(existing)) {
+            Files.deleteIfExists(source);
+            touch(existing);
+            log.debug("Deduplicated upload {}", filename);
+            return new StoredUpload(filename, existing, size, contentType, sha256);
+        }
+        Path target = shardedPath(filename);
+        Files.createDirectories(target.getParent());
+        moveAtomically(source, target);
+        return new StoredUpload(filename, target, size, contentType, sha256);
+    }
+
+    /**
+     * Refresh the mtime of a reused blob: it is about to be referenced again, so the
+     * orphan collector's grace period must restart.
+     */
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            log.debug("Could not touch {}", file, e);
+        }
+    }
+
+    /**
+     * Identify common media/document formats from their leading bytes.
+     * Returns null when the signature is unknown.
+     */
+    static String sniffContentType(byte[] b, int len) {
+        if (startsWith(b, len, 0xFF, 0xD8, 0xFF)) return "image/jpeg";
+        if (startsWith(b, len, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) return "image/png";
+        if (startsWith(b, len, 'G', 'I', 'F', '8')) return "image/gif";
+        if (startsWith(b, len, 'B', 'M') && len >= 14) return "image/bmp";
+        if (startsWith(b, len, 0x00, 0x00, 0x01, 0x00)) return "image/x-icon";
+        if (startsWith(b, len, 'R', 'I', 'F', 'F') && len >= 12) {
+            if (matchesAt(b, len, 8, 'W', 'E', 'B', 'P')) return "image/webp";
+            if (matchesAt(b, len, 8, 'W', 'A', 'V', 'E')) return "audio/wav";
+            if (matchesAt(b, len, 8, 'A', 'V', 'I', ' ')) return "video/x-msvideo";
+        }
+        if (matchesAt(b, len, 4, 'f', 't', 'y', 'p')) {
+            if (matchesAt(b, len, 8, 'q', 't')) return "video/quicktime";
+            if (matchesAt(b, len, 8, 'M', '4', 'A')) return "audio/mp4";
+            if (matchesAt(b, len, 8, 'h', 'e', 'i', 'c')) return "image/heic";
+            return "video/mp4";
+        }
+        if (startsWith(b, len, 0x1A, 0x45, 0xDF, 0xA3)) return "video/webm";
+        if (startsWith(b, len, 'O', 'g', 'g', 'S')) return "audio/ogg";
+        if (startsWith(b, len, 'I', 'D', '3')) return "audio/mpeg";
+        if (len >= 2 && (b[0] & 0xFF) == 0xFF && (b[1] & 0xE0) == 0xE0) return "audio/mpeg";
+        if (startsWith(b, len, '%', 'P', 'D', 'F', '-')) return "application/pdf";
+        if (startsWith(b, len, 0x1F, 0x8B)) return "application/gzip";
+        return null;
+    }
+
+    private static boolean startsWith(byte[] b, int len, int... sig) {
+        return matchesAt(b, len, 0, sig);
+    }
+
+    private static boolean matchesAt(byte[] b, int len, int offset, int... sig) {
+        if (len < offset + sig.length) return false;
+        for (int i = 0; i < sig.length; i++) {
+            if ((b[offset + i] & 0xFF) != sig[i]) return false;
+        }
+        return true;
+    }
+
+    private static String guessFromName(String originalName, String clientType) {
+        String guessed = originalName != null ? URLConnection.guessContentTypeFromName(originalName) : null;
+        return guessed != null ? guessed : clientType;
+    }
+
+    /** Sanitized extension (alphanumeric only), ".bin" when missing. */
+    public static String extensionOf(String filename) {
+        if (filename != null && filename.contains(".")) {
+            String ext = filename.substring(filename.lastIndexOf("."));
+            if (ext.matches("\\.[a-zA-Z0-9]+")) return ext;
+        }
+        return ".bin";
+    }
+
+    static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            log.debug("Atomic move not supported, falling back to replace: {}", target);
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /** Result of a stored upload. */
+    public static class StoredUpload {
+        private final String filename;
+        private final Path path;
+        private final long size;
+        private final String contentType;
+        private final String sha256;
+
+        public StoredUpload(String filename, Path path, long size, String contentType, String sha256) {
+            this.filename = filename;
+            this.path = path;
+            this.size = size;
+            this.contentType = contentType;
+            this.sha256 = sha256;
+        }
+
+        public String getFilename() { return filename; }
+        public Path getPath() { return path; }
+        public long getSize() { return size; }
+        public String getContentType() { return contentType; }
+        public String getSha256() { return sha256; }
+    }
+
+    /** Byte range a client must hash to prove it holds some content; the token is signed and expires. */
+    public static class PossessionChallenge {
+        private final long offset;
+        private final int length;
+        private final String token;
+
+        public PossessionChallenge(long offset, int length, String token) {
+            this.offset = offset;
+            this.length = length;
+            this.token = token;
+        }
+
+        public long getOffset() { return offset; }
+        public int getLength() { return length; }
+        public String getToken() { return token; }
+    }
+
+    /** Upload refused by the pipeline; the partial file has already been removed. */
+    public static class UploadRejectedException extends IOException {
+        public enum Reason { EMPTY, TOO_LARGE, NOT_IMAGE }
+
+        private final Reason reason;
+
+        public UploadRejectedException(Reason reason) {
+            super("Upload rejected: " + reason);
+            this.reason = reason;
+        }
+
+        public Reason getReason() { return reason; }
+    }
+}
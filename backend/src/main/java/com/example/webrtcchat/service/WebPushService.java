@@ -1,10 +1,14 @@
 package com.example.webrtcchat.service;
 
+import com.example.webrtcchat.config.DbBulkhead;
 import com.example.webrtcchat.entity.PushSubscriptionEntity;
 import com.example.webrtcchat.repository.PushSubscriptionRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
@@ -51,11 +55,21 @@ public class WebPushService {
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final ObjectMapper mapper = new ObjectMapper();
 
-    // Dedicated thread pool for push notifications (audit 3.5 — avoids ForkJoinPool.commonPool())
-    private static final ExecutorService PUSH_EXECUTOR =
-            Executors.newFixedThreadPool(4, r -> { Thread t = new Thread(r, "push-sender"); t.setDaemon(true); return t; });
+    // Dedicated thread pool for push notifications (audit 3.5 — avoids ForkJoinPool.commonPool());
+    // subscription cleanup on these threads counts against the background database lane
+    private static final ExecutorService PUSH_EXECUTOR = Executors.newFixedThreadPool(4, r -> {
+        Thread t = new Thread(() -> DbBulkhead.runIn(DbBulkhead.Lane.BACKGROUND, r), "push-sender");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Outcome of one delivery attempt; tag {@code outcome} of {@code webpush.sent}. */
+    enum Outcome { DELIVERED, EXPIRED, RATE_LIMITED, REJECTED, ERROR }
 
     private final PushSubscriptionRepository repo;
+    private final MeterRegistry meterRegistry;
+    private final Map<Outcome, Counter> sent = new EnumMap<>(Outcome.class);
+    private final Timer sendDuration;
 
     @Value("${vapid.public-key:}")
     private String vapidPublicKeyBase64;
@@ -72,8 +86,14 @@ public class WebPushService {
     private ECParameterSpec ecSpec;
     private HttpClient httpClient;
 
-    public WebPushService(PushSubscriptionRepository repo) {
+    public WebPushService(PushSubscriptionRepository repo, MeterRegistry meterRegistry) {
         this.repo = repo;
+        this.meterRegistry = meterRegistry;
+        for (Outcome outcome : Outcome.values()) {
+            sent.put(outcome, Counter.builder("webpush.sent").tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                    .description("Web Push deliveries by outcome").register(meterRegistry));
+        }
+        this.sendDuration = meterRegistry.timer("webpush.send.duration");
     }
 
     @PreDestroy
@@ -225,21 +245,28 @@ public class WebPushService {
                     .POST(HttpRequest.BodyPublishers.ofByteArray(encrypted))
                     .build();
 
+            Timer.Sample sample = Timer.start(meterRegistry);
             HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            sample.stop(sendDuration);
 
             if (response.statusCode() == 201) {
+                sent.get(Outcome.DELIVERED).increment();
                 log.debug("[WebPush] Sent to {} ({})", sub.getUsername(), type);
             } else if (response.statusCode() == 410 || response.statusCode() == 404) {
                 // Subscription expired or invalid — clean up
+                sent.get(Outcome.EXPIRED).increment();
                 log.info("[WebPush] Removing expired subscription for '{}'", sub.getUsername());
                 repo.delete(sub);
             } else if (response.statusCode() == 429) {
+                sent.get(Outcome.RATE_LIMITED).increment();
                 log.warn("[WebPush] Rate limited for '{}': {}", sub.getUsername(), response.body());
             } else {
+                sent.get(Outcome.REJECTED).increment();
                 log.warn("[WebPush] Push failed for '{}': {} {}", sub.getUsername(),
                         response.statusCode(), response.body());
             }
         } catch (Exception e) {
+            sent.get(Outcome.ERROR).increment();
             log.error("[WebPush] Error sending to '{}': {}", sub.getUsername(), e.getMessage());
         }
     }
@@ -264,8 +291,9 @@ public class WebPushService {
 
     /**
      * Encrypt payload using aes128gcm content encoding (RFC 8291).
+     * Package-private for the JMH benchmarks.
      */
-    private byte[] encryptPayload(String payload, String p256dhBase64, String authBase64) throws Exception {
+    byte[] encryptPayload(String payload, String p256dhBase64, String authBase64) throws Exception {
         byte[] userPublicKeyBytes = Base64.getUrlDecoder().decode(p256dhBase64);
         byte[] authSecret = Base64.getUrlDecoder().decode(authBase64);
         byte[] plaintext = payload.getBytes(StandardCharsets.UTF_8);
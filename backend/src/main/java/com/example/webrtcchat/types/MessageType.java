@@ -70,6 +70,9 @@ public enum MessageType {
     POLL_VOTE,          // vote on a poll
     POLL_CLOSE,         // close a poll
 
+    // Link previews
+    LINK_PREVIEW,       // server → room: preview fetched for a sent message
+
     // Disappearing messages
     DISAPPEARING_SET,   // set disappearing timer for a room
 
@@ -0,0 +1,10 @@
+-- V24: Denormalized story view counter (stories feed cache)
+-- The in-memory feed keeps live counts and flushes deltas here in batches,
+-- so the stories bar no longer needs a grouped COUNT over story_views.
+ALTER TABLE stories ADD COLUMN IF NOT EXISTS view_count BIGINT NOT NULL DEFAULT 0;
+
+UPDATE stories s
+SET view_count = (SELECT COUNT(*) FROM story_views v WHERE v.story_id = s.id);
+
+-- Per-viewer lookups are scoped to active story ids (viewer, story_id)
+CREATE INDEX IF NOT EXISTS idx_story_views_viewer_story ON story_views(viewer, story_id);
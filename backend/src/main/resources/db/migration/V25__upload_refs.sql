@@ -0,0 +1,41 @@
+-- V25: Reference counts for the content-addressed upload store
+-- Uploads are stored as <sha256>.<ext>; identical content resolves to one file.
+-- A file is deleted only when the last message / story / avatar referencing it goes.
+CREATE TABLE IF NOT EXISTS upload_refs (
+    id          BIGSERIAL PRIMARY KEY,
+    filename    VARCHAR(150) NOT NULL,
+    owner_type  VARCHAR(16)  NOT NULL,
+    owner_id    VARCHAR(64)  NOT NULL,
+    created_at  TIMESTAMPTZ  NOT NULL,
+    CONSTRAINT uq_upload_refs_owner_file UNIQUE (owner_type, owner_id, filename)
+);
+
+CREATE INDEX IF NOT EXISTS idx_upload_refs_filename ON upload_refs(filename);
+
+-- Backfill references held by existing rows (legacy UUID-named files)
+INSERT INTO upload_refs (filename, owner_type, owner_id, created_at)
+SELECT DISTINCT f.filename, 'message', f.id, now()
+FROM (
+    SELECT id, substring(file_url FROM '^/api/uploads/([A-Za-z0-9._-]+)$') AS filename FROM messages
+    UNION ALL
+    SELECT id, substring(thumbnail_url FROM '^/api/uploads/([A-Za-z0-9._-]+)$') FROM messages
+) f
+WHERE f.filename IS NOT NULL
+ON CONFLICT DO NOTHING;
+
+INSERT INTO upload_refs (filename, owner_type, owner_id, created_at)
+SELECT DISTINCT f.filename, 'story', f.id, now()
+FROM (
+    SELECT id, substring(video_url FROM '^/api/uploads/([A-Za-z0-9._-]+)$') AS filename FROM stories
+    UNION ALL
+    SELECT id, substring(thumbnail_url FROM '^/api/uploads/([A-Za-z0-9._-]+)$') FROM stories
+) f
+WHERE f.filename IS NOT NULL
+ON CONFLICT DO NOTHING;
+
+INSERT INTO upload_refs (filename, owner_type, owner_id, created_at)
+SELECT substring(avatar_url FROM '^/api/uploads/([A-Za-z0-9._-]+)$'), 'avatar', username,
+       now()
+FROM app_users
+WHERE substring(avatar_url FROM '^/api/uploads/([A-Za-z0-9._-]+)$') IS NOT NULL
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,4 @@
+-- V26: Link preview stored with the message
+-- The server fetches the Open Graph preview once after a CHAT message is sent and keeps it
+-- here as JSON ({url, title, description, image}), so viewers no longer fetch it themselves.
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS link_preview TEXT;
@@ -0,0 +1,5 @@
+-- V27: Indexes found missing by the query-plan regression tests
+-- findUserRooms looks rooms up by member; the room_members PK (room_id, username) cannot serve that.
+CREATE INDEX IF NOT EXISTS idx_room_members_username ON room_members(username);
+-- countActiveRoomsSince filters on timestamp only; (timestamp, room_id) answers it from the index.
+CREATE INDEX IF NOT EXISTS idx_messages_timestamp_room ON messages(timestamp, room_id);
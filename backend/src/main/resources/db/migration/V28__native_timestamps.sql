@@ -0,0 +1,30 @@
+-- V28: Native timestamps for the hot time columns
+-- These were VARCHAR 'yyyy-MM-dd HH:mm:ss' written in the application's zone. TIMESTAMPTZ is
+-- 8 bytes, keeps microseconds and compares numerically, so ordering, expiry and range scans
+-- stop comparing strings. Clients still receive the old string format (see dto.Timestamps).
+--
+-- Backfill: a zone-less string cast to TIMESTAMPTZ is read in the session TimeZone, which
+-- the JDBC driver sets to the JVM zone, i.e. the zone these strings were written in.
+-- Values that do not look like a timestamp become NULL (or the migration time where the
+-- column is NOT NULL) instead of failing the migration. Indexes are rebuilt with the columns.
+
+ALTER TABLE messages ALTER COLUMN "timestamp" TYPE TIMESTAMPTZ
+    USING CASE WHEN "timestamp" ~ '^\d{4}-\d{2}-\d{2}[ T]\d{2}:\d{2}' THEN "timestamp"::timestamptz END;
+
+ALTER TABLE messages ALTER COLUMN disappears_at TYPE TIMESTAMPTZ
+    USING CASE WHEN disappears_at ~ '^\d{4}-\d{2}-\d{2}[ T]\d{2}:\d{2}' THEN disappears_at::timestamptz END;
+
+ALTER TABLE rooms ALTER COLUMN created_at TYPE TIMESTAMPTZ
+    USING CASE WHEN created_at ~ '^\d{4}-\d{2}-\d{2}[ T]\d{2}:\d{2}' THEN created_at::timestamptz END;
+
+ALTER TABLE stories ALTER COLUMN created_at TYPE TIMESTAMPTZ
+    USING CASE WHEN created_at ~ '^\d{4}-\d{2}-\d{2}[ T]\d{2}:\d{2}' THEN created_at::timestamptz ELSE now() END;
+
+ALTER TABLE stories ALTER COLUMN expires_at TYPE TIMESTAMPTZ
+    USING CASE WHEN expires_at ~ '^\d{4}-\d{2}-\d{2}[ T]\d{2}:\d{2}' THEN expires_at::timestamptz ELSE now() END;
+
+ALTER TABLE call_logs ALTER COLUMN "timestamp" TYPE TIMESTAMPTZ
+    USING CASE WHEN "timestamp" ~ '^\d{4}-\d{2}-\d{2}[ T]\d{2}:\d{2}' THEN "timestamp"::timestamptz ELSE now() END;
+
+ALTER TABLE app_users ALTER COLUMN last_seen TYPE TIMESTAMPTZ
+    USING CASE WHEN last_seen ~ '^\d{4}-\d{2}-\d{2}[ T]\d{2}:\d{2}' THEN last_seen::timestamptz END;
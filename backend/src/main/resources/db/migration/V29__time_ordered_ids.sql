@@ -0,0 +1,17 @@
+-- V29: Byte-order collation for message, call-log and story ids
+-- New ids are UUIDv7 (service.MessageIds): the canonical string starts with the creation time
+-- in hex, so under the "C" collation the primary key sorts by creation time and inserts append
+-- to the right edge of the index. "C" also replaces a locale-aware comparison with memcmp on
+-- every index probe. Existing random ids are untouched and stay valid; the columns keep
+-- their VARCHAR(36) type. Indexes on these columns are rebuilt with the new collation.
+
+ALTER TABLE messages ALTER COLUMN id TYPE VARCHAR(36) COLLATE "C";
+ALTER TABLE messages ALTER COLUMN reply_to_id TYPE VARCHAR(36) COLLATE "C";
+ALTER TABLE reactions ALTER COLUMN message_id TYPE VARCHAR(36) COLLATE "C";
+ALTER TABLE read_receipts ALTER COLUMN message_id TYPE VARCHAR(36) COLLATE "C";
+ALTER TABLE polls ALTER COLUMN message_id TYPE VARCHAR(36) COLLATE "C";
+
+ALTER TABLE call_logs ALTER COLUMN id TYPE VARCHAR(36) COLLATE "C";
+
+ALTER TABLE stories ALTER COLUMN id TYPE VARCHAR(36) COLLATE "C";
+ALTER TABLE story_views ALTER COLUMN story_id TYPE VARCHAR(36) COLLATE "C";
@@ -0,0 +1,116 @@
+-- V30: Range-partition messages by month on "timestamp"
+-- One partition per calendar month (UTC), named messages_yYYYYmMM, plus messages_default for
+-- anything outside the created ranges. Queries bounded on "timestamp" skip other months, each
+-- insert maintains only the current month's (small, hot) indexes, vacuum works per month, and
+-- retention is a DETACH instead of a mass DELETE.
+--
+-- Future partitions are created ahead of time by messages_ensure_partitions(), which the
+-- application calls periodically (service.MessagePartitionMaintenance); old months are
+-- detached by messages_detach_partitions_before() when a retention period is configured.
+--
+-- The primary key has to include the partition key, so it becomes (id, "timestamp"). Ids
+-- are still unique in practice (UUIDs); lookups by id use the leading column of that key.
+
+-- NULL timestamps (unparseable strings from V28) cannot be part of the key: pin them to the
+-- epoch, i.e. the very start of the history, where they end up in messages_default
+UPDATE messages SET "timestamp" = 'epoch' WHERE "timestamp" IS NULL;
+
+ALTER SEQUENCE messages_seq_id_seq OWNED BY NONE;
+ALTER TABLE messages RENAME TO messages_unpartitioned;
+ALTER INDEX messages_pkey RENAME TO messages_unpartitioned_pkey;
+
+CREATE TABLE messages (
+    LIKE messages_unpartitioned INCLUDING DEFAULTS,
+    PRIMARY KEY (id, "timestamp")
+) PARTITION BY RANGE ("timestamp");
+
+CREATE TABLE messages_default PARTITION OF messages DEFAULT;
+
+-- Create the partition for the month containing month_start. Rows of that month already
+-- sitting in messages_default (maintenance did not run in time) are moved into it first,
+-- otherwise attaching the range would fail. Returns the partition name.
+CREATE OR REPLACE FUNCTION messages_create_partition(month_start date) RETURNS text
+LANGUAGE plpgsql AS $$
+DECLARE
+    lo   timestamptz := date_trunc('month', month_start)::timestamp AT TIME ZONE 'UTC';
+    hi   timestamptz := (date_trunc('month', month_start) + interval '1 month')::timestamp AT TIME ZONE 'UTC';
+    name text := 'messages_y' || to_char(month_start, 'YYYY') || 'm' || to_char(month_start, 'MM');
+BEGIN
+    IF to_regclass(name) IS NOT NULL THEN
+        RETURN name;
+    END IF;
+    EXECUTE format('CREATE TABLE %I (LIKE messages INCLUDING DEFAULTS)', name);
+    EXECUTE format('WITH moved AS (DELETE FROM messages_default WHERE "timestamp" >= %L AND "timestamp" < %L RETURNING *) '
+                   'INSERT INTO %I SELECT * FROM moved', lo, hi, name);
+    EXECUTE format('ALTER TABLE messages ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)', name, lo, hi);
+    RETURN name;
+END $$;
+
+-- Make sure partitions exist from the current month up to months_ahead months ahead.
+-- Returns how many were created.
+CREATE OR REPLACE FUNCTION messages_ensure_partitions(months_ahead int) RETURNS int
+LANGUAGE plpgsql AS $$
+DECLARE
+    this_month date := date_trunc('month', now() AT TIME ZONE 'UTC')::date;
+    m          date;
+    created    int := 0;
+BEGIN
+    FOR i IN 0..months_ahead LOOP
+        m := (this_month + make_interval(months => i))::date;
+        IF to_regclass('messages_y' || to_char(m, 'YYYY') || 'm' || to_char(m, 'MM')) IS NULL THEN
+            PERFORM messages_create_partition(m);
+            created := created + 1;
+        END IF;
+    END LOOP;
+    RETURN created;
+END $$;
+
+-- Detach every monthly partition that ends at or before cutoff. The detached tables keep
+-- their names and data, to be archived or dropped; returns their names.
+CREATE OR REPLACE FUNCTION messages_detach_partitions_before(cutoff timestamptz) RETURNS SETOF text
+LANGUAGE plpgsql AS $$
+DECLARE
+    part text;
+BEGIN
+    FOR part IN
+        SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'messages'::regclass AND c.relname ~ '^messages_y\d{4}m\d{2}$'
+        ORDER BY c.relname
+    LOOP
+        IF (to_date(substr(part, 11, 4) || substr(part, 16, 2), 'YYYYMM') + interval '1 month')::timestamp
+               AT TIME ZONE 'UTC' <= cutoff THEN
+            EXECUTE format('ALTER TABLE messages DETACH PARTITION %I', part);
+            RETURN NEXT part;
+        END IF;
+    END LOOP;
+END $$;
+
+-- Partitions for the existing history (oldest real month .. now) and three months ahead
+DO $$
+DECLARE
+    first_month date;
+BEGIN
+    SELECT date_trunc('month', min("timestamp") AT TIME ZONE 'UTC')::date INTO first_month
+    FROM messages_unpartitioned WHERE "timestamp" > 'epoch';
+    WHILE first_month IS NOT NULL AND first_month < date_trunc('month', now() AT TIME ZONE 'UTC') LOOP
+        PERFORM messages_create_partition(first_month);
+        first_month := (first_month + interval '1 month')::date;
+    END LOOP;
+    PERFORM messages_ensure_partitions(3);
+END $$;
+
+INSERT INTO messages SELECT * FROM messages_unpartitioned;
+DROP TABLE messages_unpartitioned;
+ALTER SEQUENCE messages_seq_id_seq OWNED BY messages.seq_id;
+
+-- Indexes are declared on the parent and built per partition. The plain room_id index is
+-- gone: (room_id, "timestamp") serves the same lookups.
+CREATE INDEX idx_messages_room_timestamp ON messages (room_id, "timestamp" DESC);
+CREATE INDEX idx_messages_timestamp_room ON messages ("timestamp", room_id);
+CREATE INDEX idx_messages_sender ON messages (sender);
+CREATE INDEX idx_messages_pinned ON messages (room_id) WHERE pinned = true;
+CREATE INDEX idx_messages_reply_to_id ON messages (reply_to_id);
+CREATE INDEX idx_messages_disappears_at ON messages (disappears_at) WHERE disappears_at IS NOT NULL;
+CREATE INDEX idx_messages_content_trgm ON messages USING gin (content gin_trgm_ops);
+
+ANALYZE messages;
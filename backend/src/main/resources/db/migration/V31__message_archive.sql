@@ -0,0 +1,25 @@
+-- V31: Cold-storage tier for old message history (service.MessageArchive)
+-- Each segment is an immutable run of a room's oldest messages as gzip-compressed JSON.
+-- (room_id, last_timestamp) is the per-room index history paging walks; payloads are only
+-- read for the segments a page touches.
+
+CREATE TABLE message_archive_segments (
+    id              BIGSERIAL    PRIMARY KEY,
+    room_id         VARCHAR(100) NOT NULL,
+    first_timestamp TIMESTAMPTZ  NOT NULL,
+    last_timestamp  TIMESTAMPTZ  NOT NULL,
+    message_count   INTEGER      NOT NULL,
+    payload         BYTEA        NOT NULL
+);
+CREATE INDEX idx_archive_segments_room_last ON message_archive_segments (room_id, last_timestamp);
+
+-- The payload is already gzip: store it out of line without a second (pglz) compression pass
+ALTER TABLE message_archive_segments ALTER COLUMN payload SET STORAGE EXTERNAL;
+
+-- Upload files referenced by archived messages, so the upload GC keeps them
+CREATE TABLE message_archive_files (
+    segment_id BIGINT       NOT NULL REFERENCES message_archive_segments(id) ON DELETE CASCADE,
+    url        VARCHAR(500) NOT NULL
+);
+CREATE INDEX idx_archive_files_segment ON message_archive_files (segment_id);
+CREATE INDEX idx_archive_files_url ON message_archive_files (url);
@@ -0,0 +1,25 @@
+-- V32: Materialized reaction aggregates (entity.ReactionCountEntity)
+-- One row per (message, emoji): the count and the last three reactors, newest first.
+-- History pages read it instead of grouping the reactions table per message; it is kept in
+-- step by the single-statement upserts in ReactionCountRepository.
+
+CREATE TABLE reaction_counts (
+    id            BIGSERIAL    PRIMARY KEY,
+    message_id    VARCHAR(36)  COLLATE "C" NOT NULL,
+    room_id       VARCHAR(100) NOT NULL,
+    emoji         VARCHAR(10)  NOT NULL,
+    total         INTEGER      NOT NULL,
+    recent_user_1 VARCHAR(50),
+    recent_user_2 VARCHAR(50),
+    recent_user_3 VARCHAR(50),
+    CONSTRAINT uq_reaction_counts_message_emoji UNIQUE (message_id, emoji)
+);
+
+INSERT INTO reaction_counts (message_id, room_id, emoji, total, recent_user_1, recent_user_2, recent_user_3)
+SELECT message_id, room_id, emoji, total, users[1], users[2], users[3]
+FROM (
+    SELECT message_id, min(room_id) AS room_id, emoji, count(*) AS total,
+           array_agg(username ORDER BY id DESC) AS users
+    FROM reactions
+    GROUP BY message_id, emoji
+) r;
@@ -0,0 +1,115 @@
+package com.example.webrtcchat.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DbBulkheadTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private BulkheadDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:bulkhead;DB_CLOSE_DELAY=-1");
+        h2.setUser("sa");
+        DbBulkhead bulkhead = new DbBulkhead(registry, Map.of(
+                DbBulkhead.Lane.REALTIME, new long[]{2, 50},
+                DbBulkhead.Lane.REST, new long[]{1, 50}));
+        dataSource = new BulkheadDataSource(h2, bulkhead);
+    }
+
+    /** Open {@code n} connections in {@code lane} and keep them open. */
+    private List<Connection> open(DbBulkhead.Lane lane, int n) {
+        List<Connection> connections = new ArrayList<>();
+        DbBulkhead.runIn(lane, () -> {
+            try {
+                for (int i = 0; i < n; i++) connections.add(dataSource.getConnection());
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        return connections;
+    }
+
+    private static void closeAll(List<Connection> connections) throws SQLException {
+        for (Connection c : connections) c.close();
+    }
+
+    @Test
+    @DisplayName("a full lane refuses within its acquire timeout and admits again once a connection closes")
+    void fullLaneRejectsFast() throws Exception {
+        List<Connection> held = open(DbBulkhead.Lane.REALTIME, 2);
+
+        long start = System.nanoTime();
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> open(DbBulkhead.Lane.REALTIME, 1));
+        assertTrue(DbBulkhead.isRejection(e));
+        assertTrue(System.nanoTime() - start < 2_000_000_000L, "refused after the lane timeout, not the pool's");
+        assertEquals(1, registry.get("db.bulkhead.rejected").tag("lane", "realtime").counter().count());
+        assertEquals(2, registry.get("db.bulkhead.active").tag("lane", "realtime").gauge().value());
+
+        held.get(0).close();
+        held.get(0).close(); // a second close must not free a second permit
+        List<Connection> again = open(DbBulkhead.Lane.REALTIME, 1);
+        assertEquals(2, registry.get("db.bulkhead.active").tag("lane", "realtime").gauge().value());
+        assertThrows(IllegalStateException.class, () -> open(DbBulkhead.Lane.REALTIME, 1));
+        closeAll(again);
+        closeAll(held);
+        assertEquals(0, registry.get("db.bulkhead.active").tag("lane", "realtime").gauge().value());
+        assertEquals(5, registry.get("db.bulkhead.wait").tag("lane", "realtime").timer().count());
+    }
+
+    @Test
+    @DisplayName("one lane filling up does not block the others")
+    void lanesAreIndependent() throws Exception {
+        List<Connection> realtime = open(DbBulkhead.Lane.REALTIME, 2);
+
+        List<Connection> rest = open(DbBulkhead.Lane.REST, 1);
+        assertEquals(1, rest.size());
+        closeAll(rest);
+        closeAll(realtime);
+    }
+
+    @Test
+    @DisplayName("threads in no lane, or a lane without limits, are not counted")
+    void unlimitedWithoutLane() throws Exception {
+        List<Connection> connections = new ArrayList<>();
+        for (int i = 0; i < 5; i++) connections.add(dataSource.getConnection());
+        connections.addAll(open(DbBulkhead.Lane.BACKGROUND, 5));
+        closeAll(connections);
+    }
+
+    @Test
+    @DisplayName("a refusal wrapped by the transaction manager becomes HTTP 503 with Retry-After")
+    void rejectionMapsTo503() {
+        Exception wrapped = new CannotCreateTransactionException("Could not open JPA EntityManager",
+                new RuntimeException(new DbBulkhead.RejectedException(DbBulkhead.Lane.REST, 1000)));
+
+        ResponseEntity<Map<String, String>> response = new GlobalExceptionHandler().handleGeneric(wrapped);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("1", response.getHeaders().getFirst("Retry-After"));
+        assertFalse(DbBulkhead.isRejection(new CannotCreateTransactionException("pool exhausted")));
+    }
+
+    @Test
+    @DisplayName("limits need at least one permit")
+    void invalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new DbBulkhead(registry,
+                Map.of(DbBulkhead.Lane.REST, new long[]{0, 100})));
+    }
+}
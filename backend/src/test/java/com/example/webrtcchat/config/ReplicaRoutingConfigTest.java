@@ -0,0 +1,82 @@
+package com.example.webrtcchat.config;
+
+import com.example.webrtcchat.repository.RoomRepository;
+import com.example.webrtcchat.service.RoomService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The full context with a replica configured: JPA read-only transactions reach the replica pool
+ * through Hibernate. The "replica" is the primary's own H2 database, since H2 cannot replicate;
+ * the routing itself is covered over two databases in {@link ReplicaRoutingDataSourceTest}.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:replicas;DB_CLOSE_DELAY=-1",
+        "db.replicas.urls=jdbc:h2:mem:replicas;DB_CLOSE_DELAY=-1",
+        "logging.level.com.example.webrtcchat=WARN"
+})
+class ReplicaRoutingConfigTest {
+
+    @Autowired private DataSource dataSource;
+    @Autowired private MeterRegistry meterRegistry;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private RoomRepository roomRepository;
+    @Autowired private RoomService roomService;
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private double routed(String route) {
+        return meterRegistry.get("db.route").tag("route", route).counter().count();
+    }
+
+    @Test
+    @DisplayName("readOnly service methods read from the replica pool")
+    void readOnlyServiceUsesReplica() {
+        double before = routed("replica");
+        roomService.getUserRooms("nobody");
+        assertTrue(routed("replica") > before);
+    }
+
+    @Test
+    @DisplayName("a JPA write makes the writer's next read go to the primary")
+    void jpaWriteIsSticky() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("dave", null, List.of()));
+        new TransactionTemplate(transactionManager).executeWithoutResult(s -> roomRepository.findAll());
+
+        double sticky = routed("sticky");
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(s -> roomRepository.count());
+        assertEquals(sticky + 1, routed("sticky"));
+    }
+
+    @Test
+    @DisplayName("the primary Hikari pool stays reachable through bulkhead and router for load shedding")
+    void primaryPoolUnwraps() throws Exception {
+        assertInstanceOf(BulkheadDataSource.class, dataSource);
+        assertTrue(dataSource.isWrapperFor(HikariDataSource.class));
+        assertEquals("primary", dataSource.unwrap(HikariDataSource.class).getPoolName());
+    }
+}
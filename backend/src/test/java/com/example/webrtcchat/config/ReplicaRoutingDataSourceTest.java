@@ -0,0 +1,173 @@
+package com.example.webrtcchat.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Routing over two separate H2 databases, each knowing its own name, read through Spring
+ * transactions the way the services use them.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private final AtomicLong nanos = new AtomicLong(1_000_000_000L);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private SwitchableDataSource replica;
+    private ReplicaRoutingDataSource router;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    /** A replica that can be taken down without touching its data. */
+    private static final class SwitchableDataSource extends DelegatingDataSource {
+        volatile boolean down;
+
+        SwitchableDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (down) throw new SQLException("Connection refused");
+            return super.getConnection();
+        }
+    }
+
+    private static DataSource h2(String name) {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+        jdbc.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(20), lag_ms BIGINT)");
+        jdbc.update("DELETE FROM node");
+        jdbc.update("INSERT INTO node VALUES (?, 0)", name);
+        return ds;
+    }
+
+    @BeforeEach
+    void setUp() {
+        DataSource primary = h2("rr-primary");
+        replica = new SwitchableDataSource(h2("rr-replica"));
+        router = new ReplicaRoutingDataSource(primary, List.of(replica), registry, Duration.ofSeconds(3),
+                Duration.ofSeconds(5), Duration.ofSeconds(1), "SELECT lag_ms FROM node", nanos::get);
+        router.checkReplicas();
+
+        DataSource app = new LazyConnectionDataSourceProxy(router);
+        jdbc = new JdbcTemplate(app);
+        DataSourceTransactionManager tx = new DataSourceTransactionManager(app);
+        readOnly = new TransactionTemplate(tx);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(tx);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        router.close();
+    }
+
+    private String readNode() {
+        return readOnly.execute(s -> jdbc.queryForObject("SELECT name FROM node", String.class));
+    }
+
+    private void write() {
+        readWrite.executeWithoutResult(s -> jdbc.update("UPDATE node SET lag_ms = lag_ms"));
+    }
+
+    private double routed(String route) {
+        return registry.get("db.route").tag("route", route).counter().count();
+    }
+
+    @Test
+    @DisplayName("read-only transactions go to the replica, read-write ones to the primary")
+    void routesByTransactionKind() {
+        assertEquals("rr-replica", readNode());
+        assertEquals("rr-primary", readWrite.execute(s -> jdbc.queryForObject("SELECT name FROM node", String.class)));
+        assertEquals(1, routed("replica"));
+    }
+
+    @Test
+    @DisplayName("a replica lagging over the limit is skipped until it catches up")
+    void lagFallsBackToPrimary() {
+        new JdbcTemplate(replica).update("UPDATE node SET lag_ms = 10000");
+        router.checkReplicas();
+        assertEquals("rr-primary", readNode());
+        assertEquals(1, routed("fallback"));
+        assertEquals(10000, registry.get("db.replica.lag").gauge().value());
+
+        new JdbcTemplate(replica).update("UPDATE node SET lag_ms = 100");
+        router.checkReplicas();
+        assertEquals("rr-replica", readNode());
+    }
+
+    @Test
+    @DisplayName("an unreachable replica is taken out of rotation on the first failed connection")
+    void downReplicaFallsBackToPrimary() {
+        replica.down = true;
+        assertEquals("rr-primary", readNode());
+        assertEquals(0, registry.get("db.replica.healthy").gauge().value());
+        assertEquals("rr-primary", readNode());
+        assertEquals(2, routed("fallback"));
+
+        replica.down = false;
+        router.checkReplicas();
+        assertEquals("rr-replica", readNode());
+    }
+
+    @Test
+    @DisplayName("health results go stale when the checks stop")
+    void staleHealthFallsBackToPrimary() {
+        nanos.addAndGet(Duration.ofSeconds(4).toNanos());
+        assertEquals("rr-primary", readNode());
+    }
+
+    @Test
+    @DisplayName("a user reads from the primary for the sticky window after writing; others do not")
+    void readYourWrites() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+        write();
+        assertEquals("rr-primary", readNode());
+        assertEquals(1, routed("sticky"));
+
+        String[] bobRead = new String[1];
+        SecurityContextHolder.clearContext();
+        ReplicaRoutingDataSource.runAs("bob", () -> bobRead[0] = readNode());
+        assertEquals("rr-replica", bobRead[0]);
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+        nanos.addAndGet(Duration.ofSeconds(6).toNanos());
+        router.checkReplicas();
+        assertEquals("rr-replica", readNode());
+    }
+
+    @Test
+    @DisplayName("writes on a thread without a security context stick through runAs")
+    void runAsMarksWrites() {
+        ReplicaRoutingDataSource.runAs("carol", this::write);
+        String[] read = new String[1];
+        ReplicaRoutingDataSource.runAs("carol", () -> read[0] = readNode());
+        assertEquals("rr-primary", read[0]);
+        assertEquals("rr-replica", readNode(), "anonymous reads are never sticky");
+    }
+}
@@ -3,6 +3,8 @@ package com.example.webrtcchat.controller;
 import com.example.webrtcchat.dto.AdminStatsDto;
 import com.example.webrtcchat.service.AdminService;
 import com.example.webrtcchat.service.JwtService;
+import com.example.webrtcchat.service.UploadGarbageCollector;
+import com.example.webrtcchat.service.UploadLayoutMigrator;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,6 +27,12 @@ class AdminControllerTest {
     @MockBean
     private AdminService adminService;
 
+    @MockBean
+    private UploadLayoutMigrator uploadLayoutMigrator;
+
+    @MockBean
+    private UploadGarbageCollector uploadGarbageCollector;
+
     @MockBean
     private JwtService jwtService;
 
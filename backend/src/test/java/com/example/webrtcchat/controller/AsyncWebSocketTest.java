@@ -1,6 +1,8 @@
 package com.example.webrtcchat.controller;
 
+import com.example.webrtcchat.dto.MessageDto;
 import com.example.webrtcchat.dto.RoomDto;
+import com.example.webrtcchat.dto.Timestamps;
 import com.example.webrtcchat.repository.BlockedUserRepository;
 import com.example.webrtcchat.repository.CallLogRepository;
 import com.example.webrtcchat.service.*;
@@ -46,6 +48,9 @@ class AsyncWebSocketTest {
     @Mock private BlockedUserRepository blockedUserRepository;
     @Mock private StoryService storyService;
     @Mock private ReactionService reactionService;
+    @Mock private LinkPreviewService linkPreviewService;
+    @Mock private RateLimiterService rateLimiter;
+    @Mock private LoadShedder loadShedder;
     @Mock private WebSocketSession session;
 
     private ChatWebSocketHandler handler;
@@ -53,9 +58,11 @@ class AsyncWebSocketTest {
 
     @BeforeEach
     void setUp() throws Exception {
+        when(rateLimiter.tryAcquire(anyString(), any())).thenReturn(true);
+        when(loadShedder.admit(any(), anyString())).thenReturn(true);
         handler = new ChatWebSocketHandler(chatService, jwtService, roomService,
                 schedulerService, taskService, conferenceService, callLogRepository,
-                webPushService, blockedUserRepository, storyService, reactionService);
+                webPushService, blockedUserRepository, storyService, reactionService, linkPreviewService, rateLimiter, loadShedder, new io.micrometer.core.instrument.simple.SimpleMeterRegistry());
 
         // Default session setup
         Map<String, Object> attrs = new HashMap<>();
@@ -81,7 +88,7 @@ class AsyncWebSocketTest {
     @Test
     @DisplayName("B3: CHAT message offloaded to virtual thread (async)")
     void chatMessage_offloadedAsync() throws Exception {
-        RoomDto room = new RoomDto("room1", "Test", RoomType.ROOM, "system", "2026-01-01 12:00:00");
+        RoomDto room = new RoomDto("room1", "Test", RoomType.ROOM, "system", Timestamps.parse("2026-01-01 12:00:00"));
         room.setMembers(new LinkedHashSet<>(Set.of("alice", "bob")));
         when(roomService.getRoomById("room1")).thenReturn(room);
 
@@ -100,19 +107,42 @@ class AsyncWebSocketTest {
                 m.getSender().equals("alice") && m.getContent().equals("Hello")));
     }
 
+    @Test
+    @DisplayName("B3: back-to-back messages of one session are sent in order")
+    void chatMessages_keepSessionOrder() throws Exception {
+        RoomDto room = new RoomDto("room1", "Test", RoomType.ROOM, "system", Timestamps.parse("2026-01-01 12:00:00"));
+        room.setMembers(new LinkedHashSet<>(Set.of("alice", "bob")));
+        when(roomService.getRoomById("room1")).thenReturn(room);
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(50);
+        doAnswer(inv -> {
+            sent.add(inv.<MessageDto>getArgument(1).getContent());
+            done.countDown();
+            return null;
+        }).when(chatService).send(eq("room1"), any());
+
+        for (int i = 0; i < 50; i++) {
+            handler.handleTextMessage(session, new TextMessage(objectMapper.writeValueAsString(Map.of(
+                    "type", "CHAT", "content", "m" + i, "roomId", "room1"))));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 50; i++) assertEquals("m" + i, sent.get(i));
+    }
+
     @Test
     @DisplayName("B3: submitToExecutor can be overridden for synchronous testing")
     void submitToExecutor_overrideForSync() throws Exception {
         ChatWebSocketHandler syncHandler = new ChatWebSocketHandler(chatService, jwtService, roomService,
                 schedulerService, taskService, conferenceService, callLogRepository,
-                webPushService, blockedUserRepository, storyService, reactionService) {
+                webPushService, blockedUserRepository, storyService, reactionService, linkPreviewService, rateLimiter, loadShedder, new io.micrometer.core.instrument.simple.SimpleMeterRegistry()) {
             @Override
             protected void submitToExecutor(Runnable task) {
                 task.run(); // synchronous
             }
         };
 
-        RoomDto room = new RoomDto("room1", "Test", RoomType.ROOM, "system", "2026-01-01 12:00:00");
+        RoomDto room = new RoomDto("room1", "Test", RoomType.ROOM, "system", Timestamps.parse("2026-01-01 12:00:00"));
         room.setMembers(new LinkedHashSet<>(Set.of("alice", "bob")));
         when(roomService.getRoomById("room1")).thenReturn(room);
 
@@ -159,7 +189,7 @@ class AsyncWebSocketTest {
     @Test
     @DisplayName("B3: TYPING offloaded to virtual thread correctly")
     void typing_offloadedAsync() throws Exception {
-        RoomDto room = new RoomDto("room1", "Test", RoomType.ROOM, "system", "2026-01-01 12:00:00");
+        RoomDto room = new RoomDto("room1", "Test", RoomType.ROOM, "system", Timestamps.parse("2026-01-01 12:00:00"));
         room.setMembers(new LinkedHashSet<>(Set.of("alice", "bob")));
         when(roomService.getRoomById("room1")).thenReturn(room);
 
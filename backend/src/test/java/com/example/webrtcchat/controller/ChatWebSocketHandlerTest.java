@@ -2,12 +2,14 @@ package com.example.webrtcchat.controller;
 
 import com.example.webrtcchat.dto.MessageDto;
 import com.example.webrtcchat.dto.RoomDto;
+import com.example.webrtcchat.dto.Timestamps;
 import com.example.webrtcchat.repository.BlockedUserRepository;
 import com.example.webrtcchat.repository.CallLogRepository;
 import com.example.webrtcchat.service.*;
 import com.example.webrtcchat.types.MessageType;
 import com.example.webrtcchat.types.RoomType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -47,14 +49,20 @@ class ChatWebSocketHandlerTest {
     @Mock private BlockedUserRepository blockedUserRepository;
     @Mock private com.example.webrtcchat.service.StoryService storyService;
     @Mock private com.example.webrtcchat.service.ReactionService reactionService;
+    @Mock private com.example.webrtcchat.service.LinkPreviewService linkPreviewService;
+    @Mock private com.example.webrtcchat.service.RateLimiterService rateLimiter;
+    @Mock private com.example.webrtcchat.service.LoadShedder loadShedder;
     @Mock private WebSocketSession session;
 
     private ChatWebSocketHandler handler;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @BeforeEach
     void setUp() {
-        handler = new ChatWebSocketHandler(chatService, jwtService, roomService, schedulerService, taskService, conferenceService, callLogRepository, webPushService, blockedUserRepository, storyService, reactionService) {
+        when(rateLimiter.tryAcquire(anyString(), any())).thenReturn(true);
+        when(loadShedder.admit(any(), anyString())).thenReturn(true);
+        handler = new ChatWebSocketHandler(chatService, jwtService, roomService, schedulerService, taskService, conferenceService, callLogRepository, webPushService, blockedUserRepository, storyService, reactionService, linkPreviewService, rateLimiter, loadShedder, meterRegistry) {
             @Override
             protected void submitToExecutor(Runnable task) {
                 task.run(); // run synchronously in tests to avoid Thread.sleep
@@ -134,6 +142,93 @@ class ChatWebSocketHandlerTest {
         ));
     }
 
+    @Test
+    @DisplayName("handleTextMessage - chat with a link is enriched with a preview after send")
+    void handleMessage_chat_linkPreview() throws Exception {
+        WebSocketSession aliceSession = connectUser("s1", "alice", "token-a");
+        RoomDto room = createRoom("general", RoomType.GENERAL);
+        when(roomService.getRoomById("general")).thenReturn(room);
+        when(linkPreviewService.extractUrl("see https://example.com")).thenReturn("https://example.com");
+        Map<String, String> preview = Map.of("url", "https://example.com", "title", "Example");
+        when(linkPreviewService.fetchPreviewAsync("https://example.com"))
+                .thenReturn(java.util.concurrent.CompletableFuture.completedFuture(preview));
+        when(chatService.setLinkPreview(eq("general"), anyString(), eq(preview))).thenReturn(true);
+
+        MessageDto incoming = new MessageDto();
+        incoming.setContent("see https://example.com");
+        incoming.setRoomId("general");
+        incoming.setType(MessageType.CHAT);
+        handler.handleTextMessage(aliceSession, new TextMessage(objectMapper.writeValueAsString(incoming)));
+
+        verify(chatService).setLinkPreview(eq("general"), anyString(), eq(preview));
+        verify(aliceSession).sendMessage(argThat(msg -> {
+            String payload = ((TextMessage) msg).getPayload();
+            return payload.contains("\"type\":\"LINK_PREVIEW\"") && payload.contains("\"title\":\"Example\"");
+        }));
+    }
+
+    @Test
+    @DisplayName("handleTextMessage - over-limit chat frame is dropped before parsing")
+    void handleMessage_rateLimited() throws Exception {
+        setupConnectedSession("session1", "alice");
+        when(rateLimiter.tryAcquire("alice", com.example.webrtcchat.service.RateLimiterService.RateClass.CHAT))
+                .thenReturn(false);
+
+        handler.handleTextMessage(session, new TextMessage("{\"type\":\"CHAT\",\"roomId\":\"general\",\"content\":\"spam\"}"));
+
+        verify(chatService, never()).send(anyString(), any());
+        verify(roomService, never()).getRoomById(anyString());
+        verify(session).sendMessage(argThat(msg -> ((TextMessage) msg).getPayload().contains("\"type\":\"ERROR\"")));
+    }
+
+    @Test
+    @DisplayName("handleTextMessage - a duplicate type key cannot move a chat frame into the signaling bucket")
+    void handleMessage_duplicateTypeChargesParsedClass() throws Exception {
+        setupConnectedSession("session1", "alice");
+        when(rateLimiter.tryAcquire("alice", com.example.webrtcchat.service.RateLimiterService.RateClass.CHAT))
+                .thenReturn(false);
+
+        handler.handleTextMessage(session, new TextMessage(
+                "{\"type\":\"ICE_CANDIDATE\",\"type\":\"CHAT\",\"roomId\":\"general\",\"content\":\"spam\"}"));
+
+        verify(rateLimiter).tryAcquire("alice", com.example.webrtcchat.service.RateLimiterService.RateClass.SIGNALING);
+        verify(chatService, never()).send(anyString(), any());
+        verify(session).sendMessage(argThat(msg -> ((TextMessage) msg).getPayload().contains("\"type\":\"ERROR\"")));
+    }
+
+    @Test
+    @DisplayName("handleTextMessage - shed chat frame is refused with an error, signaling still passes")
+    void handleMessage_shedUnderOverload() throws Exception {
+        setupConnectedSession("session1", "alice");
+        when(loadShedder.admit(eq(com.example.webrtcchat.service.LoadShedder.Priority.CHAT), anyString()))
+                .thenReturn(false);
+
+        handler.handleTextMessage(session, new TextMessage("{\"type\":\"CHAT\",\"roomId\":\"general\",\"content\":\"hi\"}"));
+
+        verify(chatService, never()).send(anyString(), any());
+        verify(session).sendMessage(argThat(msg -> ((TextMessage) msg).getPayload().contains("\"type\":\"ERROR\"")));
+        verify(loadShedder).admit(com.example.webrtcchat.service.LoadShedder.Priority.CHAT, "alice");
+    }
+
+    @Test
+    @DisplayName("handleTextMessage - records processing time per type and broadcast fan-out")
+    void handleMessage_metrics() throws Exception {
+        WebSocketSession aliceSession = connectUser("s1", "alice", "token-a");
+        connectUser("s2", "bob", "token-b");
+        when(roomService.getRoomById("general")).thenReturn(createRoom("general", RoomType.GENERAL));
+
+        MessageDto incoming = new MessageDto();
+        incoming.setContent("Hello");
+        incoming.setRoomId("general");
+        incoming.setType(MessageType.CHAT);
+        handler.handleTextMessage(aliceSession, new TextMessage(objectMapper.writeValueAsString(incoming)));
+
+        assertEquals(1, meterRegistry.get("ws.message.processing").tag("type", "CHAT").timer().count());
+        assertEquals(2.0, meterRegistry.get("ws.broadcast.fanout").tag("room_type", "GENERAL").summary().max());
+        assertEquals(2.0, meterRegistry.get("ws.users.online").gauge().value());
+        assertTrue(meterRegistry.get("ws.send").timer().count() >= 2);
+    }
+
     @Test
     @DisplayName("handleTextMessage - rejects oversized payload")
     void handleMessage_oversized() throws Exception {
@@ -663,7 +758,7 @@ class ChatWebSocketHandlerTest {
     }
 
     private RoomDto createRoom(String id, RoomType type) {
-        RoomDto room = new RoomDto(id, "Room", type, "system", "2026-01-01 12:00:00");
+        RoomDto room = new RoomDto(id, "Room", type, "system", Timestamps.parse("2026-01-01 12:00:00"));
         room.setMembers(new LinkedHashSet<>(Set.of("alice", "bob")));
         return room;
     }
@@ -1653,7 +1748,7 @@ class ChatWebSocketHandlerTest {
         WebSocketSession aliceSession = connectUser("s1", "alice", "token-a");
         connectUser("s2", "bob", "token-b");
 
-        RoomDto room = new RoomDto("room1", "Room", RoomType.PRIVATE, "alice", "2026-01-01 12:00:00");
+        RoomDto room = new RoomDto("room1", "Room", RoomType.PRIVATE, "alice", Timestamps.parse("2026-01-01 12:00:00"));
         room.setMembers(new LinkedHashSet<>(Set.of("alice", "bob")));
         when(roomService.getRoomById("room1")).thenReturn(room);
 
@@ -1673,7 +1768,7 @@ class ChatWebSocketHandlerTest {
     void chatMessage_generalRoom_loadsOnce() throws Exception {
         WebSocketSession aliceSession = connectUser("s1", "alice", "token-a");
 
-        RoomDto room = new RoomDto("general", "General", RoomType.GENERAL, "system", "2026-01-01 12:00:00");
+        RoomDto room = new RoomDto("general", "General", RoomType.GENERAL, "system", Timestamps.parse("2026-01-01 12:00:00"));
         room.setMembers(new LinkedHashSet<>(Set.of("alice")));
         when(roomService.getRoomById("general")).thenReturn(room);
 
@@ -1693,7 +1788,7 @@ class ChatWebSocketHandlerTest {
     void chatMessage_nonMember_rejectedSingleLoad() throws Exception {
         WebSocketSession charlieSession = connectUser("s3", "charlie", "token-c");
 
-        RoomDto room = new RoomDto("room1", "Room", RoomType.PRIVATE, "alice", "2026-01-01 12:00:00");
+        RoomDto room = new RoomDto("room1", "Room", RoomType.PRIVATE, "alice", Timestamps.parse("2026-01-01 12:00:00"));
         room.setMembers(new LinkedHashSet<>(Set.of("alice", "bob")));
         when(roomService.getRoomById("room1")).thenReturn(room);
 
@@ -1,5 +1,6 @@
 package com.example.webrtcchat.controller;
 
+import com.example.webrtcchat.dto.Timestamps;
 import com.example.webrtcchat.entity.ContactEntity;
 import com.example.webrtcchat.entity.UserEntity;
 import com.example.webrtcchat.repository.BlockedUserRepository;
@@ -149,7 +150,7 @@ class ContactBlockControllerTest {
             // batch load via findByUsernameIn (audit 3.2 — N+1 fix)
             when(userRepository.findByUsernameIn(List.of("bob"))).thenReturn(List.of(bobUser));
             when(chatService.isUserOnline("bob")).thenReturn(true);
-            when(chatService.getLastSeen("bob")).thenReturn("2026-01-01 12:00:00");
+            when(chatService.getLastSeen("bob")).thenReturn(Timestamps.parse("2026-01-01 12:00:00"));
 
             mockMvc.perform(get("/api/contacts").principal(principal("alice")))
                     .andExpect(status().isOk())
@@ -178,7 +179,7 @@ class ContactBlockControllerTest {
             when(userRepository.findByUsernameIn(List.of("bob", "charlie")))
                     .thenReturn(List.of(bobUser, charlieUser));
             when(chatService.isUserOnline(anyString())).thenReturn(false);
-            when(chatService.getLastSeen(anyString())).thenReturn("2026-01-01 12:00:00");
+            when(chatService.getLastSeen(anyString())).thenReturn(Timestamps.parse("2026-01-01 12:00:00"));
 
             mockMvc.perform(get("/api/contacts").principal(principal("alice")))
                     .andExpect(status().isOk())
@@ -0,0 +1,64 @@
+package com.example.webrtcchat.controller;
+
+import com.example.webrtcchat.service.ChunkedUploadService;
+import com.example.webrtcchat.service.ImageVariantService;
+import com.example.webrtcchat.service.JwtService;
+import com.example.webrtcchat.service.UploadService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Files;
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * X-Accel-Redirect mode: the backend validates and decides headers, nginx sends the bytes.
+ */
+@WebMvcTest(FileController.class)
+@Import({UploadService.class, ChunkedUploadService.class, ImageVariantService.class, SimpleMeterRegistry.class})
+@AutoConfigureMockMvc(addFilters = false)
+@TestPropertySource(properties = "upload.accel-redirect.enabled=true")
+class FileControllerAccelRedirectTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UploadService uploadService;
+
+    @MockBean
+    private JwtService jwtService;
+
+    @Test
+    @DisplayName("GET /api/uploads/{file} - answers with X-Accel-Redirect and no body")
+    void getFile_redirectsToNginx() throws Exception {
+        String name = UUID.randomUUID() + ".pdf";
+        Files.write(uploadService.getUploadDir().resolve(name), "%PDF-1.4 body".getBytes());
+
+        mockMvc.perform(get("/api/uploads/" + name))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Accel-Redirect", "/internal-uploads/" + name))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"" + name + "\""))
+                .andExpect(header().string("Cache-Control", "public, max-age=31536000, immutable"))
+                .andExpect(header().doesNotExist("Content-Range"))
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    @DisplayName("GET /api/uploads/{file} - validation still happens in the backend")
+    void getFile_missingFileNotRedirected() throws Exception {
+        mockMvc.perform(get("/api/uploads/missing-" + UUID.randomUUID() + ".png"))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist("X-Accel-Redirect"));
+    }
+}
@@ -1,6 +1,10 @@
 package com.example.webrtcchat.controller;
 
+import com.example.webrtcchat.service.ChunkedUploadService;
+import com.example.webrtcchat.service.ImageVariantService;
 import com.example.webrtcchat.service.JwtService;
+import com.example.webrtcchat.service.UploadService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -8,26 +12,41 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(FileController.class)
+@Import({UploadService.class, ChunkedUploadService.class, ImageVariantService.class, SimpleMeterRegistry.class})
 @AutoConfigureMockMvc(addFilters = false)
 class FileControllerTest {
 
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private UploadService uploadService;
+
     @MockBean
     private JwtService jwtService;
 
+    /** Place a 100-byte file (bytes 0..99) under a UUID name in the upload dir. */
+    private String storeSample() throws Exception {
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) i;
+        String name = java.util.UUID.randomUUID() + ".pdf";
+        Files.write(uploadService.getUploadDir().resolve(name), data);
+        return name;
+    }
+
     // === uploadImage ===
 
     @Test
@@ -64,6 +83,31 @@ class FileControllerTest {
                 .andExpect(jsonPath("$.error").value("Image too large (max 20MB)"));
     }
 
+    @Test
+    @DisplayName("POST /api/upload - accepts real PNG bytes, returns sniffed type and sha256")
+    void uploadImage_acceptsPng() throws Exception {
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D};
+        MockMultipartFile file = new MockMultipartFile(
+                "file", "pic.png", "application/octet-stream", png);
+
+        mockMvc.perform(multipart("/api/upload").file(file))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.contentType").value("image/png"))
+                .andExpect(jsonPath("$.size").value(png.length))
+                .andExpect(jsonPath("$.sha256").isString());
+    }
+
+    @Test
+    @DisplayName("POST /api/upload - rejects .png whose bytes are not an image")
+    void uploadImage_rejectsFakePng() throws Exception {
+        MockMultipartFile file = new MockMultipartFile(
+                "file", "fake.png", "image/png", "<html>not an image</html>".getBytes());
+
+        mockMvc.perform(multipart("/api/upload").file(file))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("File content is not a valid image"));
+    }
+
     // === uploadAnyFile ===
 
     @Test
@@ -167,4 +211,215 @@ class FileControllerTest {
         mockMvc.perform(get("/api/uploads/nonexistent-file-12345.png"))
                 .andExpect(status().isNotFound());
     }
+
+    @Test
+    @DisplayName("GET /api/uploads/{uuid} - strong ETag, immutable caching, 304 on If-None-Match")
+    void getFile_etagAndNotModified() throws Exception {
+        String name = storeSample();
+
+        String etag = mockMvc.perform(get("/api/uploads/" + name))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(header().string("Cache-Control", "public, max-age=31536000, immutable"))
+                .andExpect(header().longValue("Content-Length", 100))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+
+        mockMvc.perform(get("/api/uploads/" + name).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    @DisplayName("GET /api/uploads/{uuid} - single range returns 206 with exact bytes")
+    void getFile_singleRange() throws Exception {
+        String name = storeSample();
+
+        mockMvc.perform(get("/api/uploads/" + name).header("Range", "bytes=10-19"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 10-19/100"))
+                .andExpect(content().bytes(new byte[]{10, 11, 12, 13, 14, 15, 16, 17, 18, 19}));
+
+        mockMvc.perform(get("/api/uploads/" + name).header("Range", "bytes=-3"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 97-99/100"))
+                .andExpect(content().bytes(new byte[]{97, 98, 99}));
+    }
+
+    @Test
+    @DisplayName("GET /api/uploads/{uuid} - multiple ranges return multipart/byteranges")
+    void getFile_multiRange() throws Exception {
+        String name = storeSample();
+
+        var response = mockMvc.perform(get("/api/uploads/" + name).header("Range", "bytes=0-1,50-51"))
+                .andExpect(status().isPartialContent())
+                .andReturn().getResponse();
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        String body = response.getContentAsString(java.nio.charset.StandardCharsets.ISO_8859_1);
+        assertTrue(body.contains("Content-Range: bytes 0-1/100"));
+        assertTrue(body.contains("Content-Range: bytes 50-51/100"));
+        assertEquals(response.getContentAsByteArray().length, response.getContentLengthLong());
+    }
+
+    @Test
+    @DisplayName("GET /api/uploads/{uuid} - unsatisfiable range returns 416")
+    void getFile_unsatisfiableRange() throws Exception {
+        String name = storeSample();
+
+        mockMvc.perform(get("/api/uploads/" + name).header("Range", "bytes=500-600"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */100"));
+    }
+
+    @Test
+    @DisplayName("parseRanges sorts and coalesces ranges, and ignores ranges adding up to more than the file")
+    void parseRanges_coalesces() {
+        List<long[]> ranges = FileController.parseRanges("bytes=50-59,0-9,5-19,20-29,-10", 100);
+        assertEquals(3, ranges.size());
+        assertArrayEquals(new long[]{0, 29}, ranges.get(0));
+        assertArrayEquals(new long[]{50, 59}, ranges.get(1));
+        assertArrayEquals(new long[]{90, 99}, ranges.get(2));
+
+        assertNull(FileController.parseRanges("bytes=0-,0-,0-", 100), "repeated whole-file ranges are ignored");
+        assertNull(FileController.parseRanges("bytes=0-60,40-99", 100));
+        assertEquals(1, FileController.parseRanges("bytes=0-49,50-", 100).size());
+    }
+
+    @Test
+    @DisplayName("GET /api/uploads/{uuid} - stale If-Range serves the full file")
+    void getFile_staleIfRange() throws Exception {
+        String name = storeSample();
+
+        mockMvc.perform(get("/api/uploads/" + name)
+                        .header("Range", "bytes=0-9")
+                        .header("If-Range", "\"other\""))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue("Content-Length", 100));
+    }
+
+    // === resumable uploads ===
+
+    @Test
+    @DisplayName("resumable upload - create, PUT chunks out of order, complete")
+    void resumableUpload_roundTrip() throws Exception {
+        byte[] data = new byte[5 * 1024 * 1024]; // two chunks with the default 4MB chunk size
+        System.arraycopy("%PDF-1.4".getBytes(), 0, data, 0, 8);
+
+        String created = mockMvc.perform(post("/api/upload/sessions").principal(() -> "alice")
+                        .contentType("application/json")
+                        .content("{\"fileName\":\"big.pdf\",\"size\":" + data.length + "}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalChunks").value(2))
+                .andReturn().getResponse().getContentAsString();
+        String id = com.jayway.jsonpath.JsonPath.read(created, "$.uploadId");
+        int chunk = com.jayway.jsonpath.JsonPath.read(created, "$.chunkSize");
+
+        mockMvc.perform(put("/api/upload/sessions/" + id + "/chunks/1").principal(() -> "alice")
+                        .content(java.util.Arrays.copyOfRange(data, chunk, data.length)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.missingChunks[0]").value(0));
+        mockMvc.perform(post("/api/upload/sessions/" + id + "/complete").principal(() -> "alice"))
+                .andExpect(status().isConflict());
+        mockMvc.perform(put("/api/upload/sessions/" + id + "/chunks/0").principal(() -> "alice")
+                        .content(java.util.Arrays.copyOfRange(data, 0, chunk)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/upload/sessions/" + id + "/complete").principal(() -> "alice"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.originalName").value("big.pdf"))
+                .andExpect(jsonPath("$.contentType").value("application/pdf"))
+                .andExpect(jsonPath("$.size").value(data.length));
+    }
+
+    @Test
+    @DisplayName("resumable upload - same extension rules as single-request uploads")
+    void resumableUpload_blocksExe() throws Exception {
+        mockMvc.perform(post("/api/upload/sessions").principal(() -> "alice")
+                        .contentType("application/json")
+                        .content("{\"fileName\":\"setup.exe\",\"size\":1000}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("File type not allowed: .exe"));
+    }
+
+    @Test
+    @DisplayName("POST /api/upload/check - stored content resolves only with proof of possession")
+    void checkExisting_hit() throws Exception {
+        byte[] pdf = "%PDF-1.4 dedup".getBytes();
+        String sha = java.util.HexFormat.of().formatHex(
+                java.security.MessageDigest.getInstance("SHA-256").digest(pdf));
+        mockMvc.perform(multipart("/api/upload/file")
+                        .file(new MockMultipartFile("file", "doc.pdf", "application/pdf", pdf)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.filename").value(sha + ".pdf"));
+
+        String request = "{\"sha256\":\"" + sha + "\",\"fileName\":\"copy.pdf\",\"size\":" + pdf.length;
+        String challenge = mockMvc.perform(post("/api/upload/check").principal(() -> "alice")
+                        .contentType("application/json").content(request + "}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.exists").doesNotExist())
+                .andExpect(jsonPath("$.url").doesNotExist())
+                .andReturn().getResponse().getContentAsString();
+        int offset = com.jayway.jsonpath.JsonPath.read(challenge, "$.challenge.offset");
+        int length = com.jayway.jsonpath.JsonPath.read(challenge, "$.challenge.length");
+        String token = com.jayway.jsonpath.JsonPath.read(challenge, "$.challenge.token");
+        java.security.MessageDigest digest = java.security.MessageDigest.getInstance("SHA-256");
+        digest.update(token.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        String proof = java.util.HexFormat.of().formatHex(digest.digest(java.util.Arrays.copyOfRange(pdf, offset, offset + length)));
+        String answer = request + ",\"offset\":" + offset + ",\"length\":" + length
+                + ",\"token\":\"" + token + "\",\"proof\":\"";
+
+        mockMvc.perform(post("/api/upload/check").principal(() -> "alice")
+                        .contentType("application/json").content(answer + proof + "\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.exists").value(true))
+                .andExpect(jsonPath("$.url").value("/api/uploads/" + sha + ".pdf"))
+                .andExpect(jsonPath("$.originalName").value("copy.pdf"));
+
+        mockMvc.perform(post("/api/upload/check").principal(() -> "alice")
+                        .contentType("application/json").content(answer + sha + "\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.exists").value(false));
+
+        mockMvc.perform(post("/api/upload/check").principal(() -> "alice").contentType("application/json")
+                        .content("{\"sha256\":\"" + "0".repeat(64) + "\",\"fileName\":\"copy.pdf\",\"size\":14}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.challenge.token").exists());
+    }
+
+    // === image variants ===
+
+    @Test
+    @DisplayName("GET /api/uploads/{image}?w= - serves a cached, downscaled variant")
+    void getFile_imageVariant() throws Exception {
+        java.awt.image.BufferedImage image = new java.awt.image.BufferedImage(800, 600,
+                java.awt.image.BufferedImage.TYPE_INT_RGB);
+        java.io.ByteArrayOutputStream png = new java.io.ByteArrayOutputStream();
+        javax.imageio.ImageIO.write(image, "png", png);
+        String uploaded = mockMvc.perform(multipart("/api/upload")
+                        .file(new MockMultipartFile("file", "photo.png", "image/png", png.toByteArray())))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String url = com.jayway.jsonpath.JsonPath.read(uploaded, "$.url");
+
+        byte[] variant = mockMvc.perform(get(url).param("w", "100").param("format", "jpeg"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "image/jpeg"))
+                .andReturn().getResponse().getContentAsByteArray();
+        java.awt.image.BufferedImage decoded = javax.imageio.ImageIO.read(new java.io.ByteArrayInputStream(variant));
+        assertEquals(128, decoded.getWidth()); // snapped up to the next allowed width
+        assertEquals(96, decoded.getHeight());
+
+        mockMvc.perform(get(url).param("w", "0")).andExpect(status().isBadRequest());
+        mockMvc.perform(get(url).param("w", "128").param("format", "tiff")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("GET /api/uploads/{file}?w= - non-images are served unchanged")
+    void getFile_variantOfNonImage() throws Exception {
+        String name = storeSample();
+
+        mockMvc.perform(get("/api/uploads/" + name).param("w", "128"))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue("Content-Length", 100));
+    }
 }
@@ -1,6 +1,7 @@
 package com.example.webrtcchat.controller;
 
 import com.example.webrtcchat.dto.RoomDto;
+import com.example.webrtcchat.dto.Timestamps;
 import com.example.webrtcchat.entity.MessageEntity;
 import com.example.webrtcchat.repository.MessageRepository;
 import com.example.webrtcchat.repository.RoomRepository;
@@ -158,7 +159,7 @@ class PerformanceControllerTest {
     // ═══════════════════════════════════════════
 
     private RoomDto createRoom(String id, String name, RoomType type, Set<String> members) {
-        RoomDto dto = new RoomDto(id, name, type, "system", "2026-01-01 12:00:00");
+        RoomDto dto = new RoomDto(id, name, type, "system", Timestamps.parse("2026-01-01 12:00:00"));
         dto.setMembers(new LinkedHashSet<>(members));
         return dto;
     }
@@ -169,7 +170,7 @@ class PerformanceControllerTest {
         e.setRoomId(roomId);
         e.setSender(sender);
         e.setContent(content);
-        e.setTimestamp(ts);
+        e.setTimestamp(Timestamps.parse(ts));
         e.setType(MessageType.CHAT);
         return e;
     }
@@ -3,6 +3,8 @@ package com.example.webrtcchat.controller;
 import com.example.webrtcchat.entity.UserEntity;
 import com.example.webrtcchat.repository.UserRepository;
 import com.example.webrtcchat.service.ChatService;
+import com.example.webrtcchat.service.UploadRefService;
+import com.example.webrtcchat.service.UploadService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -11,6 +13,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
@@ -25,6 +28,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(ProfileController.class)
+@Import(UploadService.class)
 @AutoConfigureMockMvc(addFilters = false)
 class ProfileControllerTest {
 
@@ -37,6 +41,9 @@ class ProfileControllerTest {
     @MockBean
     private UserRepository userRepository;
 
+    @MockBean
+    private UploadRefService uploadRefService;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     private UserEntity createTestUser() {
@@ -371,6 +378,28 @@ class ProfileControllerTest {
             verify(chatService).updateAvatarUrl(eq("testuser"), anyString());
         }
 
+        @Test
+        @DisplayName("references the new avatar blob before releasing the old one")
+        void uploadAvatar_swapsReferences() throws Exception {
+            when(chatService.getAvatarUrl("testuser")).thenReturn("/api/uploads/avatar_old.jpg");
+
+            MockMultipartFile file = new MockMultipartFile(
+                    "file", "avatar.png", "image/png",
+                    new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 1, 2, 3}
+            );
+
+            mockMvc.perform(multipart("/api/profile/avatar")
+                            .file(file)
+                            .principal(() -> "testuser"))
+                    .andExpect(status().isOk());
+
+            var order = inOrder(uploadRefService);
+            order.verify(uploadRefService).addRefs(eq(UploadRefService.OWNER_AVATAR), eq("testuser"),
+                    startsWith("/api/uploads/avatar_"));
+            order.verify(uploadRefService).releaseRef(UploadRefService.OWNER_AVATAR, "testuser",
+                    "/api/uploads/avatar_old.jpg");
+        }
+
         @Test
         @DisplayName("rejects empty file")
         void uploadAvatar_emptyFile() throws Exception {
@@ -433,6 +462,7 @@ class ProfileControllerTest {
                     .andExpect(jsonPath("$.avatarUrl").value(""));
 
             verify(chatService).updateAvatarUrl("testuser", null);
+            verify(uploadRefService).releaseRefs(UploadRefService.OWNER_AVATAR, "testuser");
         }
 
         @Test
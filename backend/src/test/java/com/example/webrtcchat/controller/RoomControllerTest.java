@@ -2,6 +2,7 @@ package com.example.webrtcchat.controller;
 
 import com.example.webrtcchat.dto.MessageDto;
 import com.example.webrtcchat.dto.RoomDto;
+import com.example.webrtcchat.dto.Timestamps;
 import com.example.webrtcchat.repository.MessageRepository;
 import com.example.webrtcchat.repository.RoomRepository;
 import com.example.webrtcchat.service.*;
@@ -207,7 +208,7 @@ class RoomControllerTest {
         RoomDto room = createRoomDto("general", "Общий чат", RoomType.GENERAL, Set.of());
         when(roomService.getRoomById("general")).thenReturn(room);
 
-        MessageDto msg = new MessageDto("alice", "Hello", "2026-01-01 12:00:00", null);
+        MessageDto msg = new MessageDto("alice", "Hello", Timestamps.parse("2026-01-01 12:00:00"), null);
         when(chatService.getHistory("general", 0, 100)).thenReturn(List.of(msg));
 
         mockMvc.perform(get("/api/rooms/general/history").principal(() -> "alice"))
@@ -307,7 +308,7 @@ class RoomControllerTest {
     // === Helpers ===
 
     private RoomDto createRoomDto(String id, String name, RoomType type, Set<String> members) {
-        RoomDto dto = new RoomDto(id, name, type, "system", "2026-01-01 12:00:00");
+        RoomDto dto = new RoomDto(id, name, type, "system", Timestamps.parse("2026-01-01 12:00:00"));
         dto.setMembers(new LinkedHashSet<>(members));
         return dto;
     }
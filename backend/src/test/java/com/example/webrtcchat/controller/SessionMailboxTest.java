@@ -0,0 +1,119 @@
+package com.example.webrtcchat.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Per-session inbox: FIFO on virtual threads, bounded capacity, overflow, global limits.
+ */
+class SessionMailboxTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger globalQueued = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private SessionMailbox mailbox(int capacity, int globalCapacity, Semaphore inFlight) {
+        return new SessionMailbox(capacity, globalQueued, globalCapacity, inFlight, executor::submit);
+    }
+
+    @Test
+    @DisplayName("frames of one session run one at a time in arrival order")
+    void preservesOrder() throws Exception {
+        SessionMailbox mailbox = mailbox(1000, 1000, new Semaphore(8));
+        List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(500);
+        for (int i = 0; i < 500; i++) {
+            int n = i;
+            assertTrue(mailbox.offer(() -> {
+                assertEquals(1, running.incrementAndGet());
+                seen.add(n);
+                running.decrementAndGet();
+                done.countDown();
+            }, false));
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 500; i++) assertEquals(i, seen.get(i));
+    }
+
+    @Test
+    @DisplayName("a full inbox rejects, or drops its oldest frame when asked to")
+    void overflow() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        SessionMailbox mailbox = mailbox(2, 1000, new Semaphore(8));
+        List<String> seen = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch blocked = new CountDownLatch(1);
+        mailbox.offer(() -> {
+            blocked.countDown();
+            awaitQuietly(release);
+        }, false);
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        assertTrue(mailbox.offer(() -> seen.add("a"), false));
+        assertTrue(mailbox.offer(() -> seen.add("b"), false));
+        assertFalse(mailbox.offer(() -> seen.add("c"), false));
+        assertTrue(mailbox.offer(() -> seen.add("d"), true));
+        assertEquals(2, mailbox.size());
+
+        CountDownLatch drained = new CountDownLatch(1);
+        release.countDown();
+        while (mailbox.size() > 0) Thread.sleep(5);
+        mailbox.offer(drained::countDown, false);
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("b", "d"), seen);
+        assertEquals(0, globalQueued.get());
+    }
+
+    @Test
+    @DisplayName("the global queue budget and in-flight limit apply across sessions")
+    void globalLimits() throws Exception {
+        Semaphore inFlight = new Semaphore(2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<SessionMailbox> sessions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) sessions.add(mailbox(10, 6, inFlight));
+
+        for (SessionMailbox m : sessions) {
+            assertTrue(m.offer(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                awaitQuietly(release);
+                running.decrementAndGet();
+            }, false));
+        }
+        Thread.sleep(100);
+        assertEquals(2, running.get());       // two run, three wait for a permit
+        // every drain is busy, so further frames stay queued until the shared budget of 6 is spent
+        for (int i = 0; i < 6; i++) assertTrue(sessions.get(i % 5).offer(() -> { }, false));
+        assertFalse(sessions.get(4).offer(() -> { }, false));
+
+        release.countDown();
+        while (globalQueued.get() > 0 || inFlight.availablePermits() < 2) Thread.sleep(5);
+        assertEquals(2, maxRunning.get());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.webrtcchat.dataset;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC proxy that records every prepared query run on the current thread together with its
+ * parameter bindings, so the exact SQL a repository method produced can be re-run under
+ * {@code EXPLAIN} with the same arguments.
+ */
+final class CapturingDataSource {
+
+    /** One executed statement: SQL text plus the {@code setXxx} calls that bound it. */
+    record CapturedQuery(String sql, List<Binding> bindings) {
+
+        void bind(PreparedStatement target) throws Exception {
+            for (Binding b : bindings) b.method().invoke(target, b.args());
+        }
+    }
+
+    record Binding(Method method, Object[] args) {}
+
+    private static final ThreadLocal<List<CapturedQuery>> CAPTURED = ThreadLocal.withInitial(ArrayList::new);
+
+    private CapturingDataSource() {}
+
+    static DataSource wrap(DataSource target) {
+        return proxy(DataSource.class, target, (method, args, result) ->
+                method.getName().equals("getConnection") ? connection((Connection) result) : result);
+    }
+
+    /** Statements captured on this thread since the last call, oldest first. */
+    static List<CapturedQuery> drain() {
+        List<CapturedQuery> queries = List.copyOf(CAPTURED.get());
+        CAPTURED.get().clear();
+        return queries;
+    }
+
+    private static Connection connection(Connection target) {
+        return proxy(Connection.class, target, (method, args, result) -> {
+            if (method.getName().equals("prepareStatement") && args != null && args[0] instanceof String sql) {
+                return statement((PreparedStatement) result, sql);
+            }
+            return result;
+        });
+    }
+
+    private static PreparedStatement statement(PreparedStatement target, String sql) {
+        List<Binding> bindings = new ArrayList<>();
+        return proxy(PreparedStatement.class, target, (method, args, result) -> {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                bindings.add(new Binding(method, args.clone()));
+            } else if (name.equals("clearParameters")) {
+                bindings.clear();
+            } else if (name.equals("executeQuery") && (args == null || args.length == 0)) {
+                CAPTURED.get().add(new CapturedQuery(sql, List.copyOf(bindings)));
+            }
+            return result;
+        });
+    }
+
+    private interface AfterCall {
+        Object apply(Method method, Object[] args, Object result) throws Exception;
+    }
+
+    private static <T> T proxy(Class<T> type, T target, AfterCall after) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            try {
+                return after.apply(method, args, method.invoke(target, args));
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.webrtcchat.dataset;
+
+import com.example.webrtcchat.dataset.CapturingDataSource.CapturedQuery;
+import com.example.webrtcchat.repository.MessageRepository;
+import com.example.webrtcchat.repository.RoomRepository;
+import com.example.webrtcchat.service.RoomService;
+import com.example.webrtcchat.types.MessageType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Query-plan regression suite over a {@link SyntheticDataset}. Each case runs a repository
+ * method, captures the SQL Hibernate issued, re-runs it under {@code EXPLAIN} with the same
+ * bindings and fails on a full scan of a large table. Plans and timings are written to
+ * {@code target/query-plans/} for review.
+ * <p>
+ * Tagged {@code query-plans} and excluded from the default build; run with {@code mvn test -Pquery-plans}.
+ * On H2 only plan shapes are checked: H2 timings are noise and its plans know nothing of the
+ * partitions, trigram index and listagg of the PostgreSQL schema. Median latency budgets apply
+ * when {@code dataset.jdbc-url} points at PostgreSQL with the Flyway schema, e.g.
+ * {@code mvn test -Pquery-plans -Ddataset.jdbc-url=jdbc:postgresql://localhost/bench
+ * -Ddataset.driver=org.postgresql.Driver -Ddataset.dialect=org.hibernate.dialect.PostgreSQLDialect
+ * -Ddataset.ddl-auto=none -Ddataset.flyway=true -Ddataset.messages=5000000 -Ddataset.budget-multiplier=4}.
+ */
+@Tag("query-plans")
+@SpringBootTest
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Import(QueryPlanRegressionTest.CaptureConfig.class)
+@TestPropertySource(properties = {
+        "spring.datasource.url=${dataset.jdbc-url:jdbc:h2:mem:dataset;DB_CLOSE_DELAY=-1}",
+        "spring.datasource.driver-class-name=${dataset.driver:org.h2.Driver}",
+        "spring.datasource.username=${dataset.username:sa}",
+        "spring.datasource.password=${dataset.password:}",
+        "spring.jpa.properties.hibernate.dialect=${dataset.dialect:org.hibernate.dialect.H2Dialect}",
+        "spring.jpa.hibernate.ddl-auto=${dataset.ddl-auto:create-drop}",
+        "spring.flyway.enabled=${dataset.flyway:false}",
+        "logging.level.com.example.webrtcchat=WARN"
+})
+class QueryPlanRegressionTest {
+
+    /** Tables that grow with usage; a full scan of any of them fails the plan check. */
+    private static final Set<String> LARGE_TABLES = Set.of(
+            "messages", "room_members", "rooms", "reactions", "app_users", "story_views", "poll_votes");
+    private static final Pattern H2_SCAN = Pattern.compile("\"?(\\w+)\"?\\.tableScan");
+    private static final Pattern PG_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+    private static final int RUNS = 5;
+
+    @TestConfiguration
+    static class CaptureConfig {
+        @Bean
+        static BeanPostProcessor capturingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource ds ? CapturingDataSource.wrap(ds) : bean;
+                }
+            };
+        }
+    }
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private RoomService roomService;
+
+    private SyntheticDataset.Summary dataset;
+    private final double budgetMultiplier = Double.parseDouble(System.getProperty("dataset.budget-multiplier", "1"));
+    private final boolean latencyBudgets = System.getProperty("dataset.jdbc-url", "").startsWith("jdbc:postgresql:");
+
+    @BeforeAll
+    void loadDataset() throws Exception {
+        dataset = new SyntheticDataset(SyntheticDataset.Spec.fromSystemProperties()).load(dataSource);
+        CapturingDataSource.drain();
+    }
+
+    @Test
+    @DisplayName("getUserRooms uses the member index for the busiest user, members included")
+    void getUserRooms() throws Exception {
+        String user = dataset.users().get(0);
+        assertPlan("getUserRooms", 200, () -> roomService.getUserRooms(user));
+    }
+
+    @Test
+    @DisplayName("findLastMessagesByRoomIds over all rooms of the busiest user")
+    void findLastMessagesByRoomIds() throws Exception {
+        List<String> rooms = dataset.roomsByUser().get(dataset.users().get(0));
+        assertPlan("findLastMessagesByRoomIds", 250, () -> messageRepository.findLastMessagesByRoomIds(rooms));
+    }
+
+    @Test
+    @DisplayName("searchMessagesGlobal for a rare word across the busiest user's rooms")
+    void searchMessagesGlobal() throws Exception {
+        List<String> rooms = dataset.roomsByUser().get(dataset.users().get(0));
+        // A substring match filters every message of these rooms on H2; on Postgres the trigram index serves it
+        assertPlan("searchMessagesGlobal", 1000, () ->
+                messageRepository.searchMessagesGlobal(rooms, SyntheticDataset.RARE_WORD,
+                        Instant.EPOCH, Instant.now().plus(Duration.ofDays(1)), PageRequest.of(0, 50)));
+    }
+
+    @Test
+    @DisplayName("findByRoomIdAndTypeInAndSenderNotAndStatusNot on the busiest room")
+    void unreadInBusiestRoom() throws Exception {
+        String room = dataset.busiestRooms().get(0);
+        String reader = dataset.users().get(1);
+        assertPlan("findByRoomIdAndTypeInAndSenderNotAndStatusNot", 400, () ->
+                messageRepository.findByRoomIdAndTypeInAndSenderNotAndStatusNot(
+                        room, List.of(MessageType.CHAT, MessageType.VOICE), reader, "READ"));
+    }
+
+    @Test
+    @DisplayName("countActiveRoomsSince for the last 24 hours")
+    void countActiveRoomsSince() throws Exception {
+        Instant since = Instant.now().minus(Duration.ofDays(1));
+        assertPlan("countActiveRoomsSince", 100, () -> roomRepository.countActiveRoomsSince(since));
+    }
+
+    // === Plan and budget checks ===
+
+    private void assertPlan(String name, long budgetMs, Supplier<?> query) throws Exception {
+        CapturingDataSource.drain();
+        query.get();
+        List<CapturedQuery> captured = CapturingDataSource.drain();
+        assertFalse(captured.isEmpty(), name + ": no SQL captured");
+
+        List<String> plans = new ArrayList<>();
+        for (CapturedQuery q : captured) plans.add(q.sql() + "\n" + explain(q));
+        Path out = Path.of("target", "query-plans", name + ".txt");
+        Files.createDirectories(out.getParent());
+        Files.writeString(out, String.join("\n\n", plans));
+
+        for (String plan : plans) {
+            List<String> scanned = fullScans(plan);
+            assertTrue(scanned.isEmpty(), name + ": full scan of " + scanned + "\n" + plan);
+        }
+
+        long[] nanos = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            query.get();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        double medianMs = nanos[RUNS / 2] / 1e6;
+        double allowedMs = budgetMs * budgetMultiplier;
+        Files.writeString(out, String.format(Locale.ROOT, "%n%n-- median %.1f ms, max %.1f ms, budget %.1f ms%s%n",
+                medianMs, nanos[RUNS - 1] / 1e6, allowedMs, latencyBudgets ? "" : " (not enforced)"),
+                StandardOpenOption.APPEND);
+        assertTrue(!latencyBudgets || medianMs <= allowedMs,
+                String.format(Locale.ROOT, "%s: median %.1f ms over budget %.1f ms", name, medianMs, allowedMs));
+    }
+
+    private String explain(CapturedQuery query) throws Exception {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("EXPLAIN " + query.sql())) {
+            query.bind(ps);
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) plan.append(rs.getString(1)).append('\n');
+            }
+            return plan.toString();
+        }
+    }
+
+    private static List<String> fullScans(String plan) {
+        List<String> tables = new ArrayList<>();
+        for (Pattern p : List.of(H2_SCAN, PG_SCAN)) {
+            Matcher m = p.matcher(plan);
+            while (m.find()) {
+                String table = m.group(1).toLowerCase(Locale.ROOT);
+                if (LARGE_TABLES.contains(table)) tables.add(table);
+            }
+        }
+        return tables;
+    }
+}
@@ -0,0 +1,366 @@
+package com.example.webrtcchat.dataset;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Bulk loader for a realistic chat dataset: users with Zipf-skewed activity, private rooms
+ * concentrated on popular users, group rooms with a long-tailed size distribution, messages
+ * skewed across rooms and senders, plus reactions, polls and stories.
+ * <p>
+ * Rows are written with PostgreSQL {@code COPY} when the connection is pgjdbc, and with
+ * batched JDBC inserts otherwise (H2). Generation is deterministic for a given {@link Spec}.
+ */
+final class SyntheticDataset {
+
+    private static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    /** Rare word planted in {@link #RARE_WORD_RATE} of messages, for selective search queries. */
+    static final String RARE_WORD = "квазар";
+    private static final double RARE_WORD_RATE = 0.001;
+    private static final int BATCH = 1000;
+    private static final String[] WORDS = {
+            "привет", "как", "дела", "сегодня", "завтра", "встреча", "проект", "код", "релиз", "баг",
+            "кот", "барсик", "обед", "кофе", "звонок", "видео", "фото", "ссылка", "документ", "отчёт",
+            "hello", "thanks", "ok", "deploy", "review", "merge", "test", "build", "server", "client",
+            "да", "нет", "может", "потом", "сейчас", "спасибо", "пока", "хорошо", "отлично", "ладно"};
+    private static final String[] EMOJI = {"👍", "❤️", "😂", "🔥", "😮", "😢", "🎉", "👀"};
+    private static final String[] STATUS = {"SENT", "DELIVERED", "READ", "READ", "READ"};
+
+    /** Dataset size; {@link #fromSystemProperties()} scales it via {@code -Ddataset.*}. */
+    record Spec(int users, int privateRooms, int groupRooms, int messages, double reactionRate,
+                int polls, int stories, long seed) {
+
+        static Spec fromSystemProperties() {
+            int users = Integer.getInteger("dataset.users", 2_000);
+            return new Spec(users,
+                    Integer.getInteger("dataset.private-rooms", users * 3 / 2),
+                    Integer.getInteger("dataset.group-rooms", Math.max(1, users / 10)),
+                    Integer.getInteger("dataset.messages", 100_000),
+                    Double.parseDouble(System.getProperty("dataset.reaction-rate", "0.1")),
+                    Integer.getInteger("dataset.polls", 200),
+                    Integer.getInteger("dataset.stories", users / 5),
+                    Long.getLong("dataset.seed", 42L));
+        }
+    }
+
+    /** What was generated, for picking realistic query arguments. */
+    record Summary(List<String> users, List<String> busiestRooms, Map<String, List<String>> roomsByUser,
+                   Instant oldestTimestamp, Instant newestTimestamp, long rows) {}
+
+    private final Spec spec;
+    private final Random random;
+    private final LocalDateTime now = LocalDateTime.now().withNano(0);
+    private long rows;
+
+    SyntheticDataset(Spec spec) {
+        this.spec = spec;
+        this.random = new Random(spec.seed());
+    }
+
+    Summary load(DataSource dataSource) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            boolean copy = conn.isWrapperFor(PGConnection.class);
+
+            List<String> users = new ArrayList<>(spec.users());
+            for (int i = 0; i < spec.users(); i++) users.add(String.format("user_%06d", i));
+            Zipf userActivity = new Zipf(users.size(), 1.1, random);
+            write(conn, copy, "app_users", new String[]{"username", "password", "role", "created_at", "last_seen"}, out -> {
+                for (String u : users) out.accept(new Object[]{u, "{noop}x", "USER", ts(365 * 86_400), at(7 * 86_400)});
+            });
+
+            // Rooms: GENERAL, private pairs skewed to popular users, long-tailed groups
+            Map<String, Set<String>> members = new HashMap<>();
+            List<String> roomIds = new ArrayList<>();
+            boolean hasGeneral;
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM rooms WHERE id = 'general'")) {
+                rs.next();
+                hasGeneral = rs.getLong(1) > 0;
+            }
+            List<Object[]> rooms = new ArrayList<>();
+            if (!hasGeneral) rooms.add(new Object[]{"general", "Общий чат", "GENERAL", "system", at(365 * 86_400), 0});
+            roomIds.add("general");
+            members.put("general", Set.of());
+            Set<String> pairs = new LinkedHashSet<>();
+            while (pairs.size() < spec.privateRooms()) {
+                int a = userActivity.next();
+                int b = random.nextInt(users.size());
+                if (a == b) continue;
+                String u1 = users.get(Math.min(a, b));
+                String u2 = users.get(Math.max(a, b));
+                String id = "pm_" + u1 + "_" + u2;
+                if (!pairs.add(id)) continue;
+                rooms.add(new Object[]{id, u1 + " & " + u2, "PRIVATE", u1, at(365 * 86_400), 0});
+                members.put(id, Set.of(u1, u2));
+                roomIds.add(id);
+            }
+            for (int g = 0; g < spec.groupRooms(); g++) {
+                String id = "grp_" + g;
+                // Pareto-ish sizes: most groups are small, a few hold a large share of users
+                int size = (int) Math.min(users.size(), 3 + Math.floor(2 / Math.pow(1 - random.nextDouble(), 1.2)));
+                Set<String> m = new LinkedHashSet<>();
+                while (m.size() < size) m.add(users.get(userActivity.next()));
+                String creator = m.iterator().next();
+                rooms.add(new Object[]{id, "Группа " + g, "ROOM", creator, at(365 * 86_400), 0});
+                members.put(id, m);
+                roomIds.add(id);
+            }
+            write(conn, copy, "rooms", new String[]{"id", "name", "type", "created_by", "created_at", "disappearing_seconds"},
+                    out -> rooms.forEach(out));
+            write(conn, copy, "room_members", new String[]{"room_id", "username"}, out ->
+                    members.forEach((room, m) -> m.forEach(u -> out.accept(new Object[]{room, u}))));
+
+            // Messages: room volume and sender choice are both skewed
+            Zipf roomVolume = new Zipf(roomIds.size(), 1.0, random);
+            List<String> messageIds = new ArrayList<>(spec.messages());
+            List<String> messageRooms = new ArrayList<>(spec.messages());
+            Map<String, Integer> perRoom = new HashMap<>();
+            Instant[] oldest = {null};
+            Instant[] newest = {null};
+            write(conn, copy, "messages", new String[]{"id", "sender", "content", "timestamp", "type", "room_id",
+                    "file_size", "status", "edited", "pinned"}, out -> {
+                for (int i = 0; i < spec.messages(); i++) {
+                    String roomId = roomIds.get(roomVolume.next());
+                    Set<String> m = members.get(roomId);
+                    String sender = m.isEmpty() ? users.get(userActivity.next()) : pick(m);
+                    OffsetDateTime timestamp = at(180 * 86_400);
+                    Instant instant = timestamp.toInstant();
+                    if (oldest[0] == null || instant.isBefore(oldest[0])) oldest[0] = instant;
+                    if (newest[0] == null || instant.isAfter(newest[0])) newest[0] = instant;
+                    String id = UUID.randomUUID().toString();
+                    String type = random.nextInt(50) == 0 ? "VOICE" : "CHAT";
+                    out.accept(new Object[]{id, sender, content(), timestamp, type, roomId, 0L,
+                            STATUS[random.nextInt(STATUS.length)], random.nextInt(40) == 0, random.nextInt(2000) == 0});
+                    messageIds.add(id);
+                    messageRooms.add(roomId);
+                    perRoom.merge(roomId, 1, Integer::sum);
+                }
+            });
+
+            write(conn, copy, "reactions", new String[]{"message_id", "room_id", "username", "emoji", "created_at"}, out -> {
+                for (int i = 0; i < messageIds.size(); i++) {
+                    if (random.nextDouble() >= spec.reactionRate()) continue;
+                    Set<String> seen = new LinkedHashSet<>();
+                    int count = 1 + (int) Math.floor(-Math.log(1 - random.nextDouble()) * 1.5);
+                    for (int r = 0; r < count; r++) {
+                        String user = users.get(userActivity.next());
+                        String emoji = EMOJI[Math.min(EMOJI.length - 1, (int) Math.floor(-Math.log(1 - random.nextDouble()) * 2))];
+                        if (seen.add(user + emoji)) {
+                            out.accept(new Object[]{messageIds.get(i), messageRooms.get(i), user, emoji, ts(180 * 86_400)});
+                        }
+                    }
+                }
+            });
+
+            loadPolls(conn, copy, users, userActivity, roomIds, roomVolume);
+            loadStories(conn, copy, users, userActivity);
+            conn.commit();
+            // Fresh statistics, as autovacuum would leave them, so the first plan is not a guess
+            try (Statement st = conn.createStatement()) {
+                st.execute("ANALYZE");
+            }
+
+            List<String> busiest = perRoom.entrySet().stream()
+                    .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                    .map(Map.Entry::getKey).limit(50).toList();
+            Map<String, List<String>> roomsByUser = new HashMap<>();
+            members.forEach((room, m) -> m.forEach(u -> roomsByUser.computeIfAbsent(u, k -> new ArrayList<>()).add(room)));
+            return new Summary(users, busiest, roomsByUser, oldest[0], newest[0], rows);
+        }
+    }
+
+    private void loadPolls(Connection conn, boolean copy, List<String> users, Zipf userActivity,
+                           List<String> roomIds, Zipf roomVolume) throws SQLException {
+        List<String> pollIds = new ArrayList<>();
+        write(conn, copy, "polls", new String[]{"id", "room_id", "message_id", "creator", "question",
+                "multi_choice", "anonymous", "closed", "created_at"}, out -> {
+            for (int p = 0; p < spec.polls(); p++) {
+                String id = UUID.randomUUID().toString();
+                pollIds.add(id);
+                out.accept(new Object[]{id, roomIds.get(roomVolume.next()), UUID.randomUUID().toString(),
+                        users.get(userActivity.next()), "Вопрос " + p + "?", random.nextBoolean(), false,
+                        random.nextInt(4) == 0, ts(180 * 86_400)});
+            }
+        });
+        write(conn, copy, "poll_options", new String[]{"poll_id", "text", "sort_order"}, out -> {
+            for (String pollId : pollIds) {
+                int options = 2 + random.nextInt(4);
+                for (int o = 0; o < options; o++) out.accept(new Object[]{pollId, "Вариант " + (o + 1), o});
+            }
+        });
+        Map<String, List<Long>> optionsByPoll = new HashMap<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT id, poll_id FROM poll_options")) {
+            while (rs.next()) optionsByPoll.computeIfAbsent(rs.getString(2), k -> new ArrayList<>()).add(rs.getLong(1));
+        }
+        write(conn, copy, "poll_votes", new String[]{"poll_id", "option_id", "username"}, out -> {
+            for (String pollId : pollIds) {
+                List<Long> options = optionsByPoll.get(pollId);
+                Set<String> voters = new LinkedHashSet<>();
+                int votes = random.nextInt(Math.min(users.size(), 60));
+                for (int v = 0; v < votes; v++) voters.add(users.get(userActivity.next()));
+                for (String voter : voters) out.accept(new Object[]{pollId, options.get(random.nextInt(options.size())), voter});
+            }
+        });
+    }
+
+    private void loadStories(Connection conn, boolean copy, List<String> users, Zipf userActivity) throws SQLException {
+        List<String> storyIds = new ArrayList<>();
+        write(conn, copy, "stories", new String[]{"id", "author", "video_url", "duration", "created_at", "expires_at",
+                "view_count"}, out -> {
+            for (int s = 0; s < spec.stories(); s++) {
+                String id = UUID.randomUUID().toString();
+                storyIds.add(id);
+                int age = random.nextInt(86_400);
+                out.accept(new Object[]{id, users.get(userActivity.next()), "/api/uploads/stories/" + id + ".mp4",
+                        5 + random.nextInt(55), offset(now.minusSeconds(age)),
+                        offset(now.minusSeconds(age).plusHours(24)), 0L});
+            }
+        });
+        write(conn, copy, "story_views", new String[]{"story_id", "viewer", "viewed_at"}, out -> {
+            for (String storyId : storyIds) {
+                Set<String> viewers = new LinkedHashSet<>();
+                int views = random.nextInt(Math.min(users.size(), 200));
+                for (int v = 0; v < views; v++) viewers.add(users.get(userActivity.next()));
+                for (String viewer : viewers) out.accept(new Object[]{storyId, viewer, ts(86_400)});
+            }
+        });
+    }
+
+    // === Row writers ===
+
+    private interface Rows {
+        void emit(Consumer<Object[]> out) throws SQLException;
+    }
+
+    private void write(Connection conn, boolean copy, String table, String[] columns, Rows rows) throws SQLException {
+        if (copy) copy(conn, table, columns, rows);
+        else batch(conn, table, columns, rows);
+    }
+
+    private void batch(Connection conn, String table, String[] columns, Rows source) throws SQLException {
+        String sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                + "?, ".repeat(columns.length - 1) + "?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int[] pending = {0};
+            source.emit(row -> {
+                try {
+                    for (int c = 0; c < row.length; c++) ps.setObject(c + 1, row[c]);
+                    ps.addBatch();
+                    rows++;
+                    if (++pending[0] == BATCH) {
+                        ps.executeBatch();
+                        pending[0] = 0;
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Insert into " + table + " failed", e);
+                }
+            });
+            if (pending[0] > 0) ps.executeBatch();
+        }
+    }
+
+    private void copy(Connection conn, String table, String[] columns, Rows source) throws SQLException {
+        CopyIn copyIn = conn.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn("COPY " + table + " (" + String.join(", ", columns) + ") FROM STDIN WITH (FORMAT csv)");
+        try {
+            StringBuilder line = new StringBuilder(256);
+            source.emit(row -> {
+                line.setLength(0);
+                for (int c = 0; c < row.length; c++) {
+                    if (c > 0) line.append(',');
+                    if (row[c] != null) line.append('"').append(row[c].toString().replace("\"", "\"\"")).append('"');
+                }
+                line.append('\n');
+                byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+                try {
+                    copyIn.writeToCopy(bytes, 0, bytes.length);
+                } catch (SQLException e) {
+                    throw new IllegalStateException("COPY into " + table + " failed", e);
+                }
+                rows++;
+            });
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) copyIn.cancelCopy();
+        }
+    }
+
+    // === Value generators ===
+
+    /** Legacy string timestamp, for the columns still stored as VARCHAR. */
+    private String ts(int maxAgeSeconds) {
+        return now.minusSeconds(random.nextInt(maxAgeSeconds)).format(TS);
+    }
+
+    /** Native timestamp; binds as TIMESTAMPTZ and prints as ISO-8601 for COPY. */
+    private OffsetDateTime at(int maxAgeSeconds) {
+        return offset(now.minusSeconds(random.nextInt(maxAgeSeconds)));
+    }
+
+    private static OffsetDateTime offset(LocalDateTime local) {
+        return local.atZone(ZoneId.systemDefault()).toOffsetDateTime();
+    }
+
+    private String content() {
+        int words = 3 + random.nextInt(10);
+        StringBuilder sb = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            if (w > 0) sb.append(' ');
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        if (random.nextDouble() < RARE_WORD_RATE) sb.append(' ').append(RARE_WORD);
+        return sb.toString();
+    }
+
+    private String pick(Set<String> members) {
+        int skip = random.nextInt(members.size());
+        for (String m : members) if (skip-- == 0) return m;
+        throw new IllegalStateException();
+    }
+
+    /** Zipf(s) sampler over ranks 0..n-1 by inverse CDF; rank 0 is the most frequent. */
+    private static final class Zipf {
+        private final double[] cdf;
+        private final Random random;
+
+        Zipf(int n, double s, Random random) {
+            this.random = random;
+            this.cdf = new double[n];
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                sum += 1 / Math.pow(k + 1, s);
+                cdf[k] = sum;
+            }
+            for (int k = 0; k < n; k++) cdf[k] /= sum;
+        }
+
+        int next() {
+            int i = java.util.Arrays.binarySearch(cdf, random.nextDouble());
+            return Math.min(cdf.length - 1, i >= 0 ? i : -i - 1);
+        }
+    }
+}
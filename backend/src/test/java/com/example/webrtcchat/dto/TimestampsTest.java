@@ -0,0 +1,66 @@
+package com.example.webrtcchat.dto;
+
+import com.example.webrtcchat.types.MessageType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Native timestamps internally, legacy "yyyy-MM-dd HH:mm:ss" strings on the wire.
+ */
+class TimestampsTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private static Instant local(int hour, int minute, int second) {
+        return LocalDateTime.of(2026, 1, 1, hour, minute, second).atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    @Test
+    @DisplayName("MessageDto timestamp is still serialized in the legacy format")
+    void messageDto_serializesLegacyFormat() throws Exception {
+        MessageDto dto = new MessageDto("alice", "hi", local(12, 0, 0).plusMillis(250), MessageType.CHAT);
+
+        JsonNode json = mapper.readTree(mapper.writeValueAsString(dto));
+
+        assertEquals("2026-01-01 12:00:00", json.get("timestamp").asText());
+    }
+
+    @Test
+    @DisplayName("legacy, ISO-8601 and epoch-millis inputs are all accepted")
+    void deserialize_acceptsKnownForms() throws Exception {
+        Instant expected = local(12, 0, 0);
+
+        assertEquals(expected, mapper.readValue("{\"timestamp\":\"2026-01-01 12:00:00\"}", MessageDto.class).getTimestamp());
+        assertEquals(expected, mapper.readValue("{\"timestamp\":\"" + expected + "\"}", MessageDto.class).getTimestamp());
+        assertEquals(expected, mapper.readValue("{\"timestamp\":" + expected.toEpochMilli() + "}", MessageDto.class).getTimestamp());
+        assertEquals(local(12, 0, 0), Timestamps.parse("2026-01-01T12:00"));
+    }
+
+    @Test
+    @DisplayName("an unreadable client timestamp is dropped instead of failing the frame")
+    void deserialize_garbageBecomesNull() throws Exception {
+        MessageDto dto = mapper.readValue("{\"content\":\"hi\",\"timestamp\":\"yesterday\"}", MessageDto.class);
+
+        assertEquals("hi", dto.getContent());
+        assertNull(dto.getTimestamp());
+        assertThrows(IllegalArgumentException.class, () -> Timestamps.parse("yesterday"));
+    }
+
+    @Test
+    @DisplayName("format caches per second without mixing up neighbouring seconds")
+    void format_cachedPerSecond() {
+        assertEquals("2026-01-01 12:00:01", Timestamps.format(local(12, 0, 1)));
+        assertEquals("2026-01-01 12:00:01", Timestamps.format(local(12, 0, 1).plusMillis(999)));
+        assertEquals("2026-01-01 12:00:02", Timestamps.format(local(12, 0, 2)));
+        assertNull(Timestamps.format(null));
+        assertEquals("", Timestamps.formatOrEmpty(null));
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.webrtcchat.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One simulated user on a JDK {@link WebSocket}. Outbound load frames carry a marker
+ * {@code lt:<senderIndex>:<nanos>} (in content or a signaling field) that the server echoes
+ * back verbatim, so any receiving client can compute end-to-end delivery latency: sender and
+ * receivers share this JVM's clock, see {@link #now()}.
+ */
+final class LoadClient implements WebSocket.Listener {
+
+    static final String MARKER = "lt:";
+    private static final long EPOCH = System.nanoTime();
+
+    private final int index;
+    private final String username;
+    private final String token;
+    private final ScenarioResult result;
+    private final StringBuilder partial = new StringBuilder();
+    private final CompletableFuture<Void> closed = new CompletableFuture<>();
+    private volatile WebSocket socket;
+
+    LoadClient(int index, String username, String token, ScenarioResult result) {
+        this.index = index;
+        this.username = username;
+        this.token = token;
+        this.result = result;
+    }
+
+    /** Monotonic nanoseconds since class load; never negative, so markers parse as plain digits. */
+    static long now() {
+        return System.nanoTime() - EPOCH;
+    }
+
+    int index() {
+        return index;
+    }
+
+    String username() {
+        return username;
+    }
+
+    /** Opens the socket; completes with the handshake time in nanoseconds, or -1 on failure. */
+    CompletableFuture<Long> connect(HttpClient http, URI baseUri) {
+        long start = System.nanoTime();
+        return http.newWebSocketBuilder()
+                .connectTimeout(Duration.ofSeconds(30))
+                .buildAsync(URI.create(baseUri + "?token=" + token), this)
+                .handle((ws, error) -> {
+                    if (error != null) {
+                        result.connectFailed();
+                        return -1L;
+                    }
+                    socket = ws;
+                    return System.nanoTime() - start;
+                });
+    }
+
+    /** Sends one frame and waits for it to be written, as the JDK client allows one outstanding send. */
+    boolean send(String json) {
+        WebSocket ws = socket;
+        if (ws == null || ws.isOutputClosed()) {
+            result.sendFailed();
+            return false;
+        }
+        try {
+            ws.sendText(json, true).get(10, TimeUnit.SECONDS);
+            result.sent();
+            return true;
+        } catch (Exception e) {
+            result.sendFailed();
+            return false;
+        }
+    }
+
+    /** Closing handshake, waiting for the server's close frame so it is not cut off mid-send. */
+    CompletableFuture<Void> close() {
+        WebSocket ws = socket;
+        socket = null;
+        if (ws == null || ws.isOutputClosed()) return CompletableFuture.completedFuture(null);
+        return ws.sendClose(WebSocket.NORMAL_CLOSURE, "")
+                .thenCompose(ignored -> closed)
+                .orTimeout(5, TimeUnit.SECONDS)
+                .handle((ignored, error) -> {
+                    ws.abort();
+                    return null;
+                });
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        partial.append(data);
+        if (last) {
+            onFrame(partial);
+            partial.setLength(0);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        closed.complete(null);
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        closed.complete(null);
+        result.transportError();
+    }
+
+    private void onFrame(CharSequence frame) {
+        long received = now();
+        String text = frame.toString();
+        if (text.contains("\"type\":\"ERROR\"")) {
+            result.serverError();
+            return;
+        }
+        int at = text.indexOf(MARKER);
+        if (at < 0) return;
+        int senderEnd = text.indexOf(':', at + MARKER.length());
+        int sentEnd = senderEnd + 1;
+        while (sentEnd < text.length() && Character.isDigit(text.charAt(sentEnd))) sentEnd++;
+        if (senderEnd < 0 || sentEnd == senderEnd + 1) return;
+        int sender = Integer.parseInt(text, at + MARKER.length(), senderEnd, 10);
+        if (sender == index) return; // own echo from a room broadcast
+        long sentAt = Long.parseLong(text, senderEnd + 1, sentEnd, 10);
+        result.delivered(received - sentAt);
+    }
+}
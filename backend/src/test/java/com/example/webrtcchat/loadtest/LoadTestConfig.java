@@ -0,0 +1,53 @@
+package com.example.webrtcchat.loadtest;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Load run parameters, read from {@code -Dload.*} system properties so a run can be sized
+ * from the Maven command line without editing code.
+ */
+record LoadTestConfig(int clients,
+                      int durationSeconds,
+                      double ratePerSender,
+                      int roomSize,
+                      int fanoutSenders,
+                      int reconnectRounds,
+                      int drainSeconds,
+                      Set<Scenario> scenarios,
+                      Path report) {
+
+    enum Scenario {
+        /** Every client posts to its own small room at {@code ratePerSender}. */
+        CHAT_BURST,
+        /** A few senders post to one room that contains every client. */
+        GROUP_FANOUT,
+        /** Clients in caller/callee pairs relay ICE candidates. */
+        CALL_SIGNALING,
+        /** All clients drop and reconnect at once, {@code reconnectRounds} times. */
+        RECONNECT_STORM
+    }
+
+    static LoadTestConfig fromSystemProperties() {
+        String scenarios = System.getProperty("load.scenarios", "");
+        Set<Scenario> selected = scenarios.isBlank()
+                ? EnumSet.allOf(Scenario.class)
+                : Arrays.stream(scenarios.split(","))
+                        .map(s -> Scenario.valueOf(s.trim().toUpperCase(Locale.ROOT).replace('-', '_')))
+                        .collect(Collectors.toCollection(() -> EnumSet.noneOf(Scenario.class)));
+        return new LoadTestConfig(
+                Integer.getInteger("load.clients", 1000),
+                Integer.getInteger("load.duration-seconds", 10),
+                Double.parseDouble(System.getProperty("load.rate", "2")),
+                Integer.getInteger("load.room-size", 5),
+                Integer.getInteger("load.fanout-senders", 5),
+                Integer.getInteger("load.reconnect-rounds", 3),
+                Integer.getInteger("load.drain-seconds", 5),
+                selected,
+                Path.of(System.getProperty("load.report", "target/load-test/report.json")));
+    }
+}
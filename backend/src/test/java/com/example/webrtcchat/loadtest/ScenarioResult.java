@@ -0,0 +1,126 @@
+package com.example.webrtcchat.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for one scenario run, updated concurrently by senders and
+ * client listener threads. Unreceived expected deliveries count as errors, so the error rate
+ * covers drops (shedding, full mailboxes) as well as failed sends and ERROR replies.
+ */
+final class ScenarioResult {
+
+    private final String name;
+    private final int clients;
+    private final Histogram delivery = new ConcurrentHistogram(3);
+    private final Histogram handshake = new ConcurrentHistogram(3);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder expected = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder connects = new LongAdder();
+    private final LongAdder connectFailures = new LongAdder();
+    private final LongAdder sendFailures = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder transportErrors = new LongAdder();
+    private final AtomicLong lastEvent = new AtomicLong();
+    private long started;
+    private long measuredNanos;
+
+    ScenarioResult(String name, int clients) {
+        this.name = name;
+        this.clients = clients;
+    }
+
+    void start() {
+        started = LoadClient.now();
+        lastEvent.set(started);
+    }
+
+    /** Ends the throughput window at the last delivery or connect seen. */
+    void finish() {
+        measuredNanos = Math.max(1, lastEvent.get() - started);
+    }
+
+    void sent() { sent.increment(); }
+    void expect(int deliveries) { expected.add(deliveries); }
+    void connectFailed() { connectFailures.increment(); }
+    void sendFailed() { sendFailures.increment(); }
+    void serverError() { serverErrors.increment(); }
+    void transportError() { transportErrors.increment(); }
+
+    void delivered(long latencyNanos) {
+        delivered.increment();
+        delivery.recordValue(Math.max(0, latencyNanos));
+        lastEvent.accumulateAndGet(LoadClient.now(), Math::max);
+    }
+
+    void connected(long handshakeNanos) {
+        connects.increment();
+        handshake.recordValue(handshakeNanos);
+        lastEvent.accumulateAndGet(LoadClient.now(), Math::max);
+    }
+
+    long expected() { return expected.sum(); }
+    long delivered() { return delivered.sum(); }
+    long connects() { return connects.sum(); }
+    String name() { return name; }
+
+    Map<String, Object> toReport() {
+        double seconds = measuredNanos / 1e9;
+        long lost = Math.max(0, expected.sum() - delivered.sum());
+        long errors = connectFailures.sum() + sendFailures.sum() + serverErrors.sum() + transportErrors.sum() + lost;
+        long attempts = expected.sum() + connects.sum() + connectFailures.sum() + sendFailures.sum();
+
+        Map<String, Object> throughput = new LinkedHashMap<>();
+        throughput.put("sentPerSecond", round(sent.sum() / seconds));
+        throughput.put("deliveredPerSecond", round(delivered.sum() / seconds));
+        throughput.put("connectsPerSecond", round(connects.sum() / seconds));
+
+
+        Map<String, Object> errorCounts = new LinkedHashMap<>();
+        errorCounts.put("connectFailures", connectFailures.sum());
+        errorCounts.put("sendFailures", sendFailures.sum());
+        errorCounts.put("serverErrors", serverErrors.sum());
+        errorCounts.put("transportErrors", transportErrors.sum());
+        errorCounts.put("lostDeliveries", lost);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("scenario", name);
+        report.put("clients", clients);
+        report.put("durationSeconds", round(seconds));
+        report.put("sent", sent.sum());
+        report.put("expectedDeliveries", expected.sum());
+        report.put("delivered", delivered.sum());
+        report.put("connects", connects.sum());
+        report.put("throughput", throughput);
+        report.put("deliveryLatencyMs", percentiles(delivery));
+        report.put("connectLatencyMs", percentiles(handshake));
+        report.put("errors", errorCounts);
+        report.put("errorRate", round((double) errors / Math.max(attempts, 1)));
+        return report;
+    }
+
+    private static Map<String, Object> percentiles(Histogram histogram) {
+        Map<String, Object> ms = new LinkedHashMap<>();
+        ms.put("samples", histogram.getTotalCount());
+        ms.put("p50", millis(histogram.getValueAtPercentile(50)));
+        ms.put("p99", millis(histogram.getValueAtPercentile(99)));
+        ms.put("p999", millis(histogram.getValueAtPercentile(99.9)));
+        ms.put("max", millis(histogram.getMaxValue()));
+        ms.put("mean", round(histogram.getMean() / 1e6));
+        return ms;
+    }
+
+    private static double millis(long nanos) {
+        return round(nanos / 1e6);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
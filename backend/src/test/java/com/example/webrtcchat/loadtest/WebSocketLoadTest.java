@@ -0,0 +1,244 @@
+package com.example.webrtcchat.loadtest;
+
+import com.example.webrtcchat.entity.RoomEntity;
+import com.example.webrtcchat.loadtest.LoadTestConfig.Scenario;
+import com.example.webrtcchat.repository.RoomRepository;
+import com.example.webrtcchat.service.JwtService;
+import com.example.webrtcchat.types.RoomType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import java.util.function.ToIntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * WebSocket load generator against the real application on a random port with H2. Clients use
+ * locally minted JWTs and the JDK WebSocket client, so runs never touch a deployed server.
+ * <p>
+ * Tagged {@code load} and excluded from the default build. Run with
+ * {@code mvn test -Pload-test -Dload.clients=2000 -Dload.scenarios=chat-burst,group-fanout};
+ * see {@link LoadTestConfig} for all knobs. The JSON report goes to {@code load.report}.
+ * Per-user rate limits are off so the numbers show server capacity; load shedding and mailbox
+ * limits stay on and show up as errors.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+        "rate-limit.user.enabled=false",
+        "rate-limit.max-requests=1000000",
+        "logging.level.com.example.webrtcchat=WARN"
+})
+class WebSocketLoadTest {
+
+    private static final int CONNECT_CONCURRENCY = 256;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final List<LoadClient> open = new ArrayList<>();
+
+    @AfterEach
+    void closeClients() {
+        closeAll(open);
+        open.clear();
+    }
+
+    @Test
+    @DisplayName("load scenarios produce a JSON capacity report")
+    void runScenarios() throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+        List<ScenarioResult> results = new ArrayList<>();
+        for (Scenario scenario : config.scenarios()) {
+            ScenarioResult result = switch (scenario) {
+                case CHAT_BURST -> chatBurst(config);
+                case GROUP_FANOUT -> groupFanout(config);
+                case CALL_SIGNALING -> callSignaling(config);
+                case RECONNECT_STORM -> reconnectStorm(config);
+            };
+            results.add(result);
+            closeAll(open);
+            open.clear();
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("generatedAt", Instant.now().toString());
+        report.put("config", config);
+        report.put("environment", Map.of(
+                "java", Runtime.version().toString(),
+                "cpus", Runtime.getRuntime().availableProcessors(),
+                "maxHeapMb", Runtime.getRuntime().maxMemory() / (1024 * 1024)));
+        report.put("scenarios", results.stream().map(ScenarioResult::toReport).toList());
+        Files.createDirectories(config.report().toAbsolutePath().getParent());
+        String json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report);
+        Files.writeString(config.report(), json);
+        System.out.println(json);
+
+        for (ScenarioResult result : results) {
+            assertTrue(result.delivered() > 0 || result.connects() > 0, result.name() + " made no progress");
+        }
+    }
+
+    // === Scenarios ===
+
+    private ScenarioResult chatBurst(LoadTestConfig config) {
+        ScenarioResult result = new ScenarioResult("chat-burst", config.clients());
+        List<LoadClient> clients = connectAll("cb", config.clients(), result);
+        String[] roomOf = new String[config.clients()];
+        int[] roomSizeOf = new int[config.clients()];
+        List<RoomEntity> rooms = new ArrayList<>();
+        for (int first = 0; first < config.clients(); first += config.roomSize()) {
+            int last = Math.min(first + config.roomSize(), config.clients());
+            RoomEntity room = room("cb-" + first, RoomType.ROOM);
+            for (int i = first; i < last; i++) {
+                room.getMembers().add(clients.get(i).username());
+                roomOf[i] = room.getId();
+                roomSizeOf[i] = last - first;
+            }
+            rooms.add(room);
+        }
+        roomRepository.saveAll(rooms);
+
+        drive(clients, config, result, c -> roomSizeOf[c.index()] - 1,
+                (c, at) -> chat(roomOf[c.index()], c.index(), at));
+        return result;
+    }
+
+    private ScenarioResult groupFanout(LoadTestConfig config) {
+        ScenarioResult result = new ScenarioResult("group-fanout", config.clients());
+        List<LoadClient> clients = connectAll("gf", config.clients(), result);
+        RoomEntity room = room("gf-all", RoomType.ROOM);
+        clients.forEach(c -> room.getMembers().add(c.username()));
+        roomRepository.save(room);
+
+        List<LoadClient> senders = clients.subList(0, Math.min(config.fanoutSenders(), clients.size()));
+        drive(senders, config, result, c -> clients.size() - 1, (c, at) -> chat(room.getId(), c.index(), at));
+        return result;
+    }
+
+    private ScenarioResult callSignaling(LoadTestConfig config) {
+        ScenarioResult result = new ScenarioResult("call-signaling", config.clients());
+        List<LoadClient> clients = connectAll("cs", config.clients() - config.clients() % 2, result);
+        drive(clients, config, result, c -> 1, (c, at) -> {
+            LoadClient peer = clients.get(c.index() ^ 1);
+            return "{\"type\":\"ICE_CANDIDATE\",\"extra\":{\"target\":\"" + peer.username()
+                    + "\",\"candidate\":\"" + LoadClient.MARKER + c.index() + ":" + at + "\"}}";
+        });
+        return result;
+    }
+
+    private ScenarioResult reconnectStorm(LoadTestConfig config) {
+        ScenarioResult warmup = new ScenarioResult("reconnect-storm", config.clients());
+        List<LoadClient> clients = connectAll("rs", config.clients(), warmup);
+        ScenarioResult result = new ScenarioResult("reconnect-storm", config.clients());
+        result.start();
+        for (int round = 0; round < config.reconnectRounds(); round++) {
+            closeAll(clients);
+            open.removeAll(clients);
+            clients = connectAll("rs", config.clients(), result);
+        }
+        result.finish();
+        return result;
+    }
+
+    // === Plumbing ===
+
+    /**
+     * Open-loop sender: each client fires at {@code ratePerSender} for the configured duration.
+     * Markers carry the scheduled send time rather than the actual one, so a stalled send
+     * shows up as latency instead of silently lowering the offered load.
+     */
+    private void drive(List<LoadClient> senders, LoadTestConfig config, ScenarioResult result,
+                       ToIntFunction<LoadClient> expectedPerSend, BiFunction<LoadClient, Long, String> frame) {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / config.ratePerSender());
+        result.start();
+        long end = LoadClient.now() + TimeUnit.SECONDS.toNanos(config.durationSeconds());
+        try (ExecutorService senderThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (LoadClient client : senders) {
+                senderThreads.submit(() -> {
+                    long next = LoadClient.now() + ThreadLocalRandom.current().nextLong(interval);
+                    while (next < end) {
+                        LockSupport.parkNanos(next - LoadClient.now());
+                        if (client.send(frame.apply(client, next))) {
+                            result.expect(expectedPerSend.applyAsInt(client));
+                        }
+                        next += interval;
+                    }
+                });
+            }
+        }
+        // Let in-flight deliveries arrive before closing the window
+        long drainUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.drainSeconds());
+        while (result.delivered() < result.expected() && System.nanoTime() < drainUntil) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        result.finish();
+    }
+
+    private List<LoadClient> connectAll(String prefix, int count, ScenarioResult result) {
+        URI uri = URI.create("ws://localhost:" + port + "/ws/chat");
+        Semaphore handshakes = new Semaphore(CONNECT_CONCURRENCY);
+        List<LoadClient> clients = new ArrayList<>(count);
+        List<CompletableFuture<Long>> pending = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String username = prefix + "-" + i;
+            LoadClient client = new LoadClient(i, username, jwtService.generateToken(username), result);
+            clients.add(client);
+            handshakes.acquireUninterruptibly();
+            pending.add(client.connect(http, uri).whenComplete((nanos, error) -> handshakes.release()));
+        }
+        for (CompletableFuture<Long> handshake : pending) {
+            long nanos = handshake.join();
+            if (nanos >= 0) result.connected(nanos);
+        }
+        open.addAll(clients);
+        return clients;
+    }
+
+    private static void closeAll(List<LoadClient> clients) {
+        CompletableFuture.allOf(clients.stream().map(LoadClient::close).toArray(CompletableFuture[]::new)).join();
+    }
+
+    private static RoomEntity room(String id, RoomType type) {
+        return new RoomEntity(id, "Load " + id, type, "load", Instant.now());
+    }
+
+    private static String chat(String roomId, int sender, long at) {
+        return "{\"type\":\"CHAT\",\"roomId\":\"" + roomId + "\",\"content\":\""
+                + LoadClient.MARKER + sender + ":" + at + "\"}";
+    }
+}
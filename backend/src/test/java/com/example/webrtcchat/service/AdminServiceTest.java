@@ -12,10 +12,11 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Instant;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -40,7 +41,7 @@ class AdminServiceTest {
         when(chatService.getOnlineUsers()).thenReturn(List.of("alice", "bob", "charlie"));
         when(roomRepository.countByType(RoomType.PRIVATE)).thenReturn(12L);
         when(roomRepository.countByType(RoomType.ROOM)).thenReturn(3L);
-        when(roomRepository.countActiveRoomsSince(anyString())).thenReturn(5L);
+        when(roomRepository.countActiveRoomsSince(any(Instant.class))).thenReturn(5L);
 
         AdminStatsDto stats = adminService.getStats();
 
@@ -59,7 +60,7 @@ class AdminServiceTest {
         when(chatService.getOnlineUsers()).thenReturn(List.of());
         when(roomRepository.countByType(RoomType.PRIVATE)).thenReturn(0L);
         when(roomRepository.countByType(RoomType.ROOM)).thenReturn(0L);
-        when(roomRepository.countActiveRoomsSince(anyString())).thenReturn(0L);
+        when(roomRepository.countActiveRoomsSince(any(Instant.class))).thenReturn(0L);
 
         AdminStatsDto stats = adminService.getStats();
 
@@ -78,7 +79,7 @@ class AdminServiceTest {
         when(chatService.getOnlineUsers()).thenReturn(List.of());
         when(roomRepository.countByType(RoomType.PRIVATE)).thenReturn(7L);
         when(roomRepository.countByType(RoomType.ROOM)).thenReturn(4L);
-        when(roomRepository.countActiveRoomsSince(anyString())).thenReturn(2L);
+        when(roomRepository.countActiveRoomsSince(any(Instant.class))).thenReturn(2L);
 
         AdminStatsDto stats = adminService.getStats();
 
@@ -95,7 +96,7 @@ class AdminServiceTest {
                 List.of("user1", "user2", "user3", "user4", "user5", "user6", "user7"));
         when(roomRepository.countByType(RoomType.PRIVATE)).thenReturn(0L);
         when(roomRepository.countByType(RoomType.ROOM)).thenReturn(0L);
-        when(roomRepository.countActiveRoomsSince(anyString())).thenReturn(0L);
+        when(roomRepository.countActiveRoomsSince(any(Instant.class))).thenReturn(0L);
 
         AdminStatsDto stats = adminService.getStats();
 
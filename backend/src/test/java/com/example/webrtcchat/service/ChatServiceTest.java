@@ -1,6 +1,7 @@
 package com.example.webrtcchat.service;
 
 import com.example.webrtcchat.dto.MessageDto;
+import com.example.webrtcchat.dto.Timestamps;
 import com.example.webrtcchat.entity.MessageEntity;
 import com.example.webrtcchat.entity.RoomEntity;
 import com.example.webrtcchat.entity.UserEntity;
@@ -19,6 +20,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
+import java.time.Instant;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -40,6 +42,12 @@ class ChatServiceTest {
     @Mock
     private PollService pollService;
 
+    @Mock
+    private UploadRefService uploadRefService;
+
+    @Mock
+    private MessageArchive messageArchive;
+
     @InjectMocks
     private ChatService chatService;
 
@@ -51,7 +59,7 @@ class ChatServiceTest {
         sampleMessage.setId("msg-1");
         sampleMessage.setSender("alice");
         sampleMessage.setContent("Hello!");
-        sampleMessage.setTimestamp("2026-01-01 12:00:00");
+        sampleMessage.setTimestamp(Timestamps.parse("2026-01-01 12:00:00"));
         sampleMessage.setType(MessageType.CHAT);
         sampleMessage.setRoomId("general");
         sampleMessage.setStatus("SENT");
@@ -84,13 +92,34 @@ class ChatServiceTest {
         MessageEntity m2 = createEntity("2", "bob", "Second", "2026-01-01 12:01:00");
         // Repository returns DESC order
         when(messageRepository.findRecentByRoomId(eq("general"), any(Pageable.class)))
-                .thenReturn(List.of(m2, m1));
+                .thenReturn(List.of(new Object[]{m2, null}, new Object[]{m1, null}));
 
         List<MessageDto> result = chatService.getHistory("general", 0, 100);
 
         assertEquals(2, result.size());
         assertEquals("First", result.get(0).getContent());  // reversed to ASC
         assertEquals("Second", result.get(1).getContent());
+        assertNull(result.get(0).getReactions());
+    }
+
+    @Test
+    @DisplayName("getHistory decodes the inline reaction summary, most used emoji first")
+    void getHistory_inlineReactions() {
+        MessageEntity m = createEntity("1", "alice", "Hi", "2026-01-01 12:00:00");
+        String rs = MessageRepository.SUMMARY_RECORD_SEPARATOR, fs = MessageRepository.SUMMARY_FIELD_SEPARATOR;
+        String summary = "5" + fs + "👍" + fs + "bob" + fs + "a,b" + fs + "carol"
+                + rs + "1" + fs + "🔥" + fs + "dave" + fs + "" + fs + "";
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{m, summary});
+        when(messageRepository.findRecentByRoomId(anyString(), any(Pageable.class))).thenReturn(rows);
+
+        List<Map<String, Object>> reactions = chatService.getHistory("general", 0, 100).get(0).getReactions();
+
+        assertEquals(2, reactions.size());
+        assertEquals("👍", reactions.get(0).get("emoji"));
+        assertEquals(5, reactions.get(0).get("count"));
+        assertEquals(List.of("bob", "a,b", "carol"), reactions.get(0).get("recentUsers"));
+        assertEquals(List.of("dave"), reactions.get(1).get("recentUsers"));
     }
 
     @Test
@@ -180,6 +209,73 @@ class ChatServiceTest {
         assertFalse(chatService.editMessage("general", "nonexistent", "New"));
     }
 
+    @Test
+    @DisplayName("time-ordered ids are looked up from their creation time on")
+    void editMessage_v7Id_boundedLookup() {
+        String id = MessageIds.next();
+        MessageEntity entity = createEntity(id, "alice", "Old", "2026-01-01 12:00:00");
+        entity.setRoomId("general");
+        when(messageRepository.findByIdSince(eq(id), any(Instant.class))).thenReturn(Optional.of(entity));
+
+        assertTrue(chatService.editMessage("general", id, "New"));
+
+        ArgumentCaptor<Instant> since = ArgumentCaptor.forClass(Instant.class);
+        verify(messageRepository).findByIdSince(eq(id), since.capture());
+        assertFalse(since.getValue().isAfter(MessageIds.timestampOf(id)));
+        verify(messageRepository, never()).findById(anyString());
+    }
+
+    @Test
+    @DisplayName("a bounded miss falls back to the plain lookup")
+    void editMessage_v7Id_fallsBack() {
+        String id = MessageIds.next();
+        MessageEntity entity = createEntity(id, "alice", "Old", "2026-01-01 12:00:00");
+        entity.setRoomId("general");
+        when(messageRepository.findByIdSince(eq(id), any(Instant.class))).thenReturn(Optional.empty());
+        when(messageRepository.findById(id)).thenReturn(Optional.of(entity));
+
+        assertTrue(chatService.editMessage("general", id, "New"));
+    }
+
+    @Test
+    @DisplayName("send registers upload references for file and thumbnail")
+    void send_fileMessage_addsUploadRefs() {
+        sampleMessage.setFileUrl("/api/uploads/abc.mp4");
+        sampleMessage.setThumbnailUrl("/api/uploads/abc.jpg");
+
+        chatService.send("general", sampleMessage);
+
+        verify(uploadRefService).addRefs(UploadRefService.OWNER_MESSAGE, sampleMessage.getId(),
+                "/api/uploads/abc.mp4", "/api/uploads/abc.jpg");
+    }
+
+    // === setLinkPreview ===
+
+    @Test
+    @DisplayName("setLinkPreview stores the preview and findMessage returns it")
+    void setLinkPreview_roundTrip() {
+        MessageEntity entity = createEntity("msg-1", "alice", "see https://example.com", "2026-01-01 12:00:00");
+        entity.setRoomId("general");
+        when(messageRepository.findById("msg-1")).thenReturn(Optional.of(entity));
+
+        assertTrue(chatService.setLinkPreview("general", "msg-1",
+                Map.of("url", "https://example.com", "title", "Example")));
+
+        verify(messageRepository).save(entity);
+        assertEquals("Example", chatService.findMessage("general", "msg-1").getLinkPreview().get("title"));
+    }
+
+    @Test
+    @DisplayName("setLinkPreview returns false for a message in another room")
+    void setLinkPreview_wrongRoom() {
+        MessageEntity entity = createEntity("msg-1", "alice", "Hello", "2026-01-01 12:00:00");
+        entity.setRoomId("other");
+        when(messageRepository.findById("msg-1")).thenReturn(Optional.of(entity));
+
+        assertFalse(chatService.setLinkPreview("general", "msg-1", Map.of("url", "https://example.com")));
+        verify(messageRepository, never()).save(any());
+    }
+
     // === deleteMessage ===
 
     @Test
@@ -333,7 +429,7 @@ class ChatServiceTest {
         voice.setId("voice-1");
         voice.setSender("alice");
         voice.setContent(null);
-        voice.setTimestamp("2026-01-01 12:00:00");
+        voice.setTimestamp(Timestamps.parse("2026-01-01 12:00:00"));
         voice.setType(MessageType.VOICE);
         voice.setStatus("SENT");
         voice.setFileUrl("/uploads/voice_123.webm");
@@ -363,7 +459,7 @@ class ChatServiceTest {
         MessageDto voice = new MessageDto();
         voice.setId("voice-2");
         voice.setSender("bob");
-        voice.setTimestamp("2026-01-01 12:00:00");
+        voice.setTimestamp(Timestamps.parse("2026-01-01 12:00:00"));
         voice.setType(MessageType.VOICE);
         voice.setStatus("SENT");
         voice.setDuration(null);
@@ -389,7 +485,7 @@ class ChatServiceTest {
         vc.setId("vc-1");
         vc.setSender("alice");
         vc.setContent(null);
-        vc.setTimestamp("2026-01-01 12:00:00");
+        vc.setTimestamp(Timestamps.parse("2026-01-01 12:00:00"));
         vc.setType(MessageType.VIDEO_CIRCLE);
         vc.setStatus("SENT");
         vc.setFileUrl("/uploads/video_circle_123.webm");
@@ -419,7 +515,7 @@ class ChatServiceTest {
         MessageDto vc = new MessageDto();
         vc.setId("vc-2");
         vc.setSender("bob");
-        vc.setTimestamp("2026-01-01 12:00:00");
+        vc.setTimestamp(Timestamps.parse("2026-01-01 12:00:00"));
         vc.setType(MessageType.VIDEO_CIRCLE);
         vc.setStatus("SENT");
         vc.setDuration(10);
@@ -526,7 +622,7 @@ class ChatServiceTest {
         MessageEntity msg = createEntity("m1", "alice", "Hello", "2026-01-01 12:00:00");
         msg.setRoomId("room1");
         msg.setStatus("SENT");
-        msg.setDisappearsAt("2026-01-01 12:00:30");
+        msg.setDisappearsAt(Timestamps.parse("2026-01-01 12:00:30"));
 
         RoomEntity room = new RoomEntity();
         room.setId("room1");
@@ -541,7 +637,7 @@ class ChatServiceTest {
 
         chatService.markMessagesAsRead("room1", "bob");
 
-        assertEquals("2026-01-01 12:00:30", msg.getDisappearsAt(),
+        assertEquals(Timestamps.parse("2026-01-01 12:00:30"), msg.getDisappearsAt(),
                 "Existing disappearsAt should not be overwritten");
     }
 
@@ -566,10 +662,8 @@ class ChatServiceTest {
         chatService.markMessagesAsRead("room1", "bob");
 
         assertNotNull(msg.getDisappearsAt());
-        java.time.LocalDateTime disappearsAt = java.time.LocalDateTime.parse(
-                msg.getDisappearsAt(),
-                java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-        java.time.LocalDateTime now = java.time.LocalDateTime.now();
+        java.time.Instant disappearsAt = msg.getDisappearsAt();
+        java.time.Instant now = java.time.Instant.now();
         // disappearsAt should be roughly 5 minutes from now (allow 10s tolerance)
         long diffSeconds = java.time.Duration.between(now, disappearsAt).getSeconds();
         assertTrue(diffSeconds >= 290 && diffSeconds <= 310,
@@ -603,7 +697,7 @@ class ChatServiceTest {
         e.setId(id);
         e.setSender(sender);
         e.setContent(content);
-        e.setTimestamp(timestamp);
+        e.setTimestamp(Timestamps.parse(timestamp));
         e.setType(MessageType.CHAT);
         return e;
     }
@@ -0,0 +1,147 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.service.ChunkedUploadService.ChunkedUploadException;
+import com.example.webrtcchat.service.ChunkedUploadService.UploadSession;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Resumable uploads: out-of-order positional chunk writes, resume info,
+ * validation on completion and expiry of abandoned sessions.
+ */
+class ChunkedUploadServiceTest {
+
+    private static final int CHUNK = 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private UploadService uploadService;
+    private ChunkedUploadService service;
+
+    @BeforeEach
+    void setUp() {
+        uploadService = new UploadService(tempDir.toString());
+        service = new ChunkedUploadService(uploadService, CHUNK, 30);
+    }
+
+    private static byte[] pdf(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) data[i] = (byte) (i * 31);
+        System.arraycopy("%PDF-1.7".getBytes(), 0, data, 0, 8);
+        return data;
+    }
+
+    private void put(UploadSession s, byte[] data, int index) throws Exception {
+        int from = index * CHUNK;
+        int to = Math.min(data.length, from + CHUNK);
+        service.writeChunk("alice", s.getId(), index,
+                new ByteArrayInputStream(Arrays.copyOfRange(data, from, to)));
+    }
+
+    @Test
+    @DisplayName("chunks written in any order (and concurrently) assemble the original file")
+    void chunksOutOfOrder_assemble() throws Exception {
+        byte[] data = pdf(CHUNK * 5 + 100);
+        UploadSession s = service.create("alice", "doc.pdf", null, data.length, false);
+        assertEquals(6, s.getTotalChunks());
+
+        put(s, data, 5);
+        put(s, data, 0);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = List.of(
+                    pool.submit(() -> { put(s, data, 3); return null; }),
+                    pool.submit(() -> { put(s, data, 1); return null; }),
+                    pool.submit(() -> { put(s, data, 4); return null; }),
+                    pool.submit(() -> { put(s, data, 2); return null; }));
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        UploadService.StoredUpload stored = service.complete("alice", s.getId());
+        assertArrayEquals(data, Files.readAllBytes(stored.getPath()));
+        assertEquals("application/pdf", stored.getContentType());
+        assertEquals(0, service.sessionCount());
+    }
+
+    @Test
+    @DisplayName("status lists missing chunks and completion is refused until all arrive")
+    void missingChunks_resume() throws Exception {
+        byte[] data = pdf(CHUNK * 3);
+        UploadSession s = service.create("alice", "doc.pdf", null, data.length, false);
+        put(s, data, 1);
+
+        assertEquals(List.of(0, 2), service.status("alice", s.getId()).getMissingChunks());
+        ChunkedUploadException ex = assertThrows(ChunkedUploadException.class,
+                () -> service.complete("alice", s.getId()));
+        assertEquals(ChunkedUploadException.Reason.INCOMPLETE, ex.getReason());
+    }
+
+    @Test
+    @DisplayName("wrong chunk length or index is rejected and not marked received")
+    void badChunk_rejected() throws Exception {
+        UploadSession s = service.create("alice", "doc.pdf", null, CHUNK * 2, false);
+
+        ChunkedUploadException shortChunk = assertThrows(ChunkedUploadException.class, () ->
+                service.writeChunk("alice", s.getId(), 0, new ByteArrayInputStream(new byte[10])));
+        assertEquals(ChunkedUploadException.Reason.BAD_CHUNK, shortChunk.getReason());
+        assertThrows(ChunkedUploadException.class, () ->
+                service.writeChunk("alice", s.getId(), 2, new ByteArrayInputStream(new byte[CHUNK])));
+        assertEquals(2, s.getMissingChunks().size());
+    }
+
+    @Test
+    @DisplayName("sessions are private to their owner")
+    void otherUser_notFound() throws Exception {
+        UploadSession s = service.create("alice", "doc.pdf", null, CHUNK, false);
+
+        ChunkedUploadException ex = assertThrows(ChunkedUploadException.class,
+                () -> service.status("mallory", s.getId()));
+        assertEquals(ChunkedUploadException.Reason.NOT_FOUND, ex.getReason());
+    }
+
+    @Test
+    @DisplayName("image sessions run the magic-byte check on completion")
+    void imageOnly_validatedOnComplete() throws Exception {
+        byte[] data = pdf(CHUNK);
+        UploadSession s = service.create("alice", "fake.png", null, data.length, true);
+        put(s, data, 0);
+
+        UploadService.UploadRejectedException ex = assertThrows(UploadService.UploadRejectedException.class,
+                () -> service.complete("alice", s.getId()));
+        assertEquals(UploadService.UploadRejectedException.Reason.NOT_IMAGE, ex.getReason());
+        try (var files = Files.list(uploadService.getIncomingDir())) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    @DisplayName("idle sessions expire and their files are removed")
+    void idleSessions_expire() throws Exception {
+        ChunkedUploadService shortTtl = new ChunkedUploadService(uploadService, CHUNK, 0);
+        shortTtl.create("alice", "doc.pdf", null, CHUNK, false);
+        Thread.sleep(5);
+
+        shortTtl.expireIdleSessions();
+
+        assertEquals(0, shortTtl.sessionCount());
+        try (var files = Files.list(uploadService.getIncomingDir())) {
+            assertEquals(0, files.count());
+        }
+    }
+}
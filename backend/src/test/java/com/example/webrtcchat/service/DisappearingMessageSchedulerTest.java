@@ -14,8 +14,8 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
 
@@ -35,9 +35,7 @@ class DisappearingMessageSchedulerTest {
     @InjectMocks
     private DisappearingMessageScheduler scheduler;
 
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-
-    private MessageEntity createMsg(String id, String roomId, String sender, String disappearsAt) {
+    private MessageEntity createMsg(String id, String roomId, String sender, Instant disappearsAt) {
         MessageEntity e = new MessageEntity();
         e.setId(id);
         e.setRoomId(roomId);
@@ -53,7 +51,7 @@ class DisappearingMessageSchedulerTest {
     @Test
     @DisplayName("does nothing when no expired messages")
     void deleteExpiredMessages_noExpired() {
-        when(messageRepository.findExpiredDisappearingMessages(anyString()))
+        when(messageRepository.findExpiredDisappearingMessages(any(Instant.class)))
                 .thenReturn(Collections.emptyList());
 
         scheduler.deleteExpiredMessages();
@@ -65,11 +63,11 @@ class DisappearingMessageSchedulerTest {
     @Test
     @DisplayName("deletes expired messages and broadcasts DELETE")
     void deleteExpiredMessages_deletesAndBroadcasts() {
-        String past = LocalDateTime.now().minusMinutes(1).format(FORMATTER);
+        Instant past = Instant.now().minus(Duration.ofMinutes(1));
         MessageEntity msg1 = createMsg("m1", "room1", "alice", past);
         MessageEntity msg2 = createMsg("m2", "room1", "bob", past);
 
-        when(messageRepository.findExpiredDisappearingMessages(anyString()))
+        when(messageRepository.findExpiredDisappearingMessages(any(Instant.class)))
                 .thenReturn(List.of(msg1, msg2));
 
         scheduler.deleteExpiredMessages();
@@ -91,11 +89,11 @@ class DisappearingMessageSchedulerTest {
     @Test
     @DisplayName("broadcasts to correct rooms when messages are in different rooms")
     void deleteExpiredMessages_multipleRooms() {
-        String past = LocalDateTime.now().minusMinutes(1).format(FORMATTER);
+        Instant past = Instant.now().minus(Duration.ofMinutes(1));
         MessageEntity msg1 = createMsg("m1", "room1", "alice", past);
         MessageEntity msg2 = createMsg("m2", "room2", "bob", past);
 
-        when(messageRepository.findExpiredDisappearingMessages(anyString()))
+        when(messageRepository.findExpiredDisappearingMessages(any(Instant.class)))
                 .thenReturn(List.of(msg1, msg2));
 
         scheduler.deleteExpiredMessages();
@@ -107,10 +105,10 @@ class DisappearingMessageSchedulerTest {
     @Test
     @DisplayName("DELETE broadcast contains correct fields")
     void deleteExpiredMessages_broadcastFields() {
-        String past = LocalDateTime.now().minusMinutes(1).format(FORMATTER);
+        Instant past = Instant.now().minus(Duration.ofMinutes(1));
         MessageEntity msg = createMsg("m1", "room1", "alice", past);
 
-        when(messageRepository.findExpiredDisappearingMessages(anyString()))
+        when(messageRepository.findExpiredDisappearingMessages(any(Instant.class)))
                 .thenReturn(List.of(msg));
 
         scheduler.deleteExpiredMessages();
@@ -129,29 +127,27 @@ class DisappearingMessageSchedulerTest {
     @Test
     @DisplayName("queries repository with current timestamp")
     void deleteExpiredMessages_usesCurrentTime() {
-        when(messageRepository.findExpiredDisappearingMessages(anyString()))
+        when(messageRepository.findExpiredDisappearingMessages(any(Instant.class)))
                 .thenReturn(Collections.emptyList());
 
         scheduler.deleteExpiredMessages();
 
-        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Instant> captor = ArgumentCaptor.forClass(Instant.class);
         verify(messageRepository).findExpiredDisappearingMessages(captor.capture());
 
         // Verify the passed time is close to now (within 5 seconds)
-        String passedTime = captor.getValue();
-        LocalDateTime parsed = LocalDateTime.parse(passedTime, FORMATTER);
-        LocalDateTime now = LocalDateTime.now();
-        assertTrue(java.time.Duration.between(parsed, now).abs().getSeconds() < 5,
+        Instant passedTime = captor.getValue();
+        assertTrue(Duration.between(passedTime, Instant.now()).abs().getSeconds() < 5,
                 "Passed time should be close to now");
     }
 
     @Test
     @DisplayName("handles single expired message")
     void deleteExpiredMessages_singleMessage() {
-        String past = LocalDateTime.now().minusSeconds(30).format(FORMATTER);
+        Instant past = Instant.now().minusSeconds(30);
         MessageEntity msg = createMsg("m1", "room1", "alice", past);
 
-        when(messageRepository.findExpiredDisappearingMessages(anyString()))
+        when(messageRepository.findExpiredDisappearingMessages(any(Instant.class)))
                 .thenReturn(List.of(msg));
 
         scheduler.deleteExpiredMessages();
@@ -0,0 +1,172 @@
+package com.example.webrtcchat.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Image variants: width allow-list, cached derivatives, single-flight generation.
+ */
+class ImageVariantServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private UploadService uploadService;
+    private SimpleMeterRegistry meterRegistry;
+    private ImageVariantService service;
+
+    @BeforeEach
+    void setUp() {
+        uploadService = new UploadService(tempDir.toString());
+        meterRegistry = new SimpleMeterRegistry();
+        service = new ImageVariantService(uploadService, meterRegistry,
+                new int[]{64, 128, 256}, 2, 16, 50_000_000, 10_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private Path storeImage(String name, int width, int height, String format) throws Exception {
+        Path file = uploadService.shardedPath(name);
+        Files.createDirectories(file.getParent());
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, file.toFile());
+        return file;
+    }
+
+    @Test
+    @DisplayName("requested widths snap up to the allow-list")
+    void snapWidth() {
+        assertEquals(64, service.snapWidth(1));
+        assertEquals(128, service.snapWidth(100));
+        assertEquals(256, service.snapWidth(256));
+        assertEquals(256, service.snapWidth(5000));
+        assertEquals(-1, service.snapWidth(0));
+        assertEquals("jpg", ImageVariantService.formatExtension("JPEG"));
+        assertNull(ImageVariantService.formatExtension("webp"));
+        assertFalse(ImageVariantService.supports("clip.gif"));
+    }
+
+    @Test
+    @DisplayName("generates a resized variant beside the original and reuses it")
+    void generatesAndCaches() throws Exception {
+        String name = "abcd1234-photo.png";
+        Path original = storeImage(name, 1000, 500, "png");
+
+        Path variant = service.variant(name, original, 128, "jpeg");
+
+        assertEquals(uploadService.variantPath(name, 128, "jpg"), variant);
+        BufferedImage decoded = ImageIO.read(variant.toFile());
+        assertEquals(128, decoded.getWidth());
+        assertEquals(64, decoded.getHeight());
+        assertEquals(variant, service.variant(name, original, 128, "jpeg"));
+        assertEquals(1.0, meterRegistry.counter("uploads.variants.generated").count());
+    }
+
+    @Test
+    @DisplayName("a JPEG with EXIF orientation 6 is rotated upright before scaling")
+    void exifOrientationApplied() throws Exception {
+        // Stored landscape, left half red and right half blue; orientation 6 shows it turned 90° clockwise
+        BufferedImage stored = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = stored.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 100, 100);
+        g.setColor(Color.BLUE);
+        g.fillRect(100, 0, 100, 100);
+        g.dispose();
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(stored, "jpg", jpeg);
+        byte[] plain = jpeg.toByteArray();
+        byte[] exif = {
+                (byte) 0xFF, (byte) 0xE1, 0, 34, 'E', 'x', 'i', 'f', 0, 0,
+                'M', 'M', 0, 42, 0, 0, 0, 8,                    // big-endian TIFF header, IFD0 at 8
+                0, 1,                                           // one entry
+                0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, 6, 0, 0,       // Orientation, SHORT, 1 value: 6
+                0, 0, 0, 0                                      // no next IFD
+        };
+        int afterApp0 = 4 + (((plain[4] & 0xFF) << 8) | (plain[5] & 0xFF));
+        String name = "f00d0000-portrait.jpg";
+        Path original = uploadService.shardedPath(name);
+        Files.createDirectories(original.getParent());
+        ByteArrayOutputStream withExif = new ByteArrayOutputStream();
+        withExif.write(plain, 0, afterApp0);
+        withExif.write(exif);
+        withExif.write(plain, afterApp0, plain.length - afterApp0);
+        Files.write(original, withExif.toByteArray());
+        assertEquals(6, ImageVariantService.exifOrientation(original));
+
+        BufferedImage decoded = ImageIO.read(service.variant(name, original, 64, null).toFile());
+
+        assertEquals(64, decoded.getWidth());
+        assertEquals(128, decoded.getHeight());
+        Color top = new Color(decoded.getRGB(32, 16));
+        Color bottom = new Color(decoded.getRGB(32, 112));
+        assertTrue(top.getRed() > 200 && top.getBlue() < 80, "top is the stored left half: " + top);
+        assertTrue(bottom.getBlue() > 200 && bottom.getRed() < 80, "bottom is the stored right half: " + bottom);
+    }
+
+    @Test
+    @DisplayName("concurrent requests for one variant share a single generation")
+    void singleFlight() throws Exception {
+        String name = "beef0000-big.jpg";
+        Path original = storeImage(name, 2400, 1600, "jpg");
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Path>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) results.add(pool.submit(() -> service.variant(name, original, 256, null)));
+            for (Future<Path> f : results) assertEquals(uploadService.variantPath(name, 256, "jpg"), f.get());
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1.0, meterRegistry.counter("uploads.variants.generated").count());
+    }
+
+    @Test
+    @DisplayName("an image already narrower than the variant is linked, not re-encoded")
+    void smallImageLinksOriginal() throws Exception {
+        String name = "cafe0000-icon.png";
+        Path original = storeImage(name, 40, 40, "png");
+
+        Path variant = service.variant(name, original, 64, null);
+
+        assertArrayEquals(Files.readAllBytes(original), Files.readAllBytes(variant));
+        assertEquals(0.0, meterRegistry.counter("uploads.variants.generated").count());
+    }
+
+    @Test
+    @DisplayName("undecodable content falls back to the original and variants go with it")
+    void fallbackAndCleanup() throws Exception {
+        String name = "dead0000-broken.jpg";
+        Path original = uploadService.shardedPath(name);
+        Files.createDirectories(original.getParent());
+        Files.writeString(original, "not really a jpeg");
+        assertNull(service.variant(name, original, 128, null));
+
+        String good = "dead0001-good.png";
+        Path variant = service.variant(good, storeImage(good, 500, 500, "png"), 128, null);
+        assertTrue(Files.exists(variant));
+        assertEquals(good, UploadService.originalOfVariant(variant.getFileName().toString()));
+        uploadService.deleteVariants(good);
+        assertFalse(Files.exists(variant));
+    }
+}
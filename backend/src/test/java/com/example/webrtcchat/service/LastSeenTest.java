@@ -1,5 +1,6 @@
 package com.example.webrtcchat.service;
 
+import com.example.webrtcchat.dto.Timestamps;
 import com.example.webrtcchat.entity.UserEntity;
 import com.example.webrtcchat.repository.UserRepository;
 import org.junit.jupiter.api.DisplayName;
@@ -10,6 +11,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Instant;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -39,9 +41,9 @@ class LastSeenTest {
         ArgumentCaptor<UserEntity> captor = ArgumentCaptor.forClass(UserEntity.class);
         verify(userRepository).save(captor.capture());
 
-        String lastSeen = captor.getValue().getLastSeen();
+        String lastSeen = Timestamps.format(captor.getValue().getLastSeen());
         assertNotNull(lastSeen);
-        // Should be in format yyyy-MM-dd HH:mm:ss
+        // Should still reach clients as yyyy-MM-dd HH:mm:ss
         assertTrue(lastSeen.matches("\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}"),
                 "lastSeen should be formatted as yyyy-MM-dd HH:mm:ss, got: " + lastSeen);
     }
@@ -60,11 +62,11 @@ class LastSeenTest {
     @DisplayName("getLastSeen returns value for existing user with lastSeen")
     void getLastSeen_returnsValue() {
         UserEntity user = new UserEntity("bob", "pass", "2026-01-01");
-        user.setLastSeen("2026-02-22 14:30:00");
+        user.setLastSeen(Timestamps.parse("2026-02-22 14:30:00"));
         when(userRepository.findByUsername("bob")).thenReturn(Optional.of(user));
 
-        String result = chatService.getLastSeen("bob");
-        assertEquals("2026-02-22 14:30:00", result);
+        Instant result = chatService.getLastSeen("bob");
+        assertEquals("2026-02-22 14:30:00", Timestamps.format(result));
     }
 
     @Test
@@ -73,7 +75,7 @@ class LastSeenTest {
         UserEntity user = new UserEntity("carol", "pass", "2026-01-01");
         when(userRepository.findByUsername("carol")).thenReturn(Optional.of(user));
 
-        String result = chatService.getLastSeen("carol");
+        Instant result = chatService.getLastSeen("carol");
         assertNull(result);
     }
 
@@ -82,7 +84,7 @@ class LastSeenTest {
     void getLastSeen_returnsNullUnknown() {
         when(userRepository.findByUsername("ghost")).thenReturn(Optional.empty());
 
-        String result = chatService.getLastSeen("ghost");
+        Instant result = chatService.getLastSeen("ghost");
         assertNull(result);
     }
 
@@ -90,7 +92,7 @@ class LastSeenTest {
     @DisplayName("updateLastSeen updates timestamp format correctly")
     void updateLastSeen_correctFormat() {
         UserEntity user = new UserEntity("dave", "pass", "2026-01-01");
-        user.setLastSeen("2026-01-01 00:00:00");
+        user.setLastSeen(Timestamps.parse("2026-01-01 00:00:00"));
         when(userRepository.findByUsername("dave")).thenReturn(Optional.of(user));
 
         chatService.updateLastSeen("dave");
@@ -98,7 +100,7 @@ class LastSeenTest {
         ArgumentCaptor<UserEntity> captor = ArgumentCaptor.forClass(UserEntity.class);
         verify(userRepository).save(captor.capture());
 
-        String newLastSeen = captor.getValue().getLastSeen();
+        String newLastSeen = Timestamps.format(captor.getValue().getLastSeen());
         assertNotNull(newLastSeen);
         // Should be different from old value (updated to current time)
         assertNotEquals("2026-01-01 00:00:00", newLastSeen);
@@ -115,7 +117,7 @@ class LastSeenTest {
     @DisplayName("UserEntity lastSeen getter/setter works")
     void userEntity_lastSeenGetterSetter() {
         UserEntity user = new UserEntity();
-        user.setLastSeen("2026-02-22 12:00:00");
-        assertEquals("2026-02-22 12:00:00", user.getLastSeen());
+        user.setLastSeen(Timestamps.parse("2026-02-22 12:00:00"));
+        assertEquals("2026-02-22 12:00:00", Timestamps.format(user.getLastSeen()));
     }
 }
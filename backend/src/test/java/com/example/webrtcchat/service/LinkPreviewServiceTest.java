@@ -0,0 +1,192 @@
+package com.example.webrtcchat.service;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Link preview engine against a local HTTP server: head-only streaming, LRU/TTL cache,
+ * negative caching and single-flight. The SSRF check is relaxed for the loopback server only.
+ */
+class LinkPreviewServiceTest {
+
+    private static final String HEAD = "<html><head><title>Plain title</title>"
+            + "<meta property=\"og:title\" content=\"Barsik\">"
+            + "<meta property=\"og:image\" content=\"/img/cat.png\"></head>";
+
+    private HttpServer server;
+    private String base;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger safetyChecks = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private LinkPreviewService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/page", exchange -> {
+            hits.incrementAndGet();
+            sleep(exchange.getRequestURI().getQuery() != null ? 200 : 0);
+            byte[] head = HEAD.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(head);
+                // A large body after </head> that must not be needed (or fully read)
+                byte[] filler = "<p>og:title lorem ipsum</p>".repeat(1000).getBytes(StandardCharsets.UTF_8);
+                for (int i = 0; i < 100; i++) out.write(filler);
+            } catch (java.io.IOException ignored) {
+                // client hung up after </head>
+            }
+        });
+        server.createContext("/stall", exchange -> {
+            hits.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            out.write("<html><head><title>Never".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            try {
+                release.await(); // headers and a partial head, then nothing
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.createContext("/missing", exchange -> {
+            hits.incrementAndGet();
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+        service = newService(3, 60_000, 60_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.shutdown();
+        server.stop(0);
+    }
+
+    private LinkPreviewService newService(int maxEntries, long ttlMs, long negativeTtlMs) {
+        return new LinkPreviewService(meterRegistry, maxEntries, ttlMs, negativeTtlMs, 500) {
+            @Override
+            boolean isSafeUrl(String url) {
+                safetyChecks.incrementAndGet();
+                return url.startsWith(base);
+            }
+        };
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    @DisplayName("reads OG tags from the head and serves repeats from cache")
+    void fetchesAndCaches() {
+        Map<String, String> preview = service.fetchPreview(base + "/page");
+
+        assertNotNull(preview);
+        assertEquals("Barsik", preview.get("title"));
+        assertEquals(base + "/img/cat.png", preview.get("image"));
+        assertEquals(preview, service.fetchPreview(base + "/page"));
+        assertEquals(1, hits.get());
+        assertEquals(1.0, meterRegistry.counter("linkpreview.cache", "result", "hit").count());
+        assertEquals(1.0, meterRegistry.counter("linkpreview.cache", "result", "miss").count());
+    }
+
+    @Test
+    @DisplayName("concurrent requests for one URL share a single fetch")
+    void singleFlight() {
+        List<CompletableFuture<Map<String, String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) futures.add(service.fetchPreviewAsync(base + "/page?slow"));
+
+        for (CompletableFuture<Map<String, String>> f : futures) assertEquals("Barsik", f.join().get("title"));
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    @DisplayName("a server that stalls mid-body times out and the failure is cached")
+    void stallingServer() throws Exception {
+        CompletableFuture<Map<String, String>> first = service.fetchPreviewAsync(base + "/stall");
+
+        assertNull(first.get(3, TimeUnit.SECONDS));
+        // The in-flight entry is gone: a repeat is a cache hit, not a join on a dead future
+        assertNull(service.fetchPreviewAsync(base + "/stall").getNow(Map.of()));
+        assertEquals(1, hits.get());
+        assertEquals(1.0, meterRegistry.counter("linkpreview.cache", "result", "hit").count());
+    }
+
+    @Test
+    @DisplayName("failures and blocked URLs are cached negatively")
+    void negativeCaching() {
+        assertNull(service.fetchPreview(base + "/missing"));
+        assertNull(service.fetchPreview(base + "/missing"));
+        assertEquals(1, hits.get());
+
+        assertNull(service.fetchPreview("http://10.0.0.1/admin"));
+        assertNull(service.fetchPreview("http://10.0.0.1/admin"));
+        assertEquals(2, safetyChecks.get()); // /missing once, the blocked URL once
+    }
+
+    @Test
+    @DisplayName("cache is a bounded LRU and entries expire")
+    void lruAndTtl() {
+        service.fetchPreview(base + "/page?a");
+        service.fetchPreview(base + "/page?b");
+        service.fetchPreview(base + "/page?c");
+        service.fetchPreview(base + "/page?a");       // touch a: b is now least recently used
+        service.fetchPreview(base + "/page?d");       // evicts b
+        assertEquals(3, service.cacheSize());
+        assertEquals(4, hits.get());
+        service.fetchPreview(base + "/page?a");
+        assertEquals(4, hits.get());
+        service.fetchPreview(base + "/page?b");
+        assertEquals(5, hits.get());
+
+        LinkPreviewService shortLived = newService(10, 1, 1);
+        try {
+            shortLived.fetchPreview(base + "/page");
+            sleep(20);
+            shortLived.fetchPreview(base + "/page");
+            assertEquals(7, hits.get());
+        } finally {
+            shortLived.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("head detection is case-insensitive and spans chunk boundaries")
+    void headEnd() {
+        byte[] html = "<html><HEAD></HeAd><body>".getBytes(StandardCharsets.US_ASCII);
+        assertTrue(LinkPreviewService.HeadSubscriber.containsHeadEnd(html, 0, html.length));
+        assertFalse(LinkPreviewService.HeadSubscriber.containsHeadEnd(html, 0, 15));
+        assertNull(LinkPreviewService.parseHtml("http://x", "<html><head></head></html>"));
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.config.DbBulkhead;
+import com.example.webrtcchat.service.LoadShedder.Level;
+import com.example.webrtcchat.service.LoadShedder.Priority;
+import com.example.webrtcchat.types.MessageType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prioritised load shedding: overload levels from backlog/outbound/database signals, shedding order,
+ * typing sampling and step-wise recovery.
+ */
+class LoadShedderTest {
+
+    private final AtomicInteger backlog = new AtomicInteger();
+    private final AtomicInteger outbound = new AtomicInteger();
+    private SimpleMeterRegistry meterRegistry;
+    private LoadShedder shedder;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        shedder = new LoadShedder(meterRegistry, beans.getBeanProvider(DataSource.class),
+                beans.getBeanProvider(DbBulkhead.class), true, new double[]{0.25, 0.5, 0.8}, new int[]{2, 5, 10}, new int[]{50, 200, 500}, 60_000);
+        shedder.watchBacklog(backlog::get, 100);
+        shedder.watchOutbound(outbound::get);
+    }
+
+    @Test
+    @DisplayName("frame types map to priority classes")
+    void priorities() {
+        assertEquals(Priority.SIGNALING, LoadShedder.priorityOf(MessageType.ICE_CANDIDATE));
+        assertEquals(Priority.SIGNALING, LoadShedder.priorityOf(MessageType.CONF_OFFER));
+        assertEquals(Priority.CHAT, LoadShedder.priorityOf(MessageType.CHAT));
+        assertEquals(Priority.REACTIONS_EDITS, LoadShedder.priorityOf(MessageType.EDIT));
+        assertEquals(Priority.TYPING_PRESENCE, LoadShedder.priorityOf(MessageType.TYPING));
+        assertEquals(Priority.CHAT, LoadShedder.priorityOf(null));
+    }
+
+    @Test
+    @DisplayName("each level sheds one more class, lowest first; signaling always passes")
+    void shedsLowestFirst() {
+        backlog.set(30); // elevated
+        assertEquals(Level.ELEVATED, shedder.measure());
+        outbound.set(250); // high wins
+        assertEquals(Level.HIGH, shedder.measure());
+        backlog.set(90); // critical
+        assertEquals(Level.CRITICAL, shedder.measure());
+
+        assertEquals(Level.CRITICAL, shedder.level());
+        assertTrue(shedder.admit(Priority.SIGNALING, "alice"));
+        assertFalse(shedder.admit(Priority.CHAT, "alice"));
+        assertFalse(shedder.admit(Priority.REACTIONS_EDITS, "alice"));
+        assertFalse(shedder.admit(Priority.TYPING_PRESENCE, "alice"));
+        assertEquals(1.0, meterRegistry.counter("ws.frames.shed", "priority", "chat").count());
+        assertEquals(0.0, meterRegistry.counter("ws.frames.shed", "priority", "signaling").count());
+        assertEquals(3.0, meterRegistry.get("ws.overload.level").gauge().value());
+    }
+
+    @Test
+    @DisplayName("threads queued on the realtime database lane raise the level")
+    void realtimeLaneQueue() {
+        AtomicInteger queued = new AtomicInteger();
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("dbBulkhead", new DbBulkhead(meterRegistry, Map.of()) {
+            @Override
+            public int queued(Lane lane) {
+                return lane == Lane.REALTIME ? queued.get() : 100;
+            }
+        });
+        LoadShedder withBulkhead = new LoadShedder(meterRegistry, beans.getBeanProvider(DataSource.class),
+                beans.getBeanProvider(DbBulkhead.class), true,
+                new double[]{0.25, 0.5, 0.8}, new int[]{2, 5, 10}, new int[]{50, 200, 500}, 60_000);
+
+        assertEquals(Level.NORMAL, withBulkhead.measure(), "other lanes do not count");
+        queued.set(5);
+        assertEquals(Level.HIGH, withBulkhead.measure());
+        queued.set(12);
+        assertEquals(Level.CRITICAL, withBulkhead.measure());
+    }
+
+    @Test
+    @DisplayName("elevated load samples typing per user instead of dropping it")
+    void typingSampled() {
+        backlog.set(30);
+        assertEquals(Level.ELEVATED, shedder.level());
+        assertTrue(shedder.admit(Priority.TYPING_PRESENCE, "alice"));
+        assertFalse(shedder.admit(Priority.TYPING_PRESENCE, "alice"));
+        assertTrue(shedder.admit(Priority.TYPING_PRESENCE, "bob"));
+        assertTrue(shedder.admit(Priority.REACTIONS_EDITS, "alice"));
+        assertTrue(shedder.admit(Priority.CHAT, "alice"));
+    }
+
+    @Test
+    @DisplayName("recovery steps down one level per interval")
+    void gradualRecovery() throws Exception {
+        backlog.set(90);
+        assertEquals(Level.CRITICAL, shedder.level());
+        backlog.set(0);
+        Thread.sleep(110);
+        assertEquals(Level.HIGH, shedder.level());
+        Thread.sleep(110);
+        assertEquals(Level.ELEVATED, shedder.level());
+    }
+}
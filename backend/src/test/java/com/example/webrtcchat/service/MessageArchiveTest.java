@@ -0,0 +1,193 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.dto.MessageDto;
+import com.example.webrtcchat.entity.MessageEntity;
+import com.example.webrtcchat.entity.ReactionCountEntity;
+import com.example.webrtcchat.repository.MessageArchiveSegmentRepository;
+import com.example.webrtcchat.repository.MessageRepository;
+import com.example.webrtcchat.repository.ReactionCountRepository;
+import com.example.webrtcchat.types.MessageType;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cold tier end to end on H2: the archiver moves a room's oldest messages into segments and
+ * history paging reads across the hot/archive boundary as one sequence.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:archive;DB_CLOSE_DELAY=-1",
+        "messages.archive.enabled=false",
+        "messages.archive.after-days=30",
+        "messages.archive.segment-size=10",
+        "logging.level.com.example.webrtcchat=WARN"
+})
+class MessageArchiveTest {
+
+    @Autowired private MessageRepository messageRepository;
+    @Autowired private MessageArchiveSegmentRepository segmentRepository;
+    @Autowired private MessageArchiver archiver;
+    @Autowired private MessageArchive archive;
+    @Autowired private ChatService chatService;
+    @Autowired private ReactionCountRepository reactionCountRepository;
+    @Autowired private MeterRegistry meterRegistry;
+
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+    private final Instant old = now.minus(Duration.ofDays(200));
+
+    @BeforeEach
+    void clean() {
+        chatService.clearHistory("room-a");
+        chatService.clearHistory("room-b");
+    }
+
+    private void message(String roomId, String content, Instant timestamp, boolean pinned, String fileUrl) {
+        MessageEntity e = new MessageEntity();
+        e.setId(MessageIds.next());
+        e.setRoomId(roomId);
+        e.setSender("alice");
+        e.setContent(content);
+        e.setTimestamp(timestamp);
+        e.setType(MessageType.CHAT);
+        e.setStatus("SENT");
+        e.setPinned(pinned);
+        e.setFileUrl(fileUrl);
+        messageRepository.save(e);
+    }
+
+    /** 35 old and 5 recent messages "m0".."m39", oldest first. */
+    private void seedRoomA() {
+        for (int i = 0; i < 35; i++) {
+            message("room-a", "m" + i, old.plusSeconds(60L * i), false, i == 3 ? "/api/uploads/abcd-photo.jpg" : null);
+        }
+        for (int i = 35; i < 40; i++) message("room-a", "m" + i, now.minusSeconds(60L * (40 - i)), false, null);
+    }
+
+    @Test
+    @DisplayName("archives whole segments of the oldest messages and leaves the rest hot")
+    void archive_movesFullSegments() {
+        seedRoomA();
+
+        assertEquals(3, archiver.archive(now));
+
+        assertEquals(10, messageRepository.countByRoomId("room-a"));
+        assertEquals(30, archive.count("room-a"));
+        assertEquals(0, archiver.archive(now), "5 old messages left are less than a segment");
+        assertEquals(List.of("/api/uploads/abcd-photo.jpg"), segmentRepository.findAllUploadUrls());
+        assertEquals(List.of("/api/uploads/abcd-photo.jpg"),
+                segmentRepository.findUploadUrlsIn(List.of("/api/uploads/abcd-photo.jpg", "/api/uploads/other.jpg")));
+    }
+
+    @Test
+    @DisplayName("history pages run from the hot table on into the archive without gaps")
+    void getHistory_pagesIntoArchive() {
+        seedRoomA();
+        archiver.archive(now);
+
+        List<String> all = new ArrayList<>();
+        for (int page = 0; ; page++) {
+            List<MessageDto> chunk = chatService.getHistory("room-a", page, 7);
+            if (chunk.isEmpty()) break;
+            List<String> contents = chunk.stream().map(MessageDto::getContent).toList();
+            all.addAll(0, contents);
+        }
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 40; i++) expected.add("m" + i);
+        assertEquals(expected, all);
+        MessageDto archived = chatService.getHistory("room-a", 5, 7).get(0);
+        assertEquals("m0", archived.getContent());
+        assertEquals(old, archived.getTimestamp());
+    }
+
+    @Test
+    @DisplayName("reaction aggregates come inline with hot pages and are carried into the archive")
+    void getHistory_inlineReactions() {
+        seedRoomA();
+        List<MessageDto> hot = chatService.getHistory("room-a", 0, 40);
+        reactions(hot.get(0).getId(), "👍", 2, "bob", "carol");
+        reactions(hot.get(0).getId(), "🔥", 3, "dave", null);
+        reactions(hot.get(39).getId(), "❤️", 1, "bob", null);
+
+        archiver.archive(now);
+
+        MessageDto archived = chatService.getHistory("room-a", 5, 7).get(0);
+        assertEquals("m0", archived.getContent());
+        assertEquals(List.of("🔥", "👍"), archived.getReactions().stream().map(r -> r.get("emoji")).toList());
+        assertEquals(List.of("bob", "carol"), archived.getReactions().get(1).get("recentUsers"));
+        MessageDto latest = chatService.getHistory("room-a", 0, 1).get(0);
+        assertEquals(1, latest.getReactions().get(0).get("count"));
+        assertNull(chatService.getHistory("room-a", 0, 2).get(0).getReactions());
+        reactionCountRepository.deleteAll();
+    }
+
+    private void reactions(String messageId, String emoji, int total, String user1, String user2) {
+        ReactionCountEntity c = new ReactionCountEntity();
+        c.setMessageId(messageId);
+        c.setRoomId("room-a");
+        c.setEmoji(emoji);
+        c.setTotal(total);
+        c.setRecentUser1(user1);
+        c.setRecentUser2(user2);
+        reactionCountRepository.save(c);
+    }
+
+    @Test
+    @DisplayName("a pinned message ends its segment early and keeps itself and everything newer hot")
+    void archive_stopsAtPinned() {
+        for (int i = 0; i < 25; i++) message("room-b", "b" + i, old.plusSeconds(i), i == 12, null);
+
+        assertEquals(2, archiver.archive(now));
+
+        assertEquals(13, messageRepository.countByRoomId("room-b"));
+        assertEquals(12, archive.count("room-b"));
+        assertEquals(1, chatService.getPinnedMessages("room-b").size());
+        assertEquals(1.0, meterRegistry.get("messages.archive.blocked.rooms").gauge().value());
+    }
+
+    @Test
+    @DisplayName("a pinned oldest message holds its room back without stopping other rooms")
+    void archive_pinnedOldest() {
+        for (int i = 0; i < 25; i++) message("room-b", "b" + i, old.plusSeconds(i), i == 0, null);
+        seedRoomA();
+
+        assertEquals(3, archiver.archive(now));
+
+        assertEquals(25, messageRepository.countByRoomId("room-b"));
+        assertEquals(0, archive.count("room-b"));
+        assertEquals(30, archive.count("room-a"));
+        assertEquals(1.0, meterRegistry.get("messages.archive.blocked.rooms").gauge().value());
+
+        chatService.unpinMessage("room-b", chatService.getPinnedMessages("room-b").get(0).getId());
+        assertEquals(2, archiver.archive(now));
+        assertEquals(0.0, meterRegistry.get("messages.archive.blocked.rooms").gauge().value());
+    }
+
+    @Test
+    @DisplayName("clearing a room's history drops its archive too")
+    void clearHistory_dropsSegments() {
+        seedRoomA();
+        archiver.archive(now);
+
+        chatService.clearHistory("room-a");
+
+        assertEquals(0, archive.count("room-a"));
+        assertTrue(segmentRepository.findAllUploadUrls().isEmpty());
+        assertTrue(chatService.getHistory("room-a", 0, 50).isEmpty());
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.webrtcchat.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageIdsTest {
+
+    @Test
+    @DisplayName("ids are version 7, RFC variant, in the 36-character canonical form")
+    void next_isCanonicalUuidV7() {
+        String id = MessageIds.next();
+        UUID uuid = UUID.fromString(id);
+
+        assertEquals(36, id.length());
+        assertEquals(id.toLowerCase(), id);
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+    }
+
+    @Test
+    @DisplayName("string order matches generation order, also within one millisecond")
+    void next_sortsByCreation() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) ids.add(MessageIds.next());
+
+        List<String> sorted = new ArrayList<>(ids);
+        sorted.sort(null);
+        assertEquals(ids, sorted);
+    }
+
+    @Test
+    @DisplayName("concurrent generators never collide")
+    void next_uniqueAcrossThreads() throws Exception {
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) assertTrue(seen.add(MessageIds.next()));
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(80_000, seen.size());
+    }
+
+    @Test
+    @DisplayName("embedded timestamp is the creation time; legacy random ids have none")
+    void timestampOf_readsV7Only() {
+        Instant before = Instant.now().minusMillis(1);
+        Instant stamped = MessageIds.timestampOf(MessageIds.next());
+
+        assertNotNull(stamped);
+        assertFalse(stamped.isBefore(before));
+        assertTrue(Duration.between(before, stamped).toMillis() < 1_000);
+        assertNull(MessageIds.timestampOf(UUID.randomUUID().toString()));
+        assertNull(MessageIds.timestampOf("client-supplied"));
+        assertNull(MessageIds.timestampOf(null));
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.repository.MessageRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Monthly partitions of messages: created ahead, detached after the retention period.
+ */
+@ExtendWith(MockitoExtension.class)
+class MessagePartitionMaintenanceTest {
+
+    @Mock private MessageRepository messageRepository;
+    @Mock private ObjectProvider<DataSource> dataSource;
+
+    private MessagePartitionMaintenance maintenance(int retentionMonths) {
+        return new MessagePartitionMaintenance(messageRepository, dataSource, true, 3, retentionMonths);
+    }
+
+    private void database(String product) throws Exception {
+        DataSource ds = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(dataSource.getIfAvailable()).thenReturn(ds);
+        when(ds.getConnection()).thenReturn(connection);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getDatabaseProductName()).thenReturn(product);
+    }
+
+    @Test
+    @DisplayName("creates partitions ahead and detaches nothing without a retention period")
+    void maintain_noRetention() throws Exception {
+        database("PostgreSQL");
+
+        maintenance(0).maintainIfEnabled();
+
+        verify(messageRepository).ensurePartitions(3);
+        verify(messageRepository, never()).detachPartitionsBefore(any());
+    }
+
+    @Test
+    @DisplayName("retention detaches months before the start of the kept window")
+    void maintain_detachesExpiredMonths() {
+        when(messageRepository.detachPartitionsBefore(any())).thenReturn(List.of("messages_y2025m11"));
+
+        maintenance(2).maintain(Instant.parse("2026-02-17T10:00:00Z"));
+
+        verify(messageRepository).detachPartitionsBefore(Instant.parse("2025-12-01T00:00:00Z"));
+    }
+
+    @Test
+    @DisplayName("cutoff is the first day of a month in UTC")
+    void retentionCutoff_monthBoundary() {
+        assertEquals(Instant.parse("2026-01-01T00:00:00Z"),
+                MessagePartitionMaintenance.retentionCutoff(Instant.parse("2026-01-31T23:59:59Z"), 0));
+        assertEquals(Instant.parse("2025-01-01T00:00:00Z"),
+                MessagePartitionMaintenance.retentionCutoff(Instant.parse("2026-01-01T00:00:00Z"), 12));
+    }
+
+    @Test
+    @DisplayName("does nothing on databases without the partition functions")
+    void maintain_skipsOtherDatabases() throws Exception {
+        database("H2");
+        MessagePartitionMaintenance maintenance = maintenance(6);
+
+        maintenance.maintainIfEnabled();
+        maintenance.maintainIfEnabled();
+
+        verifyNoInteractions(messageRepository);
+        verify(dataSource, times(1)).getIfAvailable();
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.webrtcchat.service;
 
+import com.example.webrtcchat.dto.Timestamps;
 import com.example.webrtcchat.dto.UserDto;
 import com.example.webrtcchat.entity.MessageEntity;
 import com.example.webrtcchat.entity.NewsEntity;
@@ -8,6 +9,7 @@ import com.example.webrtcchat.entity.UserEntity;
 import com.example.webrtcchat.repository.MessageRepository;
 import com.example.webrtcchat.repository.NewsCommentRepository;
 import com.example.webrtcchat.repository.NewsRepository;
+import com.example.webrtcchat.repository.ReactionCountRepository;
 import com.example.webrtcchat.repository.ReactionRepository;
 import com.example.webrtcchat.repository.RoomRepository;
 import com.example.webrtcchat.repository.UserRepository;
@@ -48,18 +50,19 @@ class PerformanceFeaturesTest {
         @Mock private RoomRepository roomRepository;
         @Mock private UserRepository userRepository;
         @Mock private PollService pollService;
+        @Mock private UploadRefService uploadRefService;
         @InjectMocks private ChatService chatService;
 
         @Test
         @DisplayName("batch loads users via single findByUsernameIn query")
         void batchLoads_singleQuery() {
             UserEntity alice = new UserEntity("alice", "pass", "2026-01-01");
-            alice.setLastSeen("2026-01-01 12:00:00");
+            alice.setLastSeen(Timestamps.parse("2026-01-01 12:00:00"));
             alice.setAvatarUrl("/img/alice.png");
             alice.setTag("@alice");
 
             UserEntity bob = new UserEntity("bob", "pass", "2026-01-01");
-            bob.setLastSeen("2026-01-01 11:00:00");
+            bob.setLastSeen(Timestamps.parse("2026-01-01 11:00:00"));
             bob.setAvatarUrl("/img/bob.png");
             bob.setTag("@bob");
 
@@ -75,14 +78,14 @@ class PerformanceFeaturesTest {
             UserDto aliceDto = result.get(0);
             assertEquals("alice", aliceDto.getUsername());
             assertTrue(aliceDto.isOnline());
-            assertEquals("2026-01-01 12:00:00", aliceDto.getLastSeen());
+            assertEquals("2026-01-01 12:00:00", Timestamps.format(aliceDto.getLastSeen()));
             assertEquals("/img/alice.png", aliceDto.getAvatarUrl());
             assertEquals("@alice", aliceDto.getTag());
 
             UserDto bobDto = result.get(1);
             assertEquals("bob", bobDto.getUsername());
             assertFalse(bobDto.isOnline());
-            assertEquals("2026-01-01 11:00:00", bobDto.getLastSeen());
+            assertEquals("2026-01-01 11:00:00", Timestamps.format(bobDto.getLastSeen()));
             assertEquals("/img/bob.png", bobDto.getAvatarUrl());
             assertEquals("@bob", bobDto.getTag());
 
@@ -260,6 +263,49 @@ class PerformanceFeaturesTest {
         }
     }
 
+    // ═══════════════════════════════════════════
+    // B7: ReactionService add/remove — one statement with the aggregate
+    // ═══════════════════════════════════════════
+
+    @Nested
+    @DisplayName("B7: ReactionService add/remove through reaction_counts")
+    class ReactionAggregates {
+
+        @Mock private ReactionRepository reactionRepository;
+        @Mock private ReactionCountRepository reactionCountRepository;
+        @InjectMocks private ReactionService reactionService;
+
+        @Test
+        @DisplayName("add is a single upsert and reports whether the reaction was new")
+        void add_singleUpsert() {
+            when(reactionCountRepository.addReaction(eq("msg1"), eq("room1"), eq("alice"), eq("👍"), anyString()))
+                    .thenReturn(1, 0);
+
+            assertTrue(reactionService.addReaction("msg1", "room1", "alice", "👍"));
+            assertFalse(reactionService.addReaction("msg1", "room1", "alice", "👍"));
+            verifyNoInteractions(reactionRepository);
+        }
+
+        @Test
+        @DisplayName("remove drops the aggregate only after a reaction was actually removed")
+        void remove_dropsEmptyAggregate() {
+            when(reactionCountRepository.removeReaction("msg1", "alice", "👍")).thenReturn(1, 0);
+
+            assertTrue(reactionService.removeReaction("msg1", "alice", "👍"));
+            assertFalse(reactionService.removeReaction("msg1", "alice", "👍"));
+            verify(reactionCountRepository, times(1)).deleteEmpty("msg1", "👍");
+        }
+
+        @Test
+        @DisplayName("emojis that do not fit the column or carry control characters are refused")
+        void add_rejectsInvalidEmoji() {
+            assertFalse(reactionService.addReaction("msg1", "room1", "alice", ""));
+            assertFalse(reactionService.addReaction("msg1", "room1", "alice", "x".repeat(11)));
+            assertFalse(reactionService.addReaction("msg1", "room1", "alice", "👍\u001F1"));
+            verifyNoInteractions(reactionCountRepository);
+        }
+    }
+
     // ═══════════════════════════════════════════
     // B6: NewsService.getAllNews — batch comment counts
     // ═══════════════════════════════════════════
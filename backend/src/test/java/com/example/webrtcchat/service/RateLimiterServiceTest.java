@@ -0,0 +1,117 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.service.RateLimiterService.RateClass;
+import com.example.webrtcchat.types.MessageType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Per-user token buckets: burst then refill, class isolation, frame classification, concurrency.
+ */
+class RateLimiterServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimiterService limiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new RateLimiterService(meterRegistry, true, 1024,
+                new int[]{5, 10}, new int[]{5, 3}, new int[]{50, 200}, new int[]{5, 10}, new int[]{20, 100},
+                new int[]{1, 5});
+    }
+
+    @Test
+    @DisplayName("allows a burst, then rejects and counts until tokens refill")
+    void burstThenReject() {
+        for (int i = 0; i < 10; i++) assertTrue(limiter.tryAcquire("alice", RateClass.CHAT));
+        assertFalse(limiter.tryAcquire("alice", RateClass.CHAT));
+        assertFalse(limiter.tryAcquire("alice", RateClass.CHAT));
+        assertEquals(2.0, meterRegistry.counter("ratelimit.rejected", "class", "chat").count());
+    }
+
+    @Test
+    @DisplayName("buckets are per user and per class")
+    void isolation() {
+        for (int i = 0; i < 3; i++) assertTrue(limiter.tryAcquire("alice", RateClass.TYPING));
+        assertFalse(limiter.tryAcquire("alice", RateClass.TYPING));
+        assertTrue(limiter.tryAcquire("alice", RateClass.CHAT));
+        assertTrue(limiter.tryAcquire("alice", RateClass.HEARTBEAT), "typing never starves heartbeats");
+        assertTrue(limiter.tryAcquire("bob", RateClass.TYPING));
+    }
+
+    @Test
+    @DisplayName("lazy refill restores tokens at the configured rate")
+    void refill() throws Exception {
+        for (int i = 0; i < 3; i++) limiter.tryAcquire("alice", RateClass.TYPING);
+        assertFalse(limiter.tryAcquire("alice", RateClass.TYPING));
+        Thread.sleep(250); // 5 tokens/s → at least one token back
+        assertTrue(limiter.tryAcquire("alice", RateClass.TYPING));
+    }
+
+    @Test
+    @DisplayName("concurrent acquires never hand out more than the burst")
+    void concurrentBurst() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(pool.submit(() -> {
+                    int granted = 0;
+                    for (int i = 0; i < 50; i++) if (limiter.tryAcquire("mallory", RateClass.SIGNALING)) granted++;
+                    return granted;
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> f : results) total += f.get();
+            // 200 burst plus whatever refilled (50/s) while the threads ran
+            assertTrue(total >= 200 && total < 230, "granted: " + total);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("a full table reuses idle buckets instead of growing")
+    void tableReuse() {
+        RateLimiterService.BucketTable table = new RateLimiterService.BucketTable(16, 1, 1);
+        for (int i = 0; i < 16; i++) assertEquals(RateLimiterService.BucketTable.ALLOWED, table.tryAcquire("u" + i, 0));
+        // every slot is drained at t=0; a new user finds none reusable
+        assertEquals(RateLimiterService.BucketTable.SATURATED, table.tryAcquire("newcomer", 0));
+        // a second later all buckets have refilled, so one is taken over
+        assertEquals(RateLimiterService.BucketTable.ALLOWED, table.tryAcquire("newcomer", 1000));
+        assertEquals(RateLimiterService.BucketTable.REJECTED, table.tryAcquire("newcomer", 1000));
+    }
+
+    @Test
+    @DisplayName("frames are classified from the raw payload")
+    void classify() {
+        assertEquals(RateClass.CHAT, RateLimiterService.classify("{\"type\":\"CHAT\",\"content\":\"\\\"type\\\":\\\"TYPING\\\"\"}"));
+        assertEquals(RateClass.TYPING, RateLimiterService.classify("{\"roomId\":\"r\",\"type\" : \"TYPING\"}"));
+        assertEquals(RateClass.HEARTBEAT, RateLimiterService.classify("{\"type\":\"PING\"}"));
+        assertEquals(RateClass.SIGNALING, RateLimiterService.classify("{\"type\":\"ICE_CANDIDATE\"}"));
+        assertEquals(RateClass.SIGNALING, RateLimiterService.classify("{\"type\":\"CONF_OFFER\"}"));
+        assertEquals(RateClass.REACTIONS, RateLimiterService.classify("{\"type\":\"REACTION_REMOVE\"}"));
+        assertEquals(RateClass.CHAT, RateLimiterService.classify("not json"));
+    }
+
+    @Test
+    @DisplayName("parsed frame types map to the same classes as raw frames")
+    void classOf() {
+        for (MessageType type : MessageType.values()) {
+            assertEquals(RateLimiterService.classify("{\"type\":\"" + type.name() + "\"}"),
+                    RateLimiterService.classOf(type), type.name());
+        }
+        assertEquals(RateClass.CHAT, RateLimiterService.classOf(null));
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.webrtcchat.service;
 
 import com.example.webrtcchat.dto.RoomDto;
+import com.example.webrtcchat.dto.Timestamps;
 import com.example.webrtcchat.entity.RoomEntity;
 import com.example.webrtcchat.repository.RoomRepository;
 import com.example.webrtcchat.types.RoomType;
@@ -218,7 +219,7 @@ class RoomServiceTest {
     // === Helpers ===
 
     private RoomEntity createRoom(String id, String name, RoomType type, String createdBy) {
-        RoomEntity entity = new RoomEntity(id, name, type, createdBy, "2026-01-01 12:00:00");
+        RoomEntity entity = new RoomEntity(id, name, type, createdBy, Timestamps.parse("2026-01-01 12:00:00"));
         return entity;
     }
 }
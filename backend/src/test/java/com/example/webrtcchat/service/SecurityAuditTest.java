@@ -31,7 +31,7 @@ class SecurityAuditTest {
     @DisplayName("P0-2 — SSRF protection")
     class SsrfProtectionTest {
 
-        private final LinkPreviewService service = new LinkPreviewService();
+        private final LinkPreviewService service = new LinkPreviewService(new io.micrometer.core.instrument.simple.SimpleMeterRegistry());
 
         // ── Scheme validation ──
 
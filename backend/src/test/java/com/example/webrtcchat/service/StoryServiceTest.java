@@ -0,0 +1,185 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.dto.StoryDto;
+import com.example.webrtcchat.entity.StoryEntity;
+import com.example.webrtcchat.repository.StoryRepository;
+import com.example.webrtcchat.repository.StoryViewRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Stories feed cache: active stories and per-viewer seen bitmaps are served
+ * from memory; views are idempotent upserts with batched count flushes.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class StoryServiceTest {
+
+    @Mock private StoryRepository storyRepository;
+    @Mock private StoryViewRepository storyViewRepository;
+    @Mock private UploadRefService uploadRefService;
+
+    private StoryService storyService;
+
+    @BeforeEach
+    void setUp() {
+        storyService = new StoryService(storyRepository, storyViewRepository, uploadRefService);
+    }
+
+    private StoryEntity story(String id, String author, long views) {
+        Instant created = Instant.now().minus(Duration.ofMinutes(5));
+        StoryEntity s = new StoryEntity(id, author, "/api/uploads/" + id + ".mp4", null, 10,
+                created, created.plus(Duration.ofHours(24)));
+        s.setViewCount(views);
+        return s;
+    }
+
+    @Test
+    @DisplayName("feed is ordered by author and served from memory on repeat reads")
+    void feed_orderedByAuthor_cached() {
+        when(storyRepository.findAllActive(any(Instant.class)))
+                .thenReturn(List.of(story("s1", "carol", 0), story("s2", "alice", 3)));
+        when(storyViewRepository.findViewedStoryIdsByViewerIn(eq("bob"), anyCollection()))
+                .thenReturn(List.of("s2"));
+
+        List<StoryDto> first = storyService.getAllActiveStories("bob");
+        List<StoryDto> second = storyService.getAllActiveStories("bob");
+
+        assertEquals("alice", first.get(0).getAuthor());
+        assertEquals("carol", first.get(1).getAuthor());
+        assertTrue(first.get(0).isViewedByMe());
+        assertFalse(first.get(1).isViewedByMe());
+        assertEquals(3, first.get(0).getViewCount());
+        assertEquals(2, second.size());
+
+        verify(storyRepository, times(1)).findAllActive(any(Instant.class));
+        verify(storyViewRepository, times(1)).findViewedStoryIdsByViewerIn(eq("bob"), anyCollection());
+        verify(storyViewRepository, never()).countByStoryIdsRaw(anyList());
+    }
+
+    @Test
+    @DisplayName("viewStory upserts once, repeat views never hit the database")
+    void viewStory_idempotent() {
+        when(storyRepository.findAllActive(any(Instant.class))).thenReturn(List.of(story("s1", "alice", 0)));
+        when(storyViewRepository.insertIfAbsent(eq("s1"), eq("bob"), anyString())).thenReturn(1);
+
+        storyService.viewStory("s1", "bob");
+        storyService.viewStory("s1", "bob");
+
+        verify(storyViewRepository, times(1)).insertIfAbsent(eq("s1"), eq("bob"), anyString());
+        verify(storyViewRepository, never()).existsByStoryIdAndViewer(anyString(), anyString());
+
+        StoryDto dto = storyService.getAllActiveStories("bob").get(0);
+        assertTrue(dto.isViewedByMe());
+        assertEquals(1, dto.getViewCount());
+    }
+
+    @Test
+    @DisplayName("view counts are flushed as batched deltas")
+    void flushViewCounts_appliesDelta() {
+        when(storyRepository.findAllActive(any(Instant.class))).thenReturn(List.of(story("s1", "alice", 7)));
+        when(storyViewRepository.insertIfAbsent(anyString(), anyString(), anyString())).thenReturn(1);
+
+        storyService.viewStory("s1", "bob");
+        storyService.viewStory("s1", "carol");
+        storyService.flushViewCounts();
+        storyService.flushViewCounts(); // nothing pending
+
+        verify(storyRepository, times(1)).incrementViewCount("s1", 2L);
+        assertEquals(9, storyService.getAllActiveStories("dave").get(0).getViewCount());
+    }
+
+    @Test
+    @DisplayName("a view whose upsert fails is not marked seen and is recorded on retry")
+    void viewStory_failedUpsertRetried() {
+        when(storyRepository.findAllActive(any(Instant.class))).thenReturn(List.of(story("s1", "alice", 0)));
+        when(storyViewRepository.insertIfAbsent(eq("s1"), eq("bob"), anyString()))
+                .thenThrow(new IllegalStateException("db down")).thenReturn(1);
+
+        assertThrows(IllegalStateException.class, () -> storyService.viewStory("s1", "bob"));
+        assertFalse(storyService.getAllActiveStories("bob").get(0).isViewedByMe());
+
+        storyService.viewStory("s1", "bob");
+        verify(storyViewRepository, times(2)).insertIfAbsent(eq("s1"), eq("bob"), anyString());
+        assertTrue(storyService.getAllActiveStories("bob").get(0).isViewedByMe());
+    }
+
+    @Test
+    @DisplayName("deltas of a flush that rolls back are flushed again by the next one")
+    void flushViewCounts_rollbackKeepsDeltas() {
+        when(storyRepository.findAllActive(any(Instant.class))).thenReturn(List.of(story("s1", "alice", 0)));
+        when(storyViewRepository.insertIfAbsent(anyString(), anyString(), anyString())).thenReturn(1);
+        when(storyRepository.incrementViewCount("s1", 2L)).thenThrow(new IllegalStateException("db down")).thenReturn(1);
+        storyService.viewStory("s1", "bob");
+        storyService.viewStory("s1", "carol");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThrows(IllegalStateException.class, () -> storyService.flushViewCounts());
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        storyService.flushViewCounts();
+
+        verify(storyRepository, times(2)).incrementViewCount("s1", 2L);
+    }
+
+    @Test
+    @DisplayName("invalidateFeed reloads stories but keeps seen bitmaps")
+    void invalidate_reloadsAndCarriesSeen() {
+        when(storyRepository.findAllActive(any(Instant.class)))
+                .thenReturn(List.of(story("s1", "alice", 0)))
+                .thenReturn(List.of(story("s1", "alice", 0), story("s2", "bob", 0)));
+        when(storyViewRepository.findViewedStoryIdsByViewerIn(eq("carol"), anyCollection()))
+                .thenReturn(List.of("s1"));
+
+        storyService.getAllActiveStories("carol");
+        storyService.invalidateFeed();
+        List<StoryDto> feed = storyService.getAllActiveStories("carol");
+
+        assertEquals(2, feed.size());
+        assertTrue(feed.get(0).isViewedByMe());
+        assertFalse(feed.get(1).isViewedByMe());
+        verify(storyRepository, times(2)).findAllActive(any(Instant.class));
+        verify(storyViewRepository, times(1)).findViewedStoryIdsByViewerIn(eq("carol"), anyCollection());
+    }
+
+    @Test
+    @DisplayName("viewing an unknown or expired story is ignored")
+    void viewStory_unknownIgnored() {
+        when(storyRepository.findAllActive(any(Instant.class))).thenReturn(List.of());
+
+        storyService.viewStory("missing", "bob");
+
+        verify(storyViewRepository, never()).insertIfAbsent(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("deleting a story releases its upload references instead of deleting files")
+    void deleteStory_releasesRefs() {
+        StoryEntity s = story("s1", "alice", 0);
+        when(storyRepository.findById("s1")).thenReturn(java.util.Optional.of(s));
+
+        assertTrue(storyService.deleteStory("s1", "alice"));
+
+        verify(uploadRefService).releaseRefs(UploadRefService.OWNER_STORY, "s1");
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.repository.MessageArchiveSegmentRepository;
+import com.example.webrtcchat.repository.MessageRepository;
+import com.example.webrtcchat.repository.NewsRepository;
+import com.example.webrtcchat.repository.RoomRepository;
+import com.example.webrtcchat.repository.StoryRepository;
+import com.example.webrtcchat.repository.TaskRepository;
+import com.example.webrtcchat.repository.UploadRefRepository;
+import com.example.webrtcchat.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Mark-and-sweep of orphaned uploads: Bloom-filter mark, grace period, exact re-check, dry run.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class UploadGarbageCollectorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock private MessageRepository messageRepository;
+    @Mock private MessageArchiveSegmentRepository archiveRepository;
+    @Mock private StoryRepository storyRepository;
+    @Mock private UserRepository userRepository;
+    @Mock private RoomRepository roomRepository;
+    @Mock private NewsRepository newsRepository;
+    @Mock private TaskRepository taskRepository;
+    @Mock private UploadRefRepository uploadRefRepository;
+
+    private UploadService uploadService;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        uploadService = new UploadService(tempDir.toString());
+        meterRegistry = new SimpleMeterRegistry();
+        when(messageRepository.findUploadUrlsAfter(any(), any())).thenReturn(List.of());
+        when(storyRepository.findAllMediaUrls()).thenReturn(List.of());
+        when(userRepository.findAllAvatarUrls()).thenReturn(List.of());
+        when(roomRepository.findAllAvatarUrls()).thenReturn(List.of());
+        when(newsRepository.findAllImageUrls()).thenReturn(List.of());
+        when(taskRepository.findAllFileUrls()).thenReturn(List.of());
+        when(archiveRepository.findAllUploadUrls()).thenReturn(List.of());
+    }
+
+    private UploadGarbageCollector collector() {
+        return new UploadGarbageCollector(uploadService, messageRepository, archiveRepository, storyRepository, userRepository,
+                roomRepository, newsRepository, taskRepository, uploadRefRepository, meterRegistry,
+                true, false, 24, 1000);
+    }
+
+    private Path stored(String name, boolean old) throws Exception {
+        Path file = uploadService.shardedPath(name);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, name);
+        if (old) Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(3, ChronoUnit.DAYS)));
+        return file;
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+
+    @Test
+    @DisplayName("deletes old unreferenced files and keeps referenced ones")
+    void deletesOrphans() throws Exception {
+        Path orphan = stored("aaaa1111-orphan.jpg", true);
+        Path attached = stored("bbbb2222-attached.jpg", true);
+        Path avatar = stored("avatar_cccc3333-me.png", true);
+        when(messageRepository.findUploadUrlsAfter(eq(""), any()))
+                .thenReturn(rows(new Object[]{"m1", "/api/uploads/bbbb2222-attached.jpg", null}));
+        when(userRepository.findAllAvatarUrls()).thenReturn(List.of("/api/uploads/avatar_cccc3333-me.png"));
+
+        UploadGarbageCollector.GcReport report = collector().collect(false);
+
+        assertNotNull(report);
+        assertEquals(3, report.getScannedFiles());
+        assertEquals(1, report.getDeleted());
+        assertEquals(List.of("aaaa1111-orphan.jpg"), report.getDeletedSample());
+        assertFalse(Files.exists(orphan));
+        assertTrue(Files.exists(attached));
+        assertTrue(Files.exists(avatar));
+        verify(uploadRefRepository).deleteByFilename("aaaa1111-orphan.jpg");
+        assertEquals(1.0, meterRegistry.counter("uploads.gc.deleted.files").count());
+    }
+
+    @Test
+    @DisplayName("files of archived messages stay referenced")
+    void keepsArchivedMessageFiles() throws Exception {
+        Path archived = stored("ffff6666-archived.jpg", true);
+        when(archiveRepository.findAllUploadUrls()).thenReturn(List.of("/api/uploads/ffff6666-archived.jpg"));
+
+        UploadGarbageCollector.GcReport report = collector().collect(false);
+
+        assertEquals(0, report.getDeleted());
+        assertTrue(Files.exists(archived));
+    }
+
+    @Test
+    @DisplayName("files younger than the grace period and staging files are left alone")
+    void respectsGracePeriod() throws Exception {
+        Path fresh = stored("dddd4444-fresh.jpg", false);
+        Path incoming = uploadService.getIncomingDir().resolve("x.part");
+        Files.writeString(incoming, "partial");
+        Files.setLastModifiedTime(incoming, FileTime.from(Instant.now().minus(3, ChronoUnit.DAYS)));
+
+        UploadGarbageCollector.GcReport report = collector().collect(false);
+
+        assertEquals(0, report.getDeleted());
+        assertTrue(Files.exists(fresh));
+        assertTrue(Files.exists(incoming));
+    }
+
+    @Test
+    @DisplayName("dry run reports candidates without deleting")
+    void dryRun() throws Exception {
+        Path orphan = stored("eeee5555-orphan.mp4", true);
+
+        UploadGarbageCollector.GcReport report = collector().collect(true);
+
+        assertTrue(report.isDryRun());
+        assertEquals(1, report.getDeleted());
+        assertEquals(Files.size(orphan), report.getFreedBytes());
+        assertTrue(Files.exists(orphan));
+        verify(uploadRefRepository, never()).deleteByFilename(any());
+    }
+
+    @Test
+    @DisplayName("a reference added after the mark phase is caught by the exact check")
+    void exactCheckRescues() throws Exception {
+        Path late = stored("ffff6666-late.jpg", true);
+        when(newsRepository.findImageUrlsIn(anyCollection())).thenReturn(List.of("/api/uploads/ffff6666-late.jpg"));
+
+        UploadGarbageCollector.GcReport report = collector().collect(false);
+
+        assertEquals(1, report.getCandidates());
+        assertEquals(1, report.getRescued());
+        assertEquals(0, report.getDeleted());
+        assertTrue(Files.exists(late));
+    }
+
+    @Test
+    @DisplayName("Bloom filter has no false negatives")
+    void bloomFilter() {
+        UploadGarbageCollector.BloomFilter filter = new UploadGarbageCollector.BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) filter.put("file-" + i + ".jpg");
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("file-" + i + ".jpg"));
+            if (filter.mightContain("other-" + i + ".jpg")) falsePositives++;
+        }
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+        assertEquals("a.jpg", UploadGarbageCollector.filenameOf("https://host/api/uploads/a.jpg?x=1"));
+        assertNull(UploadGarbageCollector.filenameOf("/api/other/a.jpg"));
+    }
+
+    @Test
+    @DisplayName("cached image variants live exactly as long as their original")
+    void variantsFollowOriginal() throws Exception {
+        stored("abab0000-live.jpg", true);
+        Path liveVariant = uploadService.variantPath("abab0000-live.jpg", 128, "jpg");
+        Path orphanVariant = uploadService.variantPath("abab0001-gone.jpg", 128, "jpg");
+        Files.createDirectories(liveVariant.getParent());
+        Files.writeString(liveVariant, "v");
+        Files.writeString(orphanVariant, "v");
+        Files.setLastModifiedTime(liveVariant, FileTime.from(Instant.now().minus(3, ChronoUnit.DAYS)));
+        when(userRepository.findAllAvatarUrls()).thenReturn(List.of("/api/uploads/abab0000-live.jpg"));
+
+        UploadGarbageCollector.GcReport report = collector().collect(false);
+
+        assertEquals(1, report.getScannedFiles());
+        assertEquals(0, report.getDeleted());
+        assertEquals(1, report.getOrphanedVariants());
+        assertTrue(Files.exists(liveVariant));
+        assertFalse(Files.exists(orphanVariant));
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.repository.UploadRefRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Online flat → sharded migration: batched, resumable, and checked for consistency.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class UploadLayoutMigratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock private UploadRefRepository uploadRefRepository;
+
+    private UploadService uploadService;
+
+    @BeforeEach
+    void setUp() {
+        uploadService = new UploadService(tempDir.toString());
+        when(uploadRefRepository.findDistinctFilenames(any())).thenReturn(List.of());
+    }
+
+    private Path flat(String name) throws Exception {
+        return Files.writeString(tempDir.resolve(name), name);
+    }
+
+    @Test
+    @DisplayName("moves flat files in batches and resumes until none are left")
+    void migratesInBatches() throws Exception {
+        for (int i = 0; i < 5; i++) flat(String.format("%04x", i * 4099) + "-legacy.jpg");
+        UploadLayoutMigrator migrator = new UploadLayoutMigrator(uploadService, uploadRefRepository, true, 2);
+
+        assertEquals(2, migrator.migrateBatch());
+        assertEquals(2, migrator.migrateBatch());
+        assertEquals(1, migrator.migrateBatch());
+        assertEquals(0, migrator.migrateBatch());
+
+        assertTrue(migrator.status().isComplete());
+        assertEquals(5, migrator.status().getMigrated());
+        String name = "1003-legacy.jpg";
+        assertTrue(Files.exists(tempDir.resolve("10").resolve("03").resolve(name)));
+        assertEquals(uploadService.shardedPath(name), uploadService.resolve(name));
+    }
+
+    @Test
+    @DisplayName("consistency check reports pending, misplaced and missing entries and repairs them")
+    void consistencyCheck() throws Exception {
+        flat("aaaa-pending.png");
+        Path wrongShard = tempDir.resolve("00").resolve("00");
+        Files.createDirectories(wrongShard);
+        Files.writeString(wrongShard.resolve("bbbb-misplaced.png"), "x");
+        when(uploadRefRepository.findDistinctFilenames(any())).thenReturn(List.of("cccc-gone.png"));
+        UploadLayoutMigrator migrator = new UploadLayoutMigrator(uploadService, uploadRefRepository, true, 100);
+
+        UploadLayoutMigrator.ConsistencyReport report = migrator.checkConsistency(true);
+
+        assertEquals(1, report.getPending());
+        assertEquals(List.of("00/00/bbbb-misplaced.png"), report.getMisplaced());
+        assertEquals(List.of("cccc-gone.png"), report.getMissing());
+        assertFalse(report.isConsistent());
+        assertTrue(Files.exists(uploadService.shardedPath("bbbb-misplaced.png")));
+    }
+
+    @Test
+    @DisplayName("files that cannot move are skipped so the ones behind them still migrate")
+    void unmovableFilesDoNotStall() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            String name = String.format("%04x", i * 4099) + "-conflict.png";
+            flat(name);
+            Path sharded = uploadService.shardedPath(name);
+            Files.createDirectories(sharded.getParent());
+            Files.writeString(sharded, "a different, longer body");
+        }
+        flat("not servable.txt");
+        flat("eeee-movable.png");
+        UploadLayoutMigrator migrator = new UploadLayoutMigrator(uploadService, uploadRefRepository, true, 2);
+
+        int moved = 0;
+        for (int batch = 0; batch < 5 && !migrator.status().isComplete(); batch++) moved += migrator.migrateBatch();
+
+        assertEquals(1, moved);
+        assertTrue(migrator.status().isComplete());
+        assertEquals(3, migrator.status().getConflicts());
+        assertEquals(4, migrator.status().getSkipped());
+        assertTrue(Files.exists(uploadService.shardedPath("eeee-movable.png")));
+        assertTrue(Files.exists(tempDir.resolve("0000-conflict.png")), "conflicting copy is left in place");
+    }
+
+    @Test
+    @DisplayName("a flat copy already present in its shard is dropped, not duplicated")
+    void duplicateFlatCopyDropped() throws Exception {
+        Path legacy = flat("dddd-dup.png");
+        Path sharded = uploadService.shardedPath("dddd-dup.png");
+        Files.createDirectories(sharded.getParent());
+        Files.copy(legacy, sharded);
+        UploadLayoutMigrator migrator = new UploadLayoutMigrator(uploadService, uploadRefRepository, true, 100);
+
+        assertEquals(0, migrator.migrateBatch());
+
+        assertFalse(Files.exists(legacy));
+        assertTrue(Files.exists(sharded));
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.entity.UploadRefEntity;
+import com.example.webrtcchat.repository.UploadRefRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Reference counting: shared blobs survive until the last owner releases them.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class UploadRefServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock private UploadRefRepository uploadRefRepository;
+
+    private UploadRefService uploadRefService;
+
+    @BeforeEach
+    void setUp() {
+        uploadRefService = new UploadRefService(uploadRefRepository, new UploadService(tempDir.toString()), 24);
+    }
+
+    @Test
+    @DisplayName("addRefs stores one row per distinct upload URL and ignores other URLs")
+    void addRefs_onlyUploadUrls() {
+        uploadRefService.addRefs(UploadRefService.OWNER_MESSAGE, "m1",
+                "/api/uploads/a.mp4", "/api/uploads/a.mp4", "https://example.com/x.png", null);
+
+        verify(uploadRefRepository, times(1)).save(argThat((UploadRefEntity r) ->
+                r.getFilename().equals("a.mp4") && r.getOwnerId().equals("m1")));
+    }
+
+    @Test
+    @DisplayName("file is kept while another owner still references it")
+    void release_sharedBlobKept() throws Exception {
+        Path blob = Files.writeString(tempDir.resolve("a.jpg"), "x");
+        when(uploadRefRepository.findFilenamesByOwner("message", "m1")).thenReturn(List.of("a.jpg"));
+        when(uploadRefRepository.countByFilename("a.jpg")).thenReturn(1L);
+
+        uploadRefService.releaseRefs(UploadRefService.OWNER_MESSAGE, "m1");
+
+        verify(uploadRefRepository).deleteByOwner("message", "m1");
+        assertTrue(Files.exists(blob));
+    }
+
+    @Test
+    @DisplayName("file is deleted when its last reference goes")
+    void release_lastRefDeletes() throws Exception {
+        Path blob = Files.writeString(tempDir.resolve("a.jpg"), "x");
+        Files.setLastModifiedTime(blob, FileTime.from(Instant.now().minus(Duration.ofHours(25))));
+        when(uploadRefRepository.deleteByOwnerAndFilename("avatar", "bob", "a.jpg")).thenReturn(1);
+        when(uploadRefRepository.countByFilename("a.jpg")).thenReturn(0L);
+
+        uploadRefService.releaseRef(UploadRefService.OWNER_AVATAR, "bob", "/api/uploads/a.jpg");
+
+        assertFalse(Files.exists(blob));
+    }
+
+    @Test
+    @DisplayName("an unreferenced file reused within the grace period is left for the collector")
+    void release_recentlyReusedKept() throws Exception {
+        Path blob = Files.writeString(tempDir.resolve("a.jpg"), "x"); // fresh mtime, as after a dedup hit
+        when(uploadRefRepository.deleteByOwnerAndFilename("avatar", "bob", "a.jpg")).thenReturn(1);
+        when(uploadRefRepository.countByFilename("a.jpg")).thenReturn(0L);
+
+        uploadRefService.releaseRef(UploadRefService.OWNER_AVATAR, "bob", "/api/uploads/a.jpg");
+
+        assertTrue(Files.exists(blob));
+    }
+
+    @Test
+    @DisplayName("filenameOf rejects non-upload and nested URLs")
+    void filenameOf() {
+        assertEquals("a.jpg", UploadRefService.filenameOf("/api/uploads/a.jpg"));
+        assertNull(UploadRefService.filenameOf("/api/uploads/"));
+        assertNull(UploadRefService.filenameOf("/api/uploads/x/../a.jpg"));
+        assertNull(UploadRefService.filenameOf("http://evil/a.jpg"));
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.webrtcchat.service;
+
+import com.example.webrtcchat.service.UploadService.UploadRejectedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Single-pass upload pipeline: magic-byte sniffing, streaming SHA-256,
+ * mid-stream size enforcement and atomic placement.
+ */
+class UploadServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private UploadService uploadService;
+
+    @BeforeEach
+    void setUp() {
+        uploadService = new UploadService(tempDir.toString());
+    }
+
+    private static byte[] jpeg(int size) {
+        byte[] data = new byte[size];
+        data[0] = (byte) 0xFF;
+        data[1] = (byte) 0xD8;
+        data[2] = (byte) 0xFF;
+        for (int i = 3; i < size; i++) data[i] = (byte) i;
+        return data;
+    }
+
+    @Test
+    @DisplayName("stores file once with sniffed type and matching SHA-256")
+    void store_hashesAndSniffs() throws Exception {
+        byte[] data = jpeg(200_000); // larger than the sniff window
+        UploadService.StoredUpload stored = uploadService.store(
+                new ByteArrayInputStream(data), "photo.jpg", "text/plain", "", 1_000_000, true);
+
+        assertEquals("image/jpeg", stored.getContentType());
+        assertEquals(data.length, stored.getSize());
+        assertArrayEquals(data, Files.readAllBytes(stored.getPath()));
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        assertEquals(expected, stored.getSha256());
+        assertTrue(stored.getFilename().endsWith(".jpg"));
+    }
+
+    @Test
+    @DisplayName("size limit is enforced mid-stream and leaves no partial file")
+    void store_tooLarge_cleansUp() throws Exception {
+        UploadRejectedException ex = assertThrows(UploadRejectedException.class, () ->
+                uploadService.store(new ByteArrayInputStream(jpeg(100_000)), "big.jpg", null, "", 50_000, true));
+
+        assertEquals(UploadRejectedException.Reason.TOO_LARGE, ex.getReason());
+        try (var files = Files.list(tempDir.resolve(".incoming"))) {
+            assertEquals(0, files.count());
+        }
+        try (var files = Files.list(tempDir)) {
+            assertEquals(1, files.count()); // only .incoming
+        }
+    }
+
+    @Test
+    @DisplayName("imageOnly rejects non-image bytes regardless of extension")
+    void store_imageOnly_rejectsText() {
+        UploadRejectedException ex = assertThrows(UploadRejectedException.class, () ->
+                uploadService.store(new ByteArrayInputStream("hello".getBytes()), "x.png", "image/png", "", 1000, true));
+        assertEquals(UploadRejectedException.Reason.NOT_IMAGE, ex.getReason());
+    }
+
+    @Test
+    @DisplayName("empty body is rejected")
+    void store_empty() {
+        UploadRejectedException ex = assertThrows(UploadRejectedException.class, () ->
+                uploadService.store(new ByteArrayInputStream(new byte[0]), "a.pdf", null, "", 1000, false));
+        assertEquals(UploadRejectedException.Reason.EMPTY, ex.getReason());
+    }
+
+    @Test
+    @DisplayName("unknown signature falls back to name-based type")
+    void store_unknownMagic_fallsBackToName() throws Exception {
+        UploadService.StoredUpload stored = uploadService.store(
+                new ByteArrayInputStream("plain text".getBytes()), "notes.txt", null, "", 1000, false);
+        assertEquals("text/plain", stored.getContentType());
+    }
+
+    @Test
+    @DisplayName("sniffs common media signatures")
+    void sniff_signatures() {
+        assertEquals("application/pdf", sniff("%PDF-1.7"));
+        assertEquals("image/gif", sniff("GIF89a"));
+        assertEquals("image/webp", sniff("RIFF\0\0\0\0WEBPVP8 "));
+        assertEquals("audio/ogg", sniff("OggS\0"));
+        assertEquals("video/mp4", sniff("\0\0\0\u0018ftypisom"));
+        assertEquals("video/quicktime", sniff("\0\0\0\u0014ftypqt  "));
+        assertEquals("video/webm", UploadService.sniffContentType(new byte[]{0x1A, 0x45, (byte) 0xDF, (byte) 0xA3}, 4));
+        assertNull(sniff("hello world"));
+    }
+
+    private static String sniff(String s) {
+        byte[] b = s.getBytes(java.nio.charset.StandardCharsets.ISO_8859_1);
+        return UploadService.sniffContentType(b, b.length);
+    }
+
+    @Test
+    @DisplayName("identical content is stored once under its SHA-256 name")
+    void store_deduplicates() throws Exception {
+        byte[] data = jpeg(50_000);
+        UploadService.StoredUpload first = uploadService.store(
+                new ByteArrayInputStream(data), "a.jpg", null, "", 1_000_000, true);
+        UploadService.StoredUpload second = uploadService.store(
+                new ByteArrayInputStream(data), "b.jpg", null, "", 1_000_000, true);
+
+        assertEquals(first.getSha256() + ".jpg", first.getFilename());
+        assertEquals(first.getFilename(), second.getFilename());
+        try (var files = Files.list(tempDir)) {
+            assertEquals(2, files.count()); // blob + .incoming
+        }
+        try (var files = Files.list(tempDir.resolve(".incoming"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    @DisplayName("findExisting resolves a known hash without any upload")
+    void findExisting_byHash() throws Exception {
+        byte[] data = jpeg(1000);
+        UploadService.StoredUpload stored = uploadService.store(
+                new ByteArrayInputStream(data), "a.jpg", null, "", 1_000_000, true);
+
+        var hit = uploadService.findExisting(stored.getSha256(), "other.jpg", "", true);
+        assertTrue(hit.isPresent());
+        assertEquals(stored.getFilename(), hit.get().getFilename());
+        assertEquals("image/jpeg", hit.get().getContentType());
+        assertEquals(1000, hit.get().getSize());
+
+        assertTrue(uploadService.findExisting("0".repeat(64), "a.jpg", "", false).isEmpty());
+        assertTrue(uploadService.findExisting("../etc/passwd", "a.jpg", "", false).isEmpty());
+    }
+
+    @Test
+    @DisplayName("findProven needs the hash of the challenged byte range, not just the content hash")
+    void findProven_requiresPossession() throws Exception {
+        byte[] data = jpeg(200_000);
+        UploadService.StoredUpload stored = uploadService.store(
+                new ByteArrayInputStream(data), "a.jpg", null, "", 1_000_000, true);
+        String sha = stored.getSha256();
+
+        UploadService.PossessionChallenge c = uploadService.possessionChallenge("bob", sha, data.length);
+        assertEquals(UploadService.PROOF_MAX_LENGTH, c.getLength());
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(c.getToken().getBytes(StandardCharsets.UTF_8));
+        String proof = HexFormat.of().formatHex(
+                digest.digest(Arrays.copyOfRange(data, (int) c.getOffset(), (int) c.getOffset() + c.getLength())));
+
+        assertTrue(uploadService.findProven("bob", sha, data.length, c, proof, "b.jpg", true).isPresent());
+        assertTrue(uploadService.findProven("bob", sha, data.length, c, sha, "b.jpg", true).isEmpty(),
+                "the content hash is not a proof");
+        assertTrue(uploadService.findProven("eve", sha, data.length, c, proof, "b.jpg", true).isEmpty(),
+                "challenge is bound to who asked");
+        var moved = new UploadService.PossessionChallenge(0, c.getLength(), c.getToken());
+        assertTrue(c.getOffset() == 0
+                || uploadService.findProven("bob", sha, data.length, moved, proof, "b.jpg", true).isEmpty());
+        assertTrue(uploadService.findProven("bob", sha, data.length + 1, c, proof, "b.jpg", true).isEmpty());
+    }
+
+    @Test
+    @DisplayName("resolve rejects traversal and the staging directory")
+    void resolve_rejectsUnsafeNames() {
+        assertNotNull(uploadService.resolve("abc.jpg"));
+        assertNull(uploadService.resolve("../abc.jpg"));
+        assertNull(uploadService.resolve(".incoming"));
+        assertNull(uploadService.resolve("a/b.jpg"));
+    }
+
+    @Test
+    @DisplayName("new files land in a two-level shard; legacy flat files still resolve")
+    void shardedLayout() throws Exception {
+        UploadService.StoredUpload stored = uploadService.store(
+                new ByteArrayInputStream(jpeg(100)), "a.jpg", null, "", 1000, true);
+        String sha = stored.getSha256();
+        assertEquals(tempDir.resolve(sha.substring(0, 2)).resolve(sha.substring(2, 4)).resolve(stored.getFilename()),
+                stored.getPath());
+        assertEquals(stored.getPath(), uploadService.resolve(stored.getFilename()));
+
+        Path legacy = Files.writeString(tempDir.resolve("0f1e2d3c-0000-0000-0000-000000000000.png"), "x");
+        assertEquals(legacy, uploadService.resolve(legacy.getFileName().toString()));
+
+        assertEquals("0f1e", UploadService.shardOf("avatar_0f1e2d3c-0000-0000-0000-000000000000.png"));
+        assertEquals(4, UploadService.shardOf("readme.txt").length());
+    }
+}
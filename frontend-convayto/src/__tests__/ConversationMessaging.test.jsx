@@ -974,22 +974,33 @@ describe("apiMessage functions", () => {
     });
   });
 
-  it("getMessages fetches reactions batch", async () => {
+  it("getMessages uses inline reactions and batch-fetches only truncated user lists", async () => {
     vi.mocked(apiFetch).mockImplementation((url) => {
       if (url.includes("/history"))
         return Promise.resolve([
-          { id: "m1", sender: "alice", content: "Hi", type: "CHAT" },
+          {
+            id: "m2", sender: "bob", content: "Popular", type: "CHAT",
+            reactions: [{ emoji: "🔥", count: 4, recentUsers: ["a", "b", "c"] }],
+          },
+          {
+            id: "m1", sender: "alice", content: "Hi", type: "CHAT",
+            reactions: [{ emoji: "👍", count: 1, recentUsers: ["bob"] }],
+          },
+          { id: "m0", sender: "alice", content: "Quiet", type: "CHAT" },
         ]);
       if (url.includes("/reactions/batch"))
-        return Promise.resolve({ m1: [{ emoji: "👍", username: "bob" }] });
+        return Promise.resolve({ m2: [{ emoji: "🔥", count: 4, users: ["a", "b", "c", "d"] }] });
       return Promise.resolve([]);
     });
 
     const msgs = await getMessages({ conversation_id: "room1" });
 
-    expect(msgs[0].reactions).toEqual([
-      { emoji: "👍", username: "bob" },
-    ]);
+    const batchCalls = vi.mocked(apiFetch).mock.calls.filter(([url]) => url.includes("/reactions/batch"));
+    expect(batchCalls).toHaveLength(1);
+    expect(JSON.parse(batchCalls[0][1].body)).toEqual({ messageIds: ["m2"] });
+    expect(msgs[0].reactions).toBeUndefined();
+    expect(msgs[1].reactions).toEqual([{ emoji: "👍", count: 1, users: ["bob"] }]);
+    expect(msgs[2].reactions[0].users).toHaveLength(4);
   });
 });
 
@@ -1,6 +1,6 @@
 import { useNavigate, useParams } from "react-router-dom";
 import { useEnterKeyPress } from "../utils/useEnterKeyPress";
-import { getRandomAvatar } from "../utils/avatarUtils";
+import { getRandomAvatar, sizedImageUrl } from "../utils/avatarUtils";
 import { isPinned, togglePinChat } from "../utils/pinnedChats";
 import { clear as clearUnread } from "../utils/unreadStore";
 import { useState, useRef } from "react";
@@ -86,7 +86,7 @@ function UserItem({
         {/* Avatar */}
         <span className="relative flex h-[3rem] w-[3rem] flex-shrink-0 items-center justify-center">
           <img
-            src={avatar || getRandomAvatar(name || id)}
+            src={sizedImageUrl(avatar, 128) || getRandomAvatar(name || id)}
             alt={name}
             className="avatar-ring pointer-events-none h-full w-full rounded-full object-cover ring-2 ring-LightShade/[0.06]"
           />
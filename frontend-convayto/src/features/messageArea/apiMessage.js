@@ -53,11 +53,18 @@ export async function getMessages({ conversation_id, pageParam = 0 }) {
     replyToSender: msg.replyToSender || null,
     replyToContent: msg.replyToContent || null,
     pollData: msg.pollData || null,
+    linkPreview: msg.linkPreview || null,
+    reactions: msg.reactions
+      ? msg.reactions.map((r) => ({ emoji: r.emoji, count: r.count, users: r.recentUsers || [] }))
+      : undefined,
   }));
 
-  // Batch-fetch reactions for all messages
+  // History carries reaction counts with the last few users inline; batch-fetch the full
+  // user lists only where they were cut short (needed to tell whether we reacted)
   try {
-    const ids = transformed.map((m) => m.id).filter(Boolean);
+    const ids = transformed
+      .filter((m) => m.id && m.reactions?.some((r) => r.count > r.users.length))
+      .map((m) => m.id);
     if (ids.length > 0) {
       const reactionsMap = await apiFetch(`/api/reactions/batch`, {
         method: "POST",
@@ -90,6 +90,16 @@ export function subscribeRealtimeMessage({ conversation_id, callback }) {
       });
     }
 
+    // Handle LINK_PREVIEW (preview fetched by the server after send)
+    if (msg.roomId === conversation_id && msg.type === "LINK_PREVIEW") {
+      callback({
+        id: msg.id,
+        conversation_id: msg.roomId,
+        type: "LINK_PREVIEW",
+        linkPreview: msg.linkPreview,
+      });
+    }
+
     // Handle POLL (new poll created)
     if (msg.roomId === conversation_id && msg.type === "POLL") {
       callback({
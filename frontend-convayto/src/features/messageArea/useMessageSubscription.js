@@ -47,6 +47,19 @@ function useMessageSubscription({ conversation_id, friendUserId }) {
             };
           }
 
+          // Handle LINK_PREVIEW — attach the server-fetched preview to an existing message
+          if (newData.type === "LINK_PREVIEW") {
+            if (!prevData) return prevData;
+            return {
+              ...prevData,
+              pages: prevData.pages.map((page) =>
+                page.map((m) =>
+                  m.id === newData.id ? { ...m, linkPreview: newData.linkPreview } : m,
+                ),
+              ),
+            };
+          }
+
           // Handle REACTION / REACTION_REMOVE — update reactions on existing message
           if (newData.type === "REACTION" || newData.type === "REACTION_REMOVE") {
             if (!prevData) return prevData;
@@ -1,6 +1,6 @@
 import { useNavigate, useParams } from "react-router-dom";
 import { useEnterKeyPress } from "../../utils/useEnterKeyPress";
-import { getRandomAvatar } from "../../utils/avatarUtils";
+import { getRandomAvatar, sizedImageUrl } from "../../utils/avatarUtils";
 import { isPinned, togglePinChat } from "../../utils/pinnedChats";
 import { useState, useRef } from "react";
 import { useQueryClient } from "@tanstack/react-query";
@@ -78,7 +78,7 @@ function GroupItem({ group, handler }) {
         {/* Avatar */}
         <span className="flex h-[3rem] w-[3rem] flex-shrink-0 items-center justify-center overflow-hidden rounded-full ring-2 ring-LightShade/[0.06]">
           <img
-            src={group.avatarUrl || getRandomAvatar(group.name || group.id)}
+            src={sizedImageUrl(group.avatarUrl, 128) || getRandomAvatar(group.name || group.id)}
             alt={group.name}
             className="avatar-ring pointer-events-none h-full w-full object-cover"
           />
@@ -4,3 +4,10 @@ export function getRandomAvatar(name) {
   const seed = encodeURIComponent((name || "user").trim());
   return `https://api.dicebear.com/7.x/thumbs/svg?seed=${seed}&backgroundColor=b6e3f4,c0aede,d1d4f9,ffd5dc,ffdfbf`;
 }
+
+// Ask the backend for a downscaled variant of an uploaded image (?w=, snapped
+// server-side to 64/128/256/512/1024). External and non-upload URLs pass through.
+export function sizedImageUrl(url, width) {
+  if (!url || !url.includes("/api/uploads/") || url.includes("?")) return url;
+  return `${url}?w=${width}`;
+}